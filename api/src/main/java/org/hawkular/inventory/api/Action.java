@@ -21,6 +21,9 @@ import org.hawkular.inventory.api.model.AbstractElement;
 import org.hawkular.inventory.api.model.Environment;
 import org.hawkular.inventory.api.model.Feed;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author Lukas Krejci
  * @since 0.0.1
@@ -32,6 +35,7 @@ public final class Action<C, E> {
     private static final Action<?, ?> _DELETED = new Action<>();
     private static final Action<EnvironmentCopy, Environment> _COPIED = new Action<>();
     private static final Action<Feed, Feed> _REGISTERED = new Action<>();
+    private static final Action<Batch, Batch> _COMMITTED = new Action<>();
 
     public static <E> Action<E, E> created() {
         return (Action<E, E>) _CREATED;
@@ -54,6 +58,14 @@ public final class Action<C, E> {
         return _REGISTERED;
     }
 
+    /**
+     * The action of committing a write to the inventory. The subscribers interested in this action on the
+     * {@link Batch} receive all the changes made by a single write at once.
+     */
+    public static Action<Batch, Batch> committed() {
+        return _COMMITTED;
+    }
+
     private Action() {
 
     }
@@ -63,7 +75,8 @@ public final class Action<C, E> {
     }
 
     public enum Enumerated {
-        CREATED(_CREATED), UPDATED(_UPDATED), DELETED(_DELETED), COPIED(_COPIED), REGISTERED(_REGISTERED);
+        CREATED(_CREATED), UPDATED(_UPDATED), DELETED(_DELETED), COPIED(_COPIED), REGISTERED(_REGISTERED),
+        COMMITTED(_COMMITTED);
 
         private final Action<?, ?> action;
 
@@ -103,6 +116,62 @@ public final class Action<C, E> {
         }
     }
 
+    /**
+     * All the changes made by a single write to the inventory, in the order they were made.
+     */
+    public static final class Batch {
+        @Expose
+        private final List<Change<?, ?>> changes;
+
+        public Batch(List<Change<?, ?>> changes) {
+            this.changes = Collections.unmodifiableList(changes);
+        }
+
+        public List<Change<?, ?>> getChanges() {
+            return changes;
+        }
+    }
+
+    /**
+     * A single change in a {@link Batch}.
+     *
+     * @param <C> the type of the action context
+     * @param <E> the type of the changed entity
+     */
+    public static final class Change<C, E> {
+        private final Action<C, E> action;
+
+        @Expose
+        private final E entity;
+
+        @Expose
+        private final C context;
+
+        public Change(Action<C, E> action, E entity, C context) {
+            this.action = action;
+            this.entity = entity;
+            this.context = context;
+        }
+
+        public Action<C, E> getAction() {
+            return action;
+        }
+
+        /**
+         * @return the entity (or relationship) that was changed
+         */
+        public E getEntity() {
+            return entity;
+        }
+
+        /**
+         * @return the object the subscribers interested in the action on the entity would receive
+         */
+        public C getContext() {
+            return context;
+        }
+    }
+
     public static final class Update<E, U> {
         @Expose
         private final E originalEntity;
@@ -17,8 +17,16 @@
 package org.hawkular.inventory.api;
 
 import org.hawkular.inventory.api.filters.Filter;
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.api.model.Entity;
 import org.hawkular.inventory.api.model.Tenant;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * This is an adapter of {@link Inventory} that makes the creation of tenants transparent and at the same time
  * doesn't support reading all tenants.
@@ -30,15 +38,25 @@ import org.hawkular.inventory.api.model.Tenant;
  * <p>This therefore assumes that tenant IDs are stored outside of the scope of inventory and some external security
  * model is making sure that only correct users are able to access concrete tenant IDs.
  *
+ * <p>The IDs of the tenants known to exist are remembered so that obtaining a tenant only checks its existence the
+ * first time. A tenant is forgotten when it is deleted using this instance or, if the wrapped inventory is
+ * {@link Inventory.Mixin.Observable observable}, by any other means.
+ *
  * @author Lukas Krejci
  * @since 0.0.2
  */
 final class AutoTenantInventory implements Inventory, Inventory.Mixin.AutoTenant {
 
     private final Inventory inventory;
+    private final Set<String> knownTenants = ConcurrentHashMap.newKeySet();
 
     public AutoTenantInventory(Inventory inventory) {
         this.inventory = inventory;
+
+        if (inventory instanceof Mixin.Observable) {
+            ((Mixin.Observable) inventory).observable(Interest.in(Tenant.class).being(Action.deleted()))
+                    .subscribe((t) -> knownTenants.remove(t.getId()));
+        }
     }
 
     /**
@@ -52,7 +70,9 @@ final class AutoTenantInventory implements Inventory, Inventory.Mixin.AutoTenant
 
             @Override
             public Tenants.Single create(Tenant.Blueprint blueprint) throws EntityAlreadyExistsException {
-                return inventory.tenants().create(blueprint);
+                Tenants.Single ret = inventory.tenants().create(blueprint);
+                knownTenants.add(blueprint.getId());
+                return ret;
             }
 
             @Override
@@ -62,18 +82,24 @@ final class AutoTenantInventory implements Inventory, Inventory.Mixin.AutoTenant
 
             @Override
             public void delete(String id) throws EntityNotFoundException {
+                knownTenants.remove(id);
                 inventory.tenants().delete(id);
+                knownTenants.remove(id);
             }
 
             @Override
             public Tenants.Single get(String id) throws EntityNotFoundException {
                 Tenants.Single ret = inventory.tenants().get(id);
-                if (ret.exists()) {
+                if (knownTenants.contains(id)) {
                     return ret;
-                } else {
+                }
+
+                if (!ret.exists()) {
                     inventory.tenants().create(Tenant.Blueprint.builder().withId(id).build());
-                    return ret;
                 }
+
+                knownTenants.add(id);
+                return ret;
             }
 
             @Override
@@ -83,6 +109,19 @@ final class AutoTenantInventory implements Inventory, Inventory.Mixin.AutoTenant
         };
     }
 
+    public Map<CanonicalPath, Entity<?, ?>> fetch(Collection<CanonicalPath> paths) {
+        return inventory.fetch(paths);
+    }
+
+    public <E extends Entity<?, ?>> List<E> inspectAll(Collection<? extends E> entities) {
+        return inventory.inspectAll(entities);
+    }
+
+    public void walk(CanonicalPath root, int maxDepth, Set<Relationships.WellKnown> relationships,
+            TreeVisitor visitor) throws EntityNotFoundException {
+        inventory.walk(root, maxDepth, relationships, visitor);
+    }
+
     public void initialize(Configuration configuration) {
         inventory.initialize(configuration);
     }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * A thread-safe, size-bounded cache evicting the least recently used entries, optionally expiring the entries after
+ * a fixed time.
+ *
+ * <p>The values are loaded outside of the lock guarding the cache. A value whose loading ran concurrently with an
+ * invalidation is returned to the caller but not cached, because it might have been loaded from the state before
+ * the invalidated change. The exceptions thrown by the loader are not cached either.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public final class BoundedCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    /**
+     * Bumped on every invalidation, a loaded value is only cached if this didn't change during the loading.
+     */
+    private long generation;
+
+    /**
+     * Creates a cache with entries that never expire.
+     *
+     * @param maxSize the maximum number of cached entries, 0 disables the cache
+     */
+    public BoundedCache(int maxSize) {
+        this(maxSize, 0);
+    }
+
+    /**
+     * @param maxSize  the maximum number of cached entries, 0 disables the cache
+     * @param ttlNanos the time after which the entries expire or 0 if they should never expire
+     */
+    public BoundedCache(int maxSize, long ttlNanos) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlNanos;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return true if the cache can hold any entries, false if all the values are always loaded
+     */
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Returns the cached value or loads it and caches it.
+     *
+     * @param key    the key of the value
+     * @param loader the loader to use if the value is not cached
+     * @param <E>    the type of the exception the loader can throw
+     * @return the cached or loaded value
+     * @throws E if the loader fails
+     */
+    public <E extends Throwable> V get(K key, Loader<V, E> loader) throws E {
+        return get(key, (v) -> true, loader);
+    }
+
+    /**
+     * Returns the cached value, if it is still valid, or loads the value and caches it.
+     *
+     * @param key     the key of the value
+     * @param isValid the check whether the cached value can still be used
+     * @param loader  the loader to use if the value is not cached or is no longer valid
+     * @param <E>     the type of the exception the loader can throw
+     * @return the cached or loaded value
+     * @throws E if the loader fails
+     */
+    public <E extends Throwable> V get(K key, Predicate<? super V> isValid, Loader<V, E> loader) throws E {
+        if (maxSize <= 0) {
+            return loader.load();
+        }
+
+        long now = System.nanoTime();
+        long gen;
+
+        synchronized (this) {
+            Entry<V> e = entries.get(key);
+            if (e != null && (ttlNanos <= 0 || e.expiresAt - now > 0) && isValid.test(e.value)) {
+                return e.value;
+            }
+            gen = generation;
+        }
+
+        V value = loader.load();
+
+        synchronized (this) {
+            if (gen == generation) {
+                entries.put(key, new Entry<>(value, now + ttlNanos));
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Drops the entry with the provided key.
+     *
+     * @param key the key of the value to drop
+     */
+    public synchronized void invalidate(K key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    /**
+     * Drops all the entries matching the provided predicate.
+     *
+     * @param predicate the predicate on the keys and values of the entries to drop
+     */
+    public synchronized void invalidateIf(BiPredicate<? super K, ? super V> predicate) {
+        generation++;
+        entries.entrySet().removeIf((e) -> predicate.test(e.getKey(), e.getValue().value));
+    }
+
+    /**
+     * Drops all the entries.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * Loads a value that is not cached.
+     *
+     * @param <V> the type of the value
+     * @param <E> the type of the exception thrown on failure
+     */
+    @FunctionalInterface
+    public interface Loader<V, E extends Throwable> {
+        V load() throws E;
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.api;
+
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.api.model.Environment;
+import org.hawkular.inventory.api.model.Feed;
+import org.hawkular.inventory.api.model.Metric;
+import org.hawkular.inventory.api.model.MetricType;
+import org.hawkular.inventory.api.model.Resource;
+import org.hawkular.inventory.api.model.ResourceType;
+import org.hawkular.inventory.api.model.Tenant;
+import org.hawkular.inventory.api.paging.Page;
+import org.hawkular.inventory.api.paging.Pager;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The implementation of the {@link Inventory.Mixin.Caching} mixin.
+ *
+ * <p>Instead of a wrapper class for each of the access interfaces (like the observable mixin has), this uses dynamic
+ * proxies that track the canonical path of the current position in the traversal. Only the traversals that follow
+ * the {@code contains} relationships from the tenants (e.g. {@code tenants().get(t).environments().get(e)}) have a
+ * canonical path, the results of all the other traversals are never cached.
+ *
+ * <p>The {@code entity()} calls are cached by the canonical path of the entity, the {@code entities(pager)} calls on
+ * an unfiltered {@code getAll()} are cached by the canonical path of the parent, the name of the access method and
+ * the pager, if the page is small enough. The cache entries are invalidated by the mutation events of the wrapped
+ * observable inventory and expire after a configured time to cap the staleness caused by changes that don't go
+ * through this inventory instance.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+final class CachingInventory {
+
+    /**
+     * The canonical steps, i.e. the methods following the {@code contains} relationships, for each type of entity.
+     * The tenants are accessed using the {@link Inventory#tenants()} method, which is represented by the {@code null}
+     * key here.
+     */
+    private static final Map<Class<?>, Map<String, Class<? extends Entity>>> CANONICAL_STEPS = new HashMap<>();
+
+    static {
+        Map<String, Class<? extends Entity>> root = new HashMap<>();
+        root.put("tenants", Tenant.class);
+        CANONICAL_STEPS.put(null, root);
+
+        Map<String, Class<? extends Entity>> tenant = new HashMap<>();
+        tenant.put("environments", Environment.class);
+        tenant.put("resourceTypes", ResourceType.class);
+        tenant.put("metricTypes", MetricType.class);
+        CANONICAL_STEPS.put(Tenant.class, tenant);
+
+        Map<String, Class<? extends Entity>> environment = new HashMap<>();
+        environment.put("feeds", Feed.class);
+        environment.put("feedlessResources", Resource.class);
+        environment.put("feedlessMetrics", Metric.class);
+        environment.put("allResources", Resource.class);
+        environment.put("allMetrics", Metric.class);
+        CANONICAL_STEPS.put(Environment.class, environment);
+
+        Map<String, Class<? extends Entity>> feed = new HashMap<>();
+        feed.put("resources", Resource.class);
+        feed.put("metrics", Metric.class);
+        CANONICAL_STEPS.put(Feed.class, feed);
+    }
+
+    private final Inventory.Mixin.Observable inventory;
+    private final int maxPageSize;
+
+    /**
+     * The keys are either canonical paths of entities or the page keys.
+     */
+    private final BoundedCache<Object, Object> cache;
+
+    private CachingInventory(Inventory.Mixin.Observable inventory, int maxSize, int maxPageSize, long ttl,
+            TimeUnit unit) {
+        this.inventory = inventory;
+        this.maxPageSize = maxPageSize;
+        this.cache = new BoundedCache<>(maxSize, unit.toNanos(ttl));
+    }
+
+    /**
+     * Creates a caching inventory on top of the provided observable inventory.
+     *
+     * @param inventory     the inventory to cache the results of and to observe the changes on
+     * @param iface         the mixin interface the returned inventory should implement
+     * @param maxSize       the maximum number of cached entities and pages
+     * @param maxPageSize   the maximum size of a page to be cached
+     * @param ttl           the time after which a cache entry expires
+     * @param unit          the unit of the ttl
+     * @param <T>           the type of the returned inventory
+     * @return the caching inventory
+     */
+    static <T extends Inventory.Mixin.Caching> T create(Inventory.Mixin.Observable inventory, Class<T> iface,
+            int maxSize, int maxPageSize, long ttl, TimeUnit unit) {
+
+        CachingInventory ci = new CachingInventory(inventory, maxSize, maxPageSize, ttl, unit);
+        ci.observeChanges();
+
+        return iface.cast(Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[]{iface},
+                ci.new Handler(inventory, Position.ROOT)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void observeChanges() {
+        inventory.observable(Interest.in(Entity.class).being(Action.created())).subscribe(this::invalidate);
+        inventory.observable(Interest.in(Entity.class).being((Action) Action.updated()))
+                .subscribe((u) -> invalidate((Entity<?, ?>) ((Action.Update<?, ?>) u).getOriginalEntity()));
+        inventory.observable(Interest.in(Entity.class).being(Action.deleted())).subscribe(this::invalidate);
+        inventory.observable(Interest.in(Feed.class).being(Action.registered())).subscribe(this::invalidate);
+        inventory.observable(Interest.in(Environment.class).being(Action.copied()))
+                .subscribe((c) -> invalidate(c.getTarget()));
+    }
+
+    private void invalidate(Entity<?, ?> entity) {
+        CanonicalPath cp = CanonicalPath.of(entity);
+
+        if (entity instanceof ResourceType || entity instanceof MetricType) {
+            //resources and metrics embed their types, so just drop everything in the tenant
+            CanonicalPath tenant = cp.getParent();
+            cache.invalidateIf((key, value) -> {
+                CanonicalPath keyPath = pathOf(key);
+                return keyPath.equals(tenant) || tenant.isParentOf(keyPath);
+            });
+        } else {
+            //the entity itself, everything underneath it (contained entities are deleted along with it) and all the
+            //pages the entity might be part of
+            cache.invalidateIf((key, value) -> {
+                CanonicalPath keyPath = pathOf(key);
+                return keyPath.equals(cp) || cp.isParentOf(keyPath)
+                        || (key instanceof PageKey && keyPath.isParentOf(cp));
+            });
+        }
+    }
+
+    private static CanonicalPath pathOf(Object cacheKey) {
+        return cacheKey instanceof PageKey ? ((PageKey) cacheKey).parent : (CanonicalPath) cacheKey;
+    }
+
+    /**
+     * The position of the proxied access interface in the traversal.
+     */
+    private static final class Position {
+        static final Position ROOT = new Position(null, null, null, false);
+
+        /**
+         * The canonical path of the single entity or the parent of the multiple entities.
+         */
+        final CanonicalPath path;
+
+        /**
+         * The type of the entities accessible on this position or null if this is a position of a single entity.
+         */
+        final Class<? extends Entity> childType;
+
+        /**
+         * The name of the access method used to reach the multiple entities.
+         */
+        final String accessMethod;
+
+        /**
+         * True if this is the position of the result of an unfiltered {@code getAll()}.
+         */
+        final boolean multiple;
+
+        private Position(CanonicalPath path, Class<? extends Entity> childType, String accessMethod,
+                boolean multiple) {
+            this.path = path;
+            this.childType = childType;
+            this.accessMethod = accessMethod;
+            this.multiple = multiple;
+        }
+
+        /**
+         * @return the position reached by calling given method with given arguments on this position or null if the
+         * traversal leaves the canonical paths
+         */
+        Position next(Method method, Object[] args) {
+            String name = method.getName();
+            int argCount = args == null ? 0 : args.length;
+
+            if (multiple) {
+                return null;
+            } else if (childType == null) {
+                //single entity or the root
+                Class<?> type = path == null ? null : path.getSegment().getElementType();
+                Map<String, Class<? extends Entity>> steps = CANONICAL_STEPS.get(type);
+                Class<? extends Entity> child = steps == null || argCount != 0 ? null : steps.get(name);
+                return child == null ? null
+                        : new Position(path == null ? CanonicalPath.empty() : path, child, name, false);
+            } else if ("get".equals(name) && argCount == 1) {
+                try {
+                    return new Position(path.extend(childType, (String) args[0]), null, null, false);
+                } catch (IllegalArgumentException e) {
+                    //not a valid path, let the inventory deal with it
+                    return null;
+                }
+            } else if ("getAll".equals(name) && argCount == 1 && ((Object[]) args[0]).length == 0) {
+                return new Position(path, childType, accessMethod, true);
+            } else {
+                return null;
+            }
+        }
+    }
+
+    private final class Handler implements InvocationHandler {
+        private final Object wrapped;
+        private final Position position;
+
+        private Handler(Object wrapped, Position position) {
+            this.wrapped = wrapped;
+            this.position = position;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return invokeWrapped(method, args);
+                }
+            } else if (method.getDeclaringClass() == Inventory.Mixin.Caching.class) {
+                //the only method there
+                cache.invalidateAll();
+                return null;
+            }
+
+            if (position.path != null && position.childType == null && "entity".equals(method.getName())
+                    && method.getParameterCount() == 0) {
+                //exceptions (like EntityNotFoundException) are not cached
+                return cache.get(position.path, () -> invokeWrapped(method, args));
+            }
+
+            if (position.multiple && "entities".equals(method.getName()) && method.getParameterCount() == 1) {
+                Pager pager = (Pager) args[0];
+                if (pager.isLimited() && pager.getPageSize() <= maxPageSize) {
+                    return cache.get(new PageKey(position, pager), () -> invokeWrapped(method, args));
+                }
+            }
+
+            Object ret = invokeWrapped(method, args);
+
+            Position next = position.next(method, args);
+            if (next == null || ret == null) {
+                return ret;
+            }
+
+            return Proxy.newProxyInstance(CachingInventory.class.getClassLoader(), publicInterfacesOf(ret),
+                    new Handler(ret, next));
+        }
+
+        private Object invokeWrapped(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(wrapped, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private Class<?>[] publicInterfacesOf(Object o) {
+            Set<Class<?>> ifaces = new LinkedHashSet<>();
+            for (Class<?> c = o.getClass(); c != null; c = c.getSuperclass()) {
+                for (Class<?> i : c.getInterfaces()) {
+                    if (Modifier.isPublic(i.getModifiers())) {
+                        ifaces.add(i);
+                    }
+                }
+            }
+            return ifaces.toArray(new Class<?>[ifaces.size()]);
+        }
+    }
+
+    private static final class PageKey {
+        private final CanonicalPath parent;
+        private final String accessMethod;
+        private final Pager pager;
+
+        private PageKey(Position position, Pager pager) {
+            this.parent = position.path;
+            this.accessMethod = position.accessMethod;
+            this.pager = pager;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            PageKey pageKey = (PageKey) o;
+
+            return parent.equals(pageKey.parent) && accessMethod.equals(pageKey.accessMethod)
+                    && pager.equals(pageKey.pager);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = parent.hashCode();
+            result = 31 * result + accessMethod.hashCode();
+            result = 31 * result + pager.hashCode();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.api;
+
+import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.api.model.Relationship;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The elements that were created in the backend as part of a single write operation. The implementations record them
+ * as they write and report them after the changes have been committed, so that the callers (e.g. the observable
+ * inventory) don't have to find them out by querying the inventory again.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public final class ChangeSet {
+    private final List<Entity<?, ?>> createdEntities;
+    private final List<Relationship> createdRelationships;
+
+    public ChangeSet(List<Entity<?, ?>> createdEntities, List<Relationship> createdRelationships) {
+        this.createdEntities = createdEntities == null ? Collections.emptyList()
+                : Collections.unmodifiableList(createdEntities);
+        this.createdRelationships = createdRelationships == null ? Collections.emptyList()
+                : Collections.unmodifiableList(createdRelationships);
+    }
+
+    /**
+     * @return the entities created, in the order of their creation
+     */
+    public List<Entity<?, ?>> getCreatedEntities() {
+        return createdEntities;
+    }
+
+    /**
+     * @return the relationships created, in the order of their creation
+     */
+    public List<Relationship> getCreatedRelationships() {
+        return createdRelationships;
+    }
+}
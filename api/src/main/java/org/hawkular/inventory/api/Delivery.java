@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.api;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Determines how the notifications about the inventory mutations are delivered to the subscribers of an
+ * {@link Inventory.Mixin.Observable#observable(Interest, Delivery) observable}.
+ *
+ * <p>By default the notifications are delivered {@link #synchronous() synchronously}, i.e. the subscribers run on the
+ * thread that performed the mutation, before the mutating call returns. With the
+ * {@link #asynchronous(int, Overflow) asynchronous} delivery, each subscription gets its own bounded queue of
+ * notifications that is drained serially using the provided executor, so that slow subscribers don't slow down the
+ * writers, unless the queue overflows with the {@link Overflow#BLOCK} policy. The asynchronous delivery is therefore
+ * only suitable for the subscribers that can tolerate seeing the changes late (or not at all, with the
+ * {@link Overflow#DROP_OLDEST} policy).
+ *
+ * <p>The delivery keeps the {@link Statistics statistics} of all the subscriptions using it.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public final class Delivery {
+    private static final Delivery SYNCHRONOUS = new Delivery(0, null, null);
+
+    private final int queueSize;
+    private final Overflow overflow;
+    private final Executor executor;
+    private final Statistics statistics = new Statistics();
+
+    public static Delivery synchronous() {
+        return SYNCHRONOUS;
+    }
+
+    /**
+     * The notifications are drained by the threads of the observable inventory.
+     *
+     * @see #asynchronous(int, Overflow, Executor)
+     */
+    public static Delivery asynchronous(int queueSize, Overflow overflow) {
+        return asynchronous(queueSize, overflow, null);
+    }
+
+    /**
+     * @param queueSize the maximum number of notifications waiting for delivery in a single subscription
+     * @param overflow  what to do when the queue is full
+     * @param executor  the executor to drain the queues with or null to use the threads of the observable inventory
+     * @return the asynchronous delivery configuration
+     */
+    public static Delivery asynchronous(int queueSize, Overflow overflow, Executor executor) {
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("queueSize must be positive");
+        }
+
+        if (overflow == null) {
+            throw new IllegalArgumentException("overflow == null");
+        }
+
+        return new Delivery(queueSize, overflow, executor);
+    }
+
+    private Delivery(int queueSize, Overflow overflow, Executor executor) {
+        this.queueSize = queueSize;
+        this.overflow = overflow;
+        this.executor = executor;
+    }
+
+    public boolean isAsynchronous() {
+        return queueSize > 0;
+    }
+
+    /**
+     * @return the maximum number of notifications waiting in the queue of a single subscription or 0 if the delivery
+     * is synchronous
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @return the overflow policy or null if the delivery is synchronous
+     */
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * @return the executor to drain the queues with or null if the observable inventory should provide one
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * The policy applied when a notification is about to be put to a full queue.
+     */
+    public enum Overflow {
+        /**
+         * The writer is blocked until there is space in the queue. No notification is lost, but a slow subscriber
+         * slows down the writes. Note that a subscriber that writes to the inventory can deadlock with this policy.
+         */
+        BLOCK,
+
+        /**
+         * The oldest notification in the queue is dropped to make space for the new one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * The new notification is dropped if an equal notification is already waiting in the queue, otherwise the
+         * writer is blocked like with the {@link #BLOCK} policy.
+         */
+        COALESCE
+    }
+
+    /**
+     * The statistics of the asynchronous delivery summed over all the subscriptions. All the values are approximate.
+     */
+    public static final class Statistics {
+        private final AtomicLong queueDepth = new AtomicLong();
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong lastLag = new AtomicLong();
+        private final AtomicLong maxLag = new AtomicLong();
+
+        Statistics() {
+        }
+
+        /**
+         * @return the number of notifications currently waiting for the delivery
+         */
+        public long getQueueDepth() {
+            return queueDepth.get();
+        }
+
+        public long getDeliveredCount() {
+            return delivered.get();
+        }
+
+        public long getDroppedCount() {
+            return dropped.get();
+        }
+
+        public long getCoalescedCount() {
+            return coalesced.get();
+        }
+
+        /**
+         * @return the time in milliseconds the last delivered notification spent waiting in the queue
+         */
+        public long getLastLag() {
+            return lastLag.get();
+        }
+
+        /**
+         * @return the maximum time in milliseconds a notification spent waiting in the queue
+         */
+        public long getMaxLag() {
+            return maxLag.get();
+        }
+
+        void queued() {
+            queueDepth.incrementAndGet();
+        }
+
+        void dequeued(int count) {
+            queueDepth.addAndGet(-count);
+        }
+
+        void dropped() {
+            dropped.incrementAndGet();
+        }
+
+        void coalesced() {
+            coalesced.incrementAndGet();
+        }
+
+        void delivered(long lag) {
+            delivered.incrementAndGet();
+            lastLag.set(lag);
+
+            long max;
+            do {
+                max = maxLag.get();
+            } while (lag > max && !maxLag.compareAndSet(max, lag));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.api;
+
+import org.hawkular.inventory.api.model.AbstractElement;
+import org.hawkular.inventory.api.model.Metric;
+import org.hawkular.inventory.api.model.Resource;
+
+import java.util.Objects;
+
+/**
+ * Describes how to split the entities into buckets when counting them using
+ * {@link ResolvableToMany#groupCount(GroupBy)}.
+ *
+ * <p>The implementations are free to evaluate the grouping any way they see fit (ideally directly in the backend
+ * without ever instantiating the entities), but the result must be the same as if {@link #keyOf(AbstractElement)} was
+ * applied to each of the entities.
+ *
+ * @param <K> the type of the keys of the buckets
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public final class GroupBy<K> {
+
+    private static final GroupBy<Class<?>> TYPE = new GroupBy<>(Kind.type, null);
+    private static final GroupBy<String> DEFINITION = new GroupBy<>(Kind.definition, null);
+
+    private final Kind kind;
+    private final String property;
+
+    private GroupBy(Kind kind, String property) {
+        this.kind = kind;
+        this.property = property;
+    }
+
+    /**
+     * @return grouping by the type of the elements, e.g. {@link Resource}, {@link Metric}
+     */
+    public static GroupBy<Class<?>> type() {
+        return TYPE;
+    }
+
+    /**
+     * Groups the elements by the values of the provided property. The "id" property is handled specially and maps to
+     * the ID of the elements. The elements that don't have the property are counted in the {@code null} bucket.
+     *
+     * @param name the name of the property
+     * @return grouping by the value of the property
+     */
+    public static GroupBy<Object> property(String name) {
+        return new GroupBy<>(Kind.property, Objects.requireNonNull(name, "name == null"));
+    }
+
+    /**
+     * Groups the elements by the ID of their definition, i.e. the resource type for resources and the metric type for
+     * metrics. The other kinds of elements don't have a definition and are therefore counted in the {@code null}
+     * bucket.
+     *
+     * @return grouping by the ID of the definition of the elements
+     */
+    public static GroupBy<String> definition() {
+        return DEFINITION;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the name of the property to group by if the kind is {@link Kind#property}, null otherwise
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * @param element the element to compute the key for
+     * @return the key of the bucket the element belongs to
+     */
+    @SuppressWarnings("unchecked")
+    public K keyOf(AbstractElement<?, ?> element) {
+        switch (kind) {
+            case type:
+                return (K) element.getClass();
+            case property:
+                return (K) (AbstractElement.ID_PROPERTY.equals(property) ? element.getId()
+                        : element.getProperties().get(property));
+            case definition:
+                if (element instanceof Resource) {
+                    Resource r = (Resource) element;
+                    return (K) (r.getType() == null ? null : r.getType().getId());
+                } else if (element instanceof Metric) {
+                    Metric m = (Metric) element;
+                    return (K) (m.getType() == null ? null : m.getType().getId());
+                } else {
+                    return null;
+                }
+            default:
+                throw new AssertionError("Unhandled grouping kind: " + kind);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GroupBy)) return false;
+
+        GroupBy<?> that = (GroupBy<?>) o;
+
+        return kind == that.kind && Objects.equals(property, that.property);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * kind.hashCode() + Objects.hashCode(property);
+    }
+
+    @Override
+    public String toString() {
+        return "GroupBy[" + kind + (property == null ? "" : ("=" + property)) + "]";
+    }
+
+    public enum Kind {
+        type, property, definition
+    }
+}
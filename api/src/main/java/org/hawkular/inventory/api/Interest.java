@@ -16,9 +16,18 @@
  */
 package org.hawkular.inventory.api;
 
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.api.model.Relationship;
+
+import java.util.Objects;
+
 /**
  * Expresses what the user is interested in observing.
  *
+ * <p>The interest can be limited to the entities under a {@link #getPath() canonical path} (e.g. a single tenant).
+ * Relationships are considered to be under the path if either their source or their target is.
+ *
  * @param <C> the type of the action context that will be passed to the observers
  * @param <E> the type of the entity.
  *
@@ -28,14 +37,33 @@ package org.hawkular.inventory.api;
 public final class Interest<C, E> {
     private final Action<C, E> action;
     private final Class<E> entityType;
+    private final CanonicalPath path;
 
     public static <T> Builder<T> in(Class<T> entity) {
         return new Builder<>(entity);
     }
 
+    /**
+     * @return the interest in receiving all the changes made by a single write to the inventory at once, instead of
+     * one by one
+     */
+    public static Interest<Action.Batch, Action.Batch> inBatches() {
+        return new Interest<>(Action.committed(), Action.Batch.class);
+    }
+
     public Interest(Action<C, E> action, Class<E> entityType) {
+        this(action, entityType, null);
+    }
+
+    /**
+     * @param action     the action of interest
+     * @param entityType the type of the entities of interest
+     * @param path       the canonical path the entities of interest must be under (or equal to) or null if not limited
+     */
+    public Interest(Action<C, E> action, Class<E> entityType, CanonicalPath path) {
         this.action = action;
         this.entityType = entityType;
+        this.path = path == null || !path.isDefined() ? null : path;
     }
 
     public Action<C, E> getAction() {
@@ -46,6 +74,13 @@ public final class Interest<C, E> {
         return entityType;
     }
 
+    /**
+     * @return the canonical path the entities of interest must be under or null if the interest is not limited
+     */
+    public CanonicalPath getPath() {
+        return path;
+    }
+
     /**
      * Checks whether given object is of interest to this interest instance.
      *
@@ -54,7 +89,27 @@ public final class Interest<C, E> {
      * @return true if the object is of interest to this, false otherwise
      */
     public boolean matches(Action<?, ?> action, Object object) {
-        return this.action == action && object != null && entityType.isAssignableFrom(object.getClass());
+        if (this.action != action || object == null || !entityType.isAssignableFrom(object.getClass())) {
+            return false;
+        }
+
+        if (path == null) {
+            return true;
+        }
+
+        if (object instanceof Entity) {
+            return isUnderPath((Entity<?, ?>) object);
+        } else if (object instanceof Relationship) {
+            Relationship r = (Relationship) object;
+            return isUnderPath(r.getSource()) || isUnderPath(r.getTarget());
+        } else {
+            return false;
+        }
+    }
+
+    private boolean isUnderPath(Entity<?, ?> entity) {
+        CanonicalPath cp = CanonicalPath.of(entity);
+        return path.equals(cp) || path.isParentOf(cp);
     }
 
     @Override
@@ -65,7 +120,8 @@ public final class Interest<C, E> {
         Interest<?, ?> interest = (Interest<?, ?>) o;
 
         if (action != interest.action) return false;
-        return entityType.equals(interest.entityType);
+        if (!entityType.equals(interest.entityType)) return false;
+        return Objects.equals(path, interest.path);
 
     }
 
@@ -73,23 +129,36 @@ public final class Interest<C, E> {
     public int hashCode() {
         int result = action.hashCode();
         result = 31 * result + entityType.hashCode();
+        result = 31 * result + (path != null ? path.hashCode() : 0);
         return result;
     }
 
     @Override
     public String toString() {
-        return "Interest[" + "action=" + action + ", entityType=" + entityType + ']';
+        return "Interest[" + "action=" + action + ", entityType=" + entityType + ", path=" + path + ']';
     }
 
     public static final class Builder<E> {
         private final Class<E> entityType;
+        private CanonicalPath path;
 
         private Builder(Class<E> entityType) {
             this.entityType = entityType;
         }
 
+        /**
+         * Limits the interest to the entities under (or at) the provided canonical path.
+         *
+         * @param path the canonical path
+         * @return this builder
+         */
+        public Builder<E> under(CanonicalPath path) {
+            this.path = path;
+            return this;
+        }
+
         public <C> Interest<C, E> being(Action<C, E> action) {
-            return new Interest<>(action, entityType);
+            return new Interest<>(action, entityType, path);
         }
     }
 }
@@ -17,16 +17,32 @@
 package org.hawkular.inventory.api;
 
 import org.hawkular.inventory.api.filters.Filter;
+import org.hawkular.inventory.api.filters.With;
+import org.hawkular.inventory.api.model.CanonicalPath;
 import org.hawkular.inventory.api.model.Entity;
 import org.hawkular.inventory.api.model.EntityVisitor;
 import org.hawkular.inventory.api.model.Environment;
 import org.hawkular.inventory.api.model.Feed;
 import org.hawkular.inventory.api.model.Metric;
 import org.hawkular.inventory.api.model.MetricType;
+import org.hawkular.inventory.api.model.Relationship;
 import org.hawkular.inventory.api.model.Resource;
 import org.hawkular.inventory.api.model.ResourceType;
 import org.hawkular.inventory.api.model.Tenant;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Inventory stores "resources" which are groupings of measurements and other data. Inventory also stores metadata about
  * the measurements and resources to give them meaning.
@@ -168,7 +184,7 @@ public interface Inventory extends AutoCloseable {
      * @return the access interface to the metric type
      */
     default MetricTypes.Single inspect(MetricType metricType) throws EntityNotFoundException {
-        return tenants().get(metricType.getId()).metricTypes().get(metricType.getId());
+        return tenants().get(metricType.getTenantId()).metricTypes().get(metricType.getId());
     }
 
     /**
@@ -253,6 +269,232 @@ public interface Inventory extends AutoCloseable {
         }, null);
     }
 
+    /**
+     * Provides an access interface for inspecting the entity with given canonical path.
+     *
+     * @param path            the canonical path of the entity
+     * @param accessInterface the expected access interface
+     * @param <Single>        the type of the access interface
+     * @return the access interface instance
+     *
+     * @throws java.lang.ClassCastException if the provided access interface doesn't match the entity
+     * @throws IllegalArgumentException if the path is empty
+     */
+    default <Single extends ResolvableToSingle<?>> Single inspect(CanonicalPath path, Class<Single> accessInterface) {
+        if (!path.isDefined()) {
+            throw new IllegalArgumentException("Cannot inspect an empty canonical path.");
+        }
+
+        List<CanonicalPath.Segment> segments = path.getPath();
+
+        Tenants.Single tenant = tenants().get(segments.get(0).getElementId());
+        if (segments.size() == 1) {
+            return accessInterface.cast(tenant);
+        }
+
+        CanonicalPath.Segment s = segments.get(1);
+        if (ResourceType.class == s.getElementType()) {
+            return accessInterface.cast(tenant.resourceTypes().get(s.getElementId()));
+        } else if (MetricType.class == s.getElementType()) {
+            return accessInterface.cast(tenant.metricTypes().get(s.getElementId()));
+        }
+
+        Environments.Single env = tenant.environments().get(s.getElementId());
+        if (segments.size() == 2) {
+            return accessInterface.cast(env);
+        }
+
+        s = segments.get(2);
+        if (Resource.class == s.getElementType()) {
+            return accessInterface.cast(env.feedlessResources().get(s.getElementId()));
+        } else if (Metric.class == s.getElementType()) {
+            return accessInterface.cast(env.feedlessMetrics().get(s.getElementId()));
+        }
+
+        Feeds.Single feed = env.feeds().get(s.getElementId());
+        if (segments.size() == 3) {
+            return accessInterface.cast(feed);
+        }
+
+        s = segments.get(3);
+        if (Resource.class == s.getElementType()) {
+            return accessInterface.cast(feed.resources().get(s.getElementId()));
+        } else {
+            return accessInterface.cast(feed.metrics().get(s.getElementId()));
+        }
+    }
+
+    /**
+     * Retrieves the entities with the provided canonical paths at once.
+     *
+     * <p>The default implementation inspects the paths one by one. The implementations are encouraged to provide a more
+     * efficient implementation, e.g. by looking up all the entities of the same type using a single index query.
+     *
+     * @param paths the canonical paths of the entities to retrieve
+     * @return the map of the canonical paths to the found entities, ordered the same as the provided paths. The paths
+     * for which no entity exists are not present in the map.
+     */
+    default Map<CanonicalPath, Entity<?, ?>> fetch(Collection<CanonicalPath> paths) {
+        Map<CanonicalPath, Entity<?, ?>> ret = new LinkedHashMap<>();
+        for (CanonicalPath p : paths) {
+            ResolvableToSingle<?> single = inspect(p, ResolvableToSingle.class);
+            if (single.exists()) {
+                ret.put(p, (Entity<?, ?>) single.entity());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Re-reads the provided entities from the inventory.
+     *
+     * <p>The entities are grouped by their parent (using their canonical paths) and type and each such group is
+     * resolved using a single traversal, which is much cheaper than inspecting the entities one by one. The lookup
+     * never creates any entity, so the implementations that create tenants on access (like
+     * {@link AutoTenantInventory}) need to delegate this method to an inventory that doesn't.
+     *
+     * @param entities the entities to inspect, possibly of different types
+     * @param <E>      the common super type of the entities
+     * @return the list of the current states of the entities in the same order as the provided entities. If some
+     * entity no longer exists, the list contains null at its position.
+     */
+    @SuppressWarnings("unchecked")
+    default <E extends Entity<?, ?>> List<E> inspectAll(Collection<? extends E> entities) {
+        Map<CanonicalPath, Map<Class<? extends Entity>, Set<String>>> groups = new HashMap<>();
+        List<CanonicalPath> paths = new ArrayList<>(entities.size());
+
+        for (E e : entities) {
+            CanonicalPath cp = CanonicalPath.of(e);
+            paths.add(cp);
+            groups.computeIfAbsent(cp.getParent(), (p) -> new HashMap<>())
+                    .computeIfAbsent(cp.getSegment().getElementType(), (t) -> new HashSet<>())
+                    .add(cp.getSegment().getElementId());
+        }
+
+        Map<CanonicalPath, Entity<?, ?>> resolved = new HashMap<>();
+
+        groups.forEach((parent, idsByType) -> {
+            ResolvableToSingle<?> parentAccess = parent == null ? null : inspect(parent, ResolvableToSingle.class);
+
+            if (parentAccess == null) {
+                //tenants are looked up one by one, because some inventories only ever see the tenants they're asked
+                //for by id
+                idsByType.values().forEach((ids) -> ids.forEach((id) -> {
+                    Tenants.Single tenant = tenants().get(id);
+                    if (tenant.exists()) {
+                        Tenant t = tenant.entity();
+                        resolved.put(CanonicalPath.of(t), t);
+                    }
+                }));
+                return;
+            }
+
+            idsByType.forEach((type, ids) -> {
+                ResolvingToMultiple<? extends ResolvableToMany<?>> access;
+                if (Environment.class == type) {
+                    access = ((Tenants.Single) parentAccess).environments();
+                } else if (ResourceType.class == type) {
+                    access = ((Tenants.Single) parentAccess).resourceTypes();
+                } else if (MetricType.class == type) {
+                    access = ((Tenants.Single) parentAccess).metricTypes();
+                } else if (Feed.class == type) {
+                    access = ((Environments.Single) parentAccess).feeds();
+                } else if (Resource.class == type) {
+                    access = parentAccess instanceof Feeds.Single ? ((Feeds.Single) parentAccess).resources()
+                            : ((Environments.Single) parentAccess).feedlessResources();
+                } else {
+                    access = parentAccess instanceof Feeds.Single ? ((Feeds.Single) parentAccess).metrics()
+                            : ((Environments.Single) parentAccess).feedlessMetrics();
+                }
+
+                for (Object o : access.getAll(With.ids(ids.toArray(new String[ids.size()]))).entities()) {
+                    Entity<?, ?> e = (Entity<?, ?>) o;
+                    resolved.put(CanonicalPath.of(e), e);
+                }
+            });
+        });
+
+        List<E> ret = new ArrayList<>(paths.size());
+        for (CanonicalPath p : paths) {
+            ret.add((E) resolved.get(p));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Walks the tree of entities reachable from the entity with the provided canonical path.
+     *
+     * <p>The {@link Relationships.WellKnown#contains contains} relationships are always followed, the other
+     * relationships only if they are present in the provided set. Because the well-known relationships never form a
+     * loop, the walk always terminates even for very large depths. Note though that an entity can be reached through
+     * more than one path (e.g. a resource is both contained in an environment and defined by a resource type) and
+     * is visited once for each of them.
+     *
+     * <p>The default implementation inspects the relationships of each visited entity separately. The implementations
+     * are encouraged to provide a more efficient implementation that walks the tree in a single traversal.
+     *
+     * @param root          the canonical path to the root of the tree
+     * @param maxDepth      the maximum depth to descend to, 0 visits just the root entity
+     * @param relationships the relationships to follow in addition to {@code contains}
+     * @param visitor       the visitor to call for each reached entity
+     * @throws EntityNotFoundException if the root entity doesn't exist
+     */
+    @SuppressWarnings("unchecked")
+    default void walk(CanonicalPath root, int maxDepth, Set<Relationships.WellKnown> relationships,
+            TreeVisitor visitor) throws EntityNotFoundException {
+        Set<Relationships.WellKnown> followed = EnumSet.of(Relationships.WellKnown.contains);
+        followed.addAll(relationships);
+
+        final class Step {
+            final Entity<?, ?> entity;
+            final Relationships.WellKnown relationship;
+            final int depth;
+            boolean entered;
+
+            Step(Entity<?, ?> entity, Relationships.WellKnown relationship, int depth) {
+                this.entity = entity;
+                this.relationship = relationship;
+                this.depth = depth;
+            }
+        }
+
+        ResolvableToSingle<?> rootAccess = inspect(root, ResolvableToSingle.class);
+
+        Deque<Step> steps = new ArrayDeque<>();
+        steps.push(new Step((Entity<?, ?>) rootAccess.entity(), null, 0));
+
+        while (!steps.isEmpty()) {
+            Step step = steps.peek();
+            if (step.entered) {
+                steps.pop();
+                visitor.leave(step.entity);
+                continue;
+            }
+
+            step.entered = true;
+            visitor.enter(step.entity, step.relationship, step.depth);
+
+            if (step.depth < maxDepth) {
+                Relatable<Relationships.ReadWrite> access = (Relatable<Relationships.ReadWrite>)
+                        inspect(CanonicalPath.of(step.entity), ResolvableToSingle.class);
+
+                List<Step> children = new ArrayList<>();
+                for (Relationships.WellKnown rel : followed) {
+                    for (Relationship r : access.relationships(Relationships.Direction.outgoing).named(rel)
+                            .entities()) {
+                        children.add(new Step((Entity<?, ?>) r.getTarget(), rel, step.depth + 1));
+                    }
+                }
+
+                //push in reverse so that the children are visited in the order they were found
+                for (int i = children.size() - 1; i >= 0; --i) {
+                    steps.push(children.get(i));
+                }
+            }
+        }
+    }
+
     /**
      * A class for producing mixins of inventory and the {@link Mixin.Observable} or {@link Mixin.AutoTenant}
      * interfaces.
@@ -293,6 +535,14 @@ public interface Inventory extends AutoCloseable {
                 return new ObservableAndAutoTenantMixin(inventory);
             }
 
+            /**
+             * @see Caching
+             */
+            public ObservableAndCachingMixin caching(int maxSize, int maxPageSize, long ttl, TimeUnit unit) {
+                return new ObservableAndCachingMixin(CachingInventory.create(inventory, ObservableAndCaching.class,
+                        maxSize, maxPageSize, ttl, unit));
+            }
+
             public Observable get() {
                 return inventory;
             }
@@ -328,11 +578,44 @@ public interface Inventory extends AutoCloseable {
                 this.inventory = new ObservableAutoTenantInventory(inventory);
             }
 
+            /**
+             * @see Caching
+             */
+            public AutoTenantObservableAndCachingMixin caching(int maxSize, int maxPageSize, long ttl,
+                    TimeUnit unit) {
+                return new AutoTenantObservableAndCachingMixin(CachingInventory.create(inventory,
+                        AutoTenantObservableAndCaching.class, maxSize, maxPageSize, ttl, unit));
+            }
+
             public AutoTenantAndObservable get() {
                 return inventory;
             }
         }
 
+        public static final class ObservableAndCachingMixin {
+            private final ObservableAndCaching inventory;
+
+            private ObservableAndCachingMixin(ObservableAndCaching inventory) {
+                this.inventory = inventory;
+            }
+
+            public ObservableAndCaching get() {
+                return inventory;
+            }
+        }
+
+        public static final class AutoTenantObservableAndCachingMixin {
+            private final AutoTenantObservableAndCaching inventory;
+
+            private AutoTenantObservableAndCachingMixin(AutoTenantObservableAndCaching inventory) {
+                this.inventory = inventory;
+            }
+
+            public AutoTenantObservableAndCaching get() {
+                return inventory;
+            }
+        }
+
         /**
          * The observable mixin interface. Augments the inventory so that mutation events on it can be observed.
          */
@@ -356,6 +639,22 @@ public interface Inventory extends AutoCloseable {
              * mutation
              */
             <C, E> rx.Observable<C> observable(Interest<C, E> interest);
+
+            /**
+             * Same as {@link #observable(Interest)} but the notifications are delivered to the subscribers as
+             * prescribed by the provided delivery. This is meant for the subscribers that don't need to see the changes
+             * before the write returns and that could slow the writers down (like the ones sending the changes over
+             * the network).
+             *
+             * @param interest the interest in changes of some inventory entity type
+             * @param delivery how to deliver the notifications
+             * @param <C>      the type of object that will be passed to the subscribers of the returned observable
+             * @param <E>      the type of the entity the interest is expressed on
+             * @return an observable to which the caller can subscribe to receive notifications about inventory
+             * mutation
+             * @see Delivery
+             */
+            <C, E> rx.Observable<C> observable(Interest<C, E> interest, Delivery delivery);
         }
 
         /**
@@ -375,6 +674,28 @@ public interface Inventory extends AutoCloseable {
         public interface AutoTenantAndObservable extends AutoTenant, Observable {
         }
 
+        /**
+         * The caching mixin interface. Caches the entities and small pages of entities reached by following the
+         * {@code contains} relationships from the tenants (e.g. {@code tenants().get("t").environments().get("e")})
+         * and invalidates them as the changes are observed on the underlying observable inventory. The number of
+         * cached entries is bounded and they expire after a configured time, which caps the staleness caused by
+         * changes that are not made through the same inventory instance.
+         *
+         * <p>Traversals over other relationships and traversals using filters are never cached.
+         */
+        public interface Caching extends Inventory {
+            /**
+             * Drops all the cached entities and pages.
+             */
+            void invalidateCache();
+        }
+
+        public interface ObservableAndCaching extends Observable, Caching {
+        }
+
+        public interface AutoTenantObservableAndCaching extends AutoTenantAndObservable, Caching {
+        }
+
         /**
          * An implementation of AutoTenant and Observable interfaces in that order.
          */
@@ -398,6 +719,22 @@ public interface Inventory extends AutoCloseable {
                 return autoTenant.tenants();
             }
 
+            @Override
+            public Map<CanonicalPath, Entity<?, ?>> fetch(Collection<CanonicalPath> paths) {
+                return autoTenant.fetch(paths);
+            }
+
+            @Override
+            public <E extends Entity<?, ?>> List<E> inspectAll(Collection<? extends E> entities) {
+                return autoTenant.inspectAll(entities);
+            }
+
+            @Override
+            public void walk(CanonicalPath root, int maxDepth, Set<Relationships.WellKnown> relationships,
+                    TreeVisitor visitor) throws EntityNotFoundException {
+                autoTenant.walk(root, maxDepth, relationships, visitor);
+            }
+
             @Override
             public void close() throws Exception {
                 autoTenant.close();
@@ -412,6 +749,11 @@ public interface Inventory extends AutoCloseable {
             public <C, E> rx.Observable<C> observable(Interest<C, E> interest) {
                 return inventory.observable(interest);
             }
+
+            @Override
+            public <C, E> rx.Observable<C> observable(Interest<C, E> interest, Delivery delivery) {
+                return inventory.observable(interest, delivery);
+            }
         }
 
         /**
@@ -444,10 +786,31 @@ public interface Inventory extends AutoCloseable {
                 return inventory.observable(interest);
             }
 
+            @Override
+            public <C, E> rx.Observable<C> observable(Interest<C, E> interest, Delivery delivery) {
+                return inventory.observable(interest, delivery);
+            }
+
             @Override
             public ObservableTenants.ReadWrite tenants() {
                 return inventory.tenants();
             }
+
+            @Override
+            public Map<CanonicalPath, Entity<?, ?>> fetch(Collection<CanonicalPath> paths) {
+                return inventory.fetch(paths);
+            }
+
+            @Override
+            public <E extends Entity<?, ?>> List<E> inspectAll(Collection<? extends E> entities) {
+                return inventory.inspectAll(entities);
+            }
+
+            @Override
+            public void walk(CanonicalPath root, int maxDepth, Set<Relationships.WellKnown> relationships,
+                    TreeVisitor visitor) throws EntityNotFoundException {
+                inventory.walk(root, maxDepth, relationships, visitor);
+            }
         }
     }
 }
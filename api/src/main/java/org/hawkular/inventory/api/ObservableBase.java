@@ -19,11 +19,13 @@ package org.hawkular.inventory.api;
 import org.hawkular.inventory.api.filters.Filter;
 import org.hawkular.inventory.api.model.AbstractElement;
 import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.api.model.Relationship;
 import org.hawkular.inventory.api.paging.Page;
 import org.hawkular.inventory.api.paging.Pager;
 import rx.subjects.Subject;
 
-import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -47,26 +49,44 @@ class ObservableBase<T> {
 
     protected <C, E, V extends ResolvableToSingle<E>, I> I wrapAndNotify(
             BiFunction<V, ObservableContext, I> constructor, V value, Function<V, C> contextProducer,
-            Action<C, E> action) {
+            Action<C, E> action, Class<E> entityType) {
 
-        E e = value.entity();
-        C c = contextProducer.apply(value);
+        if (isObserved(action, entityType)) {
+            E e = value.entity();
+            C c = contextProducer.apply(value);
 
-        notify(e, c, action);
+            notify(e, c, action);
+        }
 
         return constructor.apply(value, context);
     }
 
+    /**
+     * Checks whether there are any subscribers for the action on the entities of given type. This should be used to
+     * avoid loading the data to notify about, if there's no-one to actually notify.
+     *
+     * @param action     the action
+     * @param entityType the concrete type of the entities
+     * @return true if there are any subscribers interested in the action, false otherwise
+     */
+    protected boolean isObserved(Action<?, ?> action, Class<?> entityType) {
+        return context.isObserved(action, entityType);
+    }
+
     protected <E> void notify(E entity, Action<E, E> action) {
         notify(entity, entity, action);
     }
 
     protected <C, E> void notify(E entity, C actionContext, Action<C, E> action) {
-        Iterator<Subject<C, C>> subjects = context.matchingSubjects(action, entity);
-        while (subjects.hasNext()) {
-            Subject<C, C> s = subjects.next();
-            s.onNext(actionContext);
+        List<Subject<C, C>> subjects = context.matchingSubjects(action, entity);
+
+        //not using the iterator on purpose - this is called for every entity and relationship being changed
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0; i < subjects.size(); ++i) {
+            subjects.get(i).onNext(actionContext);
         }
+
+        context.recordChange(action, entity, actionContext);
     }
 
     public abstract static class ReadMultiple<Multiple extends ResolvableToMany<?>,
@@ -118,6 +138,11 @@ class ObservableBase<T> {
 
         protected abstract BiFunction<Multiple, ObservableContext, ? extends Multiple> multipleCtor();
 
+        /**
+         * @return the type of the entities this interface creates, updates and deletes
+         */
+        protected abstract Class<E> entityType();
+
         public Single get(String id) {
             return wrap(singleCtor(), wrapped.get(id));
         }
@@ -127,27 +152,68 @@ class ObservableBase<T> {
         }
 
         public Single create(B b) {
-            Single s = wrapped.create(b);
+            return context.batched(() -> doCreate(b));
+        }
+
+        private Single doCreate(B b) {
+            boolean entityObserved = isObserved(Action.created(), entityType());
+            boolean relationshipsObserved = isObserved(Action.created(), Relationship.class);
+
+            if (!entityObserved && !relationshipsObserved) {
+                return wrap(singleCtor(), wrapped.create(b));
+            }
+
+            ChangeSet[] changes = new ChangeSet[1];
+            Single s = wrapped.create(b, (c) -> changes[0] = c);
 
-            E e = s.entity();
+            if (changes[0] != null) {
+                changes[0].getCreatedEntities().forEach((e) -> notify(e, e, Action.created()));
+                changes[0].getCreatedRelationships().forEach((r) -> notify(r, r, Action.created()));
+                return wrap(singleCtor(), s);
+            }
 
-            notify(e, e, Action.created());
+            //the backend doesn't tell us what it created, so we need to find out ourselves
 
-            //there is a possible race here if someone creates a relationship on the entity between the time it
-            //is created above and here. Such relationships would be observed twice...
-            s.relationships(Relationships.Direction.both).getAll().entities()
-                    .forEach((r) -> notify(r, r, Action.created()));
+            if (entityObserved) {
+                E e = s.entity();
+                notify(e, e, Action.created());
+            }
+
+            if (relationshipsObserved) {
+                //there is a possible race here if someone creates a relationship on the entity between the time it
+                //is created above and here. Such relationships would be observed twice...
+                s.relationships(Relationships.Direction.both).getAll().entities()
+                        .forEach((r) -> notify(r, r, Action.created()));
+            }
 
             return wrap(singleCtor(), s);
         }
 
         public void update(String id, U u) {
+            context.batched(() -> doUpdate(id, u));
+        }
+
+        private void doUpdate(String id, U u) {
+            if (!isObserved(Action.updated(), entityType())) {
+                wrapped.update(id, u);
+                return;
+            }
+
             E e = wrapped.get(id).entity();
             wrapped.update(id, u);
             notify(e, new Action.Update<>(e, u), Action.updated());
         }
 
         public void delete(String id) {
+            context.batched(() -> doDelete(id));
+        }
+
+        private void doDelete(String id) {
+            if (!isObserved(Action.deleted(), entityType())) {
+                wrapped.delete(id);
+                return;
+            }
+
             E e = get(id).entity();
             wrapped.delete(id);
             notify(e, e, Action.deleted());
@@ -174,6 +240,10 @@ class ObservableBase<T> {
         public Page<E> entities(Pager pager) {
             return wrapped.entities(pager);
         }
+
+        public <K> Map<K, Long> groupCount(GroupBy<K> groupBy) {
+            return wrapped.groupCount(groupBy);
+        }
     }
 
     public abstract static class RelatableSingle<E,
@@ -16,6 +16,9 @@
  */
 package org.hawkular.inventory.api;
 
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.api.model.Relationship;
 import rx.Observable;
 import rx.Subscriber;
 import rx.functions.Action0;
@@ -23,31 +26,242 @@ import rx.observers.SafeSubscriber;
 import rx.subjects.PublishSubject;
 import rx.subjects.Subject;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
+ * Keeps track of the subjects the interested parties are subscribed to.
+ *
+ * <p>The notifications are dispatched using an index of the subjects by the action and the concrete class of the
+ * notified object. The index is filled lazily and thrown away whenever an interest is registered or unregistered,
+ * so that the dispatch itself is just a couple of hash lookups in the common case. The interests limited to a canonical
+ * path are kept in a trie of the path segments, so that the subscribers interested in one tenant don't cost anything
+ * when the entities of other tenants change.
+ *
+ * <p>How the notifications get from the subjects to the subscribers is determined by the {@link Delivery} requested
+ * for each subscription. The subscriptions are synchronous unless they explicitly ask for an asynchronous delivery,
+ * so that the subscribers the correctness of the inventory depends on (like cache invalidation) always see the changes
+ * before the write returns.
+ *
+ * <p>The changes made by a single write are collected into an {@link Action.Batch} for the subscribers of the
+ * {@link Interest#inBatches() batch interest}, if there are any.
+ *
  * @author Lukas Krejci
  * @since 0.0.1
  */
 final class ObservableContext {
     private final Map<Interest<?, ?>, SubjectAndWrapper<?>> observables = new ConcurrentHashMap<>();
 
+    /**
+     * The index of the matching subjects: action -> concrete class of the object -> route. Must only be replaced
+     * after the {@link #observables} have been modified.
+     */
+    private volatile Map<Action<?, ?>, Map<Class<?>, Route>> index = new ConcurrentHashMap<>();
+
+    /**
+     * The changes made by the write currently executing in the thread, if it is being {@link #batched(Supplier)}.
+     */
+    private final ThreadLocal<List<Action.Change<?, ?>>> currentBatch = new ThreadLocal<>();
+
+    /**
+     * The executor to drain the queues of the asynchronous deliveries with, if they don't provide one. Created lazily
+     * by the first such subscription.
+     */
+    private ExecutorService ownExecutor;
+
+    private boolean closed;
+
+    /**
+     * Stops the threads delivering the notifications asynchronously, if any. The notifications that haven't been
+     * delivered yet are discarded.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (ownExecutor != null) {
+            ownExecutor.shutdownNow();
+        }
+    }
+
     public <C> Observable<C> getObservableFor(Interest<C, ?> interest) {
+        return getObservableFor(interest, Delivery.synchronous());
+    }
+
+    /**
+     * @param interest the interest
+     * @param delivery how to deliver the notifications to the subscribers of the returned observable
+     * @return the observable to subscribe to
+     */
+    public <C> Observable<C> getObservableFor(Interest<C, ?> interest, Delivery delivery) {
         SubjectAndWrapper<C> sub = getSubjectAndWrapper(interest, true);
-        return sub.wrapper;
+        if (!delivery.isAsynchronous()) {
+            return sub.wrapper;
+        }
+
+        Executor executor = delivery.getExecutor() == null ? getOwnExecutor() : delivery.getExecutor();
+
+        //the queue is in front of the error handling so that a failing subscriber doesn't break the draining
+        return sub.subject.lift(new OperatorQueuedDelivery<>(delivery, executor)).lift(new OperatorIgnoreError<>())
+                .doOnSubscribe(sub.tracker.onSubscribe()).doOnUnsubscribe(sub.tracker.onUnsubscribe());
+    }
+
+    private synchronized Executor getOwnExecutor() {
+        if (ownExecutor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            ownExecutor = Executors.newCachedThreadPool((r) -> {
+                Thread t = new Thread(r, "hawkular-inventory-observable-" + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+            if (closed) {
+                //the subscription won't be delivered anything, the queued notifications are just discarded
+                ownExecutor.shutdown();
+            }
+        }
+
+        return ownExecutor;
     }
 
     public boolean isObserved(Interest<?, ?> interest) {
         return observables.containsKey(interest);
     }
 
+    /**
+     * @param action     the action
+     * @param entityType the concrete type of the objects the action is performed on
+     * @return true if there is a subscriber interested in the action on objects of the provided type
+     */
+    public boolean isObserved(Action<?, ?> action, Class<?> entityType) {
+        return !routeFor(action, entityType).isEmpty() || isBatchObserved();
+    }
+
+    private boolean isBatchObserved() {
+        return !routeFor(Action.committed(), Action.Batch.class).isEmpty();
+    }
+
+    /**
+     * Executes the write and collects the changes {@link #recordChange(Action, Object, Object) recorded} during it
+     * into a single batch that is then sent to the batch subscribers.
+     *
+     * @param write the write to the inventory
+     * @param <R>   the type of the result of the write
+     * @return the result of the write
+     */
+    public <R> R batched(Supplier<R> write) {
+        if (!isBatchObserved()) {
+            return write.get();
+        }
+
+        //a subscriber can write to the inventory while receiving a notification, which is a separate write
+        List<Action.Change<?, ?>> outer = currentBatch.get();
+        List<Action.Change<?, ?>> changes = new ArrayList<>(2);
+
+        currentBatch.set(changes);
+        R ret;
+        try {
+            ret = write.get();
+        } finally {
+            if (outer == null) {
+                currentBatch.remove();
+            } else {
+                currentBatch.set(outer);
+            }
+        }
+
+        if (!changes.isEmpty()) {
+            publish(new Action.Batch(changes));
+        }
+
+        return ret;
+    }
+
+    public void batched(Runnable write) {
+        batched(() -> {
+            write.run();
+            return null;
+        });
+    }
+
+    /**
+     * Records the change in the batch of the current write, if any.
+     */
+    public <C, E> void recordChange(Action<C, E> action, E entity, C actionContext) {
+        List<Action.Change<?, ?>> changes = currentBatch.get();
+        if (changes != null) {
+            changes.add(new Action.Change<>(action, entity, actionContext));
+        } else if (isBatchObserved()) {
+            //a write that is not explicitly batched
+            publish(new Action.Batch(Collections.singletonList(new Action.Change<>(action, entity, actionContext))));
+        }
+    }
+
+    private void publish(Action.Batch batch) {
+        List<Subject<Action.Batch, Action.Batch>> subjects = matchingSubjects(Action.committed(), batch);
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0; i < subjects.size(); ++i) {
+            subjects.get(i).onNext(batch);
+        }
+    }
+
+    /**
+     * @return the subjects interested in the action on the object. The returned list must not be modified.
+     */
     @SuppressWarnings("unchecked")
-    public <C, T> Iterator<Subject<C, C>> matchingSubjects(Action<C, T> action, T object) {
-        return observables.entrySet().stream().filter((e) -> e.getKey().matches(action, object))
-                .map((e) -> ((SubjectAndWrapper<C>) e.getValue()).subject).iterator();
+    public <C, T> List<Subject<C, C>> matchingSubjects(Action<C, T> action, T object) {
+        if (object == null) {
+            return Collections.emptyList();
+        }
+
+        return (List<Subject<C, C>>) (List<?>) routeFor(action, object.getClass()).subjects(object);
+    }
+
+    private Route routeFor(Action<?, ?> action, Class<?> entityType) {
+        Map<Class<?>, Route> byType = index.computeIfAbsent(action, (a) -> new ConcurrentHashMap<>());
+
+        Route ret = byType.get(entityType);
+        if (ret == null) {
+            ret = byType.computeIfAbsent(entityType, (t) -> computeRoute(action, t));
+        }
+
+        return ret;
+    }
+
+    private Route computeRoute(Action<?, ?> action, Class<?> entityType) {
+        List<Subject<?, ?>> unscoped = new ArrayList<>(1);
+        PathTrie scoped = null;
+
+        for (Map.Entry<Interest<?, ?>, SubjectAndWrapper<?>> e : observables.entrySet()) {
+            Interest<?, ?> interest = e.getKey();
+            if (interest.getAction() != action || !interest.getEntityType().isAssignableFrom(entityType)) {
+                continue;
+            }
+
+            if (interest.getPath() == null) {
+                unscoped.add(e.getValue().subject);
+            } else {
+                if (scoped == null) {
+                    scoped = new PathTrie();
+                }
+                scoped.add(interest.getPath(), e.getValue().subject);
+            }
+        }
+
+        return new Route(unscoped.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(unscoped),
+                scoped);
+    }
+
+    private void reindex() {
+        index = new ConcurrentHashMap<>();
     }
 
     private <C> SubjectAndWrapper<C> getSubjectAndWrapper(Interest<C, ?> interest, boolean initialize) {
@@ -55,23 +269,111 @@ final class ObservableContext {
         SubjectAndWrapper<C> sub = (SubjectAndWrapper<C>) observables.get(interest);
 
         if (initialize && sub == null) {
-            SubscriptionTracker tracker = new SubscriptionTracker(() -> observables.remove(interest));
+            SubscriptionTracker tracker = new SubscriptionTracker(() -> {
+                observables.remove(interest);
+                reindex();
+            });
             Subject<C, C> subject = PublishSubject.<C>create().toSerialized();
 
             //error handling:
             //OperatorIgnoreError - in case subscribers and us run in the same thread, an error in the subscriber
             //may error out the whole observable, which is definitely NOT what we want.
-            Observable<C> wrapper = null;
-            wrapper = subject.lift(new OperatorIgnoreError<>()).doOnSubscribe(tracker.onSubscribe())
+            Observable<C> wrapper = subject.lift(new OperatorIgnoreError<>()).doOnSubscribe(tracker.onSubscribe())
                     .doOnUnsubscribe(tracker.onUnsubscribe());
 
-            sub = new SubjectAndWrapper<>(subject, wrapper);
+            sub = new SubjectAndWrapper<>(subject, wrapper, tracker);
             observables.put(interest, sub);
+            reindex();
         }
 
         return sub;
     }
 
+    /**
+     * The subjects interested in an action on a type of objects.
+     */
+    private static final class Route {
+        final List<Subject<?, ?>> unscoped;
+        final PathTrie scoped;
+
+        Route(List<Subject<?, ?>> unscoped, PathTrie scoped) {
+            this.unscoped = unscoped;
+            this.scoped = scoped;
+        }
+
+        boolean isEmpty() {
+            return unscoped.isEmpty() && scoped == null;
+        }
+
+        List<Subject<?, ?>> subjects(Object object) {
+            if (scoped == null) {
+                return unscoped;
+            }
+
+            List<Subject<?, ?>> ret = null;
+            if (object instanceof Entity) {
+                ret = scoped.collect(CanonicalPath.of((Entity<?, ?>) object), null);
+            } else if (object instanceof Relationship) {
+                Relationship r = (Relationship) object;
+                ret = scoped.collect(CanonicalPath.of(r.getSource()), null);
+                ret = scoped.collect(CanonicalPath.of(r.getTarget()), ret);
+            }
+
+            if (ret == null) {
+                return unscoped;
+            }
+
+            ret.addAll(unscoped);
+            return ret;
+        }
+    }
+
+    /**
+     * A trie of the canonical path segments with the subjects interested in the entities under each node.
+     */
+    private static final class PathTrie {
+        private final Map<CanonicalPath.Segment, PathTrie> children = new HashMap<>();
+        private final List<Subject<?, ?>> subjects = new ArrayList<>(1);
+
+        void add(CanonicalPath path, Subject<?, ?> subject) {
+            PathTrie node = this;
+            for (CanonicalPath.Segment s : path) {
+                node = node.children.computeIfAbsent(s, (k) -> new PathTrie());
+            }
+
+            node.subjects.add(subject);
+        }
+
+        /**
+         * Adds the subjects on the nodes along the path to the provided list, unless already present.
+         *
+         * @param path the path of the entity
+         * @param ret  the list to add to or null if there is none yet
+         * @return the list with the subjects or null if there are none
+         */
+        List<Subject<?, ?>> collect(CanonicalPath path, List<Subject<?, ?>> ret) {
+            PathTrie node = this;
+            for (CanonicalPath.Segment s : path) {
+                node = node.children.get(s);
+                if (node == null) {
+                    break;
+                }
+
+                for (Subject<?, ?> subject : node.subjects) {
+                    if (ret == null) {
+                        ret = new ArrayList<>(2);
+                    }
+
+                    if (!ret.contains(subject)) {
+                        ret.add(subject);
+                    }
+                }
+            }
+
+            return ret;
+        }
+    }
+
     private static class SubscriptionTracker {
 
         private final AtomicLong counter = new AtomicLong(0);
@@ -97,10 +399,12 @@ final class ObservableContext {
     private static class SubjectAndWrapper<T> {
         final Subject<T, T> subject;
         final Observable<T> wrapper;
+        final SubscriptionTracker tracker;
 
-        private SubjectAndWrapper(Subject<T, T> subject, Observable<T> wrapper) {
+        private SubjectAndWrapper(Subject<T, T> subject, Observable<T> wrapper, SubscriptionTracker tracker) {
             this.subject = subject;
             this.wrapper = wrapper;
+            this.tracker = tracker;
         }
     }
 
@@ -66,13 +66,34 @@ final class ObservableEnvironments {
             return ObservableEnvironments.Multiple::new;
         }
 
+        @Override
+        protected Class<Environment> entityType() {
+            return Environment.class;
+        }
+
         @Override
         public void copy(String sourceEnvironmentId, String targetEnvironmentId) {
+            context.batched(() -> doCopy(sourceEnvironmentId, targetEnvironmentId));
+        }
+
+        private void doCopy(String sourceEnvironmentId, String targetEnvironmentId) {
             wrapped.copy(sourceEnvironmentId, targetEnvironmentId);
-            Environment s = get(sourceEnvironmentId).entity();
+
+            boolean createdObserved = isObserved(Action.created(), Environment.class);
+            boolean copiedObserved = isObserved(Action.copied(), Environment.class);
+            if (!createdObserved && !copiedObserved) {
+                return;
+            }
+
             Environment t = get(targetEnvironmentId).entity();
-            notify(t, Action.created());
-            notify(s, new Action.EnvironmentCopy(s, t), Action.copied());
+            if (createdObserved) {
+                notify(t, Action.created());
+            }
+
+            if (copiedObserved) {
+                Environment s = get(sourceEnvironmentId).entity();
+                notify(s, new Action.EnvironmentCopy(s, t), Action.copied());
+            }
         }
     }
 
@@ -64,6 +64,11 @@ final class ObservableFeeds {
         protected BiFunction<Feeds.Multiple, ObservableContext, ? extends Feeds.Multiple> multipleCtor() {
             return ObservableFeeds.Multiple::new;
         }
+
+        @Override
+        protected Class<Feed> entityType() {
+            return Feed.class;
+        }
     }
 
     static final class Single extends ObservableBase.RelatableSingle<Feed, Feeds.Single>
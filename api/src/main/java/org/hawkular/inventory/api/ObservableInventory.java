@@ -16,8 +16,15 @@
  */
 package org.hawkular.inventory.api;
 
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.api.model.Entity;
 import rx.Observable;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * @author Lukas Krejci
  * @since 0.0.1
@@ -43,15 +50,39 @@ final class ObservableInventory implements Inventory, Inventory.Mixin.Observable
         return new ObservableTenants.ReadWrite(inventory.tenants(), context);
     }
 
+    @Override
+    public Map<CanonicalPath, Entity<?, ?>> fetch(Collection<CanonicalPath> paths) {
+        return inventory.fetch(paths);
+    }
+
+    @Override
+    public <E extends Entity<?, ?>> List<E> inspectAll(Collection<? extends E> entities) {
+        return inventory.inspectAll(entities);
+    }
+
+    @Override
+    public void walk(CanonicalPath root, int maxDepth, Set<Relationships.WellKnown> relationships,
+            TreeVisitor visitor) throws EntityNotFoundException {
+        inventory.walk(root, maxDepth, relationships, visitor);
+    }
+
     @Override
     public void close() throws Exception {
-        inventory.close();
+        try {
+            inventory.close();
+        } finally {
+            context.close();
+        }
     }
 
     public <C, E> Observable<C> observable(Interest<C, E> interest) {
         return context.getObservableFor(interest);
     }
 
+    public <C, E> Observable<C> observable(Interest<C, E> interest, Delivery delivery) {
+        return context.getObservableFor(interest, delivery);
+    }
+
     public boolean hasObservers(Interest<?, ?> interest) {
         return context.isObserved(interest);
     }
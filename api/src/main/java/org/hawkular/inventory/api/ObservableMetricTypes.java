@@ -66,6 +66,11 @@ final class ObservableMetricTypes {
         protected BiFunction<MetricTypes.Multiple, ObservableContext, ? extends MetricTypes.Multiple> multipleCtor() {
             return ObservableMetricTypes.Multiple::new;
         }
+
+        @Override
+        protected Class<MetricType> entityType() {
+            return MetricType.class;
+        }
     }
 
     static final class ReadAssociate
@@ -88,16 +93,20 @@ final class ObservableMetricTypes {
 
         @Override
         public Relationship associate(String id) {
-            Relationship ret = wrapped.associate(id);
-            notify(ret, Action.created());
-            return ret;
+            return context.batched(() -> {
+                Relationship ret = wrapped.associate(id);
+                notify(ret, Action.created());
+                return ret;
+            });
         }
 
         @Override
         public Relationship disassociate(String id) {
-            Relationship ret = wrapped.associate(id);
-            notify(ret, Action.deleted());
-            return ret;
+            return context.batched(() -> {
+                Relationship ret = wrapped.associate(id);
+                notify(ret, Action.deleted());
+                return ret;
+            });
         }
 
         @Override
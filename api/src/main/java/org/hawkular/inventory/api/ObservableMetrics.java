@@ -82,16 +82,20 @@ final class ObservableMetrics {
 
         @Override
         public Relationship associate(String id) {
-            Relationship ret = wrapped.associate(id);
-            notify(ret, Action.created());
-            return ret;
+            return context.batched(() -> {
+                Relationship ret = wrapped.associate(id);
+                notify(ret, Action.created());
+                return ret;
+            });
         }
 
         @Override
         public Relationship disassociate(String id) {
-            Relationship ret = wrapped.disassociate(id);
-            notify(ret, Action.deleted());
-            return ret;
+            return context.batched(() -> {
+                Relationship ret = wrapped.disassociate(id);
+                notify(ret, Action.deleted());
+                return ret;
+            });
         }
 
         @Override
@@ -117,6 +121,11 @@ final class ObservableMetrics {
         protected BiFunction<Metrics.Multiple, ObservableContext, ? extends Metrics.Multiple> multipleCtor() {
             return ObservableMetrics.Multiple::new;
         }
+
+        @Override
+        protected Class<Metric> entityType() {
+            return Metric.class;
+        }
     }
 
     static final class Single extends ObservableBase.RelatableSingle<Metric, Metrics.Single>
@@ -58,8 +58,9 @@ final class ObservableRelationships {
         @Override
         public Relationships.Single linkWith(String name, Entity targetOrSource, Map<String, String> properties)
                 throws IllegalArgumentException {
-            return wrapAndNotify(ObservableRelationships.Single::new, wrapped.linkWith(name, targetOrSource, null),
-                    Relationships.Single::entity, Action.created());
+            return context.batched(() -> wrapAndNotify(ObservableRelationships.Single::new,
+                    wrapped.linkWith(name, targetOrSource, null), Relationships.Single::entity, Action.created(),
+                    Relationship.class));
         }
 
         @Override
@@ -71,6 +72,15 @@ final class ObservableRelationships {
 
         @Override
         public void update(String id, Relationship.Update update) throws RelationNotFoundException {
+            context.batched(() -> doUpdate(id, update));
+        }
+
+        private void doUpdate(String id, Relationship.Update update) {
+            if (!isObserved(Action.updated(), Relationship.class)) {
+                wrapped.update(id, update);
+                return;
+            }
+
             Relationship r = wrapped.get(id).entity();
             wrapped.update(id, update);
             notify(r, new Action.Update<>(r, update), Action.updated());
@@ -78,6 +88,15 @@ final class ObservableRelationships {
 
         @Override
         public void delete(String id) throws RelationNotFoundException {
+            context.batched(() -> doDelete(id));
+        }
+
+        private void doDelete(String id) {
+            if (!isObserved(Action.deleted(), Relationship.class)) {
+                wrapped.delete(id);
+                return;
+            }
+
             Relationship r = get(id).entity();
             wrapped.delete(id);
             notify(r, Action.deleted());
@@ -73,6 +73,11 @@ final class ObservableResourceTypes {
 
             return ObservableResourceTypes.Multiple::new;
         }
+
+        @Override
+        protected Class<ResourceType> entityType() {
+            return ResourceType.class;
+        }
     }
 
     static final class Single extends ObservableBase.RelatableSingle<ResourceType, ResourceTypes.Single>
@@ -16,8 +16,12 @@
  */
 package org.hawkular.inventory.api;
 
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.api.model.Metric;
 import org.hawkular.inventory.api.model.Resource;
 
+import java.util.List;
+import java.util.Map;
 import java.util.function.BiFunction;
 
 /**
@@ -77,6 +81,11 @@ final class ObservableResources {
         protected BiFunction<Resources.Multiple, ObservableContext, ? extends Resources.Multiple> multipleCtor() {
             return ObservableResources.Multiple::new;
         }
+
+        @Override
+        protected Class<Resource> entityType() {
+            return Resource.class;
+        }
     }
 
     static final class Single extends ObservableBase.RelatableSingle<Resource, Resources.Single>
@@ -103,5 +112,10 @@ final class ObservableResources {
         public ObservableMetrics.Read metrics() {
             return wrap(ObservableMetrics.Read::new, wrapped.metrics());
         }
+
+        @Override
+        public Map<CanonicalPath, List<Metric>> metricsPerResource() {
+            return wrapped.metricsPerResource();
+        }
     }
 }
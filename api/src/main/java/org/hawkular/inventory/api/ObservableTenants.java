@@ -65,6 +65,11 @@ final class ObservableTenants {
         protected BiFunction<Tenants.Multiple, ObservableContext, ? extends Tenants.Multiple> multipleCtor() {
             return ObservableTenants.Multiple::new;
         }
+
+        @Override
+        protected Class<Tenant> entityType() {
+            return Tenant.class;
+        }
     }
 
     static final class Single extends ObservableBase.RelatableSingle<Tenant, Tenants.Single>
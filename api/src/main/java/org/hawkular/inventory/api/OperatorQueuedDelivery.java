@@ -0,0 +1,206 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.api;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An operator that puts the notifications into a bounded queue of each subscriber and delivers them serially using
+ * the provided executor, as configured by the {@link Delivery}.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+final class OperatorQueuedDelivery<T> implements Observable.Operator<T, T> {
+    private final Delivery delivery;
+    private final Executor executor;
+
+    OperatorQueuedDelivery(Delivery delivery, Executor executor) {
+        this.delivery = delivery;
+        this.executor = executor;
+    }
+
+    @Override
+    public Subscriber<? super T> call(Subscriber<? super T> subscriber) {
+        QueuedSubscriber<T> ret = new QueuedSubscriber<>(subscriber, delivery, executor);
+        subscriber.add(Subscriptions.create(ret::clear));
+        return ret;
+    }
+
+    private static final class QueuedSubscriber<T> extends Subscriber<T> implements Runnable {
+        private final Subscriber<? super T> actual;
+        private final Delivery.Overflow overflow;
+        private final Delivery.Statistics statistics;
+        private final Executor executor;
+        private final BlockingQueue<Queued<T>> queue;
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean done;
+        private volatile Throwable error;
+        private boolean terminated;
+
+        QueuedSubscriber(Subscriber<? super T> actual, Delivery delivery, Executor executor) {
+            super(actual);
+            this.actual = actual;
+            this.overflow = delivery.getOverflow();
+            this.statistics = delivery.getStatistics();
+            this.executor = executor;
+            this.queue = new LinkedBlockingQueue<>(delivery.getQueueSize());
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (done || actual.isUnsubscribed()) {
+                return;
+            }
+
+            Queued<T> item = new Queued<>(t);
+
+            statistics.queued();
+            try {
+                switch (overflow) {
+                    case BLOCK:
+                        queue.put(item);
+                        break;
+                    case DROP_OLDEST:
+                        while (!queue.offer(item)) {
+                            if (queue.poll() != null) {
+                                statistics.dequeued(1);
+                                statistics.dropped();
+                            }
+                        }
+                        break;
+                    case COALESCE:
+                        if (!queue.offer(item)) {
+                            if (isQueued(t)) {
+                                statistics.dequeued(1);
+                                statistics.coalesced();
+                                return;
+                            }
+                            queue.put(item);
+                        }
+                        break;
+                    default:
+                        throw new AssertionError("Unhandled overflow policy: " + overflow);
+                }
+            } catch (InterruptedException e) {
+                statistics.dequeued(1);
+                statistics.dropped();
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            schedule();
+        }
+
+        @Override
+        public void onCompleted() {
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error = e;
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                Queued<T> item;
+                while ((item = queue.poll()) != null) {
+                    statistics.dequeued(1);
+
+                    if (actual.isUnsubscribed()) {
+                        continue;
+                    }
+
+                    statistics.delivered(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - item.queuedAt));
+
+                    try {
+                        actual.onNext(item.value);
+                    } catch (Exception e) {
+                        Log.LOGGER.debugf(e, "Subscriber %s failed to process %s.", actual, item.value);
+                    }
+                }
+
+                if (done && !terminated && queue.isEmpty()) {
+                    terminated = true;
+                    if (error != null) {
+                        actual.onError(error);
+                    } else {
+                        actual.onCompleted();
+                    }
+                }
+
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    //the inventory is closing, no-one is going to deliver the notifications anymore
+                    wip.set(0);
+                    clear();
+                }
+            }
+        }
+
+        private boolean isQueued(T value) {
+            for (Queued<T> q : queue) {
+                if (value == null ? q.value == null : value.equals(q.value)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private void clear() {
+            int cleared = 0;
+            while (queue.poll() != null) {
+                cleared++;
+            }
+
+            statistics.dequeued(cleared);
+        }
+    }
+
+    private static final class Queued<T> {
+        final T value;
+        final long queuedAt = System.nanoTime();
+
+        Queued(T value) {
+            this.value = value;
+        }
+    }
+}
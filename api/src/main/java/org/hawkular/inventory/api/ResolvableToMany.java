@@ -17,11 +17,14 @@
 
 package org.hawkular.inventory.api;
 
+import org.hawkular.inventory.api.model.AbstractElement;
 import org.hawkular.inventory.api.paging.Order;
 import org.hawkular.inventory.api.paging.Page;
 import org.hawkular.inventory.api.paging.Pager;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -54,4 +57,23 @@ public interface ResolvableToMany<Entity> {
     default boolean anyExists() {
         return !entities(Pager.builder().withPageSize(1).orderBy(Order.unspecified()).build()).isEmpty();
     }
+
+    /**
+     * Counts the entities on the current position in the inventory traversal split into buckets according to the
+     * provided grouping.
+     *
+     * <p>The default implementation resolves all the entities and counts them one by one. Implementations are
+     * encouraged to provide a more efficient implementation that doesn't need to load the entities at all.
+     *
+     * @param groupBy the description of the buckets
+     * @param <K> the type of the bucket keys
+     * @return the map of bucket keys to the number of entities in each bucket
+     */
+    default <K> Map<K, Long> groupCount(GroupBy<K> groupBy) {
+        Map<K, Long> ret = new HashMap<>();
+        for (Entity e : entities(Pager.unlimited(Order.unspecified()))) {
+            ret.merge(groupBy.keyOf((AbstractElement<?, ?>) e), 1L, Long::sum);
+        }
+        return ret;
+    }
 }
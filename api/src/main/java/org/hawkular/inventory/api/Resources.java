@@ -16,7 +16,19 @@
  */
 package org.hawkular.inventory.api;
 
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.api.model.Metric;
+import org.hawkular.inventory.api.model.Relationship;
 import org.hawkular.inventory.api.model.Resource;
+import org.hawkular.inventory.api.paging.Order;
+import org.hawkular.inventory.api.paging.Pager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hawkular.inventory.api.Relationships.WellKnown.owns;
 
 /**
  * This is a wrapper class to hold various interfaces defining available functionality on resources.
@@ -48,7 +60,40 @@ public final class Resources {
      * modification methods, you first need to resolve the traversal to a single entity (using the
      * {@link ReadInterface#get(String)} method).
      */
-    public interface Multiple extends ResolvableToManyWithRelationships<Resource>, BrowserBase<Metrics.Read> {}
+    public interface Multiple extends ResolvableToManyWithRelationships<Resource>, BrowserBase<Metrics.Read> {
+
+        /**
+         * Expands the metrics owned by each of the resources on the current position in the traversal. This is
+         * equivalent to calling {@link Single#metrics()} on each of the resources but doesn't need a separate
+         * traversal per resource.
+         *
+         * <p>The resources are identified by their canonical paths, because resource ids are only unique within
+         * their environment or feed. Resources that don't own any metrics are mapped to an empty list.
+         *
+         * <p>The default implementation resolves the resources and their {@code owns} relationships in two
+         * traversals. Implementations are encouraged to provide a more efficient implementation.
+         *
+         * @return the map of canonical paths of the resources to the metrics they own
+         */
+        default Map<CanonicalPath, List<Metric>> metricsPerResource() {
+            Map<CanonicalPath, List<Metric>> ret = new LinkedHashMap<>();
+
+            for (Resource r : entities(Pager.unlimited(Order.unspecified()))) {
+                ret.put(CanonicalPath.of(r), new ArrayList<>());
+            }
+
+            for (Relationship rel : relationships().named(owns).entities(Pager.unlimited(Order.unspecified()))) {
+                if (rel.getTarget() instanceof Metric) {
+                    List<Metric> metrics = ret.get(CanonicalPath.of(rel.getSource()));
+                    if (metrics != null) {
+                        metrics.add((Metric) rel.getTarget());
+                    }
+                }
+            }
+
+            return ret;
+        }
+    }
 
     /**
      * Provides read-only access to resources.
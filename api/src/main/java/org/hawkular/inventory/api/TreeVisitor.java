@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.api;
+
+import org.hawkular.inventory.api.model.Entity;
+
+/**
+ * A visitor of the tree of entities reachable from some root entity, see
+ * {@link Inventory#walk(org.hawkular.inventory.api.model.CanonicalPath, int, java.util.Set, TreeVisitor)}.
+ *
+ * <p>The calls to {@link #enter(Entity, Relationships.WellKnown, int)} and {@link #leave(Entity)} are properly nested,
+ * i.e. all the entities entered after an entity was entered and before it was left are reachable from it.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public interface TreeVisitor {
+
+    /**
+     * Called when the walk reaches an entity.
+     *
+     * @param entity       the entity
+     * @param relationship the relationship through which the entity was reached from its parent in the tree, null
+     *                     for the root entity
+     * @param depth        the depth of the entity in the tree, 0 for the root entity
+     */
+    void enter(Entity<?, ?> entity, Relationships.WellKnown relationship, int depth);
+
+    /**
+     * Called when all the entities reachable from the provided entity have been visited.
+     *
+     * @param entity the entity
+     */
+    void leave(Entity<?, ?> entity);
+}
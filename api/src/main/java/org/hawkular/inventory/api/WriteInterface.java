@@ -18,6 +18,8 @@ package org.hawkular.inventory.api;
 
 import org.hawkular.inventory.api.model.Entity;
 
+import java.util.function.Consumer;
+
 /**
  * Generic methods to write access to entities.
  *
@@ -42,6 +44,25 @@ public interface WriteInterface<Update, Blueprint extends Entity.Blueprint, Sing
      */
     Single create(Blueprint blueprint) throws EntityAlreadyExistsException;
 
+    /**
+     * Same as {@link #create(Entity.Blueprint)} but also reports the entity and the relationships that were created
+     * along with it (like the relationship from its parent entity) to the provided consumer once they're committed.
+     *
+     * <p>The default implementation doesn't record the changes and never calls the consumer. The callers can use that
+     * to detect that they need to find out the changes by other means.
+     *
+     * @param blueprint the blueprint to be used to create the new entity
+     * @param changes   the consumer of the changes made by the creation
+     * @return access interface to the freshly created entity
+     *
+     * @throws EntityAlreadyExistsException if the entity already exists
+     * @throws IllegalArgumentException if the blueprint or context in which the entity is being create is somehow
+     *                                  invalid
+     */
+    default Single create(Blueprint blueprint, Consumer<ChangeSet> changes) throws EntityAlreadyExistsException {
+        return create(blueprint);
+    }
+
     /**
      * Persists the provided entity on the current position in the inventory traversal.
      *
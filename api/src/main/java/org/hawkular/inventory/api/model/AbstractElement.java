@@ -54,12 +54,33 @@ public abstract class AbstractElement<B, U extends AbstractElement.Update> {
         }
 
         this.id = id;
+        this.properties = copyProperties(properties);
+    }
+
+    /**
+     * Copies the provided properties into an immutable map sized exactly for them, leaving out the
+     * {@link #ID_PROPERTY}.
+     * Elements are converted from the backend in large numbers and most of them have no or only a few properties, so
+     * we don't want to pay for the default-sized hash maps nor for an empty map per element.
+     */
+    private static Map<String, Object> copyProperties(Map<String, Object> properties) {
         if (properties == null) {
-            this.properties = null;
-        } else {
-            this.properties = new HashMap<>(properties);
-            this.properties.remove(ID_PROPERTY);
+            return null;
+        }
+
+        int size = properties.containsKey(ID_PROPERTY) ? properties.size() - 1 : properties.size();
+        if (size == 0) {
+            return Collections.emptyMap();
         }
+
+        Map<String, Object> copy = new HashMap<>((int) (size / 0.75f) + 1);
+        properties.forEach((k, v) -> {
+            if (!ID_PROPERTY.equals(k)) {
+                copy.put(k, v);
+            }
+        });
+
+        return Collections.unmodifiableMap(copy);
     }
 
     /**
@@ -70,7 +91,7 @@ public abstract class AbstractElement<B, U extends AbstractElement.Update> {
     }
 
     /**
-     * @return a map of arbitrary properties of this entity.
+     * @return an unmodifiable map of arbitrary properties of this entity.
      */
     public Map<String, Object> getProperties() {
         if (properties == null) {
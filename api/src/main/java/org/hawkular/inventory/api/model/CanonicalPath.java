@@ -0,0 +1,337 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.api.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A canonical path uniquely identifies an entity in the inventory by the chain of the "contains" hierarchy leading from
+ * the tenant to the entity.
+ *
+ * <p>The string representation of the canonical path looks like {@code /t;tenant/e;environment/f;feed/r;resource},
+ * i.e. it is a slash-separated list of segments each of which consists of the type of the entity and its id separated
+ * by a semicolon. The type codes are:
+ * <ul>
+ *     <li>{@code t} - tenant
+ *     <li>{@code e} - environment
+ *     <li>{@code f} - feed
+ *     <li>{@code rt} - resource type
+ *     <li>{@code mt} - metric type
+ *     <li>{@code r} - resource
+ *     <li>{@code m} - metric
+ * </ul>
+ * The '/', ';' and '\' characters in the ids are escaped using a backslash.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public final class CanonicalPath implements Iterable<CanonicalPath.Segment> {
+
+    private static final CanonicalPath EMPTY = new CanonicalPath(Collections.emptyList());
+
+    private static final Map<Class<? extends Entity>, String> TYPE_CODES = new HashMap<>();
+    private static final Map<String, Class<? extends Entity>> TYPES_BY_CODE = new HashMap<>();
+    private static final Map<Class<? extends Entity>, List<Class<? extends Entity>>> VALID_PARENTS = new HashMap<>();
+
+    static {
+        addType(Tenant.class, "t");
+        addType(Environment.class, "e", Tenant.class);
+        addType(Feed.class, "f", Environment.class);
+        addType(ResourceType.class, "rt", Tenant.class);
+        addType(MetricType.class, "mt", Tenant.class);
+        addType(Resource.class, "r", Environment.class, Feed.class);
+        addType(Metric.class, "m", Environment.class, Feed.class);
+    }
+
+    private final List<Segment> path;
+
+    private CanonicalPath(List<Segment> path) {
+        this.path = path;
+    }
+
+    @SafeVarargs
+    private static void addType(Class<? extends Entity> type, String code, Class<? extends Entity>... parents) {
+        TYPE_CODES.put(type, code);
+        TYPES_BY_CODE.put(code, type);
+        VALID_PARENTS.put(type, Arrays.asList(parents));
+    }
+
+    /**
+     * @return an empty canonical path that can only be used as a starting point for
+     * {@link #extend(Class, String)}.
+     */
+    public static CanonicalPath empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param entity the entity to compute the canonical path of
+     * @return the canonical path of the entity
+     */
+    public static CanonicalPath of(Entity<?, ?> entity) {
+        return entity.accept(new EntityVisitor<CanonicalPath, Void>() {
+            @Override
+            public CanonicalPath visitTenant(Tenant tenant, Void parameter) {
+                return empty().extend(Tenant.class, tenant.getId());
+            }
+
+            @Override
+            public CanonicalPath visitEnvironment(Environment environment, Void parameter) {
+                return empty().extend(Tenant.class, environment.getTenantId())
+                        .extend(Environment.class, environment.getId());
+            }
+
+            @Override
+            public CanonicalPath visitFeed(Feed feed, Void parameter) {
+                return empty().extend(Tenant.class, feed.getTenantId())
+                        .extend(Environment.class, feed.getEnvironmentId()).extend(Feed.class, feed.getId());
+            }
+
+            @Override
+            public CanonicalPath visitMetric(Metric metric, Void parameter) {
+                return feedBased(metric).extend(Metric.class, metric.getId());
+            }
+
+            @Override
+            public CanonicalPath visitMetricType(MetricType definition, Void parameter) {
+                return empty().extend(Tenant.class, definition.getTenantId())
+                        .extend(MetricType.class, definition.getId());
+            }
+
+            @Override
+            public CanonicalPath visitResource(Resource resource, Void parameter) {
+                return feedBased(resource).extend(Resource.class, resource.getId());
+            }
+
+            @Override
+            public CanonicalPath visitResourceType(ResourceType type, Void parameter) {
+                return empty().extend(Tenant.class, type.getTenantId()).extend(ResourceType.class, type.getId());
+            }
+
+            private CanonicalPath feedBased(FeedBasedEntity<?, ?> entity) {
+                CanonicalPath ret = empty().extend(Tenant.class, entity.getTenantId())
+                        .extend(Environment.class, entity.getEnvironmentId());
+
+                return entity.getFeedId() == null ? ret : ret.extend(Feed.class, entity.getFeedId());
+            }
+        }, null);
+    }
+
+    /**
+     * Parses the string representation of a canonical path.
+     *
+     * @param path the string to parse
+     * @return the parsed canonical path
+     * @throws IllegalArgumentException if the string is not a valid canonical path
+     */
+    public static CanonicalPath fromString(String path) {
+        if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+            throw new IllegalArgumentException("A canonical path must start with a '/': " + path);
+        }
+
+        CanonicalPath ret = EMPTY;
+
+        StringBuilder token = new StringBuilder();
+        String typeCode = null;
+
+        for (int i = 1; i <= path.length(); ++i) {
+            char c = i == path.length() ? '/' : path.charAt(i);
+            switch (c) {
+                case '\\':
+                    if (++i == path.length()) {
+                        throw new IllegalArgumentException("Unfinished escape sequence in canonical path: " + path);
+                    }
+                    token.append(path.charAt(i));
+                    break;
+                case ';':
+                    if (typeCode != null) {
+                        throw new IllegalArgumentException("Unescaped ';' in the id in canonical path: " + path);
+                    }
+                    typeCode = token.toString();
+                    token.setLength(0);
+                    break;
+                case '/':
+                    Class<? extends Entity> type = TYPES_BY_CODE.get(typeCode);
+                    if (type == null) {
+                        throw new IllegalArgumentException("Unknown entity type '" + typeCode + "' in canonical path: "
+                                + path);
+                    }
+                    ret = ret.extend(type, token.toString());
+                    typeCode = null;
+                    token.setLength(0);
+                    break;
+                default:
+                    token.append(c);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Creates a new canonical path by appending the provided segment to this path.
+     *
+     * @param type the type of the entity
+     * @param id   the id of the entity
+     * @return the new canonical path
+     * @throws IllegalArgumentException if an entity of the provided type cannot be contained in the entity represented
+     *                                  by this path
+     */
+    public CanonicalPath extend(Class<? extends Entity> type, String id) {
+        List<Class<? extends Entity>> validParents = VALID_PARENTS.get(type);
+        if (validParents == null) {
+            throw new IllegalArgumentException("Unsupported entity type: " + type);
+        }
+
+        if (id == null || id.isEmpty()) {
+            throw new IllegalArgumentException("The id of the entity in a canonical path cannot be empty.");
+        }
+
+        boolean valid = path.isEmpty() ? validParents.isEmpty()
+                : validParents.contains(getSegment().getElementType());
+
+        if (!valid) {
+            throw new IllegalArgumentException(type.getSimpleName() + " cannot be contained in " + this);
+        }
+
+        List<Segment> newPath = new ArrayList<>(path.size() + 1);
+        newPath.addAll(path);
+        newPath.add(new Segment(type, id));
+
+        return new CanonicalPath(Collections.unmodifiableList(newPath));
+    }
+
+    /**
+     * @return true if this path is not empty
+     */
+    public boolean isDefined() {
+        return !path.isEmpty();
+    }
+
+    /**
+     * @return the path to the parent entity or null if this path represents a tenant (or is empty)
+     */
+    public CanonicalPath getParent() {
+        return path.size() < 2 ? null : new CanonicalPath(path.subList(0, path.size() - 1));
+    }
+
+    /**
+     * @return the last segment of the path, representing the entity the path points to, or null if the path is empty
+     */
+    public Segment getSegment() {
+        return path.isEmpty() ? null : path.get(path.size() - 1);
+    }
+
+    /**
+     * @return the unmodifiable list of segments from the tenant to the entity
+     */
+    public List<Segment> getPath() {
+        return path;
+    }
+
+    /**
+     * @param other the other path
+     * @return true if this path is a proper prefix of the other path
+     */
+    public boolean isParentOf(CanonicalPath other) {
+        return other.path.size() > path.size() && other.path.subList(0, path.size()).equals(path);
+    }
+
+    @Override
+    public Iterator<Segment> iterator() {
+        return path.iterator();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CanonicalPath)) return false;
+
+        return path.equals(((CanonicalPath) o).path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder bld = new StringBuilder();
+        for (Segment s : path) {
+            bld.append('/').append(TYPE_CODES.get(s.getElementType())).append(';');
+            String id = s.getElementId();
+            for (int i = 0; i < id.length(); ++i) {
+                char c = id.charAt(i);
+                if (c == '/' || c == ';' || c == '\\') {
+                    bld.append('\\');
+                }
+                bld.append(c);
+            }
+        }
+
+        return bld.length() == 0 ? "/" : bld.toString();
+    }
+
+    /**
+     * A single segment of the canonical path, i.e. the type and the id of the entity on the path.
+     */
+    public static final class Segment {
+        private final Class<? extends Entity> elementType;
+        private final String elementId;
+
+        private Segment(Class<? extends Entity> elementType, String elementId) {
+            this.elementType = elementType;
+            this.elementId = elementId;
+        }
+
+        public Class<? extends Entity> getElementType() {
+            return elementType;
+        }
+
+        public String getElementId() {
+            return elementId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Segment)) return false;
+
+            Segment other = (Segment) o;
+
+            return elementType == other.elementType && elementId.equals(other.elementId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * elementType.hashCode() + elementId.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return elementType.getSimpleName() + "[" + elementId + "]";
+        }
+    }
+}
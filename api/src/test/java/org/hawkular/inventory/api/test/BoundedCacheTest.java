@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.api.test;
+
+import org.hawkular.inventory.api.BoundedCache;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class BoundedCacheTest {
+
+    private int loads;
+
+    @Before
+    public void init() {
+        loads = 0;
+    }
+
+    @Test
+    public void testValuesCached() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+
+        Assert.assertEquals("a", cache.get("a", () -> load("a")));
+        Assert.assertEquals("a", cache.get("a", () -> load("a")));
+        Assert.assertEquals(1, loads);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(2);
+
+        cache.get("a", () -> load("a"));
+        cache.get("b", () -> load("b"));
+        cache.get("a", () -> load("a"));
+        cache.get("c", () -> load("c"));
+        Assert.assertEquals(3, loads);
+
+        //b was the least recently used
+        cache.get("a", () -> load("a"));
+        cache.get("c", () -> load("c"));
+        Assert.assertEquals(3, loads);
+
+        cache.get("b", () -> load("b"));
+        Assert.assertEquals(4, loads);
+    }
+
+    @Test
+    public void testDisabledCacheLoadsEveryTime() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(0);
+
+        Assert.assertFalse(cache.isEnabled());
+
+        cache.get("a", () -> load("a"));
+        cache.get("a", () -> load("a"));
+        Assert.assertEquals(2, loads);
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, TimeUnit.MILLISECONDS.toNanos(50));
+
+        cache.get("a", () -> load("a"));
+        cache.get("a", () -> load("a"));
+        Assert.assertEquals(1, loads);
+
+        Thread.sleep(100);
+
+        cache.get("a", () -> load("a"));
+        Assert.assertEquals(2, loads);
+    }
+
+    @Test
+    public void testInvalidValuesReloaded() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+
+        cache.get("a", (v) -> true, () -> load("1"));
+
+        Assert.assertEquals("1", cache.get("a", "1"::equals, () -> load("2")));
+        Assert.assertEquals(1, loads);
+
+        Assert.assertEquals("2", cache.get("a", "2"::equals, () -> load("2")));
+        Assert.assertEquals("2", cache.get("a", "2"::equals, () -> load("3")));
+        Assert.assertEquals(2, loads);
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+
+        cache.get("a", () -> load("a"));
+        cache.get("b", () -> load("b"));
+        cache.get("c", () -> load("c"));
+
+        cache.invalidate("a");
+        cache.get("a", () -> load("a"));
+        cache.get("b", () -> load("b"));
+        Assert.assertEquals(4, loads);
+
+        cache.invalidateIf((k, v) -> v.equals("b"));
+        cache.get("a", () -> load("a"));
+        cache.get("b", () -> load("b"));
+        cache.get("c", () -> load("c"));
+        Assert.assertEquals(5, loads);
+
+        cache.invalidateAll();
+        cache.get("a", () -> load("a"));
+        cache.get("b", () -> load("b"));
+        cache.get("c", () -> load("c"));
+        Assert.assertEquals(8, loads);
+    }
+
+    @Test
+    public void testValueLoadedDuringInvalidationNotCached() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+
+        Assert.assertEquals("old", cache.get("a", () -> {
+            //the change is made and invalidated while the old state is being loaded
+            cache.invalidate("a");
+            return load("old");
+        }));
+
+        Assert.assertEquals("new", cache.get("a", () -> load("new")));
+        Assert.assertEquals(2, loads);
+    }
+
+    @Test
+    public void testFailuresNotCached() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+
+        try {
+            cache.get("a", () -> {
+                load("a");
+                throw new IllegalStateException();
+            });
+            Assert.fail("The failure should have been propagated.");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+
+        Assert.assertEquals("a", cache.get("a", () -> load("a")));
+        Assert.assertEquals(2, loads);
+    }
+
+    private String load(String value) {
+        loads++;
+        return value;
+    }
+}
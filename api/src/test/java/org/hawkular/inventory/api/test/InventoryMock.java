@@ -25,6 +25,8 @@ import org.hawkular.inventory.api.Relationships;
 import org.hawkular.inventory.api.ResourceTypes;
 import org.hawkular.inventory.api.Resources;
 import org.hawkular.inventory.api.Tenants;
+import org.hawkular.inventory.api.WriteInterface;
+import org.hawkular.inventory.api.model.Entity;
 import org.mockito.Mockito;
 
 import static org.mockito.Matchers.any;
@@ -233,5 +235,19 @@ public class InventoryMock {
         when(tenantsMultiple.relationships()).thenReturn(relationshipsRead);
         when(tenantsMultiple.relationships(any())).thenReturn(relationshipsRead);
         when(tenantsMultiple.resourceTypes()).thenReturn(resourceTypesRead);
+
+        //the mocks don't record the changes they make, just like the default implementation
+        createsWithoutChanges(environmentsReadWrite);
+        createsWithoutChanges(feedsReadWrite);
+        createsWithoutChanges(metricsReadWrite);
+        createsWithoutChanges(metricTypesReadWrite);
+        createsWithoutChanges(resourcesReadWrite);
+        createsWithoutChanges(resourceTypesReadWrite);
+        createsWithoutChanges(tenantsReadWrite);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <B extends Entity.Blueprint> void createsWithoutChanges(WriteInterface<?, B, ?> writes) {
+        when(writes.create(any(), any())).thenAnswer((inv) -> writes.create((B) inv.getArguments()[0]));
     }
 }
@@ -17,9 +17,14 @@
 package org.hawkular.inventory.api.test;
 
 import org.hawkular.inventory.api.Action;
+import org.hawkular.inventory.api.ChangeSet;
+import org.hawkular.inventory.api.Delivery;
 import org.hawkular.inventory.api.Interest;
 import org.hawkular.inventory.api.Inventory;
+import org.hawkular.inventory.api.filters.With;
 import org.hawkular.inventory.api.model.AbstractElement;
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.api.model.Entity;
 import org.hawkular.inventory.api.model.Environment;
 import org.hawkular.inventory.api.model.Metric;
 import org.hawkular.inventory.api.model.MetricType;
@@ -28,20 +33,31 @@ import org.hawkular.inventory.api.model.Relationship;
 import org.hawkular.inventory.api.model.Resource;
 import org.hawkular.inventory.api.model.ResourceType;
 import org.hawkular.inventory.api.model.Tenant;
+import org.hawkular.inventory.api.paging.Page;
+import org.hawkular.inventory.api.paging.Pager;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import rx.Subscription;
+import rx.functions.Action1;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.hawkular.inventory.api.Action.copied;
 import static org.hawkular.inventory.api.Action.created;
 import static org.hawkular.inventory.api.Action.deleted;
 import static org.hawkular.inventory.api.Action.updated;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -212,6 +228,316 @@ public class ObservableInventoryTest {
         Assert.assertEquals(1, createdRelatonships.size());
     }
 
+    @Test
+    public void testCaching() throws Exception {
+        Inventory.Mixin.ObservableAndCaching cachingInventory = Inventory.augment(observableInventory)
+                .caching(100, 10, 1, TimeUnit.HOURS).get();
+
+        Environment prototype = new Environment("t", "e");
+        Pager pager = new Pager(0, 10);
+        Page<Environment> page = new Page<>(Collections.singletonList(prototype), pager, 1);
+
+        when(InventoryMock.environmentsSingle.entity()).thenReturn(prototype);
+        when(InventoryMock.environmentsMultiple.entities(pager)).thenReturn(page);
+
+        Assert.assertEquals(prototype, cachingInventory.tenants().get("t").environments().get("e").entity());
+        Assert.assertEquals(prototype, cachingInventory.tenants().get("t").environments().get("e").entity());
+        verify(InventoryMock.environmentsSingle, times(1)).entity();
+
+        Assert.assertEquals(page, cachingInventory.tenants().get("t").environments().getAll().entities(pager));
+        Assert.assertEquals(page, cachingInventory.tenants().get("t").environments().getAll().entities(pager));
+        verify(InventoryMock.environmentsMultiple, times(1)).entities(pager);
+
+        //filtered traversals are not cached
+        cachingInventory.tenants().get("t").environments().getAll(With.id("e")).entities(pager);
+        verify(InventoryMock.environmentsMultiple, times(2)).entities(pager);
+
+        //the update reads the entity once more to send it with the event, which then invalidates the cache
+        cachingInventory.tenants().get("t").environments().update("e", new Environment.Update(null));
+        verify(InventoryMock.environmentsSingle, times(2)).entity();
+
+        cachingInventory.tenants().get("t").environments().get("e").entity();
+        cachingInventory.tenants().get("t").environments().getAll().entities(pager);
+        verify(InventoryMock.environmentsSingle, times(3)).entity();
+        verify(InventoryMock.environmentsMultiple, times(3)).entities(pager);
+    }
+
+    @Test
+    public void testAutoTenantRemembersKnownTenants() throws Exception {
+        Inventory.Mixin.AutoTenantAndObservable autoTenant = Inventory.augment(observableInventory).autoTenant()
+                .get();
+
+        when(InventoryMock.tenantsSingle.exists()).thenReturn(true);
+        when(InventoryMock.tenantsSingle.entity()).thenReturn(new Tenant("t"));
+
+        autoTenant.tenants().get("t");
+        autoTenant.tenants().get("t");
+        verify(InventoryMock.tenantsSingle, times(1)).exists();
+
+        //the deletion is observed even if it doesn't go through the auto-tenant inventory
+        observableInventory.tenants().delete("t");
+
+        autoTenant.tenants().get("t");
+        verify(InventoryMock.tenantsSingle, times(2)).exists();
+    }
+
+    @Test
+    public void testSubscriptionChangesVisibleToDispatch() throws Exception {
+        Tenant.Blueprint blueprint = new Tenant.Blueprint("kachny");
+
+        when(InventoryMock.tenantsReadWrite.create(blueprint)).thenReturn(InventoryMock.tenantsSingle);
+        when(InventoryMock.tenantsSingle.entity()).thenReturn(new Tenant("kachny"));
+        when(InventoryMock.relationshipsMultiple.entities()).thenReturn(Collections.emptySet());
+
+        List<Object> createdEntities = new ArrayList<>();
+
+        //dispatch before anyone is interested
+        observableInventory.tenants().create(blueprint);
+
+        //the interest in the super type must match the tenants, too
+        Subscription s = observableInventory.observable(Interest.in(Entity.class).being(created()))
+                .subscribe(createdEntities::add);
+
+        observableInventory.tenants().create(blueprint);
+        Assert.assertEquals(1, createdEntities.size());
+
+        s.unsubscribe();
+
+        observableInventory.tenants().create(blueprint);
+        Assert.assertEquals(1, createdEntities.size());
+    }
+
+    @Test
+    public void testNoReadsWithoutObservers() throws Exception {
+        Tenant.Blueprint blueprint = new Tenant.Blueprint("kachny");
+
+        when(InventoryMock.tenantsReadWrite.create(blueprint)).thenReturn(InventoryMock.tenantsSingle);
+
+        observableInventory.tenants().create(blueprint);
+        observableInventory.tenants().update("kachny", Tenant.Update.builder().build());
+        observableInventory.tenants().delete("kachny");
+
+        verify(InventoryMock.tenantsSingle, times(0)).entity();
+        verify(InventoryMock.relationshipsMultiple, times(0)).entities();
+    }
+
+    @Test
+    public void testCapturedChangesNotifiedWithoutReads() throws Exception {
+        Tenant tenant = new Tenant("t");
+        Environment environment = new Environment("t", "e");
+        Relationship contains = new Relationship("r", "contains", tenant, environment);
+
+        Environment.Blueprint blueprint = new Environment.Blueprint("e");
+
+        when(InventoryMock.environmentsReadWrite.create(eq(blueprint), any())).thenAnswer((inv) -> {
+            @SuppressWarnings("unchecked")
+            Consumer<ChangeSet> changes = (Consumer<ChangeSet>) inv.getArguments()[1];
+            changes.accept(new ChangeSet(Collections.singletonList(environment),
+                    Collections.singletonList(contains)));
+            return InventoryMock.environmentsSingle;
+        });
+
+        List<Environment> createdEntities = new ArrayList<>();
+        List<Relationship> createdRelationships = new ArrayList<>();
+
+        observableInventory.observable(Interest.in(Environment.class).being(created()))
+                .subscribe(createdEntities::add);
+        observableInventory.observable(Interest.in(Relationship.class).being(created()))
+                .subscribe(createdRelationships::add);
+
+        observableInventory.tenants().get("t").environments().create(blueprint);
+
+        Assert.assertEquals(Collections.singletonList(environment), createdEntities);
+        Assert.assertEquals(Collections.singletonList(contains), createdRelationships);
+
+        verify(InventoryMock.environmentsSingle, times(0)).entity();
+        verify(InventoryMock.relationshipsMultiple, times(0)).entities();
+    }
+
+    @Test
+    public void testSubscriptionsAreSynchronousUnlessAsked() throws Exception {
+        when(InventoryMock.relationshipsMultiple.entities()).thenReturn(Collections.emptySet());
+        when(InventoryMock.tenantsSingle.entity()).thenReturn(new Tenant("t1"));
+
+        Delivery delivery = Delivery.asynchronous(10, Delivery.Overflow.BLOCK);
+        BlockingSubscriber async = new BlockingSubscriber();
+        List<String> sync = new ArrayList<>();
+
+        observableInventory.observable(Interest.in(Tenant.class).being(deleted()), delivery).subscribe(async);
+        observableInventory.observable(Interest.in(Tenant.class).being(deleted()))
+                .subscribe((t) -> sync.add(t.getId()));
+
+        observableInventory.tenants().delete("t1");
+
+        //the asynchronous subscriber is stuck, yet the synchronous one has seen the change before the write returned
+        Assert.assertTrue(async.blocked.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Collections.singletonList("t1"), sync);
+
+        async.release.countDown();
+        async.awaitDelivered(1);
+        Assert.assertEquals(Collections.singletonList("t1"), async.delivered);
+
+        observableInventory.close();
+    }
+
+    @Test
+    public void testAsynchronousDeliveryDropOldest() throws Exception {
+        Delivery delivery = Delivery.asynchronous(1, Delivery.Overflow.DROP_OLDEST);
+        BlockingSubscriber subscriber = new BlockingSubscriber();
+        observableInventory.observable(Interest.in(Tenant.class).being(deleted()), delivery).subscribe(subscriber);
+
+        //the first notification blocks the subscriber, the second waits in the queue and is then replaced by the third
+        deleteTenants(subscriber, "t1", "t2", "t3");
+
+        Assert.assertEquals(1, delivery.getStatistics().getDroppedCount());
+        Assert.assertEquals(1, delivery.getStatistics().getQueueDepth());
+
+        subscriber.release.countDown();
+        subscriber.awaitDelivered(2);
+
+        Assert.assertEquals(Arrays.asList("t1", "t3"), subscriber.delivered);
+        Assert.assertEquals(0, delivery.getStatistics().getQueueDepth());
+        Assert.assertEquals(2, delivery.getStatistics().getDeliveredCount());
+
+        observableInventory.close();
+    }
+
+    @Test
+    public void testAsynchronousDeliveryBlock() throws Exception {
+        Delivery delivery = Delivery.asynchronous(1, Delivery.Overflow.BLOCK);
+        BlockingSubscriber subscriber = new BlockingSubscriber();
+        observableInventory.observable(Interest.in(Tenant.class).being(deleted()), delivery).subscribe(subscriber);
+
+        //the first notification blocks the subscriber and the second fills the queue
+        deleteTenants(subscriber, "t1", "t2");
+
+        //the writer of the third has to wait for the subscriber
+        CountDownLatch written = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            observableInventory.tenants().delete("t3");
+            written.countDown();
+        });
+        writer.start();
+
+        Assert.assertFalse(written.await(500, TimeUnit.MILLISECONDS));
+
+        subscriber.release.countDown();
+        Assert.assertTrue(written.await(10, TimeUnit.SECONDS));
+        subscriber.awaitDelivered(3);
+
+        Assert.assertEquals(Arrays.asList("t1", "t2", "t3"), subscriber.delivered);
+        Assert.assertEquals(0, delivery.getStatistics().getDroppedCount());
+        Assert.assertEquals(3, delivery.getStatistics().getDeliveredCount());
+
+        observableInventory.close();
+    }
+
+    @Test
+    public void testAsynchronousDeliveryCoalesce() throws Exception {
+        Delivery delivery = Delivery.asynchronous(1, Delivery.Overflow.COALESCE);
+        BlockingSubscriber subscriber = new BlockingSubscriber();
+        observableInventory.observable(Interest.in(Tenant.class).being(deleted()), delivery).subscribe(subscriber);
+
+        //the first notification blocks the subscriber, the second fills the queue and the third is equal to it
+        deleteTenants(subscriber, "t1", "t2", "t2");
+
+        Assert.assertEquals(1, delivery.getStatistics().getCoalescedCount());
+        Assert.assertEquals(1, delivery.getStatistics().getQueueDepth());
+
+        subscriber.release.countDown();
+        subscriber.awaitDelivered(2);
+
+        Assert.assertEquals(Arrays.asList("t1", "t2"), subscriber.delivered);
+        Assert.assertEquals(0, delivery.getStatistics().getDroppedCount());
+        Assert.assertEquals(0, delivery.getStatistics().getQueueDepth());
+
+        observableInventory.close();
+    }
+
+    /**
+     * Deletes the tenants one by one, waiting for the subscriber to get stuck on the first one.
+     */
+    private void deleteTenants(BlockingSubscriber subscriber, String... ids) throws InterruptedException {
+        when(InventoryMock.relationshipsMultiple.entities()).thenReturn(Collections.emptySet());
+
+        for (int i = 0; i < ids.length; ++i) {
+            when(InventoryMock.tenantsSingle.entity()).thenReturn(new Tenant(ids[i]));
+            observableInventory.tenants().delete(ids[i]);
+            if (i == 0) {
+                Assert.assertTrue(subscriber.blocked.await(10, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        Tenant tenant = new Tenant("t");
+        Environment environment = new Environment("t", "e");
+        Relationship contains = new Relationship("r", "contains", tenant, environment);
+
+        Environment.Blueprint blueprint = new Environment.Blueprint("e");
+
+        when(InventoryMock.environmentsReadWrite.create(blueprint)).thenReturn(InventoryMock.environmentsSingle);
+        when(InventoryMock.environmentsSingle.entity()).thenReturn(environment);
+        when(InventoryMock.relationshipsMultiple.entities()).thenReturn(Collections.singleton(contains));
+
+        List<Action.Batch> batches = new ArrayList<>();
+        List<Environment> createdEnvironments = new ArrayList<>();
+
+        observableInventory.observable(Interest.inBatches()).subscribe(batches::add);
+        observableInventory.observable(Interest.in(Environment.class).being(created()))
+                .subscribe(createdEnvironments::add);
+
+        observableInventory.tenants().get("t").environments().create(blueprint);
+        observableInventory.tenants().get("t").environments().delete("e");
+
+        Assert.assertEquals(2, batches.size());
+        Assert.assertEquals(1, createdEnvironments.size());
+
+        List<Action.Change<?, ?>> created = batches.get(0).getChanges();
+        Assert.assertEquals(2, created.size());
+        Assert.assertSame(Action.created(), created.get(0).getAction());
+        Assert.assertEquals(environment, created.get(0).getEntity());
+        Assert.assertEquals(contains, created.get(1).getEntity());
+
+        List<Action.Change<?, ?>> deleted = batches.get(1).getChanges();
+        Assert.assertEquals(1, deleted.size());
+        Assert.assertSame(Action.deleted(), deleted.get(0).getAction());
+        Assert.assertEquals(environment, deleted.get(0).getEntity());
+    }
+
+    @Test
+    public void testPathScopedInterests() throws Exception {
+        List<Environment> deletedInT1 = new ArrayList<>();
+        List<Environment> deletedEverywhere = new ArrayList<>();
+        List<Relationship> deletedRelationshipsInT1 = new ArrayList<>();
+
+        observableInventory.observable(Interest.in(Environment.class).under(CanonicalPath.fromString("/t;t1"))
+                .being(deleted())).subscribe(deletedInT1::add);
+        observableInventory.observable(Interest.in(Environment.class).being(deleted()))
+                .subscribe(deletedEverywhere::add);
+        observableInventory.observable(Interest.in(Relationship.class).under(CanonicalPath.fromString("/t;t1"))
+                .being(deleted())).subscribe(deletedRelationshipsInT1::add);
+
+        for (String tenantId : Arrays.asList("t1", "t2")) {
+            Tenant tenant = new Tenant(tenantId);
+            Environment environment = new Environment(tenantId, "e");
+
+            when(InventoryMock.environmentsSingle.entity()).thenReturn(environment);
+            when(InventoryMock.relationshipsSingle.entity())
+                    .thenReturn(new Relationship(tenantId, "contains", tenant, environment));
+
+            observableInventory.tenants().get(tenantId).environments().delete("e");
+            observableInventory.tenants().get(tenantId).relationships().delete(tenantId);
+        }
+
+        Assert.assertEquals(1, deletedInT1.size());
+        Assert.assertEquals("t1", deletedInT1.get(0).getTenantId());
+        Assert.assertEquals(2, deletedEverywhere.size());
+        Assert.assertEquals(1, deletedRelationshipsInT1.size());
+        Assert.assertEquals("t1", deletedRelationshipsInT1.get(0).getId());
+    }
+
     private <T extends AbstractElement<?, U>, U extends AbstractElement.Update>
         void runTest(Class<T> entityClass, boolean watchRelationships, Runnable payload) {
 
@@ -252,4 +578,30 @@ public class ObservableInventoryTest {
         Assert.assertFalse(observableInventory.hasObservers(Interest.in(entityClass).being(updated())));
         Assert.assertFalse(observableInventory.hasObservers(Interest.in(entityClass).being(deleted())));
     }
+
+    /**
+     * A subscriber that blocks on the first notification until released.
+     */
+    private static final class BlockingSubscriber implements Action1<Tenant> {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> delivered = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void call(Tenant t) {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.add(t.getId());
+        }
+
+        void awaitDelivered(int count) throws InterruptedException {
+            for (int i = 0; i < 100 && delivered.size() < count; ++i) {
+                Thread.sleep(100);
+            }
+        }
+    }
 }
@@ -0,0 +1,546 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.bus.api;
+
+import org.hawkular.bus.common.BasicMessage;
+import org.hawkular.inventory.api.Action;
+import org.hawkular.inventory.api.model.AbstractElement;
+import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.api.model.EntityVisitor;
+import org.hawkular.inventory.api.model.Environment;
+import org.hawkular.inventory.api.model.Feed;
+import org.hawkular.inventory.api.model.Metric;
+import org.hawkular.inventory.api.model.MetricType;
+import org.hawkular.inventory.api.model.MetricUnit;
+import org.hawkular.inventory.api.model.Relationship;
+import org.hawkular.inventory.api.model.Resource;
+import org.hawkular.inventory.api.model.ResourceType;
+import org.hawkular.inventory.api.model.Tenant;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of the inventory events, an alternative to the default JSON encoding of the bus messages.
+ *
+ * <p>The messages in this encoding are sent as JMS bytes messages with the {@value #ENCODING_HEADER} header set to
+ * {@value #BINARY_ENCODING}. The messages without the header are JSON-encoded as usual. The consumers can therefore
+ * tell the encodings apart (or select only the messages in the encoding they understand) using the header.
+ *
+ * <p>The schema of the encoding (version 1) is as follows:
+ * <pre>{@code
+ * message      := 'H' 'I' version:byte (0x01 event | 0x02 batch)
+ * batch        := count:varint event*
+ * event        := action:byte element
+ * action       := 0 created | 1 updated | 2 deleted | 3 copied | 4 registered
+ * element      := 0 (null)
+ *               | 1 tenantId:string properties
+ *               | 2 tenantId:string id:string properties                                   (environment)
+ *               | 3 tenantId:string environmentId:string id:string properties              (feed)
+ *               | 4 tenantId:string id:string version:string properties                    (resource type)
+ *               | 5 tenantId:string id:string unit:string properties                       (metric type)
+ *               | 6 tenantId:string environmentId:string feedId:string id:string type:element properties (resource)
+ *               | 7 tenantId:string environmentId:string feedId:string id:string type:element properties (metric)
+ *               | 8 id:string name:string source:element target:element properties        (relationship)
+ * properties   := count:varint (key:string value)*
+ * value        := 0 (null) | 1 string | 2 (true) | 3 (false) | 4 int:zigzag-varint | 5 long:zigzag-varint
+ *               | 6 double:8 bytes | 7 count:varint value* (list) | 8 properties (map)
+ * string       := 0 (null)
+ *               | (index << 1 | 1):varint (the string with the index in the table of the strings seen so far)
+ *               | ((length + 1) << 1):varint UTF-8 bytes (a new string, appended to the table)
+ * }</pre>
+ *
+ * <p>The ids of the tenants, environments and feeds repeat a lot in the events, especially in the batches, which is why
+ * each distinct string is only written once per message. The property values of other types than listed above are
+ * encoded as their string representation.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public final class BinaryEventCodec {
+
+    /**
+     * The name of the message header with the encoding of the message.
+     */
+    public static final String ENCODING_HEADER = "encoding";
+
+    /**
+     * The value of the {@link #ENCODING_HEADER} of the messages in this encoding.
+     */
+    public static final String BINARY_ENCODING = "hawkular-inventory-binary-1";
+
+    private static final byte VERSION = 1;
+    private static final byte EVENT = 1;
+    private static final byte BATCH = 2;
+
+    private static final Action.Enumerated[] ACTIONS = {Action.Enumerated.CREATED, Action.Enumerated.UPDATED,
+            Action.Enumerated.DELETED, Action.Enumerated.COPIED, Action.Enumerated.REGISTERED};
+
+    private BinaryEventCodec() {
+
+    }
+
+    /**
+     * Encodes the inventory event or a batch of them.
+     *
+     * @param message an {@link InventoryEvent} or an {@link InventoryEventBatch}
+     * @return the encoded message
+     */
+    public static byte[] encode(BasicMessage message) {
+        Writer w = new Writer();
+        w.writeByte('H');
+        w.writeByte('I');
+        w.writeByte(VERSION);
+
+        if (message instanceof InventoryEventBatch) {
+            List<InventoryEvent<?>> events = ((InventoryEventBatch) message).getEvents();
+            w.writeByte(BATCH);
+            w.writeVarint(events.size());
+            for (InventoryEvent<?> e : events) {
+                w.writeEvent(e);
+            }
+        } else if (message instanceof InventoryEvent) {
+            w.writeByte(EVENT);
+            w.writeEvent((InventoryEvent<?>) message);
+        } else {
+            throw new IllegalArgumentException("Unsupported message type: " + message.getClass());
+        }
+
+        return w.toByteArray();
+    }
+
+    /**
+     * Decodes the inventory event or a batch of them.
+     *
+     * @param data the encoded message
+     * @return an {@link InventoryEvent} or an {@link InventoryEventBatch}
+     * @throws IllegalArgumentException if the data is not a message in this encoding
+     */
+    public static BasicMessage decode(byte[] data) {
+        Reader r = new Reader(data);
+        try {
+            if (r.readByte() != 'H' || r.readByte() != 'I') {
+                throw new IllegalArgumentException("Not a binary inventory event.");
+            }
+
+            int version = r.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported version of the binary encoding: " + version);
+            }
+
+            switch (r.readByte()) {
+                case EVENT:
+                    return r.readEvent();
+                case BATCH:
+                    int count = r.readCount();
+                    List<InventoryEvent<?>> events = new ArrayList<>(count);
+                    for (int i = 0; i < count; ++i) {
+                        events.add(r.readEvent());
+                    }
+                    return new InventoryEventBatch(events);
+                default:
+                    throw new IllegalArgumentException("Unknown kind of binary inventory message.");
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated binary inventory event.", e);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("Malformed binary inventory event.", e);
+        }
+    }
+
+    private static final class Writer implements EntityVisitor<Void, Void> {
+        private byte[] buffer = new byte[256];
+        private int size;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        void writeEvent(InventoryEvent<?> event) {
+            int action = Arrays.asList(ACTIONS).indexOf(event.getAction());
+            if (action < 0) {
+                throw new IllegalArgumentException("Unsupported action: " + event.getAction());
+            }
+
+            writeByte(action);
+            writeElement(event.getObject());
+        }
+
+        void writeElement(Object element) {
+            if (element == null) {
+                writeByte(0);
+            } else if (element instanceof Relationship) {
+                Relationship rel = (Relationship) element;
+                writeByte(8);
+                writeString(rel.getId());
+                writeString(rel.getName());
+                writeElement(rel.getSource());
+                writeElement(rel.getTarget());
+                writeProperties(rel.getProperties());
+            } else if (element instanceof Entity) {
+                ((Entity<?, ?>) element).accept(this, null);
+            } else {
+                throw new IllegalArgumentException("Unsupported inventory element: " + element.getClass());
+            }
+        }
+
+        @Override
+        public Void visitTenant(Tenant tenant, Void parameter) {
+            writeByte(1);
+            writeString(tenant.getId());
+            return finish(tenant);
+        }
+
+        @Override
+        public Void visitEnvironment(Environment environment, Void parameter) {
+            writeByte(2);
+            writeString(environment.getTenantId());
+            writeString(environment.getId());
+            return finish(environment);
+        }
+
+        @Override
+        public Void visitFeed(Feed feed, Void parameter) {
+            writeByte(3);
+            writeString(feed.getTenantId());
+            writeString(feed.getEnvironmentId());
+            writeString(feed.getId());
+            return finish(feed);
+        }
+
+        @Override
+        public Void visitResourceType(ResourceType type, Void parameter) {
+            writeByte(4);
+            writeString(type.getTenantId());
+            writeString(type.getId());
+            writeString(type.getVersion());
+            return finish(type);
+        }
+
+        @Override
+        public Void visitMetricType(MetricType definition, Void parameter) {
+            writeByte(5);
+            writeString(definition.getTenantId());
+            writeString(definition.getId());
+            writeString(definition.getUnit() == null ? null : definition.getUnit().name());
+            return finish(definition);
+        }
+
+        @Override
+        public Void visitResource(Resource resource, Void parameter) {
+            writeByte(6);
+            writeString(resource.getTenantId());
+            writeString(resource.getEnvironmentId());
+            writeString(resource.getFeedId());
+            writeString(resource.getId());
+            writeElement(resource.getType());
+            return finish(resource);
+        }
+
+        @Override
+        public Void visitMetric(Metric metric, Void parameter) {
+            writeByte(7);
+            writeString(metric.getTenantId());
+            writeString(metric.getEnvironmentId());
+            writeString(metric.getFeedId());
+            writeString(metric.getId());
+            writeElement(metric.getType());
+            return finish(metric);
+        }
+
+        private Void finish(AbstractElement<?, ?> element) {
+            writeProperties(element.getProperties());
+            return null;
+        }
+
+        void writeProperties(Map<?, ?> properties) {
+            writeVarint(properties.size());
+            for (Map.Entry<?, ?> e : properties.entrySet()) {
+                writeString(String.valueOf(e.getKey()));
+                writeValue(e.getValue());
+            }
+        }
+
+        void writeValue(Object value) {
+            if (value == null) {
+                writeByte(0);
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? 2 : 3);
+            } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                writeByte(4);
+                writeVarint(zigzag(((Number) value).intValue()));
+            } else if (value instanceof Long) {
+                writeByte(5);
+                writeVarlong(zigzag((Long) value));
+            } else if (value instanceof Double || value instanceof Float) {
+                writeByte(6);
+                long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                for (int i = 56; i >= 0; i -= 8) {
+                    writeByte((int) (bits >>> i));
+                }
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                writeByte(7);
+                writeVarint(list.size());
+                list.forEach(this::writeValue);
+            } else if (value instanceof Map) {
+                writeByte(8);
+                writeProperties((Map<?, ?>) value);
+            } else {
+                writeByte(1);
+                writeString(value.toString());
+            }
+        }
+
+        void writeString(String s) {
+            if (s == null) {
+                writeVarint(0);
+                return;
+            }
+
+            Integer index = strings.get(s);
+            if (index != null) {
+                writeVarint(index << 1 | 1);
+                return;
+            }
+
+            strings.put(s, strings.size());
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint((bytes.length + 1) << 1);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeVarint(int value) {
+            writeVarlong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private static int zigzag(int value) {
+            return (value << 1) ^ (value >> 31);
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+        private final List<String> strings = new ArrayList<>();
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        InventoryEvent<?> readEvent() {
+            int action = readByte();
+            if (action < 0 || action >= ACTIONS.length) {
+                throw new IllegalArgumentException("Unknown action in a binary inventory event: " + action);
+            }
+
+            Action.Enumerated a = ACTIONS[action];
+            Object element = readElement();
+
+            if (element instanceof Tenant) {
+                return new TenantEvent(a, (Tenant) element);
+            } else if (element instanceof Environment) {
+                return new EnvironmentEvent(a, (Environment) element);
+            } else if (element instanceof Feed) {
+                return new FeedEvent(a, (Feed) element);
+            } else if (element instanceof ResourceType) {
+                return new ResourceTypeEvent(a, (ResourceType) element);
+            } else if (element instanceof MetricType) {
+                return new MetricTypeEvent(a, (MetricType) element);
+            } else if (element instanceof Resource) {
+                return new ResourceEvent(a, (Resource) element);
+            } else if (element instanceof Metric) {
+                return new MetricEvent(a, (Metric) element);
+            } else if (element instanceof Relationship) {
+                return new RelationshipEvent(a, (Relationship) element);
+            } else {
+                throw new IllegalArgumentException("A binary inventory event without an entity.");
+            }
+        }
+
+        Object readElement() {
+            int tag = readByte();
+            switch (tag) {
+                case 0:
+                    return null;
+                case 1:
+                    return new Tenant(readString(), readProperties());
+                case 2:
+                    return new Environment(readString(), readString(), readProperties());
+                case 3:
+                    return new Feed(readString(), readString(), readString(), readProperties());
+                case 4:
+                    return new ResourceType(readString(), readString(), readString(), readProperties());
+                case 5: {
+                    String tenantId = readString();
+                    String id = readString();
+                    String unit = readString();
+                    return new MetricType(tenantId, id, unit == null ? null : MetricUnit.valueOf(unit),
+                            readProperties());
+                }
+                case 6:
+                    return new Resource(readString(), readString(), readString(), readString(),
+                            (ResourceType) readElement(), readProperties());
+                case 7:
+                    return new Metric(readString(), readString(), readString(), readString(),
+                            (MetricType) readElement(), readProperties());
+                case 8:
+                    return new Relationship(readString(), readString(), (Entity) readElement(),
+                            (Entity) readElement(), readProperties());
+                default:
+                    throw new IllegalArgumentException("Unknown element in a binary inventory event: " + tag);
+            }
+        }
+
+        Map<String, Object> readProperties() {
+            int count = readCount();
+            Map<String, Object> ret = new LinkedHashMap<>();
+            for (int i = 0; i < count; ++i) {
+                String key = readString();
+                ret.put(key, readValue());
+            }
+            return ret;
+        }
+
+        Object readValue() {
+            int type = readByte();
+            switch (type) {
+                case 0:
+                    return null;
+                case 1:
+                    return readString();
+                case 2:
+                    return true;
+                case 3:
+                    return false;
+                case 4: {
+                    int v = readVarint();
+                    return (v >>> 1) ^ -(v & 1);
+                }
+                case 5: {
+                    long v = readVarlong();
+                    return (v >>> 1) ^ -(v & 1);
+                }
+                case 6: {
+                    long bits = 0;
+                    for (int i = 0; i < 8; ++i) {
+                        bits = bits << 8 | (readByte() & 0xFF);
+                    }
+                    return Double.longBitsToDouble(bits);
+                }
+                case 7: {
+                    int count = readCount();
+                    List<Object> ret = new ArrayList<>(count);
+                    for (int i = 0; i < count; ++i) {
+                        ret.add(readValue());
+                    }
+                    return ret;
+                }
+                case 8:
+                    return readProperties();
+                default:
+                    throw new IllegalArgumentException("Unknown value type in a binary inventory event: " + type);
+            }
+        }
+
+        String readString() {
+            int v = readVarint();
+            if (v == 0) {
+                return null;
+            }
+
+            if ((v & 1) == 1) {
+                return strings.get(v >>> 1);
+            }
+
+            int length = (v >>> 1) - 1;
+            if (length > data.length - position) {
+                throw new ArrayIndexOutOfBoundsException(position + length);
+            }
+
+            String s = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            strings.add(s);
+            return s;
+        }
+
+        int readVarint() {
+            return (int) readVarlong();
+        }
+
+        /**
+         * Reads the number of the items that follow. Each of them takes at least a byte, so a count larger than the
+         * rest of the data can only come from a corrupted message.
+         */
+        int readCount() {
+            int count = readVarint();
+            if (count < 0 || count > data.length - position) {
+                throw new IllegalArgumentException("Invalid count in a binary inventory event: " + count);
+            }
+
+            return count;
+        }
+
+        long readVarlong() {
+            long ret = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = data[position++];
+                ret |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return ret;
+                }
+            }
+
+            throw new IllegalArgumentException("Malformed varint in a binary inventory event.");
+        }
+
+        int readByte() {
+            return data[position++];
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.bus.api;
+
+import com.google.gson.annotations.Expose;
+import org.hawkular.bus.common.BasicMessage;
+
+/**
+ * The reply to a message with inventory commands. The commands are sent as {@link InventoryEvent}s or
+ * {@link InventoryEventBatch}es describing the desired changes and are applied in order until the first one that
+ * fails.
+ *
+ * <p>The reply is sent to the reply-to destination of the command message with the JMS correlation id set to the id of
+ * the command message.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public final class CommandAcknowledgement extends BasicMessage {
+    @Expose
+    private int commandCount;
+
+    @Expose
+    private int appliedCount;
+
+    @Expose
+    private String error;
+
+    public CommandAcknowledgement() {
+    }
+
+    public CommandAcknowledgement(int commandCount, int appliedCount, String error) {
+        this.commandCount = commandCount;
+        this.appliedCount = appliedCount;
+        this.error = error;
+    }
+
+    /**
+     * @return the number of commands in the command message
+     */
+    public int getCommandCount() {
+        return commandCount;
+    }
+
+    public void setCommandCount(int commandCount) {
+        this.commandCount = commandCount;
+    }
+
+    /**
+     * @return the number of commands that were applied. If less than the {@link #getCommandCount() command count},
+     * the command at this index failed and the rest of the commands was not applied.
+     */
+    public int getAppliedCount() {
+        return appliedCount;
+    }
+
+    public void setAppliedCount(int appliedCount) {
+        this.appliedCount = appliedCount;
+    }
+
+    /**
+     * @return the description of the failure or null if all the commands were applied
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.bus.api;
+
+import com.google.gson.annotations.Expose;
+import org.hawkular.bus.common.BasicMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Several inventory events sent in a single message. The events are kept in the order they happened in.
+ *
+ * <p>Each event is wrapped in an {@link Entry} that has a field for each type of the events, so that the batch can be
+ * deserialized without any further type information.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public final class InventoryEventBatch extends BasicMessage {
+    @Expose
+    private List<Entry> events;
+
+    public InventoryEventBatch() {
+    }
+
+    public InventoryEventBatch(List<? extends InventoryEvent<?>> events) {
+        setEvents(events);
+    }
+
+    public List<InventoryEvent<?>> getEvents() {
+        if (events == null) {
+            return Collections.emptyList();
+        }
+
+        List<InventoryEvent<?>> ret = new ArrayList<>(events.size());
+        for (Entry e : events) {
+            ret.add(e.getEvent());
+        }
+
+        return ret;
+    }
+
+    public void setEvents(List<? extends InventoryEvent<?>> events) {
+        this.events = new ArrayList<>(events.size());
+        for (InventoryEvent<?> e : events) {
+            this.events.add(Entry.of(e));
+        }
+    }
+
+    public int size() {
+        return events == null ? 0 : events.size();
+    }
+
+    /**
+     * A single event in the batch. Exactly one of the fields is set.
+     */
+    public static final class Entry {
+        @Expose
+        private TenantEvent tenant;
+        @Expose
+        private EnvironmentEvent environment;
+        @Expose
+        private FeedEvent feed;
+        @Expose
+        private ResourceTypeEvent resourceType;
+        @Expose
+        private MetricTypeEvent metricType;
+        @Expose
+        private ResourceEvent resource;
+        @Expose
+        private MetricEvent metric;
+        @Expose
+        private RelationshipEvent relationship;
+
+        public static Entry of(InventoryEvent<?> event) {
+            Entry ret = new Entry();
+
+            if (event instanceof TenantEvent) {
+                ret.tenant = (TenantEvent) event;
+            } else if (event instanceof EnvironmentEvent) {
+                ret.environment = (EnvironmentEvent) event;
+            } else if (event instanceof FeedEvent) {
+                ret.feed = (FeedEvent) event;
+            } else if (event instanceof ResourceTypeEvent) {
+                ret.resourceType = (ResourceTypeEvent) event;
+            } else if (event instanceof MetricTypeEvent) {
+                ret.metricType = (MetricTypeEvent) event;
+            } else if (event instanceof ResourceEvent) {
+                ret.resource = (ResourceEvent) event;
+            } else if (event instanceof MetricEvent) {
+                ret.metric = (MetricEvent) event;
+            } else if (event instanceof RelationshipEvent) {
+                ret.relationship = (RelationshipEvent) event;
+            } else {
+                throw new IllegalArgumentException("Unsupported event type: " + event.getClass());
+            }
+
+            return ret;
+        }
+
+        public InventoryEvent<?> getEvent() {
+            if (tenant != null) {
+                return tenant;
+            } else if (environment != null) {
+                return environment;
+            } else if (feed != null) {
+                return feed;
+            } else if (resourceType != null) {
+                return resourceType;
+            } else if (metricType != null) {
+                return metricType;
+            } else if (resource != null) {
+                return resource;
+            } else if (metric != null) {
+                return metric;
+            } else {
+                return relationship;
+            }
+        }
+    }
+}
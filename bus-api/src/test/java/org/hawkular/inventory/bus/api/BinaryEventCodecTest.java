@@ -0,0 +1,316 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.bus.api;
+
+import org.hawkular.inventory.api.Action;
+import org.hawkular.inventory.api.model.AbstractElement;
+import org.hawkular.inventory.api.model.Environment;
+import org.hawkular.inventory.api.model.Feed;
+import org.hawkular.inventory.api.model.Metric;
+import org.hawkular.inventory.api.model.MetricType;
+import org.hawkular.inventory.api.model.MetricUnit;
+import org.hawkular.inventory.api.model.Relationship;
+import org.hawkular.inventory.api.model.Resource;
+import org.hawkular.inventory.api.model.ResourceType;
+import org.hawkular.inventory.api.model.Tenant;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class BinaryEventCodecTest {
+
+    private static final ResourceType RESOURCE_TYPE = new ResourceType("t", "URL", "1.0", props("k", "v"));
+    private static final MetricType METRIC_TYPE = new MetricType("t", "ResponseTime", MetricUnit.MILLI_SECOND,
+            props("k", 1));
+
+    @Test
+    public void testAllElementsRoundTrip() throws Exception {
+        List<Object> elements = Arrays.asList(
+                new Tenant("t", props("name", "Tenant")),
+                new Environment("t", "e", props("k", "v")),
+                new Feed("t", "e", "f", props("k", "v")),
+                RESOURCE_TYPE,
+                METRIC_TYPE,
+                new Resource("t", "e", "f", "r", RESOURCE_TYPE, props("k", "v")),
+                new Metric("t", "e", "f", "m", METRIC_TYPE, props("k", "v")),
+                new Relationship("rel", "defines", RESOURCE_TYPE, new Resource("t", "e", null, "r", RESOURCE_TYPE),
+                        props("k", "v")));
+
+        for (Action.Enumerated action : Arrays.asList(Action.Enumerated.CREATED, Action.Enumerated.UPDATED,
+                Action.Enumerated.DELETED, Action.Enumerated.COPIED, Action.Enumerated.REGISTERED)) {
+            for (Object element : elements) {
+                InventoryEvent<?> event = InventoryEvent.from(Action.created(), element);
+                event.setAction(action);
+
+                InventoryEvent<?> decoded = (InventoryEvent<?>) BinaryEventCodec.decode(BinaryEventCodec.encode(event));
+
+                Assert.assertSame(event.getClass(), decoded.getClass());
+                Assert.assertEquals(action, decoded.getAction());
+                assertSameElement(element, decoded.getObject());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCommitActionNotEncoded() throws Exception {
+        TenantEvent event = new TenantEvent(Action.Enumerated.COMMITTED, new Tenant("t"));
+        BinaryEventCodec.encode(event);
+    }
+
+    @Test
+    public void testNullAndEmptyStrings() throws Exception {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("", "");
+        properties.put("null", null);
+        properties.put("empty", "");
+
+        Resource resource = new Resource("t", "e", null, "", RESOURCE_TYPE, properties);
+        MetricType type = new MetricType("", "mt", null, Collections.emptyMap());
+
+        assertSameElement(resource, roundTrip(resource));
+        assertSameElement(type, roundTrip(type));
+        Assert.assertNull(((MetricType) roundTrip(type)).getUnit());
+    }
+
+    @Test
+    public void testRepeatedStringsWrittenOnce() throws Exception {
+        String longId = new String(new char[100]).replace('\0', 'x');
+
+        Environment environment = new Environment(longId, longId, props(longId, longId));
+        byte[] data = BinaryEventCodec.encode(new EnvironmentEvent(Action.Enumerated.CREATED, environment));
+
+        //the header, the kind, the action, the tag, the string with its two-byte length and its 3 back-references,
+        //the property count and the type of the value
+        Assert.assertEquals(3 + 1 + 1 + 1 + (2 + 100) + 3 + 1 + 1, data.length);
+        Assert.assertEquals(1, new String(data, StandardCharsets.UTF_8).split(longId, -1).length - 1);
+
+        assertSameElement(environment, roundTrip(environment));
+    }
+
+    @Test
+    public void testStringTableSharedByBatch() throws Exception {
+        Environment e1 = new Environment("tenant", "environment", props("k", "v"));
+        Feed f1 = new Feed("tenant", "environment", "feed", props("k", "v"));
+
+        InventoryEventBatch batch = new InventoryEventBatch(Arrays.asList(
+                new EnvironmentEvent(Action.Enumerated.CREATED, e1),
+                new FeedEvent(Action.Enumerated.UPDATED, f1),
+                new FeedEvent(Action.Enumerated.DELETED, f1)));
+
+        byte[] data = BinaryEventCodec.encode(batch);
+        Assert.assertEquals(1, new String(data, StandardCharsets.UTF_8).split("environment", -1).length - 1);
+
+        InventoryEventBatch decoded = (InventoryEventBatch) BinaryEventCodec.decode(data);
+        Assert.assertEquals(3, decoded.getEvents().size());
+
+        for (int i = 0; i < 3; ++i) {
+            InventoryEvent<?> expected = batch.getEvents().get(i);
+            InventoryEvent<?> actual = decoded.getEvents().get(i);
+
+            Assert.assertSame(expected.getClass(), actual.getClass());
+            Assert.assertEquals(expected.getAction(), actual.getAction());
+            assertSameElement(expected.getObject(), actual.getObject());
+        }
+    }
+
+    @Test
+    public void testEmptyBatch() throws Exception {
+        InventoryEventBatch decoded = (InventoryEventBatch) BinaryEventCodec.decode(
+                BinaryEventCodec.encode(new InventoryEventBatch(Collections.emptyList())));
+
+        Assert.assertTrue(decoded.getEvents().isEmpty());
+    }
+
+    @Test
+    public void testPropertyValues() throws Exception {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("true", true);
+        properties.put("false", false);
+        properties.put("int", -42);
+        properties.put("minInt", Integer.MIN_VALUE);
+        properties.put("maxInt", Integer.MAX_VALUE);
+        properties.put("long", -1L);
+        properties.put("minLong", Long.MIN_VALUE);
+        properties.put("maxLong", Long.MAX_VALUE);
+        properties.put("double", -0.5d);
+        properties.put("nan", Double.NaN);
+        properties.put("unicode", "žluťoučký kůň 🐎");
+        properties.put("list", Arrays.asList(1, "a", null, Arrays.asList(2L, props("k", "v"))));
+        properties.put("map", props("nested", props("list", Collections.emptyList())));
+
+        Tenant tenant = new Tenant("t", properties);
+
+        Assert.assertEquals(properties, roundTrip(tenant).getProperties());
+    }
+
+    @Test
+    public void testNarrowNumbersAndOtherValuesWidened() throws Exception {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("short", (short) -3);
+        properties.put("byte", (byte) 3);
+        properties.put("float", 0.5f);
+        properties.put("unit", MetricUnit.BYTE);
+
+        Map<String, Object> decoded = roundTrip(new Tenant("t", properties)).getProperties();
+
+        Assert.assertEquals(-3, decoded.get("short"));
+        Assert.assertEquals(3, decoded.get("byte"));
+        Assert.assertEquals(0.5d, decoded.get("float"));
+        Assert.assertEquals("BYTE", decoded.get("unit"));
+    }
+
+    @Test
+    public void testTruncatedInputRejected() throws Exception {
+        InventoryEventBatch batch = new InventoryEventBatch(Arrays.asList(
+                new ResourceEvent(Action.Enumerated.CREATED, new Resource("t", "e", "f", "r", RESOURCE_TYPE,
+                        props("list", Arrays.asList(1L, 2.5d)))),
+                new MetricEvent(Action.Enumerated.DELETED, new Metric("t", "e", "f", "m", METRIC_TYPE))));
+
+        byte[] data = BinaryEventCodec.encode(batch);
+
+        for (int length = 0; length < data.length; ++length) {
+            try {
+                BinaryEventCodec.decode(Arrays.copyOf(data, length));
+                Assert.fail("Decoding of the data truncated to " + length + " bytes should have failed.");
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+        }
+    }
+
+    @Test
+    public void testForeignInputRejected() throws Exception {
+        assertRejected("{\"action\":\"CREATED\"}".getBytes(StandardCharsets.UTF_8));
+
+        //unsupported version
+        assertRejected(new byte[]{'H', 'I', 2, 1, 0, 0});
+
+        //unknown kind of message
+        assertRejected(new byte[]{'H', 'I', 1, 3});
+
+        //unknown action
+        assertRejected(new byte[]{'H', 'I', 1, 1, 5, 1, 2, 't', 0});
+
+        //no entity
+        assertRejected(new byte[]{'H', 'I', 1, 1, 0, 0});
+
+        //unknown element
+        assertRejected(new byte[]{'H', 'I', 1, 1, 0, 9});
+
+        //back-reference to a string that was not seen
+        assertRejected(new byte[]{'H', 'I', 1, 1, 0, 1, 3, 0});
+
+        //a resource with a tenant in place of its type
+        assertRejected(new byte[]{'H', 'I', 1, 1, 0, 6, 4, 't', 1, 1, 1, 1, 1, 1, 0, 0});
+
+        //batch with more events than bytes
+        assertRejected(new byte[]{'H', 'I', 1, 2, 100, 0});
+
+        //negative count of properties
+        assertRejected(new byte[]{'H', 'I', 1, 1, 0, 1, 4, 't', (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                0x0F});
+
+        //string longer than the data
+        assertRejected(new byte[]{'H', 'I', 1, 1, 0, 1, 100, 't', 0});
+
+        //varint without an end
+        byte[] varint = new byte[20];
+        Arrays.fill(varint, (byte) 0xFF);
+        varint[0] = 'H';
+        varint[1] = 'I';
+        varint[2] = 1;
+        varint[3] = 2;
+        assertRejected(varint);
+    }
+
+    private static void assertRejected(byte[] data) {
+        try {
+            BinaryEventCodec.decode(data);
+            Assert.fail("Decoding of " + Arrays.toString(data) + " should have failed.");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends AbstractElement<?, ?>> T roundTrip(T element) {
+        InventoryEvent<?> event = InventoryEvent.from(Action.created(), element);
+        return (T) ((InventoryEvent<?>) BinaryEventCodec.decode(BinaryEventCodec.encode(event))).getObject();
+    }
+
+    private static void assertSameElement(Object expected, Object actual) {
+        Assert.assertEquals(describe(expected), describe(actual));
+    }
+
+    /**
+     * The equality of the elements only considers their ids, so we compare their full descriptions instead.
+     */
+    private static String describe(Object element) {
+        if (element == null) {
+            return "null";
+        }
+
+        StringBuilder bld = new StringBuilder(element.getClass().getSimpleName()).append("[");
+
+        if (element instanceof Relationship) {
+            Relationship rel = (Relationship) element;
+            bld.append(rel.getId()).append(", ").append(rel.getName()).append(", ").append(describe(rel.getSource()))
+                    .append(", ").append(describe(rel.getTarget()));
+        } else if (element instanceof Tenant) {
+            bld.append(((Tenant) element).getId());
+        } else if (element instanceof Environment) {
+            Environment e = (Environment) element;
+            bld.append(e.getTenantId()).append(", ").append(e.getId());
+        } else if (element instanceof Feed) {
+            Feed f = (Feed) element;
+            bld.append(f.getTenantId()).append(", ").append(f.getEnvironmentId()).append(", ").append(f.getId());
+        } else if (element instanceof ResourceType) {
+            ResourceType t = (ResourceType) element;
+            bld.append(t.getTenantId()).append(", ").append(t.getId()).append(", ").append(t.getVersion());
+        } else if (element instanceof MetricType) {
+            MetricType t = (MetricType) element;
+            bld.append(t.getTenantId()).append(", ").append(t.getId()).append(", ").append(t.getUnit());
+        } else if (element instanceof Resource) {
+            Resource r = (Resource) element;
+            bld.append(r.getTenantId()).append(", ").append(r.getEnvironmentId()).append(", ").append(r.getFeedId())
+                    .append(", ").append(r.getId()).append(", ").append(describe(r.getType()));
+        } else if (element instanceof Metric) {
+            Metric m = (Metric) element;
+            bld.append(m.getTenantId()).append(", ").append(m.getEnvironmentId()).append(", ").append(m.getFeedId())
+                    .append(", ").append(m.getId()).append(", ").append(describe(m.getType()));
+        }
+
+        return bld.append(", ").append(new java.util.TreeMap<>(((AbstractElement<?, ?>) element).getProperties()))
+                .append("]").toString();
+    }
+
+    private static Map<String, Object> props(String key, Object value) {
+        Map<String, Object> ret = new HashMap<>();
+        ret.put(key, value);
+        return ret;
+    }
+}
@@ -18,8 +18,10 @@ package org.hawkular.inventory.bus;
 
 import org.hawkular.bus.common.ConnectionContextFactory;
 import org.hawkular.bus.common.Endpoint;
+import org.hawkular.bus.common.consumer.ConsumerConnectionContext;
 import org.hawkular.bus.common.producer.ProducerConnectionContext;
 import org.hawkular.inventory.api.Action;
+import org.hawkular.inventory.api.Delivery;
 import org.hawkular.inventory.api.Interest;
 import org.hawkular.inventory.api.Inventory;
 import org.hawkular.inventory.api.PartiallyApplied;
@@ -40,27 +42,56 @@ import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 /**
  * @author Lukas Krejci
  * @since 0.0.1
  */
 public final class BusIntegration {
+    /**
+     * How long to wait for the pending events to be sent when stopping.
+     */
+    private static final long CLOSE_TIMEOUT = 10000;
 
     private final Inventory.Mixin.Observable inventory;
+    private final Delivery delivery;
     private MessageSender messageSender;
+    private EventCoalescer coalescer;
+    private ConsumerConnectionContext commandsConnectionContext;
     private final Set<Subscription> subscriptions = new HashSet<>();
     private Configuration configuration;
+    private CommandAuthorizer commandAuthorizer;
     private InitialContext namingContext;
 
     public BusIntegration(Inventory.Mixin.Observable inventory) {
+        this(inventory, Delivery.synchronous());
+    }
+
+    /**
+     * @param inventory the inventory to send the changes of
+     * @param delivery  how to deliver the changes to the sender, which can be asynchronous because the bus messages
+     *                  are sent in the background anyway
+     */
+    public BusIntegration(Inventory.Mixin.Observable inventory, Delivery delivery) {
         this.inventory = inventory;
+        this.delivery = delivery;
     }
 
     public void configure(Configuration configuration) {
         this.configuration = configuration;
     }
 
+    /**
+     * The commands received from the {@link Configuration#getInventoryCommandsQueueName() inventory commands queue}
+     * are only accepted if there is an authorizer to check them.
+     *
+     * @param authorizer the authorizer of the inventory commands
+     */
+    public void authorizeCommands(CommandAuthorizer authorizer) {
+        this.commandAuthorizer = authorizer;
+    }
+
     public void start() throws NamingException, JMSException {
         if (namingContext != null) {
             return;
@@ -75,26 +106,67 @@ public final class BusIntegration {
 
         ProducerConnectionContext pcc = ccf.createProducerConnectionContext(new Endpoint(Endpoint.Type.TOPIC,
                 configuration.getInventoryChangesTopicName()));
-        this.messageSender = new MessageSender(pcc);
+        this.messageSender = new MessageSender(pcc, configuration);
+        if (configuration.getCoalescingWindow() > 0) {
+            this.coalescer = new EventCoalescer(messageSender::send, configuration.getCoalescingWindow());
+        }
 
         install();
+
+        if (configuration.getInventoryCommandsQueueName() != null) {
+            if (commandAuthorizer == null) {
+                Log.LOG.noCommandAuthorizer(configuration.getInventoryCommandsQueueName());
+            } else {
+                commandsConnectionContext = ccf.createConsumerConnectionContext(new Endpoint(Endpoint.Type.QUEUE,
+                        configuration.getInventoryCommandsQueueName()));
+                commandsConnectionContext.getMessageConsumer().setMessageListener(new CommandProcessor(inventory,
+                        commandsConnectionContext.getSession(), commandAuthorizer));
+            }
+        }
     }
 
     public void stop() throws NamingException {
+        if (commandsConnectionContext != null) {
+            try {
+                commandsConnectionContext.getMessageConsumer().close();
+            } catch (JMSException e) {
+                Log.LOG.debugf(e, "Failed to close the consumer of the inventory commands.");
+            }
+            commandsConnectionContext = null;
+        }
+
         uninstall();
+        if (coalescer != null) {
+            try {
+                coalescer.close(CLOSE_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            coalescer = null;
+        }
+        if (messageSender != null) {
+            try {
+                messageSender.close(CLOSE_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            messageSender = null;
+        }
         namingContext.close();
         namingContext = null;
     }
 
     private void install() {
-        install(inventory, subscriptions, Tenant.class, messageSender);
-        install(inventory, subscriptions, ResourceType.class, messageSender);
-        install(inventory, subscriptions, MetricType.class, messageSender);
-        install(inventory, subscriptions, Environment.class, messageSender, Action.copied());
-        install(inventory, subscriptions, Feed.class, messageSender, Action.registered());
-        install(inventory, subscriptions, Resource.class, messageSender);
-        install(inventory, subscriptions, Metric.class, messageSender);
-        install(inventory, subscriptions, Relationship.class, messageSender);
+        BiConsumer<Interest<?, ?>, Object> sender = coalescer == null ? messageSender::send : coalescer::send;
+
+        install(inventory, delivery, subscriptions, Tenant.class, sender);
+        install(inventory, delivery, subscriptions, ResourceType.class, sender);
+        install(inventory, delivery, subscriptions, MetricType.class, sender);
+        install(inventory, delivery, subscriptions, Environment.class, sender, Action.copied());
+        install(inventory, delivery, subscriptions, Feed.class, sender, Action.registered());
+        install(inventory, delivery, subscriptions, Resource.class, sender);
+        install(inventory, delivery, subscriptions, Metric.class, sender);
+        install(inventory, delivery, subscriptions, Relationship.class, sender);
     }
 
     private void uninstall() {
@@ -102,23 +174,24 @@ public final class BusIntegration {
     }
 
     private static <U extends AbstractElement.Update, T extends AbstractElement<?, U>>
-    void install(Inventory.Mixin.Observable inventory, Set<Subscription> subscriptions, Class<T> entityClass,
-            MessageSender sender, Action<?, T>... additionalActions) {
+    void install(Inventory.Mixin.Observable inventory, Delivery delivery, Set<Subscription> subscriptions,
+            Class<T> entityClass, BiConsumer<Interest<?, ?>, Object> sender, Action<?, T>... additionalActions) {
 
-        installAction(inventory, subscriptions, entityClass, sender, Action.created());
-        installAction(inventory, subscriptions, entityClass, sender, Action.updated());
-        installAction(inventory, subscriptions, entityClass, sender, Action.deleted());
+        installAction(inventory, delivery, subscriptions, entityClass, sender, Action.created());
+        installAction(inventory, delivery, subscriptions, entityClass, sender, Action.updated());
+        installAction(inventory, delivery, subscriptions, entityClass, sender, Action.deleted());
         for (Action<?, T> a : additionalActions) {
-            installAction(inventory, subscriptions, entityClass, sender, a);
+            installAction(inventory, delivery, subscriptions, entityClass, sender, a);
         }
     }
 
-    private static <C, T> void installAction(Inventory.Mixin.Observable inventory, Set<Subscription> subscriptions,
-            Class<T> entityClass, MessageSender sender, Action<C, T> action) {
+    private static <C, T> void installAction(Inventory.Mixin.Observable inventory, Delivery delivery,
+            Set<Subscription> subscriptions, Class<T> entityClass, BiConsumer<Interest<?, ?>, Object> sender,
+            Action<C, T> action) {
 
         Interest<C, T> interest = Interest.in(entityClass).being(action);
 
-        Subscription s = inventory.observable(interest).subscribe(PartiallyApplied.method(sender::send)
+        Subscription s = inventory.observable(interest, delivery).subscribe(PartiallyApplied.method(sender)
                 .first(interest));
         subscriptions.add(s);
     }
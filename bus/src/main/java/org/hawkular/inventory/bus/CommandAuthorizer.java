@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.bus;
+
+import org.hawkular.inventory.bus.api.InventoryEvent;
+
+/**
+ * Decides whether an inventory command received from the bus can be applied.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+@FunctionalInterface
+public interface CommandAuthorizer {
+
+    /**
+     * @param user    the authenticated user that sent the command, as reported by the broker in the
+     *                {@code JMSXUserID} property of the message
+     * @param command the command to apply
+     * @return true if the user is allowed to apply the command, false otherwise
+     */
+    boolean isAllowed(String user, InventoryEvent<?> command);
+
+    /**
+     * Applies an allowed command on behalf of the user, so that the changes it makes can be attributed to the user
+     * (e.g. the entities it creates can be owned by them). The default implementation just applies the command.
+     *
+     * @param user    the authenticated user that sent the command
+     * @param command applies the command to the inventory
+     */
+    default void applyOnBehalfOf(String user, Runnable command) {
+        command.run();
+    }
+}
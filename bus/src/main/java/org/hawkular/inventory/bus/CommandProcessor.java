@@ -0,0 +1,300 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.bus;
+
+import org.hawkular.bus.common.BasicMessage;
+import org.hawkular.inventory.api.Action;
+import org.hawkular.inventory.api.Environments;
+import org.hawkular.inventory.api.Inventory;
+import org.hawkular.inventory.api.Relatable;
+import org.hawkular.inventory.api.Relationships;
+import org.hawkular.inventory.api.ResolvableToSingle;
+import org.hawkular.inventory.api.WriteInterface;
+import org.hawkular.inventory.api.model.AbstractElement;
+import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.api.model.EntityVisitor;
+import org.hawkular.inventory.api.model.Environment;
+import org.hawkular.inventory.api.model.Feed;
+import org.hawkular.inventory.api.model.Metric;
+import org.hawkular.inventory.api.model.MetricType;
+import org.hawkular.inventory.api.model.Relationship;
+import org.hawkular.inventory.api.model.Resource;
+import org.hawkular.inventory.api.model.ResourceType;
+import org.hawkular.inventory.api.model.Tenant;
+import org.hawkular.inventory.bus.api.BinaryEventCodec;
+import org.hawkular.inventory.bus.api.CommandAcknowledgement;
+import org.hawkular.inventory.bus.api.InventoryEvent;
+import org.hawkular.inventory.bus.api.InventoryEventBatch;
+
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.hawkular.inventory.bus.Log.LOG;
+
+/**
+ * Applies the inventory commands received from the bus.
+ *
+ * <p>The commands reuse the event model - each command is an {@link InventoryEvent} with the created, updated or
+ * deleted action and the entity or relationship in its desired state. A message carries an
+ * {@link InventoryEventBatch} of commands, either in JSON or in the {@link BinaryEventCodec binary encoding} (in which
+ * case a single event is also accepted). The commands of a message are applied in order until the first failure and
+ * the outcome is sent as a {@link CommandAcknowledgement} to the reply-to destination of the message, if it has one.
+ *
+ * <p>Each command is checked by the {@link CommandAuthorizer} on behalf of the user that sent the message and then
+ * applied on behalf of them. The user is taken from the {@code JMSXUserID} property, which the broker must be
+ * configured to fill in with the authenticated user (e.g. using the {@code populate-validated-user} setting of
+ * HornetQ). The messages without it are rejected.
+ *
+ * <p>The processor only uses the JMS API and the inventory, so that it can be tested with any (e.g. an embedded
+ * in-VM) broker and inventory implementation. It uses the provided session to send the replies and therefore needs to
+ * be the listener of a consumer created by the same session.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+final class CommandProcessor implements MessageListener {
+    /**
+     * The JMS-defined property with the id of the user that sent the message.
+     */
+    static final String USER_ID_PROPERTY = "JMSXUserID";
+
+    private final Inventory inventory;
+    private final Session session;
+    private final CommandAuthorizer authorizer;
+    private MessageProducer replyProducer;
+
+    CommandProcessor(Inventory inventory, Session session, CommandAuthorizer authorizer) {
+        this.inventory = inventory;
+        this.session = session;
+        this.authorizer = authorizer;
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        List<InventoryEvent<?>> commands;
+        String user;
+        try {
+            user = message.getStringProperty(USER_ID_PROPERTY);
+            commands = decode(message);
+        } catch (JMSException | RuntimeException e) {
+            LOG.failedToProcessCommands(e);
+            reply(message, new CommandAcknowledgement(0, 0, "Failed to decode the commands: " + e.getMessage()));
+            return;
+        }
+
+        if (user == null) {
+            reply(message, new CommandAcknowledgement(commands.size(), 0, "The sender of the commands is not known."));
+            return;
+        }
+
+        int applied = 0;
+        String error = null;
+        for (InventoryEvent<?> c : commands) {
+            if (!authorizer.isAllowed(user, c)) {
+                error = "User " + user + " is not allowed to apply the command #" + applied + ".";
+                break;
+            }
+
+            try {
+                authorizer.applyOnBehalfOf(user, () -> apply(c));
+                ++applied;
+            } catch (RuntimeException e) {
+                error = e.toString();
+                break;
+            }
+        }
+
+        reply(message, new CommandAcknowledgement(commands.size(), applied, error));
+    }
+
+    /**
+     * Applies a single command to the inventory.
+     *
+     * @param command the event describing the change to make
+     * @throws IllegalArgumentException if the command is not supported
+     */
+    void apply(InventoryEvent<?> command) {
+        Action.Enumerated action = command.getAction();
+        Object element = command.getObject();
+
+        if (element instanceof Relationship) {
+            apply(action, (Relationship) element);
+        } else if (element instanceof Entity) {
+            ((Entity<?, ?>) element).accept(new EntityCommand(), action);
+        } else {
+            throw new IllegalArgumentException("Command without an entity or relationship.");
+        }
+    }
+
+    private static List<InventoryEvent<?>> decode(Message message) throws JMSException {
+        if (message instanceof BytesMessage) {
+            if (!BinaryEventCodec.BINARY_ENCODING.equals(
+                    message.getStringProperty(BinaryEventCodec.ENCODING_HEADER))) {
+                throw new IllegalArgumentException("Unknown encoding of the bytes message.");
+            }
+
+            BytesMessage bm = (BytesMessage) message;
+            byte[] data = new byte[(int) bm.getBodyLength()];
+            bm.readBytes(data);
+
+            BasicMessage decoded = BinaryEventCodec.decode(data);
+            if (decoded instanceof InventoryEventBatch) {
+                return ((InventoryEventBatch) decoded).getEvents();
+            } else {
+                return Collections.singletonList((InventoryEvent<?>) decoded);
+            }
+        } else if (message instanceof TextMessage) {
+            return BasicMessage.fromJSON(((TextMessage) message).getText(), InventoryEventBatch.class).getEvents();
+        } else {
+            throw new IllegalArgumentException("Unsupported message type: " + message.getClass());
+        }
+    }
+
+    private void reply(Message command, CommandAcknowledgement ack) {
+        try {
+            Destination replyTo = command.getJMSReplyTo();
+            if (replyTo == null) {
+                return;
+            }
+
+            if (replyProducer == null) {
+                replyProducer = session.createProducer(null);
+            }
+
+            TextMessage reply = session.createTextMessage(ack.toJSON());
+            reply.setJMSCorrelationID(command.getJMSMessageID());
+            replyProducer.send(replyTo, reply);
+        } catch (JMSException e) {
+            LOG.failedToProcessCommands(e);
+        }
+    }
+
+    private void apply(Action.Enumerated action, Relationship rel) {
+        @SuppressWarnings("unchecked")
+        Relatable<Relationships.ReadWrite> source = (Relatable<Relationships.ReadWrite>) inventory.inspect(
+                rel.getSource(), ResolvableToSingle.class);
+
+        switch (action) {
+            case CREATED:
+                Map<String, String> properties = new HashMap<>();
+                rel.getProperties().forEach((k, v) -> properties.put(k, String.valueOf(v)));
+                source.relationships(Relationships.Direction.outgoing).linkWith(rel.getName(), rel.getTarget(),
+                        properties);
+                break;
+            case UPDATED:
+                source.relationships(Relationships.Direction.outgoing).update(rel.getId(),
+                        new Relationship.Update(rel.getProperties()));
+                break;
+            case DELETED:
+                source.relationships(Relationships.Direction.outgoing).delete(rel.getId());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported command: " + action);
+        }
+    }
+
+    private static <U extends AbstractElement.Update, B extends Entity.Blueprint> void apply(Action.Enumerated action,
+            WriteInterface<U, B, ?> target, String id, Supplier<B> blueprint, Supplier<U> update) {
+        switch (action) {
+            case CREATED:
+                target.create(blueprint.get());
+                break;
+            case UPDATED:
+                target.update(id, update.get());
+                break;
+            case DELETED:
+                target.delete(id);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported command: " + action);
+        }
+    }
+
+    private final class EntityCommand implements EntityVisitor<Void, Action.Enumerated> {
+        @Override
+        public Void visitTenant(Tenant t, Action.Enumerated action) {
+            apply(action, inventory.tenants(), t.getId(), () -> new Tenant.Blueprint(t.getId(), t.getProperties()),
+                    () -> new Tenant.Update(t.getProperties()));
+            return null;
+        }
+
+        @Override
+        public Void visitEnvironment(Environment e, Action.Enumerated action) {
+            apply(action, inventory.tenants().get(e.getTenantId()).environments(), e.getId(),
+                    () -> new Environment.Blueprint(e.getId(), e.getProperties()),
+                    () -> new Environment.Update(e.getProperties()));
+            return null;
+        }
+
+        @Override
+        public Void visitFeed(Feed f, Action.Enumerated action) {
+            apply(action, inventory.tenants().get(f.getTenantId()).environments().get(f.getEnvironmentId()).feeds(),
+                    f.getId(), () -> new Feed.Blueprint(f.getId(), f.getProperties()),
+                    () -> new Feed.Update(f.getProperties()));
+            return null;
+        }
+
+        @Override
+        public Void visitMetric(Metric m, Action.Enumerated action) {
+            Environments.Single env = inventory.tenants().get(m.getTenantId()).environments()
+                    .get(m.getEnvironmentId());
+            apply(action, m.getFeedId() == null ? env.feedlessMetrics() : env.feeds().get(m.getFeedId()).metrics(),
+                    m.getId(),
+                    () -> new Metric.Blueprint(m.getType().getId(), m.getId(), m.getProperties()),
+                    () -> new Metric.Update(m.getProperties()));
+            return null;
+        }
+
+        @Override
+        public Void visitMetricType(MetricType t, Action.Enumerated action) {
+            apply(action, inventory.tenants().get(t.getTenantId()).metricTypes(), t.getId(),
+                    () -> new MetricType.Blueprint(t.getId(), t.getUnit(), t.getProperties()),
+                    () -> new MetricType.Update(t.getProperties(), t.getUnit()));
+            return null;
+        }
+
+        @Override
+        public Void visitResource(Resource r, Action.Enumerated action) {
+            Environments.Single env = inventory.tenants().get(r.getTenantId()).environments()
+                    .get(r.getEnvironmentId());
+            apply(action, r.getFeedId() == null ? env.feedlessResources()
+                    : env.feeds().get(r.getFeedId()).resources(), r.getId(),
+                    () -> new Resource.Blueprint(r.getId(), r.getType().getId(), r.getProperties()),
+                    () -> new Resource.Update(r.getProperties()));
+            return null;
+        }
+
+        @Override
+        public Void visitResourceType(ResourceType t, Action.Enumerated action) {
+            apply(action, inventory.tenants().get(t.getTenantId()).resourceTypes(), t.getId(),
+                    () -> new ResourceType.Blueprint(t.getId(), t.getVersion(), t.getProperties()),
+                    () -> new ResourceType.Update(t.getProperties(), t.getVersion()));
+            return null;
+        }
+    }
+}
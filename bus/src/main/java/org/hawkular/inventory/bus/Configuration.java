@@ -16,6 +16,7 @@
  */
 package org.hawkular.inventory.bus;
 
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
@@ -32,6 +33,14 @@ public final class Configuration {
 
     private final String connectionFactoryJndiName;
     private final String entityChangesTopicName;
+    private final int batchSize;
+    private final long batchLinger;
+    private final int queueSize;
+    private final String journalDirectory;
+    private final long maxRetryBackoff;
+    private final long coalescingWindow;
+    private final boolean binaryEncoding;
+    private final String inventoryCommandsQueueName;
 
     public static Configuration fromProperties(Properties properties) {
         Map<String, String> map = new HashMap<>();
@@ -41,6 +50,22 @@ public final class Configuration {
         return fromMap(map);
     }
 
+    /**
+     * @return the configuration with the values of the properties that are set as system properties and defaults for
+     * the rest
+     */
+    public static Configuration fromSystemProperties() {
+        EnumMap<Property, String> map = new EnumMap<>(Property.class);
+        for (Property p : Property.values()) {
+            String value = System.getProperty(p.getPropertyName());
+            if (value != null) {
+                map.put(p, value);
+            }
+        }
+
+        return fromEnumMap(map);
+    }
+
     public static Configuration fromMap(Map<String, String> map) {
         for (Map.Entry<String, String> e : map.entrySet()) {
             if (!Property.isValid(e.getKey())) {
@@ -57,6 +82,14 @@ public final class Configuration {
     public static Configuration fromEnumMap(Map<Property, String> map) {
         String connectionFactoryJndiName = null;
         String entityChangesTopicName = null;
+        int batchSize = 1;
+        long batchLinger = 0;
+        int queueSize = 0;
+        String journalDirectory = null;
+        long maxRetryBackoff = 0;
+        long coalescingWindow = 0;
+        boolean binaryEncoding = false;
+        String inventoryCommandsQueueName = null;
 
         for (Property p : Property.values()) {
             String value = map.get(p);
@@ -71,10 +104,39 @@ public final class Configuration {
                 case INVENTORY_CHANGES_TOPIC_NAME:
                     entityChangesTopicName = value;
                     break;
+                case BATCH_SIZE:
+                    batchSize = Integer.parseInt(value);
+                    break;
+                case BATCH_LINGER:
+                    batchLinger = Long.parseLong(value);
+                    break;
+                case QUEUE_SIZE:
+                    queueSize = Integer.parseInt(value);
+                    break;
+                case JOURNAL_DIRECTORY:
+                    journalDirectory = value;
+                    break;
+                case MAX_RETRY_BACKOFF:
+                    maxRetryBackoff = Long.parseLong(value);
+                    break;
+                case COALESCING_WINDOW:
+                    coalescingWindow = Long.parseLong(value);
+                    break;
+                case ENCODING:
+                    if ("binary".equals(value)) {
+                        binaryEncoding = true;
+                    } else if (!"json".equals(value)) {
+                        throw new IllegalArgumentException("Unknown encoding of the bus messages: " + value);
+                    }
+                    break;
+                case INVENTORY_COMMANDS_QUEUE_NAME:
+                    inventoryCommandsQueueName = value == null || value.isEmpty() ? null : value;
+                    break;
             }
         }
 
-        return new Configuration(connectionFactoryJndiName, entityChangesTopicName);
+        return new Configuration(connectionFactoryJndiName, entityChangesTopicName, batchSize, batchLinger, queueSize,
+                journalDirectory, maxRetryBackoff, coalescingWindow, binaryEncoding, inventoryCommandsQueueName);
     }
 
     public static Configuration getDefaultConfiguration() {
@@ -85,9 +147,19 @@ public final class Configuration {
         return new Builder();
     }
 
-    private Configuration(String connectionFactoryJndiName, String entityChangesTopicName) {
+    private Configuration(String connectionFactoryJndiName, String entityChangesTopicName, int batchSize,
+            long batchLinger, int queueSize, String journalDirectory, long maxRetryBackoff, long coalescingWindow,
+            boolean binaryEncoding, String inventoryCommandsQueueName) {
         this.connectionFactoryJndiName = connectionFactoryJndiName;
         this.entityChangesTopicName = entityChangesTopicName;
+        this.batchSize = batchSize;
+        this.batchLinger = batchLinger;
+        this.queueSize = queueSize;
+        this.journalDirectory = journalDirectory;
+        this.maxRetryBackoff = maxRetryBackoff;
+        this.coalescingWindow = coalescingWindow;
+        this.binaryEncoding = binaryEncoding;
+        this.inventoryCommandsQueueName = inventoryCommandsQueueName;
     }
 
     public String getConnectionFactoryJndiName() {
@@ -98,6 +170,67 @@ public final class Configuration {
         return entityChangesTopicName;
     }
 
+    /**
+     * @return the maximum number of events sent in a single message. 1 means that each event is sent in its own message
+     * without batching.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the maximum number of milliseconds an event waits for more events to be sent together with it
+     */
+    public long getBatchLinger() {
+        return batchLinger;
+    }
+
+    /**
+     * @return the maximum number of events kept in memory while waiting to be sent. The events that don't fit are
+     * written to the journal.
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @return the directory of the journal of the events that could not be sent yet
+     */
+    public String getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    /**
+     * @return the maximum number of milliseconds to wait before retrying to send a message that failed to be sent
+     */
+    public long getMaxRetryBackoff() {
+        return maxRetryBackoff;
+    }
+
+    /**
+     * @return the number of milliseconds for which the events are collected so that the events of the same entity can
+     * be merged together. 0 means that the events are not merged.
+     */
+    public long getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
+    /**
+     * @return true if the messages should be sent in the
+     * {@link org.hawkular.inventory.bus.api.BinaryEventCodec binary encoding}, false if in JSON
+     */
+    public boolean isBinaryEncoding() {
+        return binaryEncoding;
+    }
+
+    /**
+     * @return the name of the queue to receive the inventory commands from or null if the commands should not be
+     * received
+     */
+    public String getInventoryCommandsQueueName() {
+        return inventoryCommandsQueueName;
+    }
+
     public Builder modify() {
         EnumMap<Property, String> m = new EnumMap<>(Property.class);
         toMap().forEach((k, v) -> m.put(Property.valueOf(k), v));
@@ -110,6 +243,15 @@ public final class Configuration {
 
         ret.put(Property.CONNECTION_FACTORY_JNDI_NAME.propertyName, connectionFactoryJndiName);
         ret.put(Property.INVENTORY_CHANGES_TOPIC_NAME.propertyName, entityChangesTopicName);
+        ret.put(Property.BATCH_SIZE.propertyName, Integer.toString(batchSize));
+        ret.put(Property.BATCH_LINGER.propertyName, Long.toString(batchLinger));
+        ret.put(Property.QUEUE_SIZE.propertyName, Integer.toString(queueSize));
+        ret.put(Property.JOURNAL_DIRECTORY.propertyName, journalDirectory);
+        ret.put(Property.MAX_RETRY_BACKOFF.propertyName, Long.toString(maxRetryBackoff));
+        ret.put(Property.COALESCING_WINDOW.propertyName, Long.toString(coalescingWindow));
+        ret.put(Property.ENCODING.propertyName, binaryEncoding ? "binary" : "json");
+        ret.put(Property.INVENTORY_COMMANDS_QUEUE_NAME.propertyName,
+                inventoryCommandsQueueName == null ? "" : inventoryCommandsQueueName);
 
         return ret;
     }
@@ -118,7 +260,16 @@ public final class Configuration {
         CONNECTION_FACTORY_JNDI_NAME("java:/HawkularBusConnectionFactory",
                 "hawkular.inventory.bus.connectionFactoryJndiName"),
         INVENTORY_CHANGES_TOPIC_NAME("java:/topic/HawkularInventoryChanges",
-                "hawkular.inventory.bus.inventoryChangesTopicName");
+                "hawkular.inventory.bus.inventoryChangesTopicName"),
+        BATCH_SIZE("1", "hawkular.inventory.bus.batchSize"),
+        BATCH_LINGER("100", "hawkular.inventory.bus.batchLinger"),
+        QUEUE_SIZE("10000", "hawkular.inventory.bus.queueSize"),
+        JOURNAL_DIRECTORY(Paths.get(System.getProperty("jboss.server.data.dir", System.getProperty("java.io.tmpdir")),
+                "hawkular-inventory-bus-journal").toString(), "hawkular.inventory.bus.journalDirectory"),
+        MAX_RETRY_BACKOFF("30000", "hawkular.inventory.bus.maxRetryBackoff"),
+        COALESCING_WINDOW("0", "hawkular.inventory.bus.coalescingWindow"),
+        ENCODING("json", "hawkular.inventory.bus.encoding"),
+        INVENTORY_COMMANDS_QUEUE_NAME("", "hawkular.inventory.bus.inventoryCommandsQueueName");
 
         private final String defaultValue;
         private final String propertyName;
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.bus;
+
+import org.hawkular.inventory.api.Action;
+import org.hawkular.inventory.api.Interest;
+import org.hawkular.inventory.api.model.AbstractElement;
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.api.model.Relationship;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects the inventory events for a time window and merges the events of the same entity (identified by its
+ * canonical path) or relationship (identified by its id) before passing them on:
+ * <ul>
+ *     <li>a creation followed by updates becomes a creation of the entity in its final state,
+ *     <li>several updates become the last update,
+ *     <li>a creation followed by a deletion cancels out, together with the events of everything created under
+ *     the entity and the relationships of the entity in the meantime (the inventory doesn't report the deletion of
+ *     the contained elements, so these would otherwise never be reported as gone),
+ *     <li>an update followed by a deletion becomes the deletion.
+ * </ul>
+ *
+ * <p>The window starts with the first event after the previous window was flushed. The events are passed on in the
+ * order of the first event of each entity in the window, except for the deletions, which are passed on in the order
+ * they happened, so that they never precede the events that happened before them.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+final class EventCoalescer {
+    private final BiConsumer<Interest<?, ?>, Object> target;
+    private final long window;
+    private final ScheduledThreadPoolExecutor timer;
+
+    private List<Pending> order = new ArrayList<>();
+
+    /**
+     * The last pending event of each entity, the one the new events are merged into.
+     */
+    private Map<String, Pending> latest = new HashMap<>();
+
+    EventCoalescer(BiConsumer<Interest<?, ?>, Object> target, long window) {
+        this.target = target;
+        this.window = window;
+        this.timer = new ScheduledThreadPoolExecutor(1, (r) -> {
+            Thread t = new Thread(r, "hawkular-inventory-bus-coalescer");
+            t.setDaemon(true);
+            return t;
+        });
+
+        //the pending events are flushed by close() instead
+        this.timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public synchronized void send(Interest<?, ?> interest, Object inventoryEvent) {
+        if (order.isEmpty()) {
+            timer.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+        }
+
+        String key = keyOf(inventoryEvent);
+        Pending previous = key == null ? null : latest.get(key);
+        Action.Enumerated action = interest.getAction().asEnum();
+
+        if (previous != null) {
+            Action.Enumerated previousAction = previous.interest.getAction().asEnum();
+
+            switch (action) {
+                case UPDATED:
+                    if (previousAction == Action.Enumerated.CREATED) {
+                        previous.event = updatedEntity((Action.Update<?, ?>) inventoryEvent);
+                        return;
+                    } else if (previousAction == Action.Enumerated.UPDATED) {
+                        previous.event = inventoryEvent;
+                        return;
+                    }
+                    break;
+                case DELETED:
+                    if (previousAction == Action.Enumerated.CREATED) {
+                        cancel(previous);
+                        return;
+                    } else if (previousAction == Action.Enumerated.UPDATED) {
+                        previous.cancelled = true;
+                    }
+                    break;
+            }
+        }
+
+        Pending p = new Pending(interest, inventoryEvent);
+        order.add(p);
+        if (key != null) {
+            latest.put(key, p);
+        }
+    }
+
+    /**
+     * Cancels the creation of an element and all the later pending events of the elements under it (or of the
+     * relationships from or to them, if the creation is of an entity).
+     */
+    private void cancel(Pending creation) {
+        CanonicalPath path = creation.event instanceof Entity ? CanonicalPath.of((Entity<?, ?>) creation.event) : null;
+
+        for (int i = order.indexOf(creation); i < order.size(); ++i) {
+            Pending p = order.get(i);
+            if (!p.cancelled && (p == creation || (path != null && touches(p.event, path)))) {
+                p.cancelled = true;
+
+                String key = keyOf(p.event);
+                if (key != null && latest.get(key) == p) {
+                    latest.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes on all the pending events.
+     */
+    public void flush() {
+        List<Pending> events;
+        synchronized (this) {
+            events = order;
+            order = new ArrayList<>();
+            latest = new HashMap<>();
+        }
+
+        for (Pending p : events) {
+            if (!p.cancelled) {
+                target.accept(p.interest, p.event);
+            }
+        }
+    }
+
+    /**
+     * Stops the coalescing and passes on the pending events. The flush that might be in progress is let finish first,
+     * so that its events are passed on before the ones flushed here. It is not interrupted, because the target might
+     * be writing to interruptible channels.
+     *
+     * @param timeout the maximum number of milliseconds to wait for the flush in progress to finish
+     */
+    public void close(long timeout) throws InterruptedException {
+        timer.shutdown();
+        try {
+            timer.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        } finally {
+            flush();
+        }
+    }
+
+    /**
+     * @return the key of the entity the event is about or null if the event is not to be merged with others
+     */
+    private static String keyOf(Object inventoryEvent) {
+        Object element = inventoryEvent;
+        if (element instanceof Action.Update) {
+            element = ((Action.Update<?, ?>) element).getOriginalEntity();
+        }
+
+        if (element instanceof Relationship) {
+            return "relationship/" + ((Relationship) element).getId();
+        } else if (element instanceof Entity) {
+            return CanonicalPath.of((Entity<?, ?>) element).toString();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the event is about an entity at or under the path or about a relationship from or to such
+     * entity
+     */
+    private static boolean touches(Object inventoryEvent, CanonicalPath path) {
+        Object element = inventoryEvent;
+        if (element instanceof Action.Update) {
+            element = ((Action.Update<?, ?>) element).getOriginalEntity();
+        }
+
+        if (element instanceof Relationship) {
+            Relationship r = (Relationship) element;
+            return isAtOrUnder(r.getSource(), path) || isAtOrUnder(r.getTarget(), path);
+        } else if (element instanceof Entity) {
+            return isAtOrUnder((Entity<?, ?>) element, path);
+        } else {
+            return false;
+        }
+    }
+
+    private static boolean isAtOrUnder(Entity<?, ?> entity, CanonicalPath path) {
+        if (entity == null) {
+            return false;
+        }
+
+        CanonicalPath cp = CanonicalPath.of(entity);
+        return path.equals(cp) || path.isParentOf(cp);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object updatedEntity(Action.Update<?, ?> update) {
+        return ((AbstractElement) update.getOriginalEntity()).update()
+                .with((AbstractElement.Update) update.getUpdate());
+    }
+
+    private static final class Pending {
+        final Interest<?, ?> interest;
+        Object event;
+        boolean cancelled;
+
+        Pending(Interest<?, ?> interest, Object event) {
+            this.interest = interest;
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.bus;
+
+import org.hawkular.bus.common.BasicMessage;
+import org.hawkular.inventory.bus.api.InventoryEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hawkular.inventory.bus.Log.LOG;
+
+/**
+ * A file on the local disk holding the events that could not be sent to the bus yet. The events are appended to the
+ * end of the file and read from the start, in the order they were appended in. The position up to which the events
+ * have been sent is kept in a separate file, so that the events are not lost nor sent twice if the server is restarted
+ * with events still in the journal.
+ *
+ * <p>Each record consists of its length (int), the class of the event, the message headers and the event serialized
+ * to JSON. The records are forced to the disk once the whole group of appended events is written. A record that was
+ * only partially written is discarded when the journal is opened. A record that cannot be deserialized (e.g. because
+ * its event class no longer exists) is skipped and logged, without affecting the other events. The offset file is
+ * replaced atomically, but should it be unreadable anyway, the journal is read from its start again, so that no event
+ * is lost at the cost of sending some of them twice.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+final class Journal implements AutoCloseable {
+    private final Path file;
+    private final Path offsetFile;
+    private FileChannel channel;
+    private long readOffset;
+
+    Journal(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.file = directory.resolve("events.journal");
+        this.offsetFile = directory.resolve("events.offset");
+
+        channel = open(file);
+
+        if (Files.exists(offsetFile)) {
+            readOffset = Math.min(readOffset(offsetFile), channel.size());
+        }
+
+        //discard the record that might have been only partially written
+        long end = readOffset;
+        ByteBuffer length = ByteBuffer.allocate(4);
+        while (end + 4 <= channel.size()) {
+            length.clear();
+            channel.read(length, end);
+            length.flip();
+            int recordLength = length.getInt();
+            long next = end + 4 + recordLength;
+            if (recordLength < 0 || next > channel.size()) {
+                break;
+            }
+            end = next;
+        }
+
+        channel.truncate(end);
+    }
+
+    boolean isEmpty() throws IOException {
+        return readOffset >= channel.size();
+    }
+
+    /**
+     * Appends the events to the end of the journal and forces them to the disk.
+     */
+    void append(List<Pending> events) throws IOException {
+        channel.position(channel.size());
+        for (Pending e : events) {
+            write(e, channel);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Reads the oldest events in the journal. The events stay in the journal until they are {@link #commit(Chunk)
+     * committed}. The records that cannot be deserialized are skipped, but still count towards the maximum and are
+     * removed from the journal together with the read events.
+     *
+     * @param max the maximum number of records to read
+     * @return the events read
+     */
+    Chunk read(int max) throws IOException {
+        List<Pending> events = new ArrayList<>();
+        long position = readOffset;
+        ByteBuffer length = ByteBuffer.allocate(4);
+
+        int count = 0;
+
+        while (count < max && position + 4 <= channel.size()) {
+            length.clear();
+            channel.read(length, position);
+            length.flip();
+
+            ByteBuffer record = ByteBuffer.allocate(length.getInt());
+            channel.read(record, position + 4);
+
+            try {
+                events.add(deserialize(record.array()));
+            } catch (IOException | RuntimeException e) {
+                LOG.skippedJournalRecord(position, file.toString(), e);
+            }
+
+            position += 4 + record.capacity();
+            ++count;
+        }
+
+        return new Chunk(events, position);
+    }
+
+    /**
+     * Removes the events of the chunk from the journal.
+     */
+    void commit(Chunk chunk) throws IOException {
+        readOffset = chunk.end;
+
+        if (isEmpty()) {
+            channel.truncate(0);
+            readOffset = 0;
+        }
+
+        writeOffset();
+    }
+
+    /**
+     * Removes all the events from the journal.
+     */
+    void discard() throws IOException {
+        channel.truncate(0);
+        readOffset = 0;
+        writeOffset();
+    }
+
+    /**
+     * Puts the events in front of the events already in the journal, so that they are read first.
+     */
+    void prepend(List<Pending> events) throws IOException {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Pending e : events) {
+                write(e, out);
+            }
+
+            long position = readOffset;
+            long size = channel.size();
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
+
+            out.force(true);
+        }
+
+        channel.close();
+
+        //reset the offset first, so that a crash in between only causes the already sent events to be sent again
+        readOffset = 0;
+        writeOffset();
+
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = open(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(true);
+        channel.close();
+    }
+
+    private void writeOffset() throws IOException {
+        Path tmp = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(8).putLong(readOffset);
+            buf.flip();
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+
+            out.force(true);
+        }
+
+        Files.move(tmp, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the offset stored in the file or 0 if the file doesn't contain a valid offset
+     */
+    private static long readOffset(Path offsetFile) throws IOException {
+        byte[] data = Files.readAllBytes(offsetFile);
+        if (data.length != 8) {
+            return 0;
+        }
+
+        return Math.max(0, ByteBuffer.wrap(data).getLong());
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void write(Pending event, FileChannel channel) throws IOException {
+        byte[] record = serialize(event);
+        ByteBuffer buf = ByteBuffer.allocate(4 + record.length);
+        buf.putInt(record.length).put(record).flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private static byte[] serialize(Pending event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(event.event.getClass().getName());
+            out.writeInt(event.headers.size());
+            for (Map.Entry<String, String> h : event.headers.entrySet()) {
+                out.writeUTF(h.getKey());
+                out.writeUTF(h.getValue());
+            }
+            byte[] json = event.event.toJSON().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(json.length);
+            out.write(json);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Pending deserialize(byte[] record) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            String className = in.readUTF();
+            int headerCount = in.readInt();
+            Map<String, String> headers = new HashMap<>();
+            for (int i = 0; i < headerCount; ++i) {
+                headers.put(in.readUTF(), in.readUTF());
+            }
+            byte[] json = new byte[in.readInt()];
+            in.readFully(json);
+
+            Class<? extends BasicMessage> eventClass;
+            try {
+                eventClass = (Class<? extends BasicMessage>) Class.forName(className, true,
+                        InventoryEvent.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown event type in the journal: " + className, e);
+            }
+
+            InventoryEvent<?> event = (InventoryEvent<?>) BasicMessage.fromJSON(new String(json,
+                    StandardCharsets.UTF_8), eventClass);
+
+            return new Pending(headers, event);
+        }
+    }
+
+    /**
+     * An event waiting to be sent, together with the headers of its message.
+     */
+    static final class Pending {
+        final Map<String, String> headers;
+        final InventoryEvent<?> event;
+
+        Pending(Map<String, String> headers, InventoryEvent<?> event) {
+            this.headers = headers;
+            this.event = event;
+        }
+    }
+
+    /**
+     * Events read from the journal.
+     */
+    static final class Chunk {
+        final List<Pending> events;
+        private final long end;
+
+        private Chunk(List<Pending> events, long end) {
+            this.events = events;
+            this.end = end;
+        }
+    }
+}
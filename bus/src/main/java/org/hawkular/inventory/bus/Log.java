@@ -18,6 +18,7 @@ package org.hawkular.inventory.bus;
 
 import org.jboss.logging.BasicLogger;
 import org.jboss.logging.Logger;
+import org.jboss.logging.annotations.Cause;
 import org.jboss.logging.annotations.LogMessage;
 import org.jboss.logging.annotations.Message;
 import org.jboss.logging.annotations.MessageLogger;
@@ -39,4 +40,32 @@ public interface Log extends BasicLogger {
     @LogMessage(level = Logger.Level.WARN)
     @Message(id = 310001, value = "Failed to send message: %s")
     void failedToSendMessage(String message);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 310002, value = "Failed to send the inventory events to the bus. Will keep retrying, the events" +
+            " will be kept in the journal in the meantime.")
+    void sendingFailedWillRetry(@Cause Throwable cause);
+
+    @LogMessage(level = Logger.Level.INFO)
+    @Message(id = 310003, value = "Sending the inventory events to the bus again.")
+    void sendingResumed();
+
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 310004, value = "Failed to access the journal of the inventory events in [%s]. The events not yet" +
+            " sent to the bus might be lost.")
+    void journalFailed(String directory, @Cause Throwable cause);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 310005, value = "Failed to process a message with inventory commands.")
+    void failedToProcessCommands(@Cause Throwable cause);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 310006, value = "The inventory commands queue [%s] is configured but there is no authorizer of the" +
+            " commands. The commands will not be accepted.")
+    void noCommandAuthorizer(String queueName);
+
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 310007, value = "Skipped the unreadable inventory event at position %d of the journal [%s]. The" +
+            " event will not be sent to the bus.")
+    void skippedJournalRecord(long position, String file, @Cause Throwable cause);
 }
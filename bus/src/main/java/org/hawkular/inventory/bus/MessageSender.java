@@ -16,53 +16,482 @@
  */
 package org.hawkular.inventory.bus;
 
+import org.hawkular.bus.common.BasicMessage;
 import org.hawkular.bus.common.MessageProcessor;
 import org.hawkular.bus.common.producer.ProducerConnectionContext;
 import org.hawkular.inventory.api.Interest;
+import org.hawkular.inventory.bus.api.BinaryEventCodec;
 import org.hawkular.inventory.bus.api.InventoryEvent;
+import org.hawkular.inventory.bus.api.InventoryEventBatch;
 
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.hawkular.inventory.bus.Log.LOG;
 
 /**
+ * Sends the inventory events to the bus.
+ *
+ * <p>The events are sent from a dedicated thread so that the inventory writes never wait for the broker. The events
+ * wait for it in a bounded queue. If the queue is full or the broker is not available, the events are handed off to
+ * another thread, which writes them to a {@link Journal} on the local disk, forcing each group of the events that
+ * accumulated in the meantime to the disk at once. This way the inventory writes don't wait for the disk either. The
+ * events are sent from the journal once the broker is available again. The messages
+ * that fail to be sent are retried with an exponential backoff. The events are always sent in the order they happened
+ * in, even across server restarts, and a message may only be sent twice if the server stops right after sending it.
+ *
+ * <p>If the batch size is greater than 1, the events are sent as {@link InventoryEventBatch} messages once there is
+ * batch size of events waiting or the oldest of them has waited for the linger time. A batch message holds a run of
+ * consecutive events with the same headers, so that the events are sent in the order they happened in even if they
+ * differ in the headers. The batch messages have the same headers as the single events, plus the "batch" header.
+ *
+ * <p>The messages are encoded in JSON by default. If configured, they are sent as bytes messages in the
+ * {@link BinaryEventCodec binary encoding} instead, marked with the {@value BinaryEventCodec#ENCODING_HEADER} header.
+ *
  * @author Lukas Krejci
  * @since 0.0.1
  */
 final class MessageSender {
+    private static final long INITIAL_RETRY_BACKOFF = 100;
+
+    /**
+     * How often the sending thread waiting for the events checks whether it's being closed, in milliseconds.
+     */
+    private static final long CLOSE_CHECK_INTERVAL = 100;
+
     private final ProducerConnectionContext producerConnectionContext;
     private final MessageProcessor messageProcessor;
+    private final int batchSize;
+    private final long batchLinger;
+    private final long maxRetryBackoff;
+    private final String journalDirectory;
+    private final boolean binaryEncoding;
+
+    /**
+     * The headers only depend on the interest, so there is no need to build them for each message.
+     */
+    private final Map<Interest<?, ?>, Map<String, String>> headers = new ConcurrentHashMap<>();
+    private final Map<Map<String, String>, Map<String, String>> batchHeaders = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<Journal.Pending> queue;
+    private final Journal journal;
+
+    /**
+     * Guards the journal. Only the sending and the journal writing threads ever access it.
+     */
+    private final Object journalLock = new Object();
+
+    /**
+     * Once set, the new events are handed off to be written to the journal. This keeps the events in order, because
+     * the queue is always emptied before the journal is read. Reset once both the journal and the hand-off are empty
+     * again. Guarded by itself, which is never held while accessing the journal.
+     */
+    private final Object spillLock = new Object();
+    private boolean spilling;
+
+    /**
+     * The events handed off to the journal writing thread. Guarded by {@link #spillLock}.
+     */
+    private List<Journal.Pending> spilled = new ArrayList<>();
 
-    public MessageSender(ProducerConnectionContext producerConnectionContext) {
+    /**
+     * Once set, no more events are handed off to the journal writing thread. Guarded by {@link #spillLock}.
+     */
+    private boolean journalClosed;
+
+    private final Thread worker;
+    private final Thread journalWriter;
+    private volatile boolean closed;
+
+    /**
+     * Counted down when closing, to end the retry backoff early. The sending thread is never interrupted, because an
+     * interruption would close the journal channel it might be using.
+     */
+    private final CountDownLatch closing = new CountDownLatch(1);
+
+    public MessageSender(ProducerConnectionContext producerConnectionContext, Configuration configuration) {
         this.producerConnectionContext = producerConnectionContext;
         this.messageProcessor = new MessageProcessor();
+        this.batchSize = Math.max(1, configuration.getBatchSize());
+        this.batchLinger = configuration.getBatchLinger();
+        this.maxRetryBackoff = Math.max(INITIAL_RETRY_BACKOFF, configuration.getMaxRetryBackoff());
+        this.journalDirectory = configuration.getJournalDirectory();
+        this.binaryEncoding = configuration.isBinaryEncoding();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, configuration.getQueueSize()));
+
+        Journal j = null;
+        try {
+            j = new Journal(Paths.get(journalDirectory));
+            spilling = !j.isEmpty();
+        } catch (IOException | RuntimeException e) {
+            LOG.journalFailed(journalDirectory, e);
+        }
+        this.journal = j;
+
+        if (journal == null) {
+            journalWriter = null;
+        } else {
+            journalWriter = new Thread(this::writeJournal, "hawkular-inventory-bus-journal");
+            journalWriter.setDaemon(true);
+            journalWriter.start();
+        }
+
+        worker = new Thread(this::run, "hawkular-inventory-bus-sender");
+        worker.setDaemon(true);
+        worker.start();
     }
 
     public void send(Interest<?, ?> interest, Object inventoryEvent) {
         InventoryEvent<?> message = InventoryEvent.from(interest.getAction(), inventoryEvent);
+        Journal.Pending event = new Journal.Pending(headers.computeIfAbsent(interest, MessageSender::toHeaders),
+                message);
+
+        synchronized (spillLock) {
+            if (!spilling && queue.offer(event)) {
+                return;
+            }
+
+            if (journal == null || journalClosed) {
+                LOG.failedToSendMessage(message.toString());
+                return;
+            }
+
+            spilling = true;
+            spilled.add(event);
+            spillLock.notifyAll();
+        }
+    }
+
+    /**
+     * Sends the events waiting in the queue and stops the sending thread. If the broker is not available, the events
+     * are left in the journal to be sent the next time.
+     *
+     * @param timeout the maximum number of milliseconds to wait for the events to be sent
+     */
+    public void close(long timeout) throws InterruptedException {
+        closed = true;
+        closing.countDown();
+        worker.join(timeout);
+    }
+
+    private void run() {
+        List<Journal.Pending> events = new ArrayList<>(batchSize);
+
+        while (true) {
+            Journal.Chunk chunk;
+            try {
+                chunk = next(events);
+            } catch (InterruptedException e) {
+                //not expected, handled as closing
+                closed = true;
+                chunk = null;
+            } catch (IOException | RuntimeException e) {
+                //the journal itself skips the records it can't deserialize, so this means it can't be read at all and
+                //would block the sending forever
+                LOG.journalFailed(journalDirectory, e);
+                discardJournal();
+                continue;
+            }
+
+            if (events.isEmpty() && closed) {
+                break;
+            }
+
+            boolean sent = send(events);
+
+            if (!sent) {
+                //we're closing and the broker is not available, keep the rest of the events for the next time
+                if (chunk == null) {
+                    queue.drainTo(events);
+                    keepForNextTime(events);
+                }
+                break;
+            }
+
+            if (chunk != null) {
+                try {
+                    synchronized (journalLock) {
+                        journal.commit(chunk);
+                    }
+                } catch (IOException e) {
+                    LOG.journalFailed(journalDirectory, e);
+                }
+            }
+
+            events.clear();
+        }
+
+        if (journal != null) {
+            stopJournalWriter();
+
+            synchronized (journalLock) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    LOG.journalFailed(journalDirectory, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the events handed off by the inventory writes to the journal, all the events that accumulated while the
+     * previous ones were being written at once.
+     */
+    private void writeJournal() {
+        while (true) {
+            synchronized (spillLock) {
+                while (spilled.isEmpty() && !journalClosed) {
+                    try {
+                        spillLock.wait();
+                    } catch (InterruptedException e) {
+                        //only stopped by stopJournalWriter()
+                    }
+                }
+
+                if (spilled.isEmpty()) {
+                    return;
+                }
+            }
+
+            synchronized (journalLock) {
+                List<Journal.Pending> events;
+                synchronized (spillLock) {
+                    events = spilled;
+                    spilled = new ArrayList<>();
+                }
+
+                try {
+                    journal.append(events);
+                } catch (IOException | RuntimeException e) {
+                    LOG.journalFailed(journalDirectory, e);
+                    events.forEach((ev) -> LOG.failedToSendMessage(ev.event.toString()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets the journal writing thread write the events handed off to it and waits for it to finish.
+     */
+    private void stopJournalWriter() {
+        synchronized (spillLock) {
+            journalClosed = true;
+            spillLock.notifyAll();
+        }
+
         try {
-            Map<String, String> headers = toHeaders(interest);
-            messageProcessor.send(producerConnectionContext, message, headers);
+            journalWriter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void keepForNextTime(List<Journal.Pending> events) {
+        synchronized (journalLock) {
+            if (journal != null) {
+                try {
+                    journal.prepend(events);
+                    return;
+                } catch (IOException e) {
+                    LOG.journalFailed(journalDirectory, e);
+                }
+            }
+        }
+
+        events.forEach((e) -> LOG.failedToSendMessage(e.event.toString()));
+    }
+
+    private void discardJournal() {
+        synchronized (journalLock) {
+            try {
+                journal.discard();
+            } catch (IOException e) {
+                LOG.journalFailed(journalDirectory, e);
+            }
+        }
+    }
+
+    /**
+     * Collects the next events to send, first from the queue and, once it is empty, from the journal.
+     *
+     * @param events the list to add the events to
+     * @return the chunk of the journal the events come from or null if they come from the queue
+     */
+    private Journal.Chunk next(List<Journal.Pending> events) throws InterruptedException, IOException {
+        while (true) {
+            if (queue.drainTo(events, batchSize) > 0) {
+                long deadline = System.currentTimeMillis() + batchLinger;
+                long wait;
+                while (events.size() < batchSize && !closed
+                        && (wait = deadline - System.currentTimeMillis()) > 0) {
+                    Journal.Pending e = queue.poll(Math.min(wait, CLOSE_CHECK_INTERVAL), TimeUnit.MILLISECONDS);
+                    if (e != null) {
+                        events.add(e);
+                        queue.drainTo(events, batchSize - events.size());
+                    }
+                }
+
+                return null;
+            }
+
+            if (journal != null) {
+                synchronized (journalLock) {
+                    boolean spillingNow;
+                    synchronized (spillLock) {
+                        spillingNow = spilling;
+                    }
+
+                    //the producers only add to the queue while not spilling, so if the queue is not empty, it contains
+                    //older events than the journal
+                    if (spillingNow && queue.isEmpty()) {
+                        if (!journal.isEmpty()) {
+                            Journal.Chunk chunk = journal.read(batchSize);
+                            events.addAll(chunk.events);
+                            return chunk;
+                        }
+
+                        synchronized (spillLock) {
+                            //the events handed off but not yet written to the journal are the newest ones
+                            if (spilled.isEmpty()) {
+                                spilling = false;
+                            }
+                        }
+                    }
+                }
+            }
+
+            if (closed) {
+                return null;
+            }
 
-            Log.LOG.debugf("Sent message %s with headers %s to %s", message, headers,
-                    producerConnectionContext.getDestination());
-        } catch (JMSException e) {
-            LOG.failedToSendMessage(message.toString());
+            Journal.Pending e = queue.poll(CLOSE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+            if (e != null) {
+                events.add(e);
+            }
         }
     }
 
-    private Map<String, String> toHeaders(Interest<?, ?> interest) {
+    /**
+     * Sends the events, retrying until they're all sent.
+     *
+     * @param events the events to send, the events sent are removed from the list
+     * @return true if all the events were sent, false if we're closing and the broker is not available
+     */
+    private boolean send(List<Journal.Pending> events) {
+        long backoff = INITIAL_RETRY_BACKOFF;
+        boolean failed = false;
+        int i = 0;
+        while (i < events.size()) {
+            Journal.Pending e = events.get(i);
+
+            BasicMessage message;
+            Map<String, String> messageHeaders;
+            int end = i + 1;
+            if (batchSize > 1) {
+                while (end < events.size() && e.headers.equals(events.get(end).headers)) {
+                    ++end;
+                }
+
+                List<InventoryEvent<?>> batch = new ArrayList<>(end - i);
+                events.subList(i, end).forEach((b) -> batch.add(b.event));
+
+                message = new InventoryEventBatch(batch);
+                messageHeaders = batchHeaders.computeIfAbsent(e.headers, MessageSender::toBatchHeaders);
+            } else {
+                message = e.event;
+                messageHeaders = e.headers;
+            }
+
+            try {
+                if (binaryEncoding) {
+                    sendBinary(message, messageHeaders);
+                } else {
+                    messageProcessor.send(producerConnectionContext, message, messageHeaders);
+                }
+
+                LOG.debugf("Sent message %s with headers %s to %s", message, messageHeaders,
+                        producerConnectionContext.getDestination());
+
+                if (failed) {
+                    LOG.sendingResumed();
+                    failed = false;
+                    backoff = INITIAL_RETRY_BACKOFF;
+                }
+
+                i = end;
+            } catch (JMSException | RuntimeException ex) {
+                if (!failed) {
+                    LOG.sendingFailedWillRetry(ex);
+                    failed = true;
+                    synchronized (spillLock) {
+                        if (journal != null) {
+                            spilling = true;
+                        }
+                    }
+                }
+
+                if (closed) {
+                    //leave only the unsent events in the list
+                    List<Journal.Pending> unsent = new ArrayList<>(events.subList(i, events.size()));
+                    events.clear();
+                    events.addAll(unsent);
+                    return false;
+                }
+
+                try {
+                    //ends early when closing, to try once more and give up if that fails
+                    closing.await(backoff, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    closed = true;
+                }
+                backoff = Math.min(backoff * 2, maxRetryBackoff);
+            }
+        }
+
+        return true;
+    }
+
+    private void sendBinary(BasicMessage message, Map<String, String> headers) throws JMSException {
+        BytesMessage msg = producerConnectionContext.getSession().createBytesMessage();
+        msg.writeBytes(BinaryEventCodec.encode(message));
+
+        for (Map.Entry<String, String> h : headers.entrySet()) {
+            msg.setStringProperty(h.getKey(), h.getValue());
+        }
+        msg.setStringProperty(BinaryEventCodec.ENCODING_HEADER, BinaryEventCodec.BINARY_ENCODING);
+
+        producerConnectionContext.getMessageProducer().send(msg);
+    }
+
+    private static Map<String, String> toHeaders(Interest<?, ?> interest) {
         HashMap<String, String> ret = new HashMap<>();
 
         ret.put("action", interest.getAction().asEnum().name().toLowerCase());
         ret.put("entityType", firstLetterLowercased(interest.getEntityType().getSimpleName()));
 
-        return ret;
+        return Collections.unmodifiableMap(ret);
+    }
+
+    private static Map<String, String> toBatchHeaders(Map<String, String> headers) {
+        HashMap<String, String> ret = new HashMap<>(headers);
+        ret.put("batch", "true");
+        return Collections.unmodifiableMap(ret);
     }
 
-    private String firstLetterLowercased(String source) {
+    private static String firstLetterLowercased(String source) {
         return Character.toLowerCase(source.charAt(0)) + source.substring(1);
     }
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.bus;
+
+import org.hawkular.bus.common.BasicMessage;
+import org.hawkular.inventory.api.Action;
+import org.hawkular.inventory.api.model.Environment;
+import org.hawkular.inventory.api.test.InventoryMock;
+import org.hawkular.inventory.bus.api.BinaryEventCodec;
+import org.hawkular.inventory.bus.api.CommandAcknowledgement;
+import org.hawkular.inventory.bus.api.InventoryEvent;
+import org.hawkular.inventory.bus.api.InventoryEventBatch;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class CommandProcessorTest {
+
+    private Session session;
+    private MessageProducer producer;
+    private Destination replyTo;
+    private TextMessage reply;
+    private final List<InventoryEvent<?>> authorized = new ArrayList<>();
+    private CommandProcessor processor;
+
+    @Before
+    public void init() throws Exception {
+        InventoryMock.rewire();
+
+        session = mock(Session.class);
+        producer = mock(MessageProducer.class);
+        replyTo = mock(Destination.class);
+        reply = mock(TextMessage.class);
+
+        when(session.createProducer(any(Destination.class))).thenReturn(producer);
+        when(session.createTextMessage(anyString())).thenReturn(reply);
+
+        authorized.clear();
+        processor = new CommandProcessor(InventoryMock.inventory, session, (user, command) -> {
+            if (!"joe".equals(user)) {
+                return false;
+            }
+            authorized.add(command);
+            return !"forbidden".equals(((Environment) command.getObject()).getId());
+        });
+    }
+
+    @Test
+    public void testCommandsAppliedAndAcknowledged() throws Exception {
+        processor.onMessage(textMessage("joe", createEnvironments("e1", "e2")));
+
+        verify(InventoryMock.environmentsReadWrite, times(2)).create(any(Environment.Blueprint.class));
+        Assert.assertEquals(2, authorized.size());
+
+        CommandAcknowledgement ack = acknowledgement();
+        Assert.assertTrue(ack.isSuccess());
+        Assert.assertEquals(2, ack.getCommandCount());
+        Assert.assertEquals(2, ack.getAppliedCount());
+
+        verify(reply).setJMSCorrelationID("msg-1");
+        verify(producer).send(replyTo, reply);
+    }
+
+    @Test
+    public void testBinaryCommandsApplied() throws Exception {
+        byte[] data = BinaryEventCodec.encode(createEnvironments("e1", "e2", "e3"));
+
+        BytesMessage message = mock(BytesMessage.class);
+        when(message.getStringProperty(CommandProcessor.USER_ID_PROPERTY)).thenReturn("joe");
+        when(message.getStringProperty(BinaryEventCodec.ENCODING_HEADER)).thenReturn(BinaryEventCodec.BINARY_ENCODING);
+        when(message.getBodyLength()).thenReturn((long) data.length);
+        when(message.readBytes(any(byte[].class))).thenAnswer((i) -> {
+            byte[] target = (byte[]) i.getArguments()[0];
+            System.arraycopy(data, 0, target, 0, data.length);
+            return data.length;
+        });
+        when(message.getJMSReplyTo()).thenReturn(replyTo);
+
+        processor.onMessage(message);
+
+        verify(InventoryMock.environmentsReadWrite, times(3)).create(any(Environment.Blueprint.class));
+        Assert.assertEquals(3, acknowledgement().getAppliedCount());
+    }
+
+    @Test
+    public void testStopsAtFirstFailure() throws Exception {
+        when(InventoryMock.environmentsReadWrite.create(any(Environment.Blueprint.class))).thenReturn(null)
+                .thenThrow(new IllegalStateException("expected"));
+
+        processor.onMessage(textMessage("joe", createEnvironments("e1", "e2", "e3")));
+
+        //the third command is never attempted
+        verify(InventoryMock.environmentsReadWrite, times(2)).create(any(Environment.Blueprint.class));
+
+        CommandAcknowledgement ack = acknowledgement();
+        Assert.assertFalse(ack.isSuccess());
+        Assert.assertEquals(3, ack.getCommandCount());
+        Assert.assertEquals(1, ack.getAppliedCount());
+        Assert.assertTrue(ack.getError().contains("expected"));
+    }
+
+    @Test
+    public void testStopsAtFirstUnauthorizedCommand() throws Exception {
+        processor.onMessage(textMessage("joe", createEnvironments("e1", "forbidden", "e3")));
+
+        verify(InventoryMock.environmentsReadWrite, times(1)).create(any(Environment.Blueprint.class));
+
+        CommandAcknowledgement ack = acknowledgement();
+        Assert.assertFalse(ack.isSuccess());
+        Assert.assertEquals(3, ack.getCommandCount());
+        Assert.assertEquals(1, ack.getAppliedCount());
+    }
+
+    @Test
+    public void testUnauthenticatedMessageRejected() throws Exception {
+        processor.onMessage(textMessage(null, createEnvironments("e1")));
+
+        verify(InventoryMock.environmentsReadWrite, never()).create(any(Environment.Blueprint.class));
+        Assert.assertTrue(authorized.isEmpty());
+
+        CommandAcknowledgement ack = acknowledgement();
+        Assert.assertFalse(ack.isSuccess());
+        Assert.assertEquals(0, ack.getAppliedCount());
+    }
+
+    @Test
+    public void testUndecodableMessageRejected() throws Exception {
+        TextMessage message = mock(TextMessage.class);
+        when(message.getStringProperty(CommandProcessor.USER_ID_PROPERTY)).thenReturn("joe");
+        when(message.getText()).thenReturn("not a batch of commands");
+        when(message.getJMSReplyTo()).thenReturn(replyTo);
+
+        processor.onMessage(message);
+
+        verify(InventoryMock.environmentsReadWrite, never()).create(any(Environment.Blueprint.class));
+
+        CommandAcknowledgement ack = acknowledgement();
+        Assert.assertFalse(ack.isSuccess());
+        Assert.assertEquals(0, ack.getCommandCount());
+    }
+
+    private static InventoryEventBatch createEnvironments(String... ids) {
+        List<InventoryEvent<?>> events = new ArrayList<>();
+        for (String id : ids) {
+            events.add(InventoryEvent.from(Action.created(), new Environment("t", id)));
+        }
+
+        return new InventoryEventBatch(events);
+    }
+
+    private TextMessage textMessage(String user, BasicMessage body) throws Exception {
+        TextMessage message = mock(TextMessage.class);
+        when(message.getStringProperty(CommandProcessor.USER_ID_PROPERTY)).thenReturn(user);
+        when(message.getText()).thenReturn(body.toJSON());
+        when(message.getJMSReplyTo()).thenReturn(replyTo);
+        when(message.getJMSMessageID()).thenReturn("msg-1");
+        return message;
+    }
+
+    private CommandAcknowledgement acknowledgement() throws Exception {
+        ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+        verify(session).createTextMessage(json.capture());
+        return BasicMessage.fromJSON(json.getValue(), CommandAcknowledgement.class);
+    }
+}
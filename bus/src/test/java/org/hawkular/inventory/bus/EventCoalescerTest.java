@@ -0,0 +1,271 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.bus;
+
+import org.hawkular.inventory.api.Action;
+import org.hawkular.inventory.api.Interest;
+import org.hawkular.inventory.api.model.AbstractElement;
+import org.hawkular.inventory.api.model.Environment;
+import org.hawkular.inventory.api.model.Feed;
+import org.hawkular.inventory.api.model.Relationship;
+import org.hawkular.inventory.api.model.Tenant;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class EventCoalescerTest {
+
+    private final List<String> passedOn = Collections.synchronizedList(new ArrayList<>());
+    private EventCoalescer coalescer;
+
+    @Before
+    public void init() {
+        passedOn.clear();
+
+        //long enough for the timer never to flush during a test
+        coalescer = new EventCoalescer((interest, event) -> passedOn.add(describe(interest, event)),
+                TimeUnit.HOURS.toMillis(1));
+    }
+
+    @After
+    public void close() throws Exception {
+        coalescer.close(1000);
+    }
+
+    @Test
+    public void testCreateAndUpdatesBecomeCreate() throws Exception {
+        Environment e = new Environment("t", "e");
+        created(e);
+        e = updated(e, "a", 1);
+        updated(e, "b", 2);
+
+        coalescer.flush();
+
+        Assert.assertEquals(Collections.singletonList("created e {a=1, b=2}"), passedOn);
+    }
+
+    @Test
+    public void testUpdatesBecomeLastUpdate() throws Exception {
+        Environment e = new Environment("t", "e");
+        e = updated(e, "a", 1);
+        updated(e, "a", 2);
+
+        coalescer.flush();
+
+        Assert.assertEquals(Collections.singletonList("updated e {a=2}"), passedOn);
+    }
+
+    @Test
+    public void testCreateAndDeleteCancelOut() throws Exception {
+        Environment e = new Environment("t", "e");
+        created(e);
+        updated(e, "a", 1);
+        deleted(e);
+
+        coalescer.flush();
+
+        Assert.assertTrue(passedOn.isEmpty());
+    }
+
+    @Test
+    public void testUpdateAndDeleteBecomeDelete() throws Exception {
+        Environment e = new Environment("t", "e");
+        updated(e, "a", 1);
+        deleted(e);
+
+        coalescer.flush();
+
+        Assert.assertEquals(Collections.singletonList("deleted e {}"), passedOn);
+    }
+
+    @Test
+    public void testCancelledEntityTakesContainedElementsAlong() throws Exception {
+        Environment e1 = new Environment("t", "e1");
+        Environment e2 = new Environment("t", "e2");
+        Feed f = new Feed("t", "e2", "f");
+
+        created(e1);
+        created(e2);
+        send(Action.created(), new Relationship("r1", "contains", new Tenant("t"), e1));
+        send(Action.created(), new Relationship("r2", "contains", new Tenant("t"), e2));
+        send(Action.created(), f);
+        send(Action.created(), new Relationship("r3", "contains", e2, f));
+        deleted(e2);
+
+        coalescer.flush();
+
+        Assert.assertEquals(Arrays.asList("created e1 {}", "created r1 {}"), passedOn);
+    }
+
+    @Test
+    public void testMergedDeleteKeepsItsPosition() throws Exception {
+        Environment e = new Environment("t", "e");
+        Feed f = new Feed("t", "e", "f");
+
+        updated(e, "a", 1);
+        send(Action.created(), f);
+        deleted(e);
+
+        coalescer.flush();
+
+        Assert.assertEquals(Arrays.asList("created f {}", "deleted e {}"), passedOn);
+    }
+
+    @Test
+    public void testRecreatedAfterCancel() throws Exception {
+        Environment e = new Environment("t", "e");
+        created(e);
+        deleted(e);
+        created(e);
+        updated(e, "a", 1);
+
+        coalescer.flush();
+
+        Assert.assertEquals(Collections.singletonList("created e {a=1}"), passedOn);
+    }
+
+    @Test
+    public void testDeleteAndCreateNotMerged() throws Exception {
+        Environment e = new Environment("t", "e");
+        deleted(e);
+        created(e);
+
+        coalescer.flush();
+
+        Assert.assertEquals(Arrays.asList("deleted e {}", "created e {}"), passedOn);
+    }
+
+    @Test
+    public void testOrderOfFirstEventsKept() throws Exception {
+        Environment e1 = new Environment("t", "e1");
+        Environment e2 = new Environment("t", "e2");
+        Relationship r = new Relationship("r", "contains", new Tenant("t"), e1);
+
+        created(e1);
+        created(e2);
+        send(Action.created(), r);
+        updated(e1, "a", 1);
+
+        coalescer.flush();
+
+        Assert.assertEquals(Arrays.asList("created e1 {a=1}", "created e2 {}", "created r {}"), passedOn);
+    }
+
+    @Test
+    public void testWindowFlushedByTimer() throws Exception {
+        CountDownLatch flushed = new CountDownLatch(1);
+        EventCoalescer timed = new EventCoalescer((interest, event) -> {
+            passedOn.add(describe(interest, event));
+            flushed.countDown();
+        }, 10);
+
+        try {
+            timed.send(Interest.in(Environment.class).being(Action.created()), new Environment("t", "e"));
+            Assert.assertTrue(flushed.await(10, TimeUnit.SECONDS));
+        } finally {
+            timed.close(1000);
+        }
+
+        Assert.assertEquals(Collections.singletonList("created e {}"), passedOn);
+    }
+
+    @Test
+    public void testCloseWaitsForFlushInProgress() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EventCoalescer timed = new EventCoalescer((interest, event) -> {
+            Environment e = (Environment) event;
+            if ("e1".equals(e.getId())) {
+                flushing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    passedOn.add("interrupted");
+                }
+            }
+            passedOn.add(describe(interest, event));
+        }, 10);
+
+        timed.send(Interest.in(Environment.class).being(Action.created()), new Environment("t", "e1"));
+        Assert.assertTrue(flushing.await(10, TimeUnit.SECONDS));
+
+        //arrives while the timer is passing on the previous window
+        timed.send(Interest.in(Environment.class).being(Action.created()), new Environment("t", "e2"));
+
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            release.countDown();
+        }).start();
+
+        timed.close(10000);
+
+        Assert.assertEquals(Arrays.asList("created e1 {}", "created e2 {}"), passedOn);
+    }
+
+    private void created(Environment e) {
+        send(Action.created(), e);
+    }
+
+    /**
+     * @return the updated environment
+     */
+    private Environment updated(Environment e, String property, Object value) {
+        Environment.Update update = Environment.Update.builder().withProperties(e.getProperties())
+                .withProperty(property, value).build();
+        coalescer.send(Interest.in(Environment.class).being(Action.updated()), new Action.Update<>(e, update));
+        return e.update().with(update);
+    }
+
+    private void deleted(Environment e) {
+        send(Action.deleted(), e);
+    }
+
+    private <T> void send(Action<T, T> action, T element) {
+        @SuppressWarnings("unchecked")
+        Class<T> type = (Class<T>) element.getClass();
+        coalescer.send(Interest.in(type).being(action), element);
+    }
+
+    private static String describe(Interest<?, ?> interest, Object event) {
+        AbstractElement<?, ?> element = (AbstractElement<?, ?>) (event instanceof Action.Update
+                ? ((Action.Update<?, ?>) event).getOriginalEntity() : event);
+        String id = element.getId();
+        Object properties = event instanceof Action.Update
+                ? ((Environment.Update) ((Action.Update<?, ?>) event).getUpdate()).getProperties()
+                : element.getProperties();
+
+        return interest.getAction().asEnum().name().toLowerCase() + " " + id + " " + new TreeMap<>(
+                (Map<?, ?>) properties);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.bus;
+
+import org.hawkular.inventory.api.Action;
+import org.hawkular.inventory.api.model.Environment;
+import org.hawkular.inventory.bus.api.EnvironmentEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class JournalTest {
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("journal-test");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path f : files) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testEventsReadInOrderUntilCommitted() throws Exception {
+        try (Journal journal = new Journal(directory)) {
+            Assert.assertTrue(journal.isEmpty());
+
+            append(journal, "e1", "e2", "e3");
+            Assert.assertFalse(journal.isEmpty());
+
+            Journal.Chunk chunk = journal.read(2);
+            Assert.assertEquals(Arrays.asList("e1", "e2"), ids(chunk));
+
+            //not committed yet, so read again
+            Assert.assertEquals(Arrays.asList("e1", "e2"), ids(journal.read(2)));
+
+            journal.commit(chunk);
+            chunk = journal.read(10);
+            Assert.assertEquals(Collections.singletonList("e3"), ids(chunk));
+            Assert.assertEquals("environment", chunk.events.get(0).headers.get("entityType"));
+
+            journal.commit(chunk);
+            Assert.assertTrue(journal.isEmpty());
+        }
+
+        //the emptied journal is truncated
+        Assert.assertEquals(0, Files.size(directory.resolve("events.journal")));
+    }
+
+    @Test
+    public void testProgressSurvivesReopening() throws Exception {
+        try (Journal journal = new Journal(directory)) {
+            append(journal, "e1", "e2", "e3");
+            journal.commit(journal.read(1));
+        }
+
+        try (Journal journal = new Journal(directory)) {
+            Assert.assertEquals(Arrays.asList("e2", "e3"), ids(journal.read(10)));
+        }
+    }
+
+    @Test
+    public void testPartiallyWrittenRecordDiscarded() throws Exception {
+        try (Journal journal = new Journal(directory)) {
+            append(journal, "e1", "e2");
+        }
+
+        //the length of a record that never made it to the disk
+        Files.write(directory.resolve("events.journal"), ByteBuffer.allocate(6).putInt(1000).array(),
+                StandardOpenOption.APPEND);
+
+        try (Journal journal = new Journal(directory)) {
+            Assert.assertEquals(Arrays.asList("e1", "e2"), ids(journal.read(10)));
+
+            append(journal, "e3");
+            Assert.assertEquals(Arrays.asList("e1", "e2", "e3"), ids(journal.read(10)));
+        }
+    }
+
+    @Test
+    public void testUnreadableOffsetReadsFromStart() throws Exception {
+        try (Journal journal = new Journal(directory)) {
+            append(journal, "e1", "e2");
+            journal.commit(journal.read(1));
+        }
+
+        Files.write(directory.resolve("events.offset"), new byte[3]);
+
+        try (Journal journal = new Journal(directory)) {
+            Assert.assertEquals(Arrays.asList("e1", "e2"), ids(journal.read(10)));
+        }
+    }
+
+    @Test
+    public void testOffsetFileReplaced() throws Exception {
+        try (Journal journal = new Journal(directory)) {
+            append(journal, "e1", "e2");
+            journal.commit(journal.read(1));
+        }
+
+        Assert.assertEquals(8, Files.size(directory.resolve("events.offset")));
+        Assert.assertFalse(Files.exists(directory.resolve("events.offset.tmp")));
+    }
+
+    @Test
+    public void testPrependedEventsReadFirst() throws Exception {
+        try (Journal journal = new Journal(directory)) {
+            append(journal, "e1", "e2", "e3");
+            journal.commit(journal.read(1));
+
+            journal.prepend(Arrays.asList(pending("p1"), pending("p2")));
+
+            Assert.assertEquals(Arrays.asList("p1", "p2", "e2", "e3"), ids(journal.read(10)));
+        }
+
+        try (Journal journal = new Journal(directory)) {
+            Assert.assertEquals(Arrays.asList("p1", "p2", "e2", "e3"), ids(journal.read(10)));
+        }
+    }
+
+    @Test
+    public void testUnreadableRecordsSkipped() throws Exception {
+        try (Journal journal = new Journal(directory)) {
+            append(journal, "e1");
+        }
+
+        appendRecord("org.hawkular.inventory.bus.api.NoLongerExistingEvent", "{}");
+        appendRecord(EnvironmentEvent.class.getName(), "{\"action\": ");
+
+        try (Journal journal = new Journal(directory)) {
+            append(journal, "e2");
+
+            Journal.Chunk chunk = journal.read(10);
+            Assert.assertEquals(Arrays.asList("e1", "e2"), ids(chunk));
+
+            journal.commit(chunk);
+            Assert.assertTrue(journal.isEmpty());
+        }
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        try (Journal journal = new Journal(directory)) {
+            append(journal, "e1", "e2");
+            journal.discard();
+
+            Assert.assertTrue(journal.isEmpty());
+        }
+
+        try (Journal journal = new Journal(directory)) {
+            Assert.assertTrue(journal.isEmpty());
+        }
+    }
+
+    private static void append(Journal journal, String... ids) throws IOException {
+        List<Journal.Pending> events = new ArrayList<>();
+        for (String id : ids) {
+            events.add(pending(id));
+        }
+        journal.append(events);
+    }
+
+    private void appendRecord(String className, String json) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(record)) {
+            out.writeUTF(className);
+            out.writeInt(0);
+            byte[] data = json.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+
+        Files.write(directory.resolve("events.journal"), ByteBuffer.allocate(4 + record.size()).putInt(record.size())
+                .put(record.toByteArray()).array(), StandardOpenOption.APPEND);
+    }
+
+    private static Journal.Pending pending(String id) {
+        return new Journal.Pending(Collections.singletonMap("entityType", "environment"),
+                new EnvironmentEvent(Action.Enumerated.CREATED, new Environment("t", id)));
+    }
+
+    private static List<String> ids(Journal.Chunk chunk) {
+        List<String> ret = new ArrayList<>();
+        chunk.events.forEach((e) -> ret.add(((Environment) e.event.getObject()).getId()));
+        return ret;
+    }
+}
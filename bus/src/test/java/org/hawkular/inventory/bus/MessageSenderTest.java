@@ -0,0 +1,252 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.bus;
+
+import org.hawkular.bus.common.producer.ProducerConnectionContext;
+import org.hawkular.inventory.api.Action;
+import org.hawkular.inventory.api.Interest;
+import org.hawkular.inventory.api.model.Environment;
+import org.hawkular.inventory.bus.api.BinaryEventCodec;
+import org.hawkular.inventory.bus.api.InventoryEvent;
+import org.hawkular.inventory.bus.api.InventoryEventBatch;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class MessageSenderTest {
+
+    private Path journalDirectory;
+    private ProducerConnectionContext context;
+    private MessageProducer producer;
+    private final List<Sent> sent = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * The number of the next sends that fail.
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile boolean brokerDown;
+
+    @Before
+    public void init() throws Exception {
+        journalDirectory = Files.createTempDirectory("message-sender-test");
+
+        Session session = mock(Session.class);
+        producer = mock(MessageProducer.class);
+        context = mock(ProducerConnectionContext.class);
+        when(context.getSession()).thenReturn(session);
+        when(context.getMessageProducer()).thenReturn(producer);
+
+        Map<Message, Sent> created = new ConcurrentHashMap<>();
+        when(session.createBytesMessage()).thenAnswer((i) -> {
+            Sent s = new Sent();
+            BytesMessage message = mock(BytesMessage.class);
+            doAnswer((w) -> s.data = (byte[]) w.getArguments()[0]).when(message).writeBytes(any(byte[].class));
+            doAnswer((w) -> s.headers.put((String) w.getArguments()[0], (String) w.getArguments()[1]))
+                    .when(message).setStringProperty(anyString(), anyString());
+            created.put(message, s);
+            return message;
+        });
+
+        sent.clear();
+        failures.set(0);
+        failed.set(0);
+        brokerDown = false;
+        doAnswer((i) -> {
+            if (brokerDown || failures.getAndUpdate((f) -> f > 0 ? f - 1 : 0) > 0) {
+                failed.incrementAndGet();
+                throw new JMSException("The broker is not available.");
+            }
+            return sent.add(created.get((Message) i.getArguments()[0]));
+        }).when(producer).send(any(Message.class));
+    }
+
+    @After
+    public void deleteJournal() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(journalDirectory)) {
+            for (Path f : files) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(journalDirectory);
+    }
+
+    @Test
+    public void testBatchesKeepTheOrderOfEvents() throws Exception {
+        MessageSender sender = new MessageSender(context, configuration().with(Configuration.Property.BATCH_SIZE,
+                "10").with(Configuration.Property.BATCH_LINGER, "1000").build());
+
+        sender.send(Interest.in(Environment.class).being(Action.created()), new Environment("t", "e1"));
+        sender.send(Interest.in(Environment.class).being(Action.created()), new Environment("t", "e2"));
+        sender.send(Interest.in(Environment.class).being(Action.deleted()), new Environment("t", "e1"));
+        sender.send(Interest.in(Environment.class).being(Action.created()), new Environment("t", "e3"));
+
+        List<String> events = awaitEvents(4);
+        sender.close(5000);
+
+        Assert.assertEquals(Arrays.asList("created e1", "created e2", "deleted e1", "created e3"), events);
+
+        //each batch only holds the events with the same headers
+        for (Sent s : sent) {
+            Assert.assertEquals("true", s.headers.get("batch"));
+            for (InventoryEvent<?> e : ((InventoryEventBatch) BinaryEventCodec.decode(s.data)).getEvents()) {
+                Assert.assertEquals(s.headers.get("action"), e.getAction().name().toLowerCase());
+            }
+        }
+    }
+
+    @Test
+    public void testFailedSendsRetriedInOrder() throws Exception {
+        failures.set(3);
+
+        MessageSender sender = new MessageSender(context, configuration().build());
+        send(sender, 5);
+
+        List<String> events = awaitEvents(5);
+        sender.close(5000);
+
+        Assert.assertEquals(expected(5), events);
+        Assert.assertEquals(3, failed.get());
+    }
+
+    @Test
+    public void testSpilledEventsSentInOrder() throws Exception {
+        failures.set(2);
+
+        //the events that don't fit in the queue while the first one is being retried go to the journal
+        MessageSender sender = new MessageSender(context, configuration()
+                .with(Configuration.Property.QUEUE_SIZE, "1").build());
+        send(sender, 20);
+
+        List<String> events = awaitEvents(20);
+        sender.close(5000);
+
+        Assert.assertEquals(expected(20), events);
+    }
+
+    @Test
+    public void testUnsentEventsKeptForNextTime() throws Exception {
+        brokerDown = true;
+
+        MessageSender sender = new MessageSender(context, configuration().with(Configuration.Property.QUEUE_SIZE, "2")
+                .build());
+        send(sender, 5);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (failed.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        sender.close(5000);
+        Assert.assertTrue(sent.isEmpty());
+
+        //the events the sender was retrying and the ones still in the queue are put before the spilled events
+        brokerDown = false;
+        sender = new MessageSender(context, configuration().build());
+
+        List<String> events = awaitEvents(5);
+        sender.close(5000);
+
+        Assert.assertEquals(expected(5), events);
+    }
+
+    private static void send(MessageSender sender, int count) {
+        for (int i = 0; i < count; ++i) {
+            sender.send(Interest.in(Environment.class).being(Action.created()), new Environment("t", "e" + i));
+        }
+    }
+
+    private static List<String> expected(int count) {
+        List<String> ret = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            ret.add("created e" + i);
+        }
+        return ret;
+    }
+
+    private Configuration.Builder configuration() {
+        return Configuration.builder().with(Configuration.Property.ENCODING, "binary")
+                .with(Configuration.Property.JOURNAL_DIRECTORY, journalDirectory.toString());
+    }
+
+    /**
+     * Waits for the provided number of events to be sent.
+     *
+     * @return the events sent, in the order they were sent in, as "action id"
+     */
+    private List<String> awaitEvents(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        List<String> ret;
+        do {
+            ret = new ArrayList<>();
+            synchronized (sent) {
+                for (Sent s : sent) {
+                    Object message = BinaryEventCodec.decode(s.data);
+                    List<InventoryEvent<?>> events = message instanceof InventoryEventBatch
+                            ? ((InventoryEventBatch) message).getEvents()
+                            : Collections.singletonList((InventoryEvent<?>) message);
+                    for (InventoryEvent<?> e : events) {
+                        ret.add(e.getAction().name().toLowerCase() + " " + ((Environment) e.getObject()).getId());
+                    }
+                }
+            }
+
+            if (ret.size() >= count) {
+                return ret;
+            }
+
+            Thread.sleep(10);
+        } while (System.currentTimeMillis() < deadline);
+
+        Assert.fail("Only " + ret + " were sent.");
+        return ret;
+    }
+
+    private static final class Sent {
+        final Map<String, String> headers = new HashMap<>();
+        byte[] data;
+    }
+}
@@ -18,12 +18,16 @@ package org.hawkular.integrated.inventory;
 
 import org.hawkular.inventory.api.Inventory;
 import org.hawkular.inventory.bus.BusIntegration;
+import org.hawkular.inventory.bus.CommandAuthorizer;
 import org.hawkular.inventory.bus.Configuration;
+import org.hawkular.inventory.bus.api.InventoryEvent;
 import org.hawkular.inventory.cdi.DisposingObservableInventory;
 import org.hawkular.inventory.cdi.ObservableInventoryInitialized;
+import org.hawkular.inventory.rest.Security;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
+import javax.inject.Inject;
 import javax.jms.JMSException;
 import javax.naming.NamingException;
 import java.util.IdentityHashMap;
@@ -37,10 +41,13 @@ public class BusIntegrationProducer {
 
     private final IdentityHashMap<Inventory, BusIntegration> integrations = new IdentityHashMap<>();
 
+    @Inject
+    private Security security;
+
     public void install(@Observes ObservableInventoryInitialized event) throws JMSException, NamingException {
         BusIntegration integration = integrations.get(event.getInventory());
         if (integration == null) {
-            integration = newIntegration(event.getInventory());
+            integration = newIntegration(event);
             integration.start();
             integrations.put(event.getInventory(), integration);
         }
@@ -53,10 +60,22 @@ public class BusIntegrationProducer {
         }
     }
 
-    private BusIntegration newIntegration(Inventory.Mixin.Observable inventory) {
-        BusIntegration ret = new BusIntegration(inventory);
-        // TODO load this from somewhere
-        ret.configure(Configuration.getDefaultConfiguration());
+    private BusIntegration newIntegration(ObservableInventoryInitialized event) {
+        BusIntegration ret = new BusIntegration(event.getInventory(), event.getBackgroundDelivery());
+        ret.configure(Configuration.fromSystemProperties());
+        //the commands go through the same permission checks as the REST requests and the entities they create are
+        //owned by their senders
+        ret.authorizeCommands(new CommandAuthorizer() {
+            @Override
+            public boolean isAllowed(String user, InventoryEvent<?> command) {
+                return security.canApply(user, command.getAction(), command.getObject());
+            }
+
+            @Override
+            public void applyOnBehalfOf(String user, Runnable command) {
+                security.applyOnBehalfOf(user, command);
+            }
+        });
 
         try {
             ret.start();
@@ -23,6 +23,7 @@ import javax.enterprise.inject.Disposes;
 import javax.enterprise.inject.Produces;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Lukas Krejci
@@ -31,6 +32,13 @@ import javax.inject.Singleton;
 @Singleton
 public class ObservableAutoTenantInventoryProducer {
 
+    /**
+     * The maximum number of cached entities and pages. The caching is off unless this is set to a positive number.
+     */
+    private static final String CACHE_SIZE_PROPERTY = "hawkular.inventory.cache.size";
+    private static final String CACHE_MAX_PAGE_SIZE_PROPERTY = "hawkular.inventory.cache.maxPageSize";
+    private static final String CACHE_TTL_SECONDS_PROPERTY = "hawkular.inventory.cache.ttl";
+
     @Inject
     @Observable
     private Inventory.Mixin.Observable inventory;
@@ -45,7 +53,14 @@ public class ObservableAutoTenantInventoryProducer {
     @Singleton
     @ObservableAutoTenant
     public Inventory.Mixin.AutoTenantAndObservable getInventory() {
-        Inventory.Mixin.AutoTenantAndObservable ret = Inventory.augment(inventory).autoTenant().get();
+        Inventory.Mixin.ObservableAndAutoTenantMixin mixin = Inventory.augment(inventory).autoTenant();
+
+        int cacheSize = Integer.getInteger(CACHE_SIZE_PROPERTY, 0);
+
+        Inventory.Mixin.AutoTenantAndObservable ret = cacheSize <= 0 ? mixin.get()
+                : mixin.caching(cacheSize, Integer.getInteger(CACHE_MAX_PAGE_SIZE_PROPERTY, 100),
+                Long.getLong(CACHE_TTL_SECONDS_PROPERTY, 60), TimeUnit.SECONDS).get();
+
         autoTenantInventoryInitializedEvent.fire(new AutoTenantInventoryInitialized(ret));
         return ret;
     }
@@ -16,6 +16,7 @@
  */
 package org.hawkular.inventory.cdi;
 
+import org.hawkular.inventory.api.Delivery;
 import org.hawkular.inventory.api.Inventory;
 
 /**
@@ -27,7 +28,26 @@ import org.hawkular.inventory.api.Inventory;
 public final class ObservableInventoryInitialized
         extends AbstractInventoryInitializedEvent<Inventory.Mixin.Observable> {
 
+    private final Delivery backgroundDelivery;
+
     public ObservableInventoryInitialized(Inventory.Mixin.Observable inventory) {
+        this(inventory, Delivery.synchronous());
+    }
+
+    public ObservableInventoryInitialized(Inventory.Mixin.Observable inventory, Delivery backgroundDelivery) {
         super(inventory);
+        this.backgroundDelivery = backgroundDelivery;
+    }
+
+    /**
+     * The subscribers that merely propagate the changes elsewhere (and therefore don't need to see them before the
+     * writes return) should subscribe with this delivery, so that they don't slow down the writers if the inventory
+     * is configured to deliver the notifications in the background. The subscribers the consistency of the inventory
+     * depends on should keep using the synchronous delivery.
+     *
+     * @return the delivery configured for the background subscribers
+     */
+    public Delivery getBackgroundDelivery() {
+        return backgroundDelivery;
     }
 }
@@ -16,6 +16,7 @@
  */
 package org.hawkular.inventory.cdi;
 
+import org.hawkular.inventory.api.Delivery;
 import org.hawkular.inventory.api.Inventory;
 
 import javax.enterprise.event.Event;
@@ -31,6 +32,18 @@ import javax.inject.Singleton;
 @Singleton
 public class ObservableInventoryProducer {
 
+    /**
+     * The maximum number of notifications waiting for each subscriber that opts in to the
+     * {@link ObservableInventoryInitialized#getBackgroundDelivery() background delivery}. 0 delivers the notifications
+     * synchronously on the writing threads.
+     */
+    private static final String DELIVERY_QUEUE_SIZE_PROPERTY = "hawkular.inventory.observable.queueSize";
+
+    /**
+     * One of the {@link Delivery.Overflow} values, used when the notifications are delivered asynchronously.
+     */
+    private static final String DELIVERY_OVERFLOW_PROPERTY = "hawkular.inventory.observable.overflow";
+
     @Inject
     @Basic
     private Inventory inventory;
@@ -45,8 +58,14 @@ public class ObservableInventoryProducer {
     @Singleton
     @Observable
     public Inventory.Mixin.Observable getInventory() {
+        int queueSize = Integer.getInteger(DELIVERY_QUEUE_SIZE_PROPERTY, 0);
+
+        Delivery delivery = queueSize <= 0 ? Delivery.synchronous()
+                : Delivery.asynchronous(queueSize, Delivery.Overflow.valueOf(System.getProperty(
+                DELIVERY_OVERFLOW_PROPERTY, Delivery.Overflow.BLOCK.name())));
+
         Inventory.Mixin.Observable ret = Inventory.augment(inventory).observable().get();
-        observableInventoryInitializedEvent.fire(new ObservableInventoryInitialized(ret));
+        observableInventoryInitializedEvent.fire(new ObservableInventoryInitialized(ret, delivery));
         return ret;
     }
 
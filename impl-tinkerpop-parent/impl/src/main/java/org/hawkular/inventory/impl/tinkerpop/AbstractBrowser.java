@@ -17,8 +17,11 @@
 
 package org.hawkular.inventory.impl.tinkerpop;
 
+import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.pipes.PipeFunction;
 import org.hawkular.inventory.api.EntityNotFoundException;
+import org.hawkular.inventory.api.GroupBy;
 import org.hawkular.inventory.api.Relationships;
 import org.hawkular.inventory.api.filters.Filter;
 import org.hawkular.inventory.api.model.AbstractElement;
@@ -26,6 +29,12 @@ import org.hawkular.inventory.api.model.Entity;
 import org.hawkular.inventory.api.paging.Page;
 import org.hawkular.inventory.api.paging.Pager;
 
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.hawkular.inventory.api.Relationships.WellKnown.defines;
+
 /**
  * An abstract base class for all browser interface implementations. Browsers are interfaces like
  * {@link org.hawkular.inventory.api.Environments.Single} that the user can use to proceed with the traversal across
@@ -53,7 +62,7 @@ abstract class AbstractBrowser<E extends Entity<B, U>, B extends Entity.Blueprin
             throw new EntityNotFoundException(entityClass, FilterApplicator.filters(pathContext.sourcePath));
         }
 
-        Entity<?, ?> ret = convert(q.next());
+        Entity<?, ?> ret = convert(q.next(), context.getDefinitions());
 
         if (!isApplicable(ret)) {
             throw new EntityNotFoundException(entityClass, FilterApplicator.filters(pathContext.sourcePath));
@@ -62,13 +71,26 @@ abstract class AbstractBrowser<E extends Entity<B, U>, B extends Entity.Blueprin
         return entityClass.cast(ret);
     }
 
-    @SuppressWarnings("unchecked")
     public Page<E> entities(Pager pager) {
+        if (context.getResultFilter() == null) {
+            return context.getQueries().get(entityClass, sourcePaths, pager, () -> query(pager));
+        } else {
+            //the results can differ for each caller, so they can be neither cached nor shared
+            return query(pager);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Page<E> query(Pager pager) {
         HawkularPipeline<?, E> q;
+
+        //the entities on a single page tend to share the types they reference, which are interned
+        DefinitionCache definitions = context.getDefinitions();
+
         if (context.getResultFilter() == null) {
             //no result filtering so, we can save the relatively expensive conversion from the vertex to the entity
             //only for results we need.
-            q = source().counter("total").page(pager).transform(v -> entityClass.cast(convert(v)));
+            q = source().counter("total").page(pager).transform(v -> entityClass.cast(convert(v, definitions)));
         } else {
             //the ResultFilter interface requires an entity to check its applicability and can rule out some of the
             //entities from the result set, which affects the total count. We therefore need to convert to entity first
@@ -77,7 +99,8 @@ abstract class AbstractBrowser<E extends Entity<B, U>, B extends Entity.Blueprin
             //to have stable ids, it needs to have the "canonical" path to the entity, which the inventory traversal
             //path might not be. The transformation of a non-canonical to canonical path is essentially identical
             //operation to converting the vertex to the entity.
-            q = source().transform(v -> entityClass.cast(convert(v))).filter(this::isApplicable).counter("total")
+            q = source().transform(v -> entityClass.cast(convert(v, definitions))).filter(this::isApplicable)
+                    .counter("total")
                     .page(pager, (e, p) -> {
                         if (AbstractElement.ID_PROPERTY.equals(p)) {
                             return (Comparable) e.getId();
@@ -90,6 +113,27 @@ abstract class AbstractBrowser<E extends Entity<B, U>, B extends Entity.Blueprin
         return new Page<>(q.toList(), pager, q.getCount("total"));
     }
 
+    @SuppressWarnings("unchecked")
+    public <K> Map<K, Long> groupCount(GroupBy<K> groupBy) {
+        Map<Object, Number> counts = new HashMap<>();
+
+        if (context.getResultFilter() == null) {
+            //the bucket keys can be computed straight from the vertices, so we don't have to convert them to entities
+            //and the caller only ever sees the buckets
+            source().groupCount(counts, vertexKey(groupBy)).iterate();
+        } else {
+            //see the comment in entities(Pager) for why we need to convert to entities when there is a result filter
+            source().transform(v -> entityClass.cast(convert(v, context.getDefinitions())))
+                    .filter(this::isApplicable)
+                    .groupCount(counts, (PipeFunction<E, K>) groupBy::keyOf).iterate();
+        }
+
+        Map<K, Long> ret = new HashMap<>();
+        counts.forEach((k, v) -> ret.put((K) k, v.longValue()));
+
+        return ret;
+    }
+
     public RelationshipService<E, B, U> relationships() {
         return relationships(Relationships.Direction.outgoing);
     }
@@ -118,4 +162,21 @@ abstract class AbstractBrowser<E extends Entity<B, U>, B extends Entity.Blueprin
     protected final Filter[] initNewEntity(Vertex newEntity, Entity.Blueprint blueprint) {
         throw new IllegalStateException("This method is not valid on a browser interface.");
     }
+
+    private static PipeFunction<Vertex, ?> vertexKey(GroupBy<?> groupBy) {
+        switch (groupBy.getKind()) {
+            case type:
+                return v -> Constants.Type.valueOf(getType(v)).getEntityType();
+            case property:
+                String property = Constants.Property.mapUserDefined(groupBy.getProperty());
+                return v -> v.getProperty(property);
+            case definition:
+                return v -> {
+                    Iterator<Vertex> definitions = v.getVertices(Direction.IN, defines.name()).iterator();
+                    return definitions.hasNext() ? getEid(definitions.next()) : null;
+                };
+            default:
+                throw new AssertionError("Unhandled grouping kind: " + groupBy.getKind());
+        }
+    }
 }
@@ -24,6 +24,7 @@ import org.hawkular.inventory.api.Relationships;
 import org.hawkular.inventory.api.ResultFilter;
 import org.hawkular.inventory.api.filters.Filter;
 import org.hawkular.inventory.api.model.AbstractElement;
+import org.hawkular.inventory.api.model.CanonicalPath;
 import org.hawkular.inventory.api.model.Entity;
 import org.hawkular.inventory.api.model.EntityVisitor;
 import org.hawkular.inventory.api.model.Environment;
@@ -36,11 +37,13 @@ import org.hawkular.inventory.api.model.ResourceType;
 import org.hawkular.inventory.api.model.Tenant;
 import org.hawkular.inventory.impl.tinkerpop.Constants.Type;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -285,21 +288,33 @@ abstract class AbstractGraphService {
      * @return the entity corresponding to the vertex
      */
     static Entity<?, ?> convert(Vertex v) {
+        return convert(v, null);
+    }
+
+    /**
+     * Converts the vertex into an entity, reusing the interned resource types and metric types referenced by the
+     * resources and metrics. The types tend to be shared by many results, so it doesn't make sense to convert them over
+     * and over again.
+     *
+     * @param v           the vertex to convert
+     * @param definitions the cache of the interned types or null if the types should always be converted
+     * @return the entity corresponding to the vertex
+     */
+    static Entity<?, ?> convert(Vertex v, DefinitionCache definitions) {
         Type type = Type.valueOf(getType(v));
 
+        Map<String, Object> properties = getUserProperties(v, type);
+
         Vertex environmentVertex;
         Vertex feedVertex;
 
-        Entity<?, ?> e;
-
         switch (type) {
             case environment:
-                e = new Environment(getEid(getTenantVertexOf(v)), getEid(v));
-                break;
+                return new Environment(getEid(getTenantVertexOf(v)), getEid(v), properties);
             case feed:
                 environmentVertex = getEnvironmentVertexOf(v);
-                e = new Feed(getEid(getTenantVertexOf(environmentVertex)), getEid(environmentVertex), getEid(v));
-                break;
+                return new Feed(getEid(getTenantVertexOf(environmentVertex)), getEid(environmentVertex), getEid(v),
+                        properties);
             case metric:
                 environmentVertex = getEnvironmentVertexOrNull(v);
                 feedVertex = getFeedVertexOrNull(v);
@@ -308,14 +323,12 @@ abstract class AbstractGraphService {
                 }
                 Vertex mdv = v.getVertices(Direction.IN, Relationships.WellKnown.defines.name()).iterator()
                         .next();
-                MetricType md = (MetricType) convert(mdv);
-                e = new Metric(getEid(getTenantVertexOf(environmentVertex)), getEid(environmentVertex),
-                        feedVertex == null ? null : getEid(feedVertex), getEid(v), md);
-                break;
+                MetricType md = (MetricType) convertReferenced(mdv, definitions);
+                return new Metric(getEid(getTenantVertexOf(environmentVertex)), getEid(environmentVertex),
+                        feedVertex == null ? null : getEid(feedVertex), getEid(v), md, properties);
             case metricType:
-                e = new MetricType(getEid(getTenantVertexOf(v)), getEid(v), MetricUnit.fromDisplayName(
-                        getProperty(v, Constants.Property.__unit)));
-                break;
+                return new MetricType(getEid(getTenantVertexOf(v)), getEid(v), MetricUnit.fromDisplayName(
+                        getProperty(v, Constants.Property.__unit)), properties);
             case resource:
                 environmentVertex = getEnvironmentVertexOrNull(v);
                 feedVertex = getFeedVertexOrNull(v);
@@ -323,66 +336,102 @@ abstract class AbstractGraphService {
                     environmentVertex = getEnvironmentVertexOf(feedVertex);
                 }
                 Vertex rtv = v.getVertices(Direction.IN, Relationships.WellKnown.defines.name()).iterator().next();
-                ResourceType rt = (ResourceType) convert(rtv);
-                e = new Resource(getEid(getTenantVertexOf(environmentVertex)), getEid(environmentVertex),
-                        feedVertex == null ? null : getEid(feedVertex), getEid(v), rt);
-                break;
+                ResourceType rt = (ResourceType) convertReferenced(rtv, definitions);
+                return new Resource(getEid(getTenantVertexOf(environmentVertex)), getEid(environmentVertex),
+                        feedVertex == null ? null : getEid(feedVertex), getEid(v), rt, properties);
             case resourceType:
-                e = new ResourceType(getEid(getTenantVertexOf(v)), getEid(v), getProperty(v,
-                        Constants.Property.__version));
-                break;
+                return new ResourceType(getEid(getTenantVertexOf(v)), getEid(v), getProperty(v,
+                        Constants.Property.__version), properties);
             case tenant:
-                e = new Tenant(getEid(v));
-                break;
+                return new Tenant(getEid(v), properties);
             default:
                 throw new IllegalArgumentException("Unknown type of vertex");
         }
+    }
 
-        List<String> mappedProps = Arrays.asList(type.getMappedProperties());
-        Map<String, Object> filteredProperties = new HashMap<>();
-        v.getPropertyKeys().forEach(k -> {
-            if (!mappedProps.contains(k)) {
-                filteredProperties.put(k, v.getProperty(k));
+    /**
+     * Collects the user-defined properties of the vertex, i.e. all the properties that are not mapped to the fields of
+     * the entity of given type. The entity constructors make their own copy of the properties, so this one is only
+     * transient and is therefore not allocated at all if there are no user-defined properties on the vertex.
+     */
+    private static Map<String, Object> getUserProperties(Vertex v, Type type) {
+        Set<String> keys = v.getPropertyKeys();
+
+        Map<String, Object> ret = null;
+        for (String k : keys) {
+            if (!type.isMappedProperty(k)) {
+                if (ret == null) {
+                    ret = new HashMap<>((int) (keys.size() / 0.75f) + 1);
+                }
+                ret.put(k, v.getProperty(k));
             }
-        });
+        }
 
-        return e.accept(new EntityVisitor<Entity<?, ?>, Void>() {
-            @Override
-            public Entity<?, ?> visitTenant(Tenant tenant, Void ignored) {
-                return tenant.update().with(Tenant.Update.builder().withProperties(filteredProperties).build());
-            }
+        return ret == null ? Collections.emptyMap() : ret;
+    }
 
-            @Override
-            public Entity<?, ?> visitEnvironment(Environment environment, Void ignored) {
-                return environment.update().with(Environment.Update.builder().withProperties(filteredProperties)
-                        .build());
-            }
+    private static Entity<?, ?> convertReferenced(Vertex v, DefinitionCache definitions) {
+        return definitions == null ? convert(v, null) : definitions.get(v, (t) -> convert(t, null));
+    }
 
-            @Override
-            public Entity<?, ?> visitFeed(Feed feed, Void ignored) {
-                return feed.update().with(Feed.Update.builder().withProperties(filteredProperties).build());
-            }
+    /**
+     * Computes the canonical path of the entity represented by the provided vertex by following the "contains"
+     * hierarchy up to the tenant.
+     *
+     * @param v the vertex representing an entity
+     * @return the canonical path of the entity or null if the vertex is not part of a valid "contains" hierarchy
+     */
+    static CanonicalPath canonicalPath(Vertex v) {
+        Deque<Vertex> chain = new ArrayDeque<>();
 
-            @Override
-            public Entity<?, ?> visitMetric(Metric metric, Void ignored) {
-                return metric.update().with(Metric.Update.builder().withProperties(filteredProperties).build());
-            }
+        Vertex current = v;
+        while (current != null) {
+            chain.push(current);
 
-            @Override
-            public Entity<?, ?> visitMetricType(MetricType metricType, Void ignored) {
-                return metricType.update().with(MetricType.Update.builder().withProperties(filteredProperties).build());
+            if (Type.valueOf(getType(current)) == Type.tenant) {
+                break;
             }
 
-            @Override
-            public Entity<?, ?> visitResource(Resource resource, Void ignored) {
-                return resource.update().with(Resource.Update.builder().withProperties(filteredProperties).build());
+            Iterator<Vertex> parents = current.getVertices(Direction.IN, contains.name()).iterator();
+            current = parents.hasNext() ? parents.next() : null;
+        }
+
+        if (current == null) {
+            return null;
+        }
+
+        CanonicalPath ret = CanonicalPath.empty();
+        try {
+            for (Vertex cv : chain) {
+                ret = ret.extend(Type.valueOf(getType(cv)).getEntityType(), getEid(cv));
             }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        return ret;
+    }
 
-            @Override
-            public Entity<?, ?> visitResourceType(ResourceType type, Void ignored) {
-                return type.update().with(ResourceType.Update.builder().withProperties(filteredProperties).build());
+    /**
+     * Returns the id of the tenant the entity represented by the provided vertex belongs to by following the "contains"
+     * hierarchy up to the tenant. Unlike {@link #getTenantVertexOf(Vertex)} this works for all types of entities
+     * including the tenants themselves.
+     *
+     * @param entityVertex the vertex of the entity
+     * @return the id of the tenant or null if the vertex is not contained in any tenant
+     */
+    static String getTenantIdOf(Vertex entityVertex) {
+        Vertex current = entityVertex;
+        while (current != null) {
+            if (Type.tenant.name().equals(getType(current))) {
+                return getEid(current);
             }
-        }, null);
+
+            Iterator<Vertex> parents = current.getVertices(Direction.IN, contains.name()).iterator();
+            current = parents.hasNext() ? parents.next() : null;
+        }
+
+        return null;
     }
 
     /**
@@ -20,6 +20,7 @@ package org.hawkular.inventory.impl.tinkerpop;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Vertex;
+import org.hawkular.inventory.api.ChangeSet;
 import org.hawkular.inventory.api.EntityAlreadyExistsException;
 import org.hawkular.inventory.api.EntityNotFoundException;
 import org.hawkular.inventory.api.RelationAlreadyExistsException;
@@ -29,12 +30,19 @@ import org.hawkular.inventory.api.filters.Filter;
 import org.hawkular.inventory.api.filters.Related;
 import org.hawkular.inventory.api.filters.With;
 import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.api.model.MetricType;
 import org.hawkular.inventory.api.model.Relationship;
+import org.hawkular.inventory.api.model.ResourceType;
+import org.hawkular.inventory.api.model.Tenant;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import static org.hawkular.inventory.api.Relationships.WellKnown.contains;
 import static org.hawkular.inventory.api.Relationships.WellKnown.defines;
@@ -103,6 +111,21 @@ abstract class AbstractSourcedGraphService<Single, Multiple, E extends Entity<Bl
      * @return browser interface for the newly created entity
      */
     public Single create(Blueprint blueprint) {
+        return create(blueprint, null);
+    }
+
+    /**
+     * A default implementation of the
+     * {@link org.hawkular.inventory.api.WriteInterface#create(Entity.Blueprint, Consumer)} method.
+     *
+     * <p>The new vertex is fresh in the transaction, so all its edges are the ones that were added by
+     * {@link #initNewEntity(Vertex, Entity.Blueprint)} and those are reported as the created relationships.
+     *
+     * @param blueprint the blueprint to create the entity with
+     * @param changes   the consumer of the changes made by the creation or null if the caller is not interested
+     * @return browser interface for the newly created entity
+     */
+    public Single create(Blueprint blueprint, Consumer<ChangeSet> changes) {
         String id = getProposedId(blueprint);
 
         FilterApplicator.Tree checkPath = FilterApplicator.fromPath(selectCandidates()).andFilter(With.ids(id)).get();
@@ -128,8 +151,18 @@ abstract class AbstractSourcedGraphService<Single, Multiple, E extends Entity<Bl
         try {
             Filter[] path = initNewEntity(v, blueprint);
 
+            //capture the changes before the commit, because some backends don't allow to read the elements after the
+            //transaction ends
+            ChangeSet changeSet = changes == null ? null : captureCreation(v);
+
             context.getGraph().commit();
 
+            context.getQueries().invalidate(getTenantIdOf(v));
+
+            if (changeSet != null) {
+                changes.accept(changeSet);
+            }
+
             return createSingleBrowser(FilterApplicator.fromPath(path).get());
         } catch (Throwable e) {
             context.getGraph().rollback();
@@ -137,6 +170,17 @@ abstract class AbstractSourcedGraphService<Single, Multiple, E extends Entity<Bl
         }
     }
 
+    private ChangeSet captureCreation(Vertex newEntity) {
+        List<Relationship> relationships = new ArrayList<>(2);
+        for (Edge e : newEntity.getEdges(Direction.BOTH)) {
+            relationships.add(new Relationship(getEid(e), e.getLabel(), convert(e.getVertex(Direction.OUT)),
+                    convert(e.getVertex(Direction.IN))));
+        }
+
+        return new ChangeSet(Collections.singletonList(convert(newEntity, context.getDefinitions())),
+                relationships);
+    }
+
     /**
      * A default implementation of the {@link org.hawkular.inventory.api.WriteInterface#update(String, Object)} method.
      *
@@ -154,10 +198,17 @@ abstract class AbstractSourcedGraphService<Single, Multiple, E extends Entity<Bl
 
         Vertex vertex = it.next();
 
+        invalidateDefinition(vertex);
+
         updateProperties(vertex, update.getProperties(), Constants.Type.of(entityClass).getMappedProperties());
         updateExplicitProperties(update, vertex);
 
         context.getGraph().commit();
+
+        //the version might have changed and some reader might have interned the old state in the meantime
+        invalidateDefinition(vertex);
+
+        context.getQueries().invalidate(getTenantIdOf(vertex));
     }
 
     /**
@@ -177,6 +228,16 @@ abstract class AbstractSourcedGraphService<Single, Multiple, E extends Entity<Bl
 
         Vertex v = vs.next();
 
+        invalidateDefinition(v);
+
+        //we need to find out the tenant while the vertex still exists
+        String tenantId = getTenantIdOf(v);
+
+        if (entityClass == Tenant.class) {
+            //the types contained in the tenant are removed along with it
+            context.getDefinitions().invalidateTenant(tenantId);
+        }
+
         Set<Vertex> verticesToBeDeletedThatDefineSomething = new HashSet<>();
 
         try {
@@ -215,6 +276,8 @@ abstract class AbstractSourcedGraphService<Single, Multiple, E extends Entity<Bl
             }
 
             context.getGraph().commit();
+
+            context.getQueries().invalidate(tenantId);
         } catch (Exception e) {
             context.getGraph().rollback();
             throw e;
@@ -257,10 +320,23 @@ abstract class AbstractSourcedGraphService<Single, Multiple, E extends Entity<Bl
                     }
                 }
 
-                Edge e = addEdge(v, rel.name(), o);
+                Relationship ret;
+                try {
+                    Edge e = addEdge(v, rel.name(), o);
+                    ret = new Relationship(getEid(e), e.getLabel(), convert(e.getVertex(Direction.OUT)),
+                            convert(e.getVertex(Direction.IN)));
+
+                    //the cached queries must only be invalidated once the readers can see the change, otherwise they
+                    //could cache the old state again under the new generation
+                    context.getGraph().commit();
+                } catch (Throwable t) {
+                    context.getGraph().rollback();
+                    throw t;
+                }
+
+                context.getQueries().invalidate(getTenantIdOf(v));
 
-                return new Relationship(getEid(e), e.getLabel(), convert(e.getVertex(Direction.OUT)),
-                        convert(e.getVertex(Direction.IN)));
+                return ret;
             }
 
             throw new EntityNotFoundException(entityClass,
@@ -316,9 +392,20 @@ abstract class AbstractSourcedGraphService<Single, Multiple, E extends Entity<Bl
         }
 
         Edge edge = it.next();
-        Relationship ret = new Relationship(getEid(edge), edge.getLabel(), convert(edge.getVertex(Direction.OUT)),
+        Vertex source = edge.getVertex(Direction.OUT);
+        Relationship ret = new Relationship(getEid(edge), edge.getLabel(), convert(source),
                 convert(edge.getVertex(Direction.IN)));
-        context.getGraph().removeEdge(edge);
+        String tenantId = getTenantIdOf(source);
+        try {
+            context.getGraph().removeEdge(edge);
+            context.getGraph().commit();
+        } catch (Throwable t) {
+            context.getGraph().rollback();
+            throw t;
+        }
+
+        context.getQueries().invalidate(tenantId);
+
         return ret;
     }
 
@@ -369,4 +456,10 @@ abstract class AbstractSourcedGraphService<Single, Multiple, E extends Entity<Bl
         Constants.Type type = Constants.Type.of(entityClass);
         checkProperties(properties, type.getMappedProperties());
     }
+
+    private void invalidateDefinition(Vertex v) {
+        if (entityClass == ResourceType.class || entityClass == MetricType.class) {
+            context.getDefinitions().invalidate(v);
+        }
+    }
 }
@@ -28,6 +28,9 @@ import org.hawkular.inventory.api.model.ResourceType;
 import org.hawkular.inventory.api.model.Tenant;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.hawkular.inventory.impl.tinkerpop.Constants.Property.__unit;
 import static org.hawkular.inventory.impl.tinkerpop.Constants.Property.__version;
@@ -84,6 +87,7 @@ final class Constants {
         metric(Metric.class);
 
         private final String[] mappedProperties;
+        private final Set<String> mappedPropertySet;
         private final Class<? extends Entity> entityType;
 
         Type(Class<? extends Entity> entityType, Property... mappedProperties) {
@@ -91,6 +95,7 @@ final class Constants {
             this.mappedProperties = new String[mappedProperties.length + 2];
             Arrays.setAll(this.mappedProperties, i -> i == 0 ? Property.__type.name() :
                     (i == 1 ? Property.__eid.name() : mappedProperties[i - 2].name()));
+            this.mappedPropertySet = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(this.mappedProperties)));
         }
 
         public static Type of(Entity<?, ?> e) {
@@ -162,6 +167,14 @@ final class Constants {
         public String[] getMappedProperties() {
             return mappedProperties;
         }
+
+        /**
+         * @param property the name of the vertex property
+         * @return true if the property is explicitly mapped to an entity class property, false if it is user-defined
+         */
+        public boolean isMappedProperty(String property) {
+            return mappedPropertySet.contains(property);
+        }
     }
 
     private Constants() {
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.impl.tinkerpop;
+
+import com.tinkerpop.blueprints.Vertex;
+import org.hawkular.inventory.api.BoundedCache;
+import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.api.model.TenantBasedEntity;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Interns the resource types and metric types converted from the vertices, so that all the resources and metrics
+ * (possibly thousands on a single page of results) share a single instance of their type instead of each carrying
+ * its own copy.
+ *
+ * <p>The types are keyed by the id of their vertex and an interned type is only used while the version (the unit in
+ * case of metric types) stored in the vertex stays the same, so that looking up a type only needs the vertex at hand.
+ * The entries are invalidated when the type is updated or deleted and all the types of a tenant are invalidated at
+ * once when the tenant is deleted.
+ *
+ * <p>Only the version and unit changes are detected if the type is changed by another inventory instance sharing the
+ * same graph database, which is why the interning is disabled by default (see
+ * {@link InventoryService#DEFINITION_CACHE_SIZE}).
+ *
+ * <p>The cache holds at most the configured number of types, evicting the least recently used ones.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+final class DefinitionCache {
+    private final BoundedCache<Object, Interned> definitions;
+
+    /**
+     * @param maxSize the maximum number of the interned types, 0 disables the interning
+     */
+    DefinitionCache(int maxSize) {
+        this.definitions = new BoundedCache<>(maxSize);
+    }
+
+    /**
+     * @param v         a vertex of a resource type or a metric type
+     * @param converter the function to convert the vertex if the type is not interned yet
+     * @return the interned type
+     */
+    Entity<?, ?> get(Vertex v, Function<Vertex, Entity<?, ?>> converter) {
+        if (!definitions.isEnabled()) {
+            return converter.apply(v);
+        }
+
+        String version = versionOf(v);
+
+        return definitions.get(v.getId(), (i) -> Objects.equals(i.version, version),
+                () -> new Interned(version, converter.apply(v))).entity;
+    }
+
+    /**
+     * Drops the type represented by the provided vertex from the cache. This must be called before the vertex is
+     * modified or removed.
+     *
+     * @param v the vertex of the resource type or metric type being updated or deleted
+     */
+    void invalidate(Vertex v) {
+        definitions.invalidate(v.getId());
+    }
+
+    /**
+     * Drops all the types of the tenant from the cache. This must be called before the tenant is deleted.
+     *
+     * @param tenantId the id of the tenant being deleted
+     */
+    void invalidateTenant(String tenantId) {
+        definitions.invalidateIf((id, i) -> tenantId.equals(((TenantBasedEntity<?, ?>) i.entity).getTenantId()));
+    }
+
+    private static String versionOf(Vertex v) {
+        return AbstractGraphService.getProperty(v, Constants.Type.resourceType.name().equals(
+                AbstractGraphService.getType(v)) ? Constants.Property.__version : Constants.Property.__unit);
+    }
+
+    private static final class Interned {
+        final String version;
+        final Entity<?, ?> entity;
+
+        Interned(String version, Entity<?, ?> entity) {
+            this.version = version;
+            this.entity = entity;
+        }
+    }
+}
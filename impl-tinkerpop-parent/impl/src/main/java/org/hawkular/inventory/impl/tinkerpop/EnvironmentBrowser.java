@@ -19,6 +19,7 @@ package org.hawkular.inventory.impl.tinkerpop;
 import org.hawkular.inventory.api.EntityNotFoundException;
 import org.hawkular.inventory.api.Environments;
 import org.hawkular.inventory.api.Feeds;
+import org.hawkular.inventory.api.GroupBy;
 import org.hawkular.inventory.api.Metrics;
 import org.hawkular.inventory.api.RelationNotFoundException;
 import org.hawkular.inventory.api.Relationships;
@@ -34,6 +35,8 @@ import org.hawkular.inventory.api.model.Resource;
 import org.hawkular.inventory.api.paging.Page;
 import org.hawkular.inventory.api.paging.Pager;
 
+import java.util.Map;
+
 import static org.hawkular.inventory.api.Relationships.WellKnown.contains;
 
 /**
@@ -124,6 +127,11 @@ final class EnvironmentBrowser extends AbstractBrowser<Environment, Environment.
                 return b.entities(pager);
             }
 
+            @Override
+            public <K> Map<K, Long> groupCount(GroupBy<K> groupBy) {
+                return b.groupCount(groupBy);
+            }
+
             @Override
             public ResolvingToMultiple<Metrics.Multiple> allMetrics() {
                 return b.allMetrics();
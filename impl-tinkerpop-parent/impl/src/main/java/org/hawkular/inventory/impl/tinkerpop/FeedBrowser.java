@@ -18,6 +18,7 @@ package org.hawkular.inventory.impl.tinkerpop;
 
 import org.hawkular.inventory.api.EntityNotFoundException;
 import org.hawkular.inventory.api.Feeds;
+import org.hawkular.inventory.api.GroupBy;
 import org.hawkular.inventory.api.Metrics;
 import org.hawkular.inventory.api.RelationNotFoundException;
 import org.hawkular.inventory.api.Relationships;
@@ -31,6 +32,8 @@ import org.hawkular.inventory.api.model.Resource;
 import org.hawkular.inventory.api.paging.Page;
 import org.hawkular.inventory.api.paging.Pager;
 
+import java.util.Map;
+
 import static org.hawkular.inventory.api.Relationships.WellKnown.contains;
 
 /**
@@ -81,6 +84,11 @@ final class FeedBrowser extends AbstractBrowser<Feed, Feed.Blueprint, Feed.Updat
                 return b.entities(pager);
             }
 
+            @Override
+            public <K> Map<K, Long> groupCount(GroupBy<K> groupBy) {
+                return b.groupCount(groupBy);
+            }
+
             @Override
             public Relationships.Read relationships() {
                 return b.relationships();
@@ -248,6 +248,21 @@ abstract class FilterApplicator<T extends Filter> {
         return "FilterApplicator[type=" + type + ", filter=" + filter + "]";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        FilterApplicator<?> that = (FilterApplicator<?>) o;
+
+        return type == that.type && filter.equals(that.filter);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * type.hashCode() + filter.hashCode();
+    }
+
     private static final class RelatedApplicator<T extends Related<?>> extends FilterApplicator<Related<?>> {
 
         private RelatedApplicator(T filter, Type type) {
@@ -442,6 +457,21 @@ abstract class FilterApplicator<T extends Filter> {
             return b;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Tree tree = (Tree) o;
+
+            return Arrays.equals(filters, tree.filters) && subTrees.equals(tree.subTrees);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(filters) + subTrees.hashCode();
+        }
+
         public static final class Builder {
             List<FilterApplicator<?>> filters = new ArrayList<>();
             Tree tree = new Tree();
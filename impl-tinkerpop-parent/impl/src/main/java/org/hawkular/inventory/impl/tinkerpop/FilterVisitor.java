@@ -26,6 +26,7 @@ import org.hawkular.inventory.api.filters.With;
 import org.hawkular.inventory.api.model.Entity;
 
 import java.util.Arrays;
+import java.util.HashSet;
 
 /**
  * @author Lukas Krejci
@@ -74,20 +75,15 @@ class FilterVisitor {
         query.recall();
     }
 
-    @SuppressWarnings("unchecked")
     public void visit(HawkularPipeline<?, ?> query, With.Ids ids) {
         if (ids.getIds().length == 1) {
             query.has(Constants.Property.__eid.name(), ids.getIds()[0]);
             return;
         }
 
-        Pipe[] idChecks = new Pipe[ids.getIds().length];
-
-        Arrays.setAll(idChecks, i ->
-                new PropertyFilterPipe<Element, String>(Constants.Property.__eid.name(), Compare.EQUAL,
-                        ids.getIds()[i]));
-
-        query.or(idChecks);
+        //a single multi-valued check instead of a disjunction of the individual checks - this gets folded into the
+        //graph query and can therefore be resolved using the index
+        query.hasEids(new HashSet<>(Arrays.asList(ids.getIds())));
     }
 
     @SuppressWarnings("unchecked")
@@ -109,20 +105,13 @@ class FilterVisitor {
         query.or(typeChecks);
     }
 
-    @SuppressWarnings("unchecked")
     public void visit(HawkularPipeline<?, ?> query, RelationWith.Ids ids) {
         if (ids.getIds().length == 1) {
             query.hasEid(ids.getIds()[0]);
             return;
         }
 
-        Pipe[] idChecks = new Pipe[ids.getIds().length];
-
-        Arrays.setAll(idChecks, i ->
-                new PropertyFilterPipe<Element, String>(Constants.Property.__eid.name(), Compare.EQUAL,
-                        ids.getIds()[i]));
-
-        query.or(idChecks);
+        query.hasEids(new HashSet<>(Arrays.asList(ids.getIds())));
     }
 
     @SuppressWarnings("unchecked")
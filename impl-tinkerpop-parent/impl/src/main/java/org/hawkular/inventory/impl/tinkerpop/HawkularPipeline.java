@@ -17,6 +17,7 @@
 
 package org.hawkular.inventory.impl.tinkerpop;
 
+import com.tinkerpop.blueprints.Contains;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.Graph;
@@ -107,6 +108,18 @@ final class HawkularPipeline<S, E> extends GremlinPipeline<S, E> implements Clon
         return cast(has(Constants.Property.__eid.name(), eid));
     }
 
+    /**
+     * Filters the elements to those having one of the provided ids. Unlike a disjunction of {@link #hasEid(String)}
+     * checks, this is folded into the graph (or vertex) query when possible, so that the backend can look up all the
+     * ids using a single (multi-key) index query.
+     *
+     * @param eids the ids to look for
+     * @return the pipeline emitting the elements with one of the provided ids
+     */
+    public HawkularPipeline<S, ? extends Element> hasEids(Collection<String> eids) {
+        return cast(has(Constants.Property.__eid.name(), Contains.IN, eids));
+    }
+
     public HawkularPipeline<S, Vertex> out(Relationships.WellKnown... rel) {
         String[] srels = new String[rel.length];
         Arrays.setAll(srels, i -> rel[i].name());
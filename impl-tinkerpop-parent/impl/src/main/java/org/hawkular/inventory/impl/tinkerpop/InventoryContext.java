@@ -33,13 +33,17 @@ final class InventoryContext {
     private final ResultFilter resultFilter;
     private final TransactionalGraph graph;
     private final InventoryService inventory;
+    private final DefinitionCache definitions;
+    private final QueryCache queries;
 
     public InventoryContext(InventoryService inventory, FeedIdStrategy feedIdStrategy, ResultFilter resultFilter,
-            TransactionalGraph graph) {
+            TransactionalGraph graph, int queryCacheSize, int definitionCacheSize) {
         this.inventory = inventory;
         this.feedIdStrategy = feedIdStrategy;
         this.resultFilter = resultFilter;
         this.graph = graph;
+        this.queries = new QueryCache(queryCacheSize);
+        this.definitions = new DefinitionCache(definitionCacheSize);
     }
 
     public InventoryService getInventory() {
@@ -57,4 +61,12 @@ final class InventoryContext {
     public TransactionalGraph getGraph() {
         return graph;
     }
+
+    public DefinitionCache getDefinitions() {
+        return definitions;
+    }
+
+    public QueryCache getQueries() {
+        return queries;
+    }
 }
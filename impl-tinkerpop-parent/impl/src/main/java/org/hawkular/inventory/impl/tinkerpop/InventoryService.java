@@ -16,21 +16,56 @@
  */
 package org.hawkular.inventory.impl.tinkerpop;
 
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.blueprints.Vertex;
 import org.hawkular.inventory.api.Configuration;
+import org.hawkular.inventory.api.EntityNotFoundException;
 import org.hawkular.inventory.api.Inventory;
+import org.hawkular.inventory.api.Relationships;
+import org.hawkular.inventory.api.ResultFilter;
 import org.hawkular.inventory.api.Tenants;
+import org.hawkular.inventory.api.TreeVisitor;
+import org.hawkular.inventory.api.filters.Filter;
+import org.hawkular.inventory.api.filters.With;
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.api.model.Entity;
 import org.hawkular.inventory.impl.tinkerpop.spi.GraphProvider;
 import org.hawkular.inventory.impl.tinkerpop.spi.IndexSpec;
 
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
 
 /**
  * @author Lukas Krejci
  * @since 0.0.1
  */
 public final class InventoryService implements Inventory {
+    /**
+     * The implementation configuration property specifying the maximum number of pages of query results to cache.
+     * The cache is disabled (set to 0) by default, because it is only invalidated by the writes made through this
+     * instance - it must only be enabled if no other inventory instance writes to the same graph database.
+     */
+    public static final String QUERY_CACHE_SIZE = "hawkular.inventory.queryCache.size";
+
+    /**
+     * The implementation configuration property specifying the maximum number of resource types and metric types to
+     * share among the converted resources and metrics. The sharing is disabled (set to 0) by default, because it only
+     * notices the changes of the types other than to their versions or units if they are made through this instance -
+     * it must only be enabled if no other inventory instance writes to the same graph database.
+     */
+    public static final String DEFINITION_CACHE_SIZE = "hawkular.inventory.definitionCache.size";
+
+    private static final int DEFAULT_QUERY_CACHE_SIZE = 0;
+    private static final int DEFAULT_DEFINITION_CACHE_SIZE = 0;
+
     private InventoryContext context;
 
     @Override
@@ -49,7 +84,21 @@ public final class InventoryService implements Inventory {
                         .withElementType(Vertex.class)
                         .withProperty(Constants.Property.__type.name(), String.class).build());
 
-        context = new InventoryContext(this, configuration.getFeedIdStrategy(), configuration.getResultFilter(), graph);
+        //the results might be filtered differently for each caller so we can't cache them when filtering
+        int queryCacheSize = configuration.getResultFilter() != null ? 0
+                : getCacheSize(configuration, QUERY_CACHE_SIZE, DEFAULT_QUERY_CACHE_SIZE);
+
+        context = new InventoryContext(this, configuration.getFeedIdStrategy(), configuration.getResultFilter(), graph,
+                queryCacheSize, getCacheSize(configuration, DEFINITION_CACHE_SIZE, DEFAULT_DEFINITION_CACHE_SIZE));
+    }
+
+    private static int getCacheSize(Configuration configuration, String property, int defaultSize) {
+        String size = configuration.getImplementationConfiguration().get(property);
+        try {
+            return size == null ? defaultSize : Integer.parseInt(size);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value of " + property + ": " + size, e);
+        }
     }
 
     @Override
@@ -57,6 +106,108 @@ public final class InventoryService implements Inventory {
         return new TenantsService(context);
     }
 
+    /**
+     * Looks up all the entities of the same type using a single multi-key index query and then only checks that the
+     * found vertices really lie on the requested canonical paths (the ids are only unique amongst the siblings).
+     */
+    @Override
+    public Map<CanonicalPath, Entity<?, ?>> fetch(Collection<CanonicalPath> paths) {
+        Map<Class<? extends Entity>, Set<String>> idsByType = new HashMap<>();
+        for (CanonicalPath p : paths) {
+            CanonicalPath.Segment s = p.getSegment();
+            if (s == null) {
+                throw new IllegalArgumentException("Cannot fetch an entity using an empty canonical path.");
+            }
+            idsByType.computeIfAbsent(s.getElementType(), (t) -> new HashSet<>()).add(s.getElementId());
+        }
+
+        Set<CanonicalPath> requested = new HashSet<>(paths);
+        Map<CanonicalPath, Entity<?, ?>> found = new HashMap<>();
+        ResultFilter filter = context.getResultFilter();
+
+        idsByType.forEach((type, ids) -> {
+            HawkularPipeline<?, Vertex> q = new HawkularPipeline<>(context.getGraph()).V()
+                    .hasType(Constants.Type.of(type)).hasEids(ids).cast(Vertex.class);
+
+            for (Vertex v : q) {
+                CanonicalPath cp = AbstractGraphService.canonicalPath(v);
+                if (cp == null || !requested.contains(cp)) {
+                    continue;
+                }
+
+                Entity<?, ?> e = AbstractGraphService.convert(v, context.getDefinitions());
+                if (filter == null || filter.isApplicable(e)) {
+                    found.put(cp, e);
+                }
+            }
+        });
+
+        Map<CanonicalPath, Entity<?, ?>> ret = new LinkedHashMap<>();
+        for (CanonicalPath p : paths) {
+            Entity<?, ?> e = found.get(p);
+            if (e != null) {
+                ret.put(p, e);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Walks the edges of the vertices directly instead of constructing a new traversal for each of the visited
+     * entities. The entities not applicable according to the result filter are skipped along with their subtrees.
+     */
+    @Override
+    public void walk(CanonicalPath root, int maxDepth, Set<Relationships.WellKnown> relationships,
+            TreeVisitor visitor) {
+        CanonicalPath.Segment s = root.getSegment();
+        if (s == null) {
+            throw new IllegalArgumentException("Cannot walk from an empty canonical path.");
+        }
+
+        ResultFilter filter = context.getResultFilter();
+
+        Vertex rootVertex = null;
+        Entity<?, ?> rootEntity = null;
+        for (Vertex v : new HawkularPipeline<>(context.getGraph()).V().hasType(Constants.Type.of(s.getElementType()))
+                .hasEid(s.getElementId()).cast(Vertex.class)) {
+            if (root.equals(AbstractGraphService.canonicalPath(v))) {
+                rootVertex = v;
+                rootEntity = AbstractGraphService.convert(v, context.getDefinitions());
+                break;
+            }
+        }
+
+        if (rootEntity == null || (filter != null && !filter.isApplicable(rootEntity))) {
+            throw new EntityNotFoundException(s.getElementType(), new Filter[]{With.id(s.getElementId())});
+        }
+
+        Set<Relationships.WellKnown> followed = EnumSet.of(Relationships.WellKnown.contains);
+        followed.addAll(relationships);
+        String[] labels = followed.stream().map(Enum::name).toArray(String[]::new);
+
+        walk(rootVertex, rootEntity, null, 0, maxDepth, labels, visitor);
+    }
+
+    private void walk(Vertex vertex, Entity<?, ?> entity, Relationships.WellKnown relationship, int depth,
+            int maxDepth, String[] labels, TreeVisitor visitor) {
+        visitor.enter(entity, relationship, depth);
+
+        if (depth < maxDepth) {
+            ResultFilter filter = context.getResultFilter();
+            for (Edge e : vertex.getEdges(Direction.OUT, labels)) {
+                Vertex target = e.getVertex(Direction.IN);
+                Entity<?, ?> targetEntity = AbstractGraphService.convert(target, context.getDefinitions());
+                if (filter == null || filter.isApplicable(targetEntity)) {
+                    walk(target, targetEntity, Relationships.WellKnown.valueOf(e.getLabel()), depth + 1, maxDepth,
+                            labels, visitor);
+                }
+            }
+        }
+
+        visitor.leave(entity);
+    }
+
     @Override
     public void close() throws Exception {
         context.getGraph().shutdown();
@@ -17,6 +17,7 @@
 package org.hawkular.inventory.impl.tinkerpop;
 
 import org.hawkular.inventory.api.EntityNotFoundException;
+import org.hawkular.inventory.api.GroupBy;
 import org.hawkular.inventory.api.Metrics;
 import org.hawkular.inventory.api.RelationNotFoundException;
 import org.hawkular.inventory.api.Relationships;
@@ -24,6 +25,8 @@ import org.hawkular.inventory.api.model.Metric;
 import org.hawkular.inventory.api.paging.Page;
 import org.hawkular.inventory.api.paging.Pager;
 
+import java.util.Map;
+
 /**
  * @author Lukas Krejci
  * @since 0.0.1
@@ -62,6 +65,11 @@ final class MetricBrowser extends AbstractBrowser<Metric, Metric.Blueprint, Metr
                 return b.entities(pager);
             }
 
+            @Override
+            public <K> Map<K, Long> groupCount(GroupBy<K> groupBy) {
+                return b.groupCount(groupBy);
+            }
+
             @Override
             public Relationships.Read relationships() {
                 return b.relationships();
@@ -18,6 +18,7 @@
 package org.hawkular.inventory.impl.tinkerpop;
 
 import org.hawkular.inventory.api.EntityNotFoundException;
+import org.hawkular.inventory.api.GroupBy;
 import org.hawkular.inventory.api.MetricTypes;
 import org.hawkular.inventory.api.Metrics;
 import org.hawkular.inventory.api.RelationNotFoundException;
@@ -26,6 +27,8 @@ import org.hawkular.inventory.api.model.MetricType;
 import org.hawkular.inventory.api.paging.Page;
 import org.hawkular.inventory.api.paging.Pager;
 
+import java.util.Map;
+
 /**
  * @author Lukas Krejci
  * @since 0.0.1
@@ -69,6 +72,11 @@ final class MetricTypeBrowser extends AbstractBrowser<MetricType, MetricType.Blu
                 return b.entities(pager);
             }
 
+            @Override
+            public <K> Map<K, Long> groupCount(GroupBy<K> groupBy) {
+                return b.groupCount(groupBy);
+            }
+
             @Override
             public Relationships.Read relationships() {
                 return b.relationships();
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.impl.tinkerpop;
+
+import org.hawkular.inventory.api.BoundedCache;
+import org.hawkular.inventory.api.Relationships;
+import org.hawkular.inventory.api.filters.Filter;
+import org.hawkular.inventory.api.filters.Related;
+import org.hawkular.inventory.api.filters.With;
+import org.hawkular.inventory.api.model.Tenant;
+import org.hawkular.inventory.api.paging.Page;
+import org.hawkular.inventory.api.paging.Pager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the pages of results of the list queries, so that the identical queries repeated over and over again (think
+ * of dashboards polling the resources of some type) don't have to traverse the graph each time.
+ *
+ * <p>The results are keyed by the filter tree of the query and the pager and are tagged with the write generation
+ * of the tenant the query is confined to. Every write to a tenant bumps its generation which makes all the results
+ * cached for it stale at once. The queries that cannot be proven to stay within a single tenant (e.g. the ones
+ * following custom relationships, which can cross the tenant boundaries) are tagged with the generation bumped by
+ * the writes to any tenant.
+ *
+ * <p>The stale results are not actively removed from the cache, they are just never served and eventually fall out
+ * of it as the least recently used entries.
+ *
+ * <p>Only the writes made through this JVM bump the generations, so the cache must not be enabled if several
+ * inventory servers share the same graph database - the results cached by one of them would never get stale after
+ * the writes made by the others.
+ *
+ * <p>Regardless of whether the caching is enabled, the identical queries executing concurrently (e.g. hundreds of
+ * agents asking for the same resources right after a deploy) share a single execution, provided they all started
+ * after the same write to the tenant.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+final class QueryCache {
+    private static final Relationships.WellKnown[] TENANT_LOCAL_RELATIONSHIPS = {Relationships.WellKnown.contains,
+            Relationships.WellKnown.defines, Relationships.WellKnown.owns};
+
+    private final BoundedCache<Key, Result> results;
+
+    /**
+     * Incremented on every write, used directly as the generation of the queries not confined to a single tenant.
+     */
+    private final AtomicLong writes = new AtomicLong();
+
+    /**
+     * The value of {@link #writes} at the time of the last write that could not be attributed to a single tenant.
+     */
+    private volatile long epoch;
+
+    private final ConcurrentHashMap<String, Long> tenantGenerations = new ConcurrentHashMap<>();
+
+    private final SingleFlight<InFlightKey, Result> inFlight = new SingleFlight<>();
+
+    /**
+     * @param maxSize the maximum number of the cached pages, 0 disables the cache (but not the coalescing of the
+     *                concurrent identical queries)
+     */
+    QueryCache(int maxSize) {
+        this.results = new BoundedCache<>(maxSize);
+    }
+
+    /**
+     * Returns the cached page of results of the query or executes the query and caches its results. Identical queries
+     * executing concurrently are coalesced into a single execution.
+     *
+     * @param entityClass the type of the entities returned by the query
+     * @param path        the filter tree of the query
+     * @param pager       the pager to page the results with
+     * @param query       the query to execute if there are no valid cached results
+     * @param <E>         the type of the entities
+     * @return the page of results
+     */
+    <E> Page<E> get(Class<E> entityClass, FilterApplicator.Tree path, Pager pager, Supplier<Page<E>> query) {
+        Key key = new Key(entityClass, path, pager);
+        String tenantId = tenantOf(path);
+
+        //must be read before the query executes, so that the results of a query racing with a write are stale
+        long generation = generation(tenantId);
+
+        //only the queries seeing the same state of the tenant can share the execution
+        InFlightKey flight = new InFlightKey(key, generation);
+        BoundedCache.Loader<Result, RuntimeException> execution = () -> inFlight.execute(flight, () -> {
+            Page<E> page = query.get();
+            return new Result(generation, Collections.unmodifiableList(new ArrayList<>(page)), page.getTotalSize());
+        });
+
+        Result result = pager.isLimited() ? results.get(key, (r) -> r.generation == generation, execution)
+                : execution.load();
+
+        @SuppressWarnings("unchecked")
+        List<E> entities = (List<E>) result.entities;
+
+        //the cached list is unmodifiable, so it can be shared by all the callers (Page doesn't guard all of its views,
+        //like the list iterators, against modification)
+        return new Page<>(entities, pager, result.totalSize);
+    }
+
+    /**
+     * Makes all the results cached for the tenant stale. This is to be called after every change to the entities of
+     * the tenant or their relationships has been committed.
+     *
+     * @param tenantId the id of the changed tenant or null if the change cannot be attributed to a single tenant
+     */
+    void invalidate(String tenantId) {
+        long generation = writes.incrementAndGet();
+        if (tenantId == null) {
+            epoch = generation;
+        } else {
+            tenantGenerations.merge(tenantId, generation, Math::max);
+        }
+    }
+
+    private long generation(String tenantId) {
+        if (tenantId == null) {
+            return writes.get();
+        }
+
+        return Math.max(tenantGenerations.getOrDefault(tenantId, 0L), epoch);
+    }
+
+    /**
+     * Works out the tenant the query represented by the tree of filters is confined to. This is only the case for the
+     * query paths starting with a single tenant and then only following the relationships that never cross the tenant
+     * boundary.
+     *
+     * @return the id of the tenant or null if the query can reach more than one tenant
+     */
+    static String tenantOf(FilterApplicator.Tree path) {
+        //the tenant is always selected by the first two filters on the path, but they can be spread over several
+        //nodes of the tree
+        List<Filter> prefix = new ArrayList<>(2);
+        FilterApplicator.Tree node = path;
+        while (true) {
+            for (int i = 0; i < node.filters.length && prefix.size() < 2; ++i) {
+                prefix.add(node.filters[i].filter());
+            }
+
+            if (prefix.size() == 2 || node.subTrees.size() != 1) {
+                break;
+            }
+
+            node = node.subTrees.get(0);
+        }
+
+        if (prefix.size() < 2 || !(prefix.get(0) instanceof With.Types) || !(prefix.get(1) instanceof With.Ids)) {
+            return null;
+        }
+
+        Class<?>[] types = ((With.Types) prefix.get(0)).getTypes();
+        String[] ids = ((With.Ids) prefix.get(1)).getIds();
+
+        if (types.length != 1 || types[0] != Tenant.class || ids.length != 1) {
+            return null;
+        }
+
+        return isTenantLocal(path) ? ids[0] : null;
+    }
+
+    private static boolean isTenantLocal(FilterApplicator.Tree path) {
+        for (FilterApplicator<?> fa : path.filters) {
+            Filter f = fa.filter();
+            if (f instanceof Related) {
+                Related<?> related = (Related<?>) f;
+                if (related.getEntity() != null || related.getRelationshipId() != null
+                        || !isTenantLocal(related.getRelationshipName())) {
+                    return false;
+                }
+            } else if (!(f instanceof With.Ids || f instanceof With.Types)) {
+                //relationship filters
+                return false;
+            }
+        }
+
+        for (FilterApplicator.Tree subTree : path.subTrees) {
+            if (!isTenantLocal(subTree)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isTenantLocal(String relationshipName) {
+        for (Relationships.WellKnown r : TENANT_LOCAL_RELATIONSHIPS) {
+            if (r.name().equals(relationshipName)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static final class Key {
+        private final Class<?> entityClass;
+        private final FilterApplicator.Tree path;
+        private final Pager pager;
+        private final int hashCode;
+
+        Key(Class<?> entityClass, FilterApplicator.Tree path, Pager pager) {
+            this.entityClass = entityClass;
+            this.path = path;
+            this.pager = pager;
+
+            int result = entityClass.hashCode();
+            result = 31 * result + path.hashCode();
+            result = 31 * result + pager.hashCode();
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            return entityClass == key.entityClass && path.equals(key.path) && pager.equals(key.pager);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class InFlightKey {
+        private final Key key;
+        private final long generation;
+
+        InFlightKey(Key key, long generation) {
+            this.key = key;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            InFlightKey that = (InFlightKey) o;
+
+            return generation == that.generation && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + Long.hashCode(generation);
+        }
+    }
+
+    private static final class Result {
+        final long generation;
+        final List<?> entities;
+        final long totalSize;
+
+        Result(long generation, List<?> entities, long totalSize) {
+            this.generation = generation;
+            this.entities = entities;
+            this.totalSize = totalSize;
+        }
+    }
+}
@@ -189,5 +189,20 @@ final class RelationshipBrowser extends AbstractGraphService {
         public String toString() {
             return "Jump[" + (fromEdge ? "from " : "to ") + direction.name() + " edges]";
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            JumpInOutFilter that = (JumpInOutFilter) o;
+
+            return direction == that.direction && fromEdge == that.fromEdge;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * direction.hashCode() + (fromEdge ? 1 : 0);
+        }
     }
 }
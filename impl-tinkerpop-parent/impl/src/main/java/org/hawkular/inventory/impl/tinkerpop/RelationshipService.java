@@ -127,6 +127,8 @@ final class RelationshipService<E extends Entity<B, U>, B extends Entity.Bluepri
 
         context.getGraph().commit();
 
+        invalidateQueries(getTenantIdsOf(newEdge));
+
         return createSingleBrowser(RelationWith.id(newEdge.getId().toString()));
     }
 
@@ -144,6 +146,8 @@ final class RelationshipService<E extends Entity<B, U>, B extends Entity.Bluepri
         updateProperties(edge, update.getProperties(), MAPPED_PROPERTIES);
 
         context.getGraph().commit();
+
+        invalidateQueries(getTenantIdsOf(edge));
     }
 
     @Override
@@ -166,7 +170,29 @@ final class RelationshipService<E extends Entity<B, U>, B extends Entity.Bluepri
         if (!pipe.hasNext()) {
             throw new RelationNotFoundException(id, (Filter[]) null);
         }
-        pipe.remove();
+
+        Edge edge = context.getGraph().getEdge(id);
+        String[] tenantIds = edge == null ? new String[]{null} : getTenantIdsOf(edge);
+
+        try {
+            pipe.remove();
+            context.getGraph().commit();
+        } catch (Throwable t) {
+            context.getGraph().rollback();
+            throw t;
+        }
+
+        invalidateQueries(tenantIds);
+    }
+
+    private static String[] getTenantIdsOf(Edge edge) {
+        return new String[]{getTenantIdOf(edge.getVertex(Direction.OUT)), getTenantIdOf(edge.getVertex(Direction.IN))};
+    }
+
+    private void invalidateQueries(String... tenantIds) {
+        for (String tenantId : tenantIds) {
+            context.getQueries().invalidate(tenantId);
+        }
     }
 
     private void checkContains(Direction direction, Vertex incidenceVertex) {
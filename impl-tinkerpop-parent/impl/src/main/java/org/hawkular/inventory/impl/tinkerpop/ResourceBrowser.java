@@ -16,7 +16,10 @@
  */
 package org.hawkular.inventory.impl.tinkerpop;
 
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Vertex;
 import org.hawkular.inventory.api.EntityNotFoundException;
+import org.hawkular.inventory.api.GroupBy;
 import org.hawkular.inventory.api.Metrics;
 import org.hawkular.inventory.api.RelationNotFoundException;
 import org.hawkular.inventory.api.Relationships;
@@ -24,11 +27,17 @@ import org.hawkular.inventory.api.Resources;
 import org.hawkular.inventory.api.filters.Filter;
 import org.hawkular.inventory.api.filters.Related;
 import org.hawkular.inventory.api.filters.With;
+import org.hawkular.inventory.api.model.CanonicalPath;
 import org.hawkular.inventory.api.model.Metric;
 import org.hawkular.inventory.api.model.Resource;
 import org.hawkular.inventory.api.paging.Page;
 import org.hawkular.inventory.api.paging.Pager;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.hawkular.inventory.api.Relationships.WellKnown.owns;
 
 /**
@@ -89,9 +98,46 @@ final class ResourceBrowser extends AbstractBrowser<Resource, Resource.Blueprint
             public Page<Resource> entities(Pager pager) {
                 return b.entities(pager);
             }
+
+            @Override
+            public <K> Map<K, Long> groupCount(GroupBy<K> groupBy) {
+                return b.groupCount(groupBy);
+            }
+
+            @Override
+            public Map<CanonicalPath, List<Metric>> metricsPerResource() {
+                return b.metricsPerResource();
+            }
         };
     }
 
+    private Map<CanonicalPath, List<Metric>> metricsPerResource() {
+        Map<CanonicalPath, List<Metric>> ret = new LinkedHashMap<>();
+
+        //walk the owns edges directly off of the resource vertices while iterating over them, so that we don't need
+        //to construct a new traversal for each resource
+        for (Vertex v : source()) {
+            Resource r = (Resource) convert(v, context.getDefinitions());
+            if (!isApplicable(r)) {
+                continue;
+            }
+
+            List<Metric> metrics = new ArrayList<>();
+            for (Vertex m : v.getVertices(Direction.OUT, owns.name())) {
+                if (Constants.Type.metric.name().equals(getType(m))) {
+                    Metric metric = (Metric) convert(m, context.getDefinitions());
+                    if (isApplicable(metric)) {
+                        metrics.add(metric);
+                    }
+                }
+            }
+
+            ret.put(CanonicalPath.of(r), metrics);
+        }
+
+        return ret;
+    }
+
     private MetricsService metrics() {
         return new MetricsService(context, pathToHereWithSelect(Filter.by(Related.by(owns), With.type(Metric.class))));
     }
@@ -18,6 +18,7 @@
 package org.hawkular.inventory.impl.tinkerpop;
 
 import org.hawkular.inventory.api.EntityNotFoundException;
+import org.hawkular.inventory.api.GroupBy;
 import org.hawkular.inventory.api.MetricTypes;
 import org.hawkular.inventory.api.RelationNotFoundException;
 import org.hawkular.inventory.api.Relationships;
@@ -32,6 +33,8 @@ import org.hawkular.inventory.api.model.ResourceType;
 import org.hawkular.inventory.api.paging.Page;
 import org.hawkular.inventory.api.paging.Pager;
 
+import java.util.Map;
+
 import static org.hawkular.inventory.api.Relationships.WellKnown.defines;
 import static org.hawkular.inventory.api.Relationships.WellKnown.owns;
 
@@ -104,6 +107,11 @@ final class ResourceTypeBrowser extends AbstractBrowser<ResourceType, ResourceTy
             public Page<ResourceType> entities(Pager pager) {
                 return b.entities(pager);
             }
+
+            @Override
+            public <K> Map<K, Long> groupCount(GroupBy<K> groupBy) {
+                return b.groupCount(groupBy);
+            }
         };
     }
 
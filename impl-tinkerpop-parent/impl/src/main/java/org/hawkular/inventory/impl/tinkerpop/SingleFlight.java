@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.impl.tinkerpop;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces the concurrent executions of identical calls. The first caller executes the call while the callers
+ * arriving during the execution wait for it to finish and share its result (or exception) instead of executing the
+ * same call again.
+ *
+ * <p>Nothing is remembered once the call finishes - the callers arriving after that execute the call anew.
+ *
+ * @param <K> the type of the keys identifying the identical calls
+ * @param <V> the type of the results of the calls
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+final class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param key  the key identifying the call
+     * @param call the call to execute if no identical call is in flight
+     * @return the result of the call
+     */
+    V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> ours = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, ours);
+
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                } else {
+                    throw e;
+                }
+            }
+        }
+
+        try {
+            V ret = call.get();
+            ours.complete(ret);
+            return ret;
+        } catch (Throwable t) {
+            ours.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, ours);
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.hawkular.inventory.impl.tinkerpop;
 
 import org.hawkular.inventory.api.EntityNotFoundException;
 import org.hawkular.inventory.api.Environments;
+import org.hawkular.inventory.api.GroupBy;
 import org.hawkular.inventory.api.MetricTypes;
 import org.hawkular.inventory.api.RelationNotFoundException;
 import org.hawkular.inventory.api.Relationships;
@@ -33,6 +34,8 @@ import org.hawkular.inventory.api.model.Tenant;
 import org.hawkular.inventory.api.paging.Page;
 import org.hawkular.inventory.api.paging.Pager;
 
+import java.util.Map;
+
 import static org.hawkular.inventory.api.Relationships.WellKnown.contains;
 
 /**
@@ -112,6 +115,11 @@ final class TenantBrowser extends AbstractBrowser<Tenant, Tenant.Blueprint, Tena
             public Page<Tenant> entities(Pager pager) {
                 return b.entities(pager);
             }
+
+            @Override
+            public <K> Map<K, Long> groupCount(GroupBy<K> groupBy) {
+                return b.groupCount(groupBy);
+            }
         };
     }
 
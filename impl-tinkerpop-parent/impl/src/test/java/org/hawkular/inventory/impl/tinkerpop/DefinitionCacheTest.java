@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.impl.tinkerpop;
+
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.hawkular.inventory.api.Relationships;
+import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.api.model.ResourceType;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.function.Function;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class DefinitionCacheTest {
+
+    private TinkerGraph graph;
+    private int conversions;
+    private final Function<Vertex, Entity<?, ?>> converter = (v) -> {
+        conversions++;
+        return new ResourceType(AbstractGraphService.getTenantIdOf(v), AbstractGraphService.getEid(v),
+                AbstractGraphService.getProperty(v, Constants.Property.__version));
+    };
+
+    @Before
+    public void init() {
+        graph = new TinkerGraph();
+        conversions = 0;
+    }
+
+    @Test
+    public void testTypesInterned() throws Exception {
+        DefinitionCache cache = new DefinitionCache(10);
+        Vertex type = resourceType(tenant("t"), "URL");
+
+        Entity<?, ?> first = cache.get(type, converter);
+        Assert.assertSame(first, cache.get(type, converter));
+        Assert.assertEquals(1, conversions);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTypesEvicted() throws Exception {
+        DefinitionCache cache = new DefinitionCache(2);
+        Vertex tenant = tenant("t");
+        Vertex t1 = resourceType(tenant, "t1");
+        Vertex t2 = resourceType(tenant, "t2");
+        Vertex t3 = resourceType(tenant, "t3");
+
+        cache.get(t1, converter);
+        cache.get(t2, converter);
+        cache.get(t1, converter);
+        cache.get(t3, converter);
+        Assert.assertEquals(3, conversions);
+
+        //t2 was the least recently used
+        cache.get(t1, converter);
+        cache.get(t3, converter);
+        Assert.assertEquals(3, conversions);
+
+        cache.get(t2, converter);
+        Assert.assertEquals(4, conversions);
+    }
+
+    @Test
+    public void testDisabledCacheConvertsEveryTime() throws Exception {
+        DefinitionCache cache = new DefinitionCache(0);
+        Vertex type = resourceType(tenant("t"), "URL");
+
+        cache.get(type, converter);
+        cache.get(type, converter);
+        Assert.assertEquals(2, conversions);
+    }
+
+    @Test
+    public void testTypeInvalidated() throws Exception {
+        DefinitionCache cache = new DefinitionCache(10);
+        Vertex type = resourceType(tenant("t"), "URL");
+
+        cache.get(type, converter);
+        cache.invalidate(type);
+        cache.get(type, converter);
+        Assert.assertEquals(2, conversions);
+    }
+
+    @Test
+    public void testVersionChangeDetected() throws Exception {
+        DefinitionCache cache = new DefinitionCache(10);
+        Vertex type = resourceType(tenant("t"), "URL");
+
+        cache.get(type, converter);
+
+        //e.g. by another inventory instance, without invalidating the cache
+        type.setProperty(Constants.Property.__version.name(), "2.0");
+
+        Assert.assertEquals("2.0", ((ResourceType) cache.get(type, converter)).getVersion());
+        Assert.assertEquals(2, conversions);
+    }
+
+    @Test
+    public void testTenantInvalidated() throws Exception {
+        DefinitionCache cache = new DefinitionCache(10);
+        Vertex t1 = resourceType(tenant("tenant1"), "URL");
+        Vertex t2 = resourceType(tenant("tenant2"), "URL");
+
+        cache.get(t1, converter);
+        cache.get(t2, converter);
+        Assert.assertEquals(2, conversions);
+
+        cache.invalidateTenant("tenant1");
+
+        cache.get(t2, converter);
+        Assert.assertEquals(2, conversions);
+
+        cache.get(t1, converter);
+        Assert.assertEquals(3, conversions);
+    }
+
+    private Vertex tenant(String id) {
+        Vertex ret = graph.addVertex(null);
+        ret.setProperty(Constants.Property.__type.name(), Constants.Type.tenant.name());
+        ret.setProperty(Constants.Property.__eid.name(), id);
+        return ret;
+    }
+
+    private Vertex resourceType(Vertex tenant, String id) {
+        Vertex ret = graph.addVertex(null);
+        ret.setProperty(Constants.Property.__type.name(), Constants.Type.resourceType.name());
+        ret.setProperty(Constants.Property.__eid.name(), id);
+        ret.setProperty(Constants.Property.__version.name(), "1.0");
+        graph.addEdge(null, tenant, ret, Relationships.WellKnown.contains.name());
+        return ret;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.impl.tinkerpop;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private SingleFlight<List<Object>, String> inFlight;
+    private AtomicInteger executions;
+    private CountDownLatch executing;
+    private CountDownLatch release;
+    private ExecutorService executor;
+
+    @Before
+    public void init() {
+        inFlight = new SingleFlight<>();
+        executions = new AtomicInteger();
+        executing = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @Test
+    public void testConcurrentIdenticalCallsExecutedOnce() throws Exception {
+        Future<String> first = executor.submit(() -> inFlight.execute(key("q", 1), this::blockingCall));
+        Assert.assertTrue(executing.await(10, TimeUnit.SECONDS));
+
+        List<Thread> waiting = new ArrayList<>();
+        List<Future<String>> rest = new ArrayList<>();
+        for (int i = 0; i < CALLERS; ++i) {
+            rest.add(executor.submit(() -> {
+                synchronized (waiting) {
+                    waiting.add(Thread.currentThread());
+                }
+                return inFlight.execute(key("q", 1), this::blockingCall);
+            }));
+        }
+
+        awaitBlocked(waiting, CALLERS);
+        release.countDown();
+
+        Assert.assertEquals("result", first.get(10, TimeUnit.SECONDS));
+        for (Future<String> f : rest) {
+            Assert.assertEquals("result", f.get(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, executions.get());
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void testDifferentCallsExecutedSeparately() throws Exception {
+        Future<String> first = executor.submit(() -> inFlight.execute(key("q", 1), this::blockingCall));
+        Assert.assertTrue(executing.await(10, TimeUnit.SECONDS));
+
+        //these would block until the release if they were coalesced with the first call
+        Assert.assertEquals("q2", inFlight.execute(key("q", 2), () -> call("q2")));
+        Assert.assertEquals("other", inFlight.execute(key("other", 1), () -> call("other")));
+
+        release.countDown();
+        Assert.assertEquals("result", first.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(3, executions.get());
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFinishedCallsNotRemembered() throws Exception {
+        release.countDown();
+
+        inFlight.execute(key("q", 1), this::blockingCall);
+        inFlight.execute(key("q", 1), this::blockingCall);
+        Assert.assertEquals(2, executions.get());
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFailureSharedWithWaitingCallers() throws Exception {
+        Future<String> first = executor.submit(() -> inFlight.execute(key("q", 1), () -> {
+            blockingCall();
+            throw new IllegalStateException("failed");
+        }));
+        Assert.assertTrue(executing.await(10, TimeUnit.SECONDS));
+
+        List<Thread> waiting = new ArrayList<>();
+        Future<String> second = executor.submit(() -> {
+            synchronized (waiting) {
+                waiting.add(Thread.currentThread());
+            }
+            return inFlight.execute(key("q", 1), this::blockingCall);
+        });
+
+        awaitBlocked(waiting, 1);
+        release.countDown();
+
+        for (Future<String> f : Arrays.asList(first, second)) {
+            try {
+                f.get(10, TimeUnit.SECONDS);
+                Assert.fail("The failure should have been propagated.");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+                Assert.assertEquals("failed", e.getCause().getMessage());
+            }
+        }
+        Assert.assertEquals(1, executions.get());
+
+        executor.shutdown();
+    }
+
+    private String blockingCall() {
+        executions.incrementAndGet();
+        executing.countDown();
+        try {
+            Assert.assertTrue(release.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return "result";
+    }
+
+    private String call(String result) {
+        executions.incrementAndGet();
+        return result;
+    }
+
+    private static List<Object> key(String query, long generation) {
+        return Arrays.asList(query, generation);
+    }
+
+    /**
+     * Waits until all the callers are blocked waiting for the call in flight.
+     */
+    private static void awaitBlocked(List<Thread> callers, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            boolean allBlocked;
+            synchronized (callers) {
+                allBlocked = callers.size() == count
+                        && callers.stream().allMatch(t -> t.getState() == Thread.State.WAITING);
+            }
+            if (allBlocked) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        Assert.fail("The callers didn't start waiting for the call in flight.");
+    }
+}
@@ -23,14 +23,20 @@ import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import com.tinkerpop.blueprints.util.wrappers.wrapped.WrappedGraph;
 import com.tinkerpop.gremlin.java.GremlinPipeline;
+import org.hawkular.inventory.api.ChangeSet;
 import org.hawkular.inventory.api.Configuration;
 import org.hawkular.inventory.api.EntityNotFoundException;
+import org.hawkular.inventory.api.Environments;
 import org.hawkular.inventory.api.Feeds;
+import org.hawkular.inventory.api.GroupBy;
+import org.hawkular.inventory.api.Inventory;
 import org.hawkular.inventory.api.Metrics;
 import org.hawkular.inventory.api.RelationNotFoundException;
 import org.hawkular.inventory.api.Relationships;
 import org.hawkular.inventory.api.ResolvableToMany;
 import org.hawkular.inventory.api.ResolvableToSingle;
+import org.hawkular.inventory.api.Tenants;
+import org.hawkular.inventory.api.TreeVisitor;
 import org.hawkular.inventory.api.feeds.AcceptWithFallbackFeedIdStrategy;
 import org.hawkular.inventory.api.feeds.RandomUUIDFeedIdStrategy;
 import org.hawkular.inventory.api.filters.Defined;
@@ -38,6 +44,7 @@ import org.hawkular.inventory.api.filters.Filter;
 import org.hawkular.inventory.api.filters.Related;
 import org.hawkular.inventory.api.filters.RelationWith;
 import org.hawkular.inventory.api.filters.With;
+import org.hawkular.inventory.api.model.CanonicalPath;
 import org.hawkular.inventory.api.model.Entity;
 import org.hawkular.inventory.api.model.Environment;
 import org.hawkular.inventory.api.model.Feed;
@@ -65,14 +72,27 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -97,6 +117,10 @@ public class BasicTest {
             ps.load(f);
         }
 
+        //the tests run against a single inventory instance, so the caches can be enabled
+        ps.putIfAbsent(InventoryService.QUERY_CACHE_SIZE, "1000");
+        ps.putIfAbsent(InventoryService.DEFINITION_CACHE_SIZE, "10000");
+
         Configuration config = Configuration.builder().withFeedIdStrategy(
                 new AcceptWithFallbackFeedIdStrategy(new RandomUUIDFeedIdStrategy()))
                 .withConfiguration(ps)
@@ -741,6 +765,25 @@ public class BasicTest {
         Assert.assertEquals(6, StreamSupport.stream(query.vertices().spliterator(), false).count());
     }
 
+    @Test
+    public void testGetAllWithMultipleIds() throws Exception {
+        Set<String> tenants = inventory.tenants().getAll(With.ids("com.acme.tenant", "com.example.tenant",
+                "non-existent-tenant")).entities().stream().map(Tenant::getId).collect(Collectors.toSet());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("com.acme.tenant", "com.example.tenant")), tenants);
+
+        Set<String> resources = inventory.tenants().get("com.example.tenant").environments().get("test")
+                .feedlessResources().getAll(With.ids("playroom1", "playroom2", "host1")).entities().stream()
+                .map(Resource::getId).collect(Collectors.toSet());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("playroom1", "playroom2")), resources);
+
+        //the ids combined with other filters on the same entities
+        Set<String> typed = inventory.tenants().get("com.example.tenant").environments().get("test")
+                .feedlessResources().getAll(Defined.by(new ResourceType("com.example.tenant", "Playroom", "1.0")),
+                        With.ids("playroom1", "playroom2")).entities().stream().map(Resource::getId)
+                .collect(Collectors.toSet());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("playroom1", "playroom2")), typed);
+    }
+
     @Test
     public void testAssociateMetricWithResource() throws Exception {
         TetraFunction<String, String, String, String, Void> test = (tenantId, environmentId, resourceId, metricId) -> {
@@ -908,6 +951,20 @@ public class BasicTest {
         Assert.assertEquals("moc", t.getProperties().get("kachny"));
     }
 
+    @Test
+    public void testPropertiesImmutable() throws Exception {
+        Tenant t = inventory.tenants().get("com.acme.tenant").entity();
+        try {
+            t.getProperties().put("kachny", "malo");
+            Assert.fail("Properties of an entity should not be modifiable.");
+        } catch (UnsupportedOperationException e) {
+            //good
+        }
+
+        Environment env = inventory.tenants().get("com.acme.tenant").environments().get("production").entity();
+        Assert.assertTrue(env.getProperties().isEmpty());
+    }
+
     @Test
     public void testPropertiesUpdatedOnEntities() throws Exception {
 
@@ -1049,6 +1106,254 @@ public class BasicTest {
         }
     }
 
+    @Test
+    public void testGroupCount() throws Exception {
+        Environments.Single env = inventory.tenants().get("com.acme.tenant").environments().get("production");
+
+        Map<String, Long> byDefinition = env.allResources().getAll().groupCount(GroupBy.definition());
+        Assert.assertEquals(1, byDefinition.size());
+        Assert.assertEquals(Long.valueOf(4), byDefinition.get("URL"));
+
+        Map<Class<?>, Long> byType = env.allMetrics().getAll().groupCount(GroupBy.type());
+        Assert.assertEquals(1, byType.size());
+        Assert.assertEquals(Long.valueOf(2), byType.get(Metric.class));
+
+        Map<Object, Long> byId = env.feeds().get("feed1").resources().getAll().groupCount(GroupBy.property("id"));
+        Assert.assertEquals(3, byId.size());
+        Assert.assertEquals(Long.valueOf(1), byId.get("feedResource2"));
+
+        Map<Object, Long> byMissingProperty = env.allResources().getAll().groupCount(GroupBy.property("kachny"));
+        Assert.assertEquals(1, byMissingProperty.size());
+        Assert.assertEquals(Long.valueOf(4), byMissingProperty.get(null));
+    }
+
+    @Test
+    public void testFetchByCanonicalPaths() throws Exception {
+        CanonicalPath host1 = CanonicalPath.fromString("/t;com.acme.tenant/e;production/r;host1");
+        CanonicalPath feedResource2 = CanonicalPath.fromString(
+                "/t;com.acme.tenant/e;production/f;feed1/r;feedResource2");
+        CanonicalPath nonExistent = CanonicalPath.fromString("/t;com.acme.tenant/e;production/r;feedResource2");
+        CanonicalPath playroom1 = CanonicalPath.fromString("/t;com.example.tenant/e;test/r;playroom1");
+        CanonicalPath size = CanonicalPath.fromString("/t;com.example.tenant/mt;Size");
+
+        Assert.assertEquals("/t;com.acme.tenant/e;production/f;feed1/r;feedResource2", feedResource2.toString());
+
+        Map<CanonicalPath, Entity<?, ?>> entities = inventory.fetch(Arrays.asList(size, feedResource2, nonExistent,
+                playroom1, host1));
+
+        Assert.assertEquals(Arrays.asList(size, feedResource2, playroom1, host1), new ArrayList<>(entities.keySet()));
+        entities.forEach((cp, e) -> Assert.assertEquals(cp, CanonicalPath.of(e)));
+        Assert.assertEquals("URL", ((Resource) entities.get(host1)).getType().getId());
+    }
+
+    @Test
+    public void testInspectAll() throws Exception {
+        ResourceType url = new ResourceType("com.acme.tenant", "URL", "1.0");
+        MetricType responseTime = new MetricType("com.acme.tenant", "ResponseTime");
+        List<Entity<?, ?>> input = Arrays.asList(
+                new Resource("com.acme.tenant", "production", "feed1", "feedResource3", url),
+                new Metric("com.acme.tenant", "production", null, "host1_ping_response", responseTime),
+                new Resource("com.acme.tenant", "production", null, "nonExistent", url),
+                new Resource("com.acme.tenant", "production", "feed1", "feedResource1", url),
+                new Tenant("com.example.tenant"),
+                responseTime,
+                new Resource("com.acme.tenant", "production", null, "host1", url));
+
+        List<Entity<?, ?>> output = inventory.inspectAll(input);
+
+        Assert.assertEquals(input.size(), output.size());
+        for (int i = 0; i < input.size(); ++i) {
+            if (i == 2) {
+                Assert.assertNull(output.get(i));
+            } else {
+                Assert.assertEquals(input.get(i), output.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testInspectAllWithAutoTenant() throws Exception {
+        Inventory.Mixin.AutoTenant autoTenant = Inventory.augment(inventory).autoTenant().get();
+
+        List<Entity<?, ?>> input = Arrays.asList(new Tenant("com.acme.tenant"), new Tenant("non-existent-tenant"),
+                new Environment("non-existent-tenant", "production"));
+
+        List<Entity<?, ?>> output = autoTenant.inspectAll(input);
+
+        Assert.assertEquals(Arrays.asList(input.get(0), null, null), output);
+        Assert.assertFalse(inventory.tenants().get("non-existent-tenant").exists());
+    }
+
+    @Test
+    public void testMetricsPerResource() throws Exception {
+        Map<CanonicalPath, List<Metric>> metrics = inventory.tenants().getAll().environments().getAll()
+                .allResources().getAll().metricsPerResource();
+
+        Assert.assertEquals(6, metrics.size());
+
+        BiFunction<String, String, List<String>> metricIds = (tenantId, path) -> {
+            List<Metric> ms = metrics.get(CanonicalPath.fromString("/t;" + tenantId + path));
+            Assert.assertNotNull(ms);
+            return ms.stream().map(Metric::getId).collect(Collectors.toList());
+        };
+
+        Assert.assertEquals(Arrays.asList("host1_ping_response"),
+                metricIds.apply("com.acme.tenant", "/e;production/r;host1"));
+        Assert.assertTrue(metricIds.apply("com.acme.tenant", "/e;production/f;feed1/r;feedResource1").isEmpty());
+        Assert.assertEquals(Arrays.asList("playroom2_size"),
+                metricIds.apply("com.example.tenant", "/e;test/r;playroom2"));
+    }
+
+    @Test
+    public void testWalk() throws Exception {
+        Set<String> visited = new HashSet<>();
+        Deque<String> open = new ArrayDeque<>();
+
+        inventory.walk(CanonicalPath.fromString("/t;com.acme.tenant/e;production"), 2, EnumSet.of(owns),
+                new TreeVisitor() {
+                    @Override
+                    public void enter(Entity<?, ?> entity, Relationships.WellKnown relationship, int depth) {
+                        Assert.assertEquals(open.size(), depth);
+                        visited.add(open.peek() + " -" + relationship + "-> " + entity.getId());
+                        open.push(entity.getId());
+                    }
+
+                    @Override
+                    public void leave(Entity<?, ?> entity) {
+                        Assert.assertEquals(entity.getId(), open.pop());
+                    }
+                });
+
+        Assert.assertTrue(open.isEmpty());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("null -null-> production",
+                "production -contains-> host1", "production -contains-> host1_ping_response",
+                "production -contains-> feed1", "host1 -owns-> host1_ping_response",
+                "feed1 -contains-> feedResource1", "feed1 -contains-> feedResource2",
+                "feed1 -contains-> feedResource3", "feed1 -contains-> feedMetric1")), visited);
+    }
+
+    @Test
+    public void testResourceTypesInterned() throws Exception {
+        Environments.Single production = inventory.tenants().get("com.acme.tenant").environments().get("production");
+
+        List<Resource> resources = new ArrayList<>(production.allResources().getAll().entities());
+        Assert.assertEquals(4, resources.size());
+        resources.forEach((r) -> Assert.assertSame(resources.get(0).getType(), r.getType()));
+
+        inventory.tenants().get("com.acme.tenant").resourceTypes().update("URL",
+                ResourceType.Update.builder().withVersion("1.0").withProperty("kachna", "dudy").build());
+
+        ResourceType updated = production.feedlessResources().get("host1").entity().getType();
+        Assert.assertNotSame(resources.get(0).getType(), updated);
+        Assert.assertEquals("dudy", updated.getProperties().get("kachna"));
+    }
+
+    @Test
+    public void testQueryResultsInvalidatedByWrites() throws Exception {
+        Pager pager = new Pager(0, 10);
+        Environments.Single production = inventory.tenants().get("com.acme.tenant").environments().get("production");
+
+        Page<Resource> resources = production.feedlessResources().getAll().entities(pager);
+        Assert.assertEquals(1, resources.size());
+        Assert.assertEquals(resources, production.feedlessResources().getAll().entities(pager));
+
+        production.feedlessResources().create(new Resource.Blueprint("host2", "URL"));
+        resources = production.feedlessResources().getAll().entities(pager);
+        Assert.assertEquals(2, resources.size());
+        Assert.assertEquals(2, resources.getTotalSize());
+
+        production.feedlessResources().update("host2", Resource.Update.builder().withProperty("kachna", "dudy")
+                .build());
+        Assert.assertEquals("dudy", production.feedlessResources().getAll(With.id("host2")).entities(pager).get(0)
+                .getProperties().get("kachna"));
+
+        production.feedlessResources().delete("host2");
+        Assert.assertEquals(1, production.feedlessResources().getAll().entities(pager).size());
+
+        int tenantCount = inventory.tenants().getAll().entities(pager).size();
+        inventory.tenants().create(new Tenant.Blueprint("perf0"));
+        Assert.assertEquals(tenantCount + 1, inventory.tenants().getAll().entities(pager).size());
+        inventory.tenants().delete("perf0");
+        Assert.assertEquals(tenantCount, inventory.tenants().getAll().entities(pager).size());
+    }
+
+    @Test
+    public void testConcurrentIdenticalQueries() throws Exception {
+        Environments.Single production = inventory.tenants().get("com.acme.tenant").environments().get("production");
+        List<Resource> expected = new ArrayList<>(production.allResources().getAll().entities());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Callable<List<Resource>> query = () -> {
+                start.await();
+                return production.allResources().getAll().entities();
+            };
+
+            List<Future<List<Resource>>> results = new ArrayList<>();
+            for (int i = 0; i < 16; ++i) {
+                results.add(executor.submit(query));
+            }
+
+            start.countDown();
+
+            for (Future<List<Resource>> r : results) {
+                Assert.assertEquals(expected, r.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAssociationVisibleToCachedListing() throws Exception {
+        Tenants.Single tenant = inventory.tenants().get("com.acme.tenant");
+        Pager pager = new Pager(0, 10, Order.by("id", Order.Direction.ASCENDING));
+
+        tenant.metricTypes().create(new MetricType.Blueprint("Latency", MetricUnit.MILLI_SECOND));
+        try {
+            Page<MetricType> before = tenant.resourceTypes().get("URL").metricTypes().getAll().entities(pager);
+            Assert.assertEquals(1, before.size());
+
+            tenant.resourceTypes().get("URL").metricTypes().associate("Latency");
+
+            Page<MetricType> after = tenant.resourceTypes().get("URL").metricTypes().getAll().entities(pager);
+            Assert.assertEquals(Arrays.asList("Latency", "ResponseTime"),
+                    after.stream().map(MetricType::getId).collect(Collectors.toList()));
+
+            tenant.resourceTypes().get("URL").metricTypes().disassociate("Latency");
+
+            Page<MetricType> afterRemoval = tenant.resourceTypes().get("URL").metricTypes().getAll()
+                    .entities(pager);
+            Assert.assertEquals(1, afterRemoval.size());
+        } finally {
+            tenant.metricTypes().delete("Latency");
+        }
+    }
+
+    @Test
+    public void testCreationReportsChanges() throws Exception {
+        Environments.Single production = inventory.tenants().get("com.acme.tenant").environments().get("production");
+
+        List<ChangeSet> changes = new ArrayList<>();
+        production.feedlessResources().create(new Resource.Blueprint("host3", "URL"), changes::add);
+
+        try {
+            Assert.assertEquals(1, changes.size());
+
+            ChangeSet cs = changes.get(0);
+            Assert.assertEquals(1, cs.getCreatedEntities().size());
+            Assert.assertEquals(new Resource("com.acme.tenant", "production", null, "host3",
+                    new ResourceType("com.acme.tenant", "URL", "1.0")), cs.getCreatedEntities().get(0));
+
+            Set<String> relationships = cs.getCreatedRelationships().stream()
+                    .map((r) -> r.getName() + ":" + r.getSource().getId()).collect(Collectors.toSet());
+            Assert.assertEquals(new HashSet<>(Arrays.asList("contains:production", "defines:URL")), relationships);
+        } finally {
+            production.feedlessResources().delete("host3");
+        }
+    }
+
     @SuppressWarnings("UnusedDeclaration")
     public static class DummyTransactionalGraph extends WrappedGraph<TinkerGraph> implements TransactionalGraph {
 
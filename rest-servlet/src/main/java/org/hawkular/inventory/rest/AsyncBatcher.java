@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.hawkular.inventory.rest.RestApiLogger.LOGGER;
+
+/**
+ * Hands the submitted items over to a handler running in a dedicated thread in batches. The items are handled in the
+ * order they were submitted in. A batch is handed over once it is full or once the first item in it waited for the
+ * configured linger time, whichever comes first.
+ *
+ * <p>The queue of the submitted items is bounded, so that the submitters are slowed down rather than the memory
+ * exhausted if the handler cannot keep up.
+ *
+ * @param <T> the type of the items
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+final class AsyncBatcher<T> implements AutoCloseable {
+    private final BlockingQueue<T> queue;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final Consumer<List<T>> handler;
+    private final Thread worker;
+    private volatile boolean closed;
+
+    /**
+     * @param name          the name of the worker thread
+     * @param capacity      the maximum number of items waiting to be handled
+     * @param maxBatchSize  the maximum number of items in a single batch
+     * @param lingerMillis  the maximum time in milliseconds to wait for a batch to fill up
+     * @param handler       the handler of the batches
+     */
+    AsyncBatcher(String name, int capacity, int maxBatchSize, long lingerMillis, Consumer<List<T>> handler) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive.");
+        }
+
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.handler = handler;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Submits the item to be handled in some future batch. This blocks if the queue is full. If the batcher is
+     * already closed, the item is handled synchronously in the caller's thread.
+     *
+     * @param item the item to handle
+     */
+    void submit(T item) {
+        if (closed) {
+            handle(Collections.singletonList(item));
+            return;
+        }
+
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            handle(Collections.singletonList(item));
+        }
+    }
+
+    /**
+     * Stops accepting new items and waits for the already submitted ones to be handled.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        worker.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    private void run() {
+        List<T> batch = new ArrayList<>(maxBatchSize);
+
+        while (!closed || !queue.isEmpty()) {
+            try {
+                T first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() == maxBatchSize || wait <= 0 || closed) {
+                        break;
+                    }
+
+                    T next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+
+                    batch.add(next);
+                }
+
+                handle(batch);
+            } catch (InterruptedException e) {
+                //we only stop once closed and drained, but don't lose what we have already taken off the queue
+                Thread.interrupted();
+                if (!batch.isEmpty()) {
+                    handle(batch);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void handle(List<T> batch) {
+        try {
+            handler.accept(batch);
+        } catch (RuntimeException e) {
+            LOGGER.warn(e);
+        }
+    }
+}
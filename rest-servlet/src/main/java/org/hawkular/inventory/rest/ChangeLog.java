@@ -0,0 +1,546 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the changes made to the inventory, stored in memory-mapped segment files on the local disk.
+ * Each record gets a monotonically increasing sequence number, which the readers use as the offset to continue reading
+ * from.
+ *
+ * <p>The log is split into segments of a configured size, named after the sequence number of their first record. Only
+ * the last segment is written to. Once it is full, it is sealed and a new segment is started. The oldest sealed
+ * segments are deleted when the log grows over the configured size or when their records get too old.
+ *
+ * <p>Each record has a key identifying the inventory element it is about. The {@link #compact() compaction} rewrites
+ * the sealed segments so that only the last record for each key remains. The sequence numbers of the remaining
+ * records don't change.
+ *
+ * <p>The layout of a record is: the length of the body of the record (int), the CRC32 checksum of the body (int) and
+ * the body itself, consisting of the sequence number (long), the timestamp (long), the tenant id, the key and the
+ * payload (each as an int length followed by the bytes). A zero length marks the end of the records in the segment
+ * that was being written to when the log was last closed. When the segments are read after a restart, the records
+ * are only accepted up to the first one that is incomplete, doesn't match its checksum or doesn't have a sequence
+ * number greater than the previous one, which is where the log continues after a crash.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+final class ChangeLog implements AutoCloseable {
+    private static final String SUFFIX = ".log";
+    private static final String COMPACTING_SUFFIX = ".compacting";
+
+    /**
+     * The length and the checksum of the record body.
+     */
+    private static final int HEADER_LENGTH = 4 + 4;
+
+    /**
+     * The sequence number, the timestamp and the lengths of the (possibly empty) tenant id, key and payload.
+     */
+    private static final int MIN_BODY_LENGTH = 8 + 8 + 4 + 4 + 4;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long retentionBytes;
+    private final long retentionMillis;
+
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private Segment active;
+    private long nextSequence;
+
+    /**
+     * @param directory       the directory to keep the segment files in
+     * @param segmentSize     the size of a segment file in bytes
+     * @param retentionBytes  the maximum size of all the segments or 0 if not limited
+     * @param retentionMillis the maximum age of the records in a sealed segment or 0 if not limited
+     * @throws IOException if the existing segments cannot be read
+     */
+    ChangeLog(Path directory, int segmentSize, long retentionBytes, long retentionMillis) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retentionBytes = retentionBytes;
+        this.retentionMillis = retentionMillis;
+
+        Files.createDirectories(directory);
+
+        //the leftovers of a compaction interrupted by a crash, the original segments are still intact
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX + COMPACTING_SUFFIX)) {
+            for (Path f : files) {
+                Files.delete(f);
+            }
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                long base = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                segments.put(base, Segment.scan(base, f));
+            }
+        }
+
+        if (segments.isEmpty()) {
+            nextSequence = 0;
+            active = Segment.create(0, segmentFile(0), segmentSize);
+            segments.put(0L, active);
+        } else {
+            Segment last = segments.lastEntry().getValue();
+            nextSequence = last.lastSequence + 1;
+            active = last.openForWriting(Math.max(segmentSize, last.size));
+            segments.put(last.baseSequence, active);
+        }
+    }
+
+    /**
+     * @return the sequence number of the oldest record still in the log
+     */
+    long getFirstSequence() {
+        for (Segment s : segments.values()) {
+            if (s.records > 0) {
+                return s.firstSequence;
+            }
+        }
+
+        return getNextSequence();
+    }
+
+    /**
+     * @return the sequence number the next appended record will get
+     */
+    synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Appends the records to the log, in the order they are provided in.
+     *
+     * @param records the records to append, their sequence numbers and timestamps are ignored
+     * @return the sequence number of the first appended record
+     * @throws IOException on failure to start a new segment
+     */
+    synchronized long append(List<Record> records) throws IOException {
+        long first = nextSequence;
+        long now = System.currentTimeMillis();
+
+        for (Record r : records) {
+            byte[] tenant = r.tenantId.getBytes(StandardCharsets.UTF_8);
+            byte[] key = r.key.getBytes(StandardCharsets.UTF_8);
+
+            int length = 8 + 8 + 4 + tenant.length + 4 + key.length + 4 + r.payload.length;
+
+            if (!active.fits(length)) {
+                roll(length);
+            }
+
+            active.append(nextSequence++, now, tenant, key, r.payload, length);
+        }
+
+        return first;
+    }
+
+    /**
+     * Reads the records starting at the provided sequence number. If the log doesn't go back that far anymore, the
+     * reading starts at the oldest record in the log.
+     *
+     * @param from       the sequence number of the first record to read
+     * @param maxRecords the maximum number of records to return
+     * @param filter     the filter of the records to return
+     * @return the records read
+     */
+    List<Record> read(long from, int maxRecords, Predicate<Record> filter) {
+        List<Record> ret = new ArrayList<>();
+
+        Map.Entry<Long, Segment> start = segments.floorEntry(from);
+        Iterable<Segment> toRead = (start == null ? segments : segments.tailMap(start.getKey(), true)).values();
+
+        for (Segment s : toRead) {
+            if (!s.read(from, maxRecords - ret.size(), filter, ret)) {
+                break;
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Rewrites the sealed segments so that they only contain the last record for each key in the whole log.
+     *
+     * @throws IOException on failure to rewrite a segment
+     */
+    synchronized void compact() throws IOException {
+        Map<String, Long> latest = new HashMap<>();
+        for (Segment s : segments.values()) {
+            s.read(0, Integer.MAX_VALUE, (r) -> {
+                latest.put(r.key, r.sequence);
+                return false;
+            }, null);
+        }
+
+        for (Segment s : new ArrayList<>(segments.values())) {
+            if (s == active) {
+                continue;
+            }
+
+            List<Record> kept = new ArrayList<>();
+            s.read(0, Integer.MAX_VALUE, (r) -> latest.get(r.key) == r.sequence, kept);
+
+            if (kept.size() == s.records) {
+                continue;
+            }
+
+            if (kept.isEmpty()) {
+                segments.remove(s.baseSequence);
+                Files.deleteIfExists(s.file);
+                continue;
+            }
+
+            Path tmp = s.file.resolveSibling(s.file.getFileName() + COMPACTING_SUFFIX);
+            Segment compacted = Segment.write(s.baseSequence, tmp, kept);
+            Files.move(tmp, s.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            segments.put(s.baseSequence, compacted.moved(s.file));
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.seal();
+    }
+
+    private void roll(int recordLength) throws IOException {
+        active.seal();
+
+        active = Segment.create(nextSequence, segmentFile(nextSequence),
+                Math.max(segmentSize, HEADER_LENGTH + recordLength));
+        segments.put(nextSequence, active);
+
+        applyRetention();
+    }
+
+    private void applyRetention() throws IOException {
+        long total = 0;
+        for (Segment s : segments.values()) {
+            total += s.size;
+        }
+
+        long oldest = retentionMillis > 0 ? System.currentTimeMillis() - retentionMillis : Long.MIN_VALUE;
+
+        for (Segment s : new ArrayList<>(segments.values())) {
+            if (s == active) {
+                break;
+            }
+
+            boolean tooBig = retentionBytes > 0 && total > retentionBytes;
+            boolean tooOld = s.lastTimestamp < oldest;
+            if (!tooBig && !tooOld) {
+                break;
+            }
+
+            segments.remove(s.baseSequence);
+            Files.deleteIfExists(s.file);
+            total -= s.size;
+        }
+    }
+
+    private Path segmentFile(long baseSequence) {
+        return directory.resolve(String.format("%020d", baseSequence) + SUFFIX);
+    }
+
+    /**
+     * A single record in the log.
+     */
+    static final class Record {
+        final long sequence;
+        final long timestamp;
+        final String tenantId;
+        final String key;
+        final byte[] payload;
+
+        /**
+         * Creates a record to be appended to the log.
+         *
+         * @param tenantId the tenant the change happened in
+         * @param key      the key of the changed element, only the last record with a key survives the compaction
+         * @param payload  the data of the record
+         */
+        Record(String tenantId, String key, byte[] payload) {
+            this(-1, -1, tenantId, key, payload);
+        }
+
+        private Record(long sequence, long timestamp, String tenantId, String key, byte[] payload) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.tenantId = tenantId;
+            this.key = key;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Segment {
+        final long baseSequence;
+        final Path file;
+
+        /**
+         * The buffer with the records. Only the first {@link #size} bytes are valid, which is made visible to the
+         * readers by writing the volatile size only after the record.
+         */
+        private final MappedByteBuffer buffer;
+        private final boolean writable;
+
+        volatile int size;
+        volatile int records;
+        volatile long firstSequence;
+        volatile long lastSequence;
+        volatile long lastTimestamp;
+
+        private Segment(long baseSequence, Path file, MappedByteBuffer buffer, boolean writable) {
+            this.baseSequence = baseSequence;
+            this.file = file;
+            this.buffer = buffer;
+            this.writable = writable;
+            this.firstSequence = baseSequence;
+            this.lastSequence = baseSequence - 1;
+        }
+
+        static Segment create(long baseSequence, Path file, int capacity) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                return new Segment(baseSequence, file, ch.map(FileChannel.MapMode.READ_WRITE, 0, capacity), true);
+            }
+        }
+
+        static Segment scan(long baseSequence, Path file) throws IOException {
+            Segment ret;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                ret = new Segment(baseSequence, file, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), false);
+            }
+
+            ret.recover();
+            return ret;
+        }
+
+        static Segment write(long baseSequence, Path file, List<Record> records) throws IOException {
+            int capacity = 0;
+            for (Record r : records) {
+                capacity += HEADER_LENGTH + 8 + 8 + 4 + utf8Length(r.tenantId) + 4 + utf8Length(r.key) + 4
+                        + r.payload.length;
+            }
+
+            Segment ret = create(baseSequence, file, capacity);
+            for (Record r : records) {
+                byte[] tenant = r.tenantId.getBytes(StandardCharsets.UTF_8);
+                byte[] key = r.key.getBytes(StandardCharsets.UTF_8);
+                ret.append(r.sequence, r.timestamp, tenant, key, r.payload,
+                        8 + 8 + 4 + tenant.length + 4 + key.length + 4 + r.payload.length);
+            }
+
+            ret.buffer.force();
+            return ret;
+        }
+
+        /**
+         * @return the same segment that now lives in the provided file
+         */
+        Segment moved(Path file) {
+            return copyStateTo(new Segment(baseSequence, file, buffer, false));
+        }
+
+        Segment openForWriting(int capacity) throws IOException {
+            Segment ret;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ret = new Segment(baseSequence, file, ch.map(FileChannel.MapMode.READ_WRITE, 0, capacity), true);
+            }
+
+            return copyStateTo(ret);
+        }
+
+        private Segment copyStateTo(Segment other) {
+            other.size = size;
+            other.records = records;
+            other.firstSequence = firstSequence;
+            other.lastSequence = lastSequence;
+            other.lastTimestamp = lastTimestamp;
+            return other;
+        }
+
+        boolean fits(int recordLength) {
+            return size + HEADER_LENGTH + recordLength <= buffer.capacity();
+        }
+
+        void append(long sequence, long timestamp, byte[] tenant, byte[] key, byte[] payload, int length) {
+            if (!writable) {
+                throw new IllegalStateException("Segment " + file + " is sealed.");
+            }
+
+            ByteBuffer b = buffer.duplicate();
+            b.position(size);
+            b.putInt(length);
+            int crcPosition = b.position();
+            b.putInt(0);
+            int bodyStart = b.position();
+            b.putLong(sequence);
+            b.putLong(timestamp);
+            b.putInt(tenant.length);
+            b.put(tenant);
+            b.putInt(key.length);
+            b.put(key);
+            b.putInt(payload.length);
+            b.put(payload);
+
+            b.putInt(crcPosition, checksum(b, bodyStart, length));
+
+            if (records == 0) {
+                firstSequence = sequence;
+            }
+
+            lastSequence = sequence;
+            lastTimestamp = timestamp;
+            records++;
+            size = b.position();
+        }
+
+        void seal() throws IOException {
+            if (writable) {
+                buffer.force();
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    ch.truncate(size);
+                }
+            }
+        }
+
+        /**
+         * Reads the records with the sequence number at least {@code from}.
+         *
+         * @param from   the minimum sequence number
+         * @param max    the maximum number of records to add to the result
+         * @param filter the filter of the records
+         * @param result the list to add the records to or null if only the filter should be called
+         * @return true if more records can be read from the following segments, false if the maximum was reached
+         */
+        boolean read(long from, int max, Predicate<Record> filter, List<Record> result) {
+            if (max <= 0) {
+                return false;
+            }
+
+            ByteBuffer b = buffer.duplicate();
+            int limit = size;
+            int added = 0;
+
+            while (b.position() + HEADER_LENGTH <= limit) {
+                int length = b.getInt();
+                b.getInt();
+                int next = b.position() + length;
+
+                long sequence = b.getLong();
+                if (sequence < from) {
+                    b.position(next);
+                    continue;
+                }
+
+                long timestamp = b.getLong();
+                String tenant = readString(b);
+                String key = readString(b);
+                byte[] payload = new byte[b.getInt()];
+                b.get(payload);
+
+                Record r = new Record(sequence, timestamp, tenant, key, payload);
+                if (filter.test(r) && result != null) {
+                    result.add(r);
+                    if (++added == max) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        private void recover() {
+            ByteBuffer b = buffer.duplicate();
+            int recovered = 0;
+            long previous = baseSequence - 1;
+            while (b.position() + HEADER_LENGTH <= b.limit()) {
+                int start = b.position();
+                int length = b.getInt();
+                int crc = b.getInt();
+                int bodyStart = b.position();
+                if (length < MIN_BODY_LENGTH || length > b.limit() - bodyStart
+                        || checksum(b, bodyStart, length) != crc) {
+                    b.position(start);
+                    break;
+                }
+
+                long sequence = b.getLong();
+                if (sequence <= previous) {
+                    b.position(start);
+                    break;
+                }
+
+                long timestamp = b.getLong();
+                b.position(bodyStart + length);
+                previous = sequence;
+
+                if (recovered == 0) {
+                    firstSequence = sequence;
+                }
+
+                lastSequence = sequence;
+                lastTimestamp = timestamp;
+                recovered++;
+            }
+
+            records = recovered;
+            size = b.position();
+        }
+
+        private static int checksum(ByteBuffer b, int start, int length) {
+            ByteBuffer body = b.duplicate();
+            body.limit(start + length).position(start);
+
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            return (int) crc.getValue();
+        }
+
+        private static String readString(ByteBuffer b) {
+            byte[] bytes = new byte[b.getInt()];
+            b.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private static int utf8Length(String s) {
+            return s.getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
+}
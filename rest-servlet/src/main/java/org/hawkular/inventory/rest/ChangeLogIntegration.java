@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hawkular.inventory.api.Action;
+import org.hawkular.inventory.api.Interest;
+import org.hawkular.inventory.api.model.AbstractElement;
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.api.model.Relationship;
+import org.hawkular.inventory.cdi.DisposingObservableInventory;
+import org.hawkular.inventory.cdi.ObservableInventoryInitialized;
+import rx.Subscription;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hawkular.inventory.rest.RestApiLogger.LOGGER;
+
+/**
+ * Records all the changes made to the inventory in a durable {@link ChangeLog} so that the clients can replay them
+ * from any offset still retained in the log, using the {@link RestChanges} endpoint.
+ *
+ * <p>All the changes made by a single write to the inventory are appended to the log together. The updates are
+ * recorded with the resulting state of the updated element so that the compacted log still describes the current state
+ * of the inventory.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+@ApplicationScoped
+public class ChangeLogIntegration {
+
+    /**
+     * Whether the changes should be recorded at all. Defaults to false, because the log takes up the disk space of
+     * the server.
+     */
+    public static final String ENABLED_PROPERTY = "hawkular.inventory.changelog.enabled";
+
+    /**
+     * The directory to store the change log in. Defaults to "hawkular-inventory-changelog" in the data directory of
+     * the server.
+     */
+    public static final String DIRECTORY_PROPERTY = "hawkular.inventory.changelog.directory";
+
+    /**
+     * The size of a single segment file of the change log in bytes.
+     */
+    public static final String SEGMENT_SIZE_PROPERTY = "hawkular.inventory.changelog.segmentSize";
+
+    /**
+     * The maximum size of the change log in bytes. The oldest segments are deleted once the log grows over it. 0 means
+     * no limit. Defaults to 1GiB.
+     */
+    public static final String RETENTION_BYTES_PROPERTY = "hawkular.inventory.changelog.retention.bytes";
+
+    /**
+     * The maximum age of the changes in the log in milliseconds. The segments with only older changes are deleted.
+     * 0 means no limit.
+     */
+    public static final String RETENTION_AGE_PROPERTY = "hawkular.inventory.changelog.retention.age";
+
+    /**
+     * Whether to compact the change log on startup, leaving just the last change of each inventory element in it.
+     */
+    public static final String COMPACT_PROPERTY = "hawkular.inventory.changelog.compact";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private volatile ChangeLog log;
+
+    private Subscription subscription;
+
+    public void start(@Observes ObservableInventoryInitialized event) {
+        if (!Boolean.getBoolean(ENABLED_PROPERTY)) {
+            return;
+        }
+
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null) {
+            directory = Paths.get(System.getProperty("jboss.server.data.dir", "."), "hawkular-inventory-changelog")
+                    .toString();
+        }
+
+        try {
+            log = new ChangeLog(Paths.get(directory), Integer.getInteger(SEGMENT_SIZE_PROPERTY, 16 * 1024 * 1024),
+                    Long.getLong(RETENTION_BYTES_PROPERTY, 1024L * 1024 * 1024),
+                    Long.getLong(RETENTION_AGE_PROPERTY, 0));
+
+            if (Boolean.getBoolean(COMPACT_PROPERTY)) {
+                log.compact();
+            }
+        } catch (IOException e) {
+            LOGGER.changeLogFailed(e);
+            log = null;
+            return;
+        }
+
+        subscription = event.getInventory().observable(Interest.inBatches(), event.getBackgroundDelivery())
+                .subscribe(this::record);
+    }
+
+    public void stop(@Observes DisposingObservableInventory event) throws IOException {
+        if (subscription != null) {
+            subscription.unsubscribe();
+            subscription = null;
+        }
+
+        ChangeLog l = log;
+        log = null;
+        if (l != null) {
+            l.close();
+        }
+    }
+
+    /**
+     * @return the change log or null if the changes are not being recorded
+     */
+    ChangeLog getLog() {
+        return log;
+    }
+
+    private void record(Action.Batch batch) {
+        ChangeLog l = log;
+        if (l == null) {
+            return;
+        }
+
+        try {
+            List<ChangeLog.Record> records = new ArrayList<>(batch.getChanges().size());
+            for (Action.Change<?, ?> c : batch.getChanges()) {
+                records.add(toRecord(c));
+            }
+
+            l.append(records);
+        } catch (IOException e) {
+            //don't fail the writes to the inventory, but don't leave holes in the log either
+            LOGGER.changeLogFailed(e);
+            log = null;
+            try {
+                l.close();
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ChangeLog.Record toRecord(Action.Change<?, ?> change) throws IOException {
+        Action.Enumerated action = change.getAction().asEnum();
+        Object element = change.getEntity();
+        String key;
+
+        switch (action) {
+            case UPDATED:
+                Action.Update u = (Action.Update) change.getContext();
+                element = ((AbstractElement) u.getOriginalEntity()).update()
+                        .with((AbstractElement.Update) u.getUpdate());
+                break;
+            case COPIED:
+                element = ((Action.EnvironmentCopy) change.getContext()).getTarget();
+                break;
+        }
+
+        CanonicalPath tenantPath;
+        if (element instanceof Relationship) {
+            key = "relationship/" + ((Relationship) element).getId();
+            tenantPath = CanonicalPath.of(((Relationship) element).getSource());
+        } else {
+            tenantPath = CanonicalPath.of((Entity<?, ?>) element);
+            key = tenantPath.toString();
+        }
+
+        if (action == Action.Enumerated.COPIED) {
+            //the copy doesn't replace the creation of the target environment in the compacted log
+            key = "copied:" + key;
+        }
+
+        String tenantId = tenantPath.getPath().get(0).getElementId();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator gen = MAPPER.getFactory().createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeStringField("action", action.name());
+            gen.writeStringField("type", element.getClass().getSimpleName());
+            if (element instanceof Relationship) {
+                writeRelationship((Relationship) element, gen);
+            } else {
+                gen.writeStringField("path", tenantPath.toString());
+                if (action == Action.Enumerated.COPIED) {
+                    Entity<?, ?> source = ((Action.EnvironmentCopy) change.getContext()).getSource();
+                    gen.writeStringField("source", CanonicalPath.of(source).toString());
+                }
+                gen.writeObjectField("entity", element);
+            }
+            gen.writeEndObject();
+        }
+
+        return new ChangeLog.Record(tenantId, key, out.toByteArray());
+    }
+
+    private static void writeRelationship(Relationship rel, JsonGenerator gen) throws IOException {
+        gen.writeObjectFieldStart("entity");
+        gen.writeStringField("id", rel.getId());
+        gen.writeStringField("name", rel.getName());
+        gen.writeStringField("source", CanonicalPath.of(rel.getSource()).toString());
+        gen.writeStringField("target", CanonicalPath.of(rel.getTarget()).toString());
+        gen.writeObjectFieldStart("properties");
+        for (Map.Entry<String, Object> e : rel.getProperties().entrySet()) {
+            gen.writeObjectField(e.getKey(), e.getValue());
+        }
+        gen.writeEndObject();
+        gen.writeEndObject();
+    }
+}
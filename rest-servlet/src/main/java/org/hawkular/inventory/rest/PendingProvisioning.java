@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the security resources whose provisioning has been submitted but not yet finished, so that the
+ * permission checks on them can wait for the provisioning instead of being denied (and caching the denial) just because
+ * the change has not been reflected in the accounts database yet.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+final class PendingProvisioning {
+    private final Map<String, Integer> pending = new HashMap<>();
+
+    /**
+     * @param stableId the stable id of the security resource about to be provisioned
+     */
+    synchronized void submitted(String stableId) {
+        pending.merge(stableId, 1, Integer::sum);
+    }
+
+    /**
+     * Must be called exactly once for each {@link #submitted(String)} call, regardless of whether the provisioning
+     * succeeded or not.
+     *
+     * @param stableId the stable id of the security resource that has been provisioned
+     */
+    synchronized void finished(String stableId) {
+        Integer count = pending.get(stableId);
+        if (count == null) {
+            return;
+        }
+
+        if (count == 1) {
+            pending.remove(stableId);
+            notifyAll();
+        } else {
+            pending.put(stableId, count - 1);
+        }
+    }
+
+    /**
+     * Waits until the provisioning of the security resource with the provided stable id finishes.
+     *
+     * @param stableId      the stable id of the security resource
+     * @param timeoutMillis the maximum time to wait
+     * @return true if there is no pending provisioning of the resource, false if the wait timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized boolean await(String stableId, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (pending.containsKey(stableId)) {
+            long wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (wait <= 0) {
+                return false;
+            }
+
+            wait(wait);
+        }
+
+        return true;
+    }
+}
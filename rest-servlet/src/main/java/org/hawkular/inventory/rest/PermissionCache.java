@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import org.hawkular.accounts.api.model.Operation;
+import org.hawkular.inventory.api.BoundedCache;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * A bounded cache of the permission decisions made by the accounts backend. The decisions are cached per persona,
+ * operation and the stable id of the security resource and expire after a short time, so that the changes in the role
+ * assignments done outside of inventory are picked up reasonably quickly.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+final class PermissionCache {
+    private final BoundedCache<Key, Boolean> decisions;
+
+    /**
+     * @param maxSize the maximum number of cached decisions, 0 disables the cache
+     * @param ttlNanos the time after which the decisions expire
+     */
+    PermissionCache(int maxSize, long ttlNanos) {
+        this.decisions = new BoundedCache<>(maxSize, ttlNanos);
+    }
+
+    /**
+     * Returns the cached decision or asks the provided check and caches the answer. The exceptions thrown by the
+     * check are not cached.
+     *
+     * @param personaId the id of the persona performing the operation
+     * @param operation the operation to perform
+     * @param stableId  the stable id of the security resource the operation is performed on
+     * @param check     the actual permission check
+     * @return true if the persona is allowed to perform the operation, false otherwise
+     */
+    boolean isAllowed(String personaId, Operation operation, String stableId, BooleanSupplier check) {
+        if (personaId == null) {
+            return check.getAsBoolean();
+        }
+
+        return decisions.get(new Key(personaId, operation, stableId), check::getAsBoolean);
+    }
+
+    /**
+     * Drops the decisions made about the security resource with the provided stable id.
+     *
+     * @param stableId the stable id of the created or changed security resource
+     */
+    void invalidate(String stableId) {
+        decisions.invalidateIf((k, allowed) -> k.stableId.equals(stableId));
+    }
+
+    /**
+     * Drops all the cached decisions.
+     */
+    void invalidateAll() {
+        decisions.invalidateAll();
+    }
+
+    private static final class Key {
+        private final String personaId;
+        private final Operation operation;
+        private final String stableId;
+
+        Key(String personaId, Operation operation, String stableId) {
+            this.personaId = personaId;
+            this.operation = operation;
+            this.stableId = stableId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            return personaId.equals(key.personaId) && operation.equals(key.operation)
+                    && stableId.equals(key.stableId);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = personaId.hashCode();
+            result = 31 * result + operation.hashCode();
+            result = 31 * result + stableId.hashCode();
+            return result;
+        }
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.hawkular.inventory.rest;
 
+import org.hawkular.inventory.api.GroupBy;
 import org.hawkular.inventory.api.paging.Order;
 import org.hawkular.inventory.api.paging.PageContext;
 import org.hawkular.inventory.api.paging.Pager;
@@ -23,7 +24,10 @@ import org.hawkular.inventory.api.paging.Pager;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.UriInfo;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author Lukas Krejci
@@ -63,4 +67,57 @@ public class RequestUtil {
 
         return new Pager(page, perPage, ordering);
     }
+
+    /**
+     * @param groupBy the name of the grouping - one of "type", "definition" or "property"
+     * @param property the name of the property to group by, required for the "property" grouping
+     * @return the grouping to use for the server-side counting
+     * @throws IllegalArgumentException if the grouping is unknown or the property is missing for the property grouping
+     */
+    public static GroupBy<?> extractGroupBy(String groupBy, String property) {
+        if (groupBy == null) {
+            throw new IllegalArgumentException("The 'groupBy' query parameter is required.");
+        }
+
+        switch (groupBy) {
+            case "type":
+                return GroupBy.type();
+            case "definition":
+                return GroupBy.definition();
+            case "property":
+                if (property == null) {
+                    throw new IllegalArgumentException("The 'property' query parameter is required when grouping by" +
+                            " property.");
+                }
+                return GroupBy.property(property);
+            default:
+                throw new IllegalArgumentException("Unknown grouping '" + groupBy + "'. Use one of 'type'," +
+                        " 'definition' or 'property'.");
+        }
+    }
+
+    /**
+     * @param expand the comma-separated list of relations to expand, may be null
+     * @param supported the names of the relations that can be expanded
+     * @return the set of the relations to expand, empty if none
+     * @throws IllegalArgumentException if any of the relations to expand is not supported
+     */
+    public static Set<String> extractExpand(String expand, String... supported) {
+        Set<String> ret = new HashSet<>();
+        if (expand == null || expand.isEmpty()) {
+            return ret;
+        }
+
+        List<String> supportedList = Arrays.asList(supported);
+        for (String e : expand.split(",")) {
+            String relation = e.trim();
+            if (!supportedList.contains(relation)) {
+                throw new IllegalArgumentException("Cannot expand '" + relation + "'. Supported expansions: " +
+                        supportedList);
+            }
+            ret.add(relation);
+        }
+
+        return ret;
+    }
 }
@@ -18,6 +18,7 @@ package org.hawkular.inventory.rest;
 
 import org.hawkular.inventory.api.paging.Page;
 import org.hawkular.inventory.api.paging.PageContext;
+import org.hawkular.inventory.rest.json.Bucket;
 import org.hawkular.inventory.rest.json.Link;
 
 import javax.ws.rs.core.Response;
@@ -25,6 +26,7 @@ import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Lukas Krejci
@@ -58,6 +60,24 @@ final class ResponseUtil {
         return response;
     }
 
+    /**
+     * Converts the result of a server-side group count into a list of buckets sorted by the count, largest first.
+     * The entity types are represented by their simple class names.
+     *
+     * @param response the response builder to fill in
+     * @param counts   the counts of entities in the buckets
+     * @return the response builder with the buckets set as the entity
+     */
+    public static Response.ResponseBuilder groupCountResponse(Response.ResponseBuilder response,
+            Map<?, Long> counts) {
+
+        List<Bucket> buckets = new ArrayList<>(counts.size());
+        counts.forEach((k, v) -> buckets.add(new Bucket(k instanceof Class ? ((Class<?>) k).getSimpleName() : k, v)));
+        buckets.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+
+        return response.entity(buckets);
+    }
+
     /**
      * Create the paging headers for collections and attach them to the passed builder. Those are represented as
      * <i>Link:</i> http headers that carry the URL for the pages and the respective relation.
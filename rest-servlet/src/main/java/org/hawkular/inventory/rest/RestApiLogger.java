@@ -54,5 +54,13 @@ public interface RestApiLogger extends BasicLogger {
     @Message(id = 2003, value = "Security check failed on entity: [%s]")
     void securityCheckFailed(String entityId, @Cause Throwable cause);
 
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 2004, value = "Failed to provision the security resources for entity: [%s]")
+    void securityProvisioningFailed(String entity, @Cause Throwable cause);
+
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 2005, value = "The inventory change log failed. The changes will no longer be recorded.")
+    void changeLogFailed(@Cause Throwable cause);
+
 
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import com.wordnik.swagger.annotations.Api;
+import com.wordnik.swagger.annotations.ApiOperation;
+import com.wordnik.swagger.annotations.ApiParam;
+import com.wordnik.swagger.annotations.ApiResponse;
+import com.wordnik.swagger.annotations.ApiResponses;
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.rest.json.ApiError;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+
+/**
+ * Operations on multiple entities at once, identified by their canonical paths.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+@Path("/")
+@Produces(APPLICATION_JSON)
+@Consumes(APPLICATION_JSON)
+@Api(value = "/", description = "Bulk operations on entities identified by canonical paths")
+public class RestBulk extends RestBase {
+
+    @POST
+    @Path("/entities")
+    @ApiOperation("Retrieves the entities with the provided canonical paths (e.g. \"/t;tenant/e;env/r;resource\") in" +
+            " one go. The entities are returned in the order of the provided paths, the paths of non-existent" +
+            " entities are skipped. All the paths must belong to the tenant of the current persona.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Invalid canonical path", response = ApiError.class),
+            @ApiResponse(code = 401, message = "Unauthorized access"),
+            @ApiResponse(code = 500, message = "Server error", response = ApiError.class)
+    })
+    public Response getEntities(@ApiParam(required = true) Collection<String> canonicalPaths) {
+        if (canonicalPaths == null) {
+            throw new IllegalArgumentException("canonical paths to retrieve not specified");
+        }
+
+        String tenantId = getTenantId();
+
+        List<CanonicalPath> paths = new ArrayList<>(canonicalPaths.size());
+        for (String p : canonicalPaths) {
+            if (p == null) {
+                throw new IllegalArgumentException("canonical path cannot be null");
+            }
+
+            CanonicalPath cp = CanonicalPath.fromString(p);
+            if (!tenantId.equals(cp.getPath().get(0).getElementId())) {
+                throw new IllegalArgumentException("The canonical path '" + p + "' doesn't belong to the tenant of" +
+                        " the current persona.");
+            }
+            paths.add(cp);
+        }
+
+        return Response.ok(new ArrayList<>(inventory.fetch(paths).values())).build();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wordnik.swagger.annotations.Api;
+import com.wordnik.swagger.annotations.ApiOperation;
+import com.wordnik.swagger.annotations.ApiResponse;
+import com.wordnik.swagger.annotations.ApiResponses;
+import org.hawkular.inventory.rest.json.ApiError;
+
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+
+/**
+ * Replay of the changes made to the inventory, recorded in the change log.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+@Path("/")
+@Produces(APPLICATION_JSON)
+@Consumes(APPLICATION_JSON)
+@Api(value = "/", description = "Replay of the changes made to the inventory")
+public class RestChanges extends RestBase {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Inject
+    ChangeLogIntegration changeLog;
+
+    @GET
+    @Path("/changes")
+    @ApiOperation("Retrieves the changes made to the entities of the current tenant, starting at the provided" +
+            " sequence number. The result contains the sequence number of the oldest change still retained" +
+            " ('first'), the sequence number to continue reading from ('next') and the list of 'changes'," +
+            " each with its 'sequence' number, 'timestamp' and the 'change' itself. If the changes starting at" +
+            " 'from' are no longer retained, the reading starts at the oldest retained change.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Invalid offset or limit", response = ApiError.class),
+            @ApiResponse(code = 401, message = "Unauthorized access"),
+            @ApiResponse(code = 503, message = "The changes are not being recorded", response = ApiError.class),
+            @ApiResponse(code = 500, message = "Server error", response = ApiError.class)
+    })
+    public Response getChanges(@QueryParam("from") @DefaultValue("0") long from,
+                               @QueryParam("limit") @DefaultValue("100") int limit) {
+
+        if (from < 0 || limit <= 0) {
+            throw new IllegalArgumentException("The 'from' cannot be negative and the 'limit' must be positive.");
+        }
+
+        ChangeLog log = changeLog.getLog();
+        if (log == null) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity(new ApiError("The changes to the inventory are not being recorded.")).build();
+        }
+
+        String tenantId = getTenantId();
+
+        long first = log.getFirstSequence();
+        //read the next sequence before the records so that we never skip over a change appended in the meantime
+        long end = log.getNextSequence();
+        List<ChangeLog.Record> records = log.read(from, limit, (r) -> r.sequence < end
+                && tenantId.equals(r.tenantId));
+        long next = records.size() == limit ? records.get(records.size() - 1).sequence + 1 : Math.max(from, end);
+
+        StreamingOutput changes = (out) -> {
+            try (JsonGenerator gen = MAPPER.getFactory().createGenerator(out)) {
+                gen.writeStartObject();
+                gen.writeNumberField("first", first);
+                gen.writeNumberField("next", next);
+                gen.writeArrayFieldStart("changes");
+                for (ChangeLog.Record r : records) {
+                    gen.writeStartObject();
+                    gen.writeNumberField("sequence", r.sequence);
+                    gen.writeNumberField("timestamp", r.timestamp);
+                    gen.writeFieldName("change");
+                    gen.writeRawValue(new String(r.payload, StandardCharsets.UTF_8));
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+                gen.writeEndObject();
+            }
+        };
+
+        return Response.ok(changes).build();
+    }
+}
@@ -23,6 +23,7 @@ import com.wordnik.swagger.annotations.ApiParam;
 import com.wordnik.swagger.annotations.ApiResponse;
 import com.wordnik.swagger.annotations.ApiResponses;
 import org.hawkular.inventory.api.Environments;
+import org.hawkular.inventory.api.Feeds;
 import org.hawkular.inventory.api.Metrics;
 import org.hawkular.inventory.api.model.Environment;
 import org.hawkular.inventory.api.model.Feed;
@@ -43,6 +44,7 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import java.util.Map;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.Response.Status.FORBIDDEN;
@@ -192,6 +194,59 @@ public class RestMetrics extends RestBase {
         return ResponseUtil.pagedResponse(Response.ok(), uriInfo, ret).build();
     }
 
+    @GET
+    @Path("/{tenantId}/{environmentId}/metricCounts")
+    @ApiOperation("Counts the metrics in the environment grouped by their type, definition (i.e. metric type) or" +
+            " the value of a property. Only the buckets are returned, the metrics themselves are never loaded.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Invalid grouping", response = ApiError.class),
+            @ApiResponse(code = 404, message = "Tenant or environment doesn't exist",
+                    response = ApiError.class),
+            @ApiResponse(code = 500, message = "Server error", response = ApiError.class)
+    })
+    public Response countMetrics(@PathParam("tenantId") String tenantId,
+                                 @PathParam("environmentId") String environmentId,
+                                 @QueryParam("groupBy") String groupBy,
+                                 @QueryParam("property") String property,
+                                 @QueryParam("feedless") @DefaultValue("false") boolean feedless) {
+
+        Environments.Single envs = inventory.tenants().get(tenantId).environments().get(environmentId);
+
+        //the counts of a non-existent environment would just be empty, but we want a 404
+        envs.entity();
+
+        Map<?, Long> counts = (feedless ? envs.feedlessMetrics() : envs.allMetrics()).getAll()
+                .groupCount(RequestUtil.extractGroupBy(groupBy, property));
+        return ResponseUtil.groupCountResponse(Response.ok(), counts).build();
+    }
+
+    @GET
+    @Path("/{tenantId}/{environmentId}/{feedId}/metricCounts")
+    @ApiOperation("Counts the metrics in the feed grouped by their type, definition (i.e. metric type) or" +
+            " the value of a property. Only the buckets are returned, the metrics themselves are never loaded.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Invalid grouping", response = ApiError.class),
+            @ApiResponse(code = 404, message = "Tenant, environment or feed doesn't exist",
+                    response = ApiError.class),
+            @ApiResponse(code = 500, message = "Server error", response = ApiError.class)
+    })
+    public Response countMetrics(@PathParam("tenantId") String tenantId,
+                                 @PathParam("environmentId") String environmentId,
+                                 @PathParam("feedId") String feedId,
+                                 @QueryParam("groupBy") String groupBy,
+                                 @QueryParam("property") String property) {
+
+        Feeds.Single feed = inventory.tenants().get(tenantId).environments().get(environmentId).feeds().get(feedId);
+
+        //the counts of a non-existent feed would just be empty, but we want a 404
+        feed.entity();
+
+        Map<?, Long> counts = feed.metrics().getAll().groupCount(RequestUtil.extractGroupBy(groupBy, property));
+        return ResponseUtil.groupCountResponse(Response.ok(), counts).build();
+    }
+
     @PUT
     @Path("/{tenantId}/{environmentId}/metrics/{metricId}")
     @ApiOperation("Updates a metric")
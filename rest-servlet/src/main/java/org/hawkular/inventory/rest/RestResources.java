@@ -23,10 +23,13 @@ import com.wordnik.swagger.annotations.ApiParam;
 import com.wordnik.swagger.annotations.ApiResponse;
 import com.wordnik.swagger.annotations.ApiResponses;
 import org.hawkular.inventory.api.Environments;
+import org.hawkular.inventory.api.Feeds;
 import org.hawkular.inventory.api.Metrics;
 import org.hawkular.inventory.api.ResolvingToMultiple;
 import org.hawkular.inventory.api.Resources;
 import org.hawkular.inventory.api.filters.Defined;
+import org.hawkular.inventory.api.filters.With;
+import org.hawkular.inventory.api.model.CanonicalPath;
 import org.hawkular.inventory.api.model.Environment;
 import org.hawkular.inventory.api.model.Feed;
 import org.hawkular.inventory.api.model.Metric;
@@ -35,6 +38,7 @@ import org.hawkular.inventory.api.model.ResourceType;
 import org.hawkular.inventory.api.paging.Page;
 import org.hawkular.inventory.api.paging.Pager;
 import org.hawkular.inventory.rest.json.ApiError;
+import org.hawkular.inventory.rest.json.ExpandedResource;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -50,10 +54,16 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.Response.Status.FORBIDDEN;
+import static org.hawkular.inventory.rest.RequestUtil.extractExpand;
+import static org.hawkular.inventory.rest.RequestUtil.extractGroupBy;
 import static org.hawkular.inventory.rest.RequestUtil.extractPaging;
+import static org.hawkular.inventory.rest.ResponseUtil.groupCountResponse;
 import static org.hawkular.inventory.rest.ResponseUtil.pagedResponse;
 
 /**
@@ -121,9 +131,10 @@ public class RestResources extends RestBase {
     @GET
     @Path("/{tenantId}/{environmentId}/resources")
     @ApiOperation("Retrieves resources in the environment, optionally filtering by resource type. Accepts paging " +
-            "query parameters.")
+            "query parameters. Use expand=metrics to include the metrics owned by each of the resources.")
     @ApiResponses({
             @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Unsupported expansion", response = ApiError.class),
             @ApiResponse(code = 404, message = "Tenant or environment doesn't exist", response = ApiError.class),
             @ApiResponse(code = 500, message = "Server error", response = ApiError.class)
     })
@@ -132,10 +143,14 @@ public class RestResources extends RestBase {
                                        @QueryParam("type") String typeId,
                                        @QueryParam("typeVersion") String typeVersion,
                                        @QueryParam("feedless") @DefaultValue("false") boolean feedless,
+                                       @QueryParam("expand") String expand,
                                        @Context UriInfo uriInfo) {
 
         Environments.Single envs = inventory.tenants().get(tenantId).environments().get(environmentId);
 
+        //the counts of a non-existent environment would just be empty, but we want a 404
+        envs.entity();
+
         ResolvingToMultiple<Resources.Multiple> rr = feedless ? envs.feedlessResources() : envs.allResources();
         Pager pager = extractPaging(uriInfo);
         Page<Resource> rs;
@@ -145,14 +160,16 @@ public class RestResources extends RestBase {
         } else {
             rs = rr.getAll().entities(pager);
         }
-        return pagedResponse(Response.ok(), uriInfo, rs).build();
+        return resourcesResponse(rr, rs, expand, uriInfo);
     }
 
     @GET
     @Path("/{tenantId}/{environmentId}/{feedId}/resources")
-    @ApiOperation("Retrieves resources in the feed, optionally filtering by resource type")
+    @ApiOperation("Retrieves resources in the feed, optionally filtering by resource type. Use expand=metrics to " +
+            "include the metrics owned by each of the resources.")
     @ApiResponses({
             @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Unsupported expansion", response = ApiError.class),
             @ApiResponse(code = 404, message = "Tenant, environment or feed doesn't exist", response = ApiError.class),
             @ApiResponse(code = 500, message = "Server error", response = ApiError.class)
     })
@@ -161,6 +178,7 @@ public class RestResources extends RestBase {
                                        @PathParam("feedId") String feedId,
                                        @QueryParam("type") String typeId,
                                        @QueryParam("typeVersion") String typeVersion,
+                                       @QueryParam("expand") String expand,
                                        @Context UriInfo uriInfo) {
         Resources.ReadWrite rr = inventory.tenants().get(tenantId).environments().get(environmentId)
                 .feeds().get(feedId).resources();
@@ -172,7 +190,79 @@ public class RestResources extends RestBase {
         } else {
             rs = rr.getAll().entities(pager);
         }
-        return pagedResponse(Response.ok(), uriInfo, rs).build();
+        return resourcesResponse(rr, rs, expand, uriInfo);
+    }
+
+    private Response resourcesResponse(ResolvingToMultiple<Resources.Multiple> rr, Page<Resource> rs, String expand,
+                                       UriInfo uriInfo) {
+        if (!extractExpand(expand, "metrics").contains("metrics")) {
+            return pagedResponse(Response.ok(), uriInfo, rs).build();
+        }
+
+        //expand the metrics of the whole page in a single traversal. Resources with the same id can exist in different
+        //feeds, so the look up is by the canonical path.
+        String[] ids = rs.stream().map(Resource::getId).toArray(String[]::new);
+        Map<CanonicalPath, List<Metric>> metrics = ids.length == 0 ? null
+                : rr.getAll(With.ids(ids)).metricsPerResource();
+
+        List<ExpandedResource> expanded = rs.stream()
+                .map(r -> new ExpandedResource(r, metrics.get(CanonicalPath.of(r))))
+                .collect(Collectors.toList());
+
+        return pagedResponse(Response.ok(), uriInfo, new Page<>(expanded, rs.getPageContext(), rs.getTotalSize()))
+                .build();
+    }
+
+    @GET
+    @Path("/{tenantId}/{environmentId}/resourceCounts")
+    @ApiOperation("Counts the resources in the environment grouped by their type, definition (i.e. resource type) or" +
+            " the value of a property. Only the buckets are returned, the resources themselves are never loaded.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Invalid grouping", response = ApiError.class),
+            @ApiResponse(code = 404, message = "Tenant or environment doesn't exist", response = ApiError.class),
+            @ApiResponse(code = 500, message = "Server error", response = ApiError.class)
+    })
+    public Response countResources(@PathParam("tenantId") String tenantId,
+                                   @PathParam("environmentId") String environmentId,
+                                   @QueryParam("groupBy") String groupBy,
+                                   @QueryParam("property") String property,
+                                   @QueryParam("feedless") @DefaultValue("false") boolean feedless) {
+
+        Environments.Single envs = inventory.tenants().get(tenantId).environments().get(environmentId);
+
+        //the counts of a non-existent environment would just be empty, but we want a 404
+        envs.entity();
+
+        ResolvingToMultiple<Resources.Multiple> rr = feedless ? envs.feedlessResources() : envs.allResources();
+
+        return groupCountResponse(Response.ok(), rr.getAll().groupCount(extractGroupBy(groupBy, property))).build();
+    }
+
+    @GET
+    @Path("/{tenantId}/{environmentId}/{feedId}/resourceCounts")
+    @ApiOperation("Counts the resources in the feed grouped by their type, definition (i.e. resource type) or" +
+            " the value of a property. Only the buckets are returned, the resources themselves are never loaded.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Invalid grouping", response = ApiError.class),
+            @ApiResponse(code = 404, message = "Tenant, environment or feed doesn't exist", response = ApiError.class),
+            @ApiResponse(code = 500, message = "Server error", response = ApiError.class)
+    })
+    public Response countResources(@PathParam("tenantId") String tenantId,
+                                   @PathParam("environmentId") String environmentId,
+                                   @PathParam("feedId") String feedId,
+                                   @QueryParam("groupBy") String groupBy,
+                                   @QueryParam("property") String property) {
+
+        Feeds.Single feed = inventory.tenants().get(tenantId).environments().get(environmentId).feeds().get(feedId);
+
+        //the counts of a non-existent feed would just be empty, but we want a 404
+        feed.entity();
+
+        Resources.Multiple rs = feed.resources().getAll();
+
+        return groupCountResponse(Response.ok(), rs.groupCount(extractGroupBy(groupBy, property))).build();
     }
 
     @GET
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wordnik.swagger.annotations.Api;
+import com.wordnik.swagger.annotations.ApiOperation;
+import com.wordnik.swagger.annotations.ApiResponse;
+import com.wordnik.swagger.annotations.ApiResponses;
+import org.hawkular.inventory.api.Relationships;
+import org.hawkular.inventory.api.ResolvableToSingle;
+import org.hawkular.inventory.api.TreeVisitor;
+import org.hawkular.inventory.api.model.CanonicalPath;
+import org.hawkular.inventory.api.model.Entity;
+import org.hawkular.inventory.rest.json.ApiError;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static org.hawkular.inventory.rest.RequestUtil.extractExpand;
+
+/**
+ * Retrieval of whole subtrees of the inventory at once.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+@Path("/")
+@Produces(APPLICATION_JSON)
+@Consumes(APPLICATION_JSON)
+@Api(value = "/", description = "Retrieval of subtrees of entities")
+public class RestTree extends RestBase {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @GET
+    @Path("/tree")
+    @ApiOperation("Retrieves the tree of entities reachable from the entity with the provided canonical path (e.g." +
+            " \"/t;tenant/e;env/f;feed\") in a single traversal. The contains relationships are always followed," +
+            " the owns and defines relationships only if listed in the 'relationships' query parameter. Each node" +
+            " of the tree has the 'type' and 'entity' properties, the 'relationship' through which it was reached" +
+            " from its parent and the list of its 'children'. The tree is streamed as it is being traversed.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Invalid canonical path, depth or relationships",
+                    response = ApiError.class),
+            @ApiResponse(code = 401, message = "Unauthorized access"),
+            @ApiResponse(code = 404, message = "The root entity doesn't exist", response = ApiError.class),
+            @ApiResponse(code = 500, message = "Server error", response = ApiError.class)
+    })
+    public Response getTree(@QueryParam("root") String rootPath,
+                            @QueryParam("depth") @DefaultValue("1") int depth,
+                            @QueryParam("relationships") String relationships) {
+
+        if (rootPath == null) {
+            throw new IllegalArgumentException("The 'root' query parameter is required.");
+        }
+
+        if (depth < 0) {
+            throw new IllegalArgumentException("The depth cannot be negative.");
+        }
+
+        CanonicalPath root = CanonicalPath.fromString(rootPath);
+        if (!root.isDefined() || !getTenantId().equals(root.getPath().get(0).getElementId())) {
+            throw new IllegalArgumentException("The canonical path '" + rootPath + "' doesn't belong to the tenant" +
+                    " of the current persona.");
+        }
+
+        Set<Relationships.WellKnown> followed = EnumSet.noneOf(Relationships.WellKnown.class);
+        for (String rel : extractExpand(relationships, "owns", "defines")) {
+            followed.add(Relationships.WellKnown.valueOf(rel));
+        }
+
+        //make sure we fail with 404 before we start streaming the response out
+        inventory.inspect(root, ResolvableToSingle.class).entity();
+
+        //the generator writes out its buffer whenever it fills up, so the tree never needs to be held in memory as
+        //a whole
+        StreamingOutput tree = (out) -> {
+            try (JsonGenerator gen = MAPPER.getFactory().createGenerator(out)) {
+                inventory.walk(root, depth, followed, new JsonTreeWriter(gen));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+
+        return Response.ok(tree).build();
+    }
+
+    private static final class JsonTreeWriter implements TreeVisitor {
+        private final JsonGenerator gen;
+
+        private JsonTreeWriter(JsonGenerator gen) {
+            this.gen = gen;
+        }
+
+        @Override
+        public void enter(Entity<?, ?> entity, Relationships.WellKnown relationship, int depth) {
+            try {
+                gen.writeStartObject();
+                if (relationship != null) {
+                    gen.writeStringField("relationship", relationship.name());
+                }
+                gen.writeStringField("type", entity.getClass().getSimpleName());
+                gen.writeObjectField("entity", entity);
+                gen.writeArrayFieldStart("children");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void leave(Entity<?, ?> entity) {
+            try {
+                gen.writeEndArray();
+                gen.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
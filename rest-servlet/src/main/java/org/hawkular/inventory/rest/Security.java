@@ -18,9 +18,13 @@ package org.hawkular.inventory.rest;
 
 import org.hawkular.accounts.api.OperationService;
 import org.hawkular.accounts.api.PermissionChecker;
+import org.hawkular.accounts.api.PersonaService;
 import org.hawkular.accounts.api.model.Operation;
+import org.hawkular.accounts.api.model.Persona;
+import org.hawkular.inventory.api.Action;
 import org.hawkular.inventory.api.Inventory;
 import org.hawkular.inventory.api.model.AbstractElement;
+import org.hawkular.inventory.api.model.CanonicalPath;
 import org.hawkular.inventory.api.model.Entity;
 import org.hawkular.inventory.api.model.EntityVisitor;
 import org.hawkular.inventory.api.model.Environment;
@@ -45,26 +49,63 @@ import javax.transaction.UserTransaction;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
  * CDI bean that provides inventory-focused abstractions over Hawkular accounts.
  * It defines all the operations available in inventory and implements permission checking methods.
  *
+ * <p>The permission decisions are cached per persona for a short time (see {@link #PERMISSION_CACHE_SIZE_PROPERTY}
+ * and {@link #PERMISSION_CACHE_TTL_PROPERTY}). {@link SecurityIntegration} invalidates them as the security resources
+ * are created and deleted.
+ *
+ * <p>The security resources are provisioned in the background, so a permission check on a resource whose provisioning
+ * is still pending (e.g. creating a child right after its parent) first waits for the provisioning to finish (see
+ * {@link #PROVISIONING_WAIT_PROPERTY}).
+ *
  * @author Lukas Krejci
  * @since 0.0.2
  */
 @Singleton
 public class Security {
 
+    /**
+     * The maximum number of cached permission decisions. 0 switches the caching off.
+     */
+    public static final String PERMISSION_CACHE_SIZE_PROPERTY = "hawkular.inventory.security.cache.size";
+
+    /**
+     * The number of seconds after which the cached permission decisions expire.
+     */
+    public static final String PERMISSION_CACHE_TTL_PROPERTY = "hawkular.inventory.security.cache.ttl";
+
+    /**
+     * The maximum number of milliseconds a permission check waits for the pending provisioning of the security
+     * resource it checks.
+     */
+    public static final String PROVISIONING_WAIT_PROPERTY = "hawkular.inventory.security.provisioning.wait";
+
     private final Map<Class<?>, Map<OperationType, Operation>> operationsByType =
             new HashMap<>();
 
+    private final PermissionCache decisions = new PermissionCache(
+            Integer.getInteger(PERMISSION_CACHE_SIZE_PROPERTY, 10000),
+            TimeUnit.SECONDS.toNanos(Long.getLong(PERMISSION_CACHE_TTL_PROPERTY, 10)));
+
+    private final PendingProvisioning pendingProvisioning = new PendingProvisioning();
+
+    private final long provisioningWait = Long.getLong(PROVISIONING_WAIT_PROPERTY, 10000);
+
     @Inject
     private PermissionChecker permissions;
 
     @Inject
     private OperationService operations;
 
+    @Inject
+    private PersonaService personas;
+
     @Inject
     @ObservableAutoTenant
     private Inventory.Mixin.AutoTenantAndObservable inventory;
@@ -72,6 +113,11 @@ public class Security {
     @javax.annotation.Resource
     private UserTransaction transaction;
 
+    /**
+     * The persona that sent the inventory command from the bus being applied in the current thread.
+     */
+    private final ThreadLocal<Persona> commandSender = new ThreadLocal<>();
+
     public static String getStableId(AbstractElement<?, ?> element) {
         if (element instanceof Relationship) {
             return element.getId();
@@ -227,21 +273,168 @@ public class Security {
     }
 
 
+    /**
+     * Checks whether the persona is allowed to make the change described by an inventory command received from the
+     * bus. The command is subject to the same checks as the equivalent REST request would be. Tenants can't be
+     * created by commands, because they can't be created using the REST API either.
+     *
+     * @param personaId the id of the authenticated persona that sent the command
+     * @param action    the action the command performs
+     * @param element   the entity or relationship in its desired state
+     * @return true if the persona can apply the command, false otherwise
+     */
+    public boolean canApply(String personaId, Action.Enumerated action, Object element) {
+        Persona persona;
+        try {
+            persona = personaId == null ? null : personas.get(personaId);
+        } catch (Exception e) {
+            RestApiLogger.LOGGER.securityCheckFailed(personaId, e);
+            return false;
+        }
+
+        if (persona == null) {
+            return false;
+        }
+
+        if (element instanceof Relationship) {
+            Entity<?, ?> source = ((Relationship) element).getSource();
+            return safePermissionCheck(source.getClass(), source.getId(), associate(), getStableId(source), persona);
+        } else if (!(element instanceof Entity)) {
+            return false;
+        }
+
+        Entity<?, ?> entity = (Entity<?, ?>) element;
+        CanonicalPath path = CanonicalPath.of(entity);
+
+        switch (action) {
+            case CREATED:
+                CanonicalPath parent = path.getParent();
+                return parent != null && safePermissionCheck(entity.getClass(), parent.getSegment().getElementId(),
+                        create(entity.getClass()), getStableId(parent), persona);
+            case UPDATED:
+                return safePermissionCheck(entity.getClass(), entity.getId(), update(entity.getClass()),
+                        getStableId(entity), persona);
+            case DELETED:
+                return safePermissionCheck(entity.getClass(), entity.getId(), delete(entity.getClass()),
+                        getStableId(entity), persona);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Applies an inventory command received from the bus on behalf of the persona that sent it. The thread receiving
+     * the commands has no current persona of its own, so this makes the changes made by the command attributed to the
+     * sender (e.g. the sender owns the entities created by the command).
+     *
+     * @param personaId the id of the authenticated persona that sent the command
+     * @param command   applies the command to the inventory
+     * @throws IllegalArgumentException if there is no persona with the provided id
+     */
+    public void applyOnBehalfOf(String personaId, Runnable command) {
+        Persona persona = personaId == null ? null : personas.get(personaId);
+        if (persona == null) {
+            throw new IllegalArgumentException("Unknown persona: " + personaId);
+        }
+
+        Persona previous = commandSender.get();
+        commandSender.set(persona);
+        try {
+            command.run();
+        } finally {
+            if (previous == null) {
+                commandSender.remove();
+            } else {
+                commandSender.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the persona changing the inventory in the current thread - either the sender of the bus command being
+     * applied or the persona of the current request
+     */
+    public Persona getCurrentPersona() {
+        Persona sender = commandSender.get();
+        return sender == null ? personas.getCurrent() : sender;
+    }
+
+    private static String getStableId(CanonicalPath path) {
+        String[] ids = path.getPath().stream().map(CanonicalPath.Segment::getElementId).toArray(String[]::new);
+
+        @SuppressWarnings("unchecked")
+        Class<? extends AbstractElement<?, ?>> type =
+                (Class<? extends AbstractElement<?, ?>>) (Class<?>) path.getSegment().getElementType();
+
+        return getStableId(type, ids);
+    }
+
     private boolean safePermissionCheck(Class<?> entityType, String entityId, Operation operation, String stableId) {
+        return safePermissionCheck(entityType, entityId, operation, stableId, null);
+    }
+
+    /**
+     * @param persona the persona to check the permission of or null for the current persona
+     */
+    private boolean safePermissionCheck(Class<?> entityType, String entityId, Operation operation, String stableId,
+            Persona persona) {
         try {
             if (Tenant.class.equals(entityType)) {
-                //make sure the tenant exists prior to checking perms on it
-                if (!inventory.tenants().get(entityId).exists()) {
-                    inventory.tenants().create(Tenant.Blueprint.builder().withId(entityId).build());
-                }
+                //make sure the tenant exists prior to checking perms on it - the auto-tenant inventory creates it on
+                //the first access and remembers it afterwards, so this is cheap after the first request
+                inventory.tenants().get(entityId);
+            }
+            BooleanSupplier check = persona == null ? () -> permissions.isAllowedTo(operation, stableId)
+                    : () -> permissions.isAllowedTo(operation, stableId, persona);
+
+            if (!pendingProvisioning.await(stableId, provisioningWait)) {
+                //don't cache the decision, it's likely to change as soon as the provisioning finishes
+                return check.getAsBoolean();
             }
-            return permissions.isAllowedTo(operation, stableId);
+
+            Persona current = persona == null ? personas.getCurrent() : persona;
+            return decisions.isAllowed(current == null ? null : current.getId(), operation, stableId, check);
         } catch (Exception e) {
             RestApiLogger.LOGGER.securityCheckFailed(stableId, e);
             return false;
         }
     }
 
+    /**
+     * Forgets the cached permission decisions about the security resource with the provided stable id.
+     *
+     * @param stableId the stable id of the created security resource
+     */
+    void invalidatePermissions(String stableId) {
+        decisions.invalidate(stableId);
+    }
+
+    /**
+     * Forgets all the cached permission decisions.
+     */
+    void invalidateAllPermissions() {
+        decisions.invalidateAll();
+    }
+
+    /**
+     * Makes the permission checks on the security resource wait until {@link #provisioned(String)} is called for it.
+     *
+     * @param stableId the stable id of the security resource to be provisioned
+     */
+    void provisioningSubmitted(String stableId) {
+        pendingProvisioning.submitted(stableId);
+    }
+
+    /**
+     * Must be called once the provisioning submitted by {@link #provisioningSubmitted(String)} is finished (or has
+     * failed) and the affected permission decisions are invalidated.
+     *
+     * @param stableId the stable id of the provisioned security resource
+     */
+    void provisioned(String stableId) {
+        pendingProvisioning.finished(stableId);
+    }
+
     private static String last(String... elements) {
         return elements[elements.length - 1];
     }
@@ -16,7 +16,6 @@
  */
 package org.hawkular.inventory.rest;
 
-import org.hawkular.accounts.api.PersonaService;
 import org.hawkular.accounts.api.ResourceService;
 import org.hawkular.accounts.api.model.Persona;
 import org.hawkular.inventory.api.Action;
@@ -41,8 +40,11 @@ import rx.Subscription;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
-import javax.transaction.Transactional;
+import javax.transaction.UserTransaction;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.hawkular.inventory.api.Action.created;
@@ -56,21 +58,51 @@ import static org.hawkular.inventory.rest.RestApiLogger.LOGGER;
  * one of its {@code can*()} methods. The creation of the security resources associated with the newly created inventory
  * entities is handled automagically by this class which does that by observing the mutation events on the inventory.
  *
+ * <p>The security resources are provisioned asynchronously in a dedicated thread, several inventory changes at a time
+ * in a single transaction. The changes are provisioned in the order they were observed in. The {@link Security}
+ * checks on the resources that are still being provisioned wait for the provisioning to finish.
+ *
  * @author Lukas Krejci
  * @since 0.0.2
  */
 @ApplicationScoped
 public class SecurityIntegration {
 
+    /**
+     * The maximum number of inventory changes provisioned in a single transaction.
+     */
+    public static final String PROVISIONING_BATCH_SIZE_PROPERTY = "hawkular.inventory.security.provisioning.batchSize";
+
+    /**
+     * The maximum number of milliseconds to wait for more inventory changes to provision them together.
+     */
+    public static final String PROVISIONING_LINGER_PROPERTY = "hawkular.inventory.security.provisioning.linger";
+
+    /**
+     * The maximum number of inventory changes waiting to be provisioned. The writers are slowed down if there are
+     * more.
+     */
+    public static final String PROVISIONING_QUEUE_SIZE_PROPERTY = "hawkular.inventory.security.provisioning.queueSize";
+
     @Inject
     ResourceService storage;
 
     @Inject
-    PersonaService personas;
+    Security security;
+
+    @javax.annotation.Resource
+    UserTransaction transaction;
 
     private final Set<Subscription> subscriptions = new HashSet<>();
 
+    AsyncBatcher<Change> provisioner;
+
     public void start(@Observes ObservableInventoryInitialized event) {
+        provisioner = new AsyncBatcher<>("hawkular-inventory-security-provisioner",
+                Integer.getInteger(PROVISIONING_QUEUE_SIZE_PROPERTY, 10000),
+                Integer.getInteger(PROVISIONING_BATCH_SIZE_PROPERTY, 100),
+                Long.getLong(PROVISIONING_LINGER_PROPERTY, 50), this::provision);
+
         Inventory.Mixin.Observable inventory = event.getInventory();
         install(inventory, Tenant.class);
         install(inventory, Environment.class);
@@ -82,9 +114,14 @@ public class SecurityIntegration {
         //install(inventory, Relationship.class);
     }
 
-    public void stop(@Observes DisposingObservableInventory event) {
+    public void stop(@Observes DisposingObservableInventory event) throws InterruptedException {
         subscriptions.forEach(Subscription::unsubscribe);
         subscriptions.clear();
+
+        if (provisioner != null) {
+            provisioner.close();
+            provisioner = null;
+        }
     }
 
     private <E extends AbstractElement<?, ?>> void install(Inventory.Mixin.Observable inventory, Class<E> cls) {
@@ -95,36 +132,108 @@ public class SecurityIntegration {
                 .subscribe(PartiallyApplied.method(this::react).second(deleted())));
     }
 
-    @Transactional
+    /**
+     * Queues the change to be reflected in the security resources. This happens asynchronously so that the writers
+     * don't have to wait for the round trips to the accounts database. The changes are provisioned in the order they
+     * happened in.
+     *
+     * @param entity the created or deleted entity
+     * @param action the action performed on the entity
+     */
     public void react(AbstractElement<?, ?> entity, Action<?, ?> action) {
-        switch (action.asEnum()) {
+        //the current persona (of the request or of the bus command being applied) is only known in the writer's thread
+        Persona owner = action.asEnum() == Action.Enumerated.CREATED ? security.getCurrentPersona() : null;
+
+        //the notification is delivered synchronously, so this happens before the writer can check the permissions on
+        //the new entity (or on the children it is about to create in it)
+        security.provisioningSubmitted(Security.getStableId(entity));
+        provisioner.submit(new Change(entity, action, owner));
+    }
+
+    void provision(List<Change> changes) {
+        try {
+            Batch batch = new Batch();
+            try {
+                inTransaction(() -> changes.forEach((c) -> provision(c, batch)));
+            } catch (Exception e) {
+                //retry one by one so that a single failure doesn't prevent the rest of the changes from being
+                //provisioned
+                for (Change c : changes) {
+                    Batch single = new Batch();
+                    try {
+                        inTransaction(() -> provision(c, single));
+                        invalidatePermissions(single);
+                    } catch (Exception e2) {
+                        LOGGER.securityProvisioningFailed(String.valueOf(c.entity), e2);
+                    }
+                }
+
+                return;
+            }
+
+            invalidatePermissions(batch);
+        } finally {
+            //only now, after the permissions are invalidated, can the waiting permission checks proceed
+            changes.forEach((c) -> security.provisioned(Security.getStableId(c.entity)));
+        }
+    }
+
+    private void provision(Change change, Batch batch) {
+        switch (change.action.asEnum()) {
             case CREATED:
-                createSecurityResource(entity);
+                createSecurityResource(change.entity, change.owner, batch);
                 break;
             case DELETED:
-                storage.delete(Security.getStableId(entity));
+                storage.delete(Security.getStableId(change.entity));
+                //the resources of the (transitively) contained entities are gone, too
+                batch.resources.clear();
+                batch.deleted = true;
                 break;
         }
     }
 
-    private void createSecurityResource(AbstractElement<?, ?> entity) {
+    private void inTransaction(Runnable payload) throws Exception {
+        transaction.begin();
+        try {
+            payload.run();
+            transaction.commit();
+        } catch (Throwable t) {
+            transaction.rollback();
+            throw t;
+        }
+    }
+
+    /**
+     * Only to be called once the transaction has been committed, otherwise a stale decision could be cached again.
+     */
+    private void invalidatePermissions(Batch batch) {
+        if (batch.deleted) {
+            //a new resource with the same stable id as a deleted one may have a different owner
+            security.invalidateAllPermissions();
+        } else {
+            batch.created.forEach(security::invalidatePermissions);
+        }
+    }
+
+    private void createSecurityResource(AbstractElement<?, ?> entity, Persona current, Batch batch) {
         LOGGER.tracef("Creating security entity for %s", entity);
 
-        org.hawkular.accounts.api.model.Resource parent = ensureParent(entity);
+        org.hawkular.accounts.api.model.Resource parent = ensureParent(entity, current, batch);
 
-        Persona owner = establishOwner(parent, personas.getCurrent());
+        Persona owner = establishOwner(parent, current);
 
         // because the event handling in inventory is not ordered in any way, we might receive the info about creating
         // a parent after a child has been reported. In that case, the security resource for the parent will already
         // exist.
         String stableId = Security.getStableId(entity);
-        if (storage.get(stableId) == null) {
-            storage.create(stableId, parent, owner);
+        if (batch.get(stableId) == null) {
+            batch.create(stableId, parent, owner);
             LOGGER.debugf("Created security entity with stable ID '%s' for entity %s", stableId, entity);
         }
     }
 
-    private org.hawkular.accounts.api.model.Resource ensureParent(AbstractElement<?, ?> entity) {
+    private org.hawkular.accounts.api.model.Resource ensureParent(AbstractElement<?, ?> entity, Persona current,
+            Batch batch) {
         String feedId = null;
         String environmentId = null;
         String tenantId = null;
@@ -142,15 +251,15 @@ public class SecurityIntegration {
         }
 
         org.hawkular.accounts.api.model.Resource parent = null;
-        Persona owner = personas.getCurrent();
+        Persona owner = current;
 
         if (tenantId != null) {
             String parentStableId = Security.getStableId(Tenant.class, tenantId);
 
-            org.hawkular.accounts.api.model.Resource tenantResource = storage.get(parentStableId);
+            org.hawkular.accounts.api.model.Resource tenantResource = batch.get(parentStableId);
 
             if (tenantResource == null) {
-                tenantResource = storage.create(parentStableId, null, owner);
+                tenantResource = batch.create(parentStableId, null, owner);
             } else {
                 owner = establishOwner(tenantResource, owner);
             }
@@ -159,10 +268,10 @@ public class SecurityIntegration {
 
             if (environmentId != null) {
                 parentStableId = Security.getStableId(Environment.class, tenantId, environmentId);
-                org.hawkular.accounts.api.model.Resource envResource = storage.get(parentStableId);
+                org.hawkular.accounts.api.model.Resource envResource = batch.get(parentStableId);
 
                 if (envResource == null) {
-                    envResource = storage.create(parentStableId, tenantResource, owner);
+                    envResource = batch.create(parentStableId, tenantResource, owner);
                 } else {
                     owner = establishOwner(envResource, owner);
                 }
@@ -171,10 +280,10 @@ public class SecurityIntegration {
 
                 if (feedId != null) {
                     parentStableId = Security.getStableId(Feed.class, tenantId, environmentId, feedId);
-                    org.hawkular.accounts.api.model.Resource feedResource = storage.get(parentStableId);
+                    org.hawkular.accounts.api.model.Resource feedResource = batch.get(parentStableId);
 
                     if (feedResource == null) {
-                        storage.create(parentStableId, envResource, owner);
+                        feedResource = batch.create(parentStableId, envResource, owner);
                     }
 
                     parent = feedResource;
@@ -200,4 +309,38 @@ public class SecurityIntegration {
 
         return current;
     }
+
+    static final class Change {
+        final AbstractElement<?, ?> entity;
+        final Action<?, ?> action;
+        final Persona owner;
+
+        Change(AbstractElement<?, ?> entity, Action<?, ?> action, Persona owner) {
+            this.entity = entity;
+            this.action = action;
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * The security resources looked up or created in a single transaction. The changes in a batch tend to share their
+     * parents (think of a feed registering its resources), which therefore only need to be looked up once.
+     */
+    private final class Batch {
+        final Map<String, org.hawkular.accounts.api.model.Resource> resources = new HashMap<>();
+        final Set<String> created = new HashSet<>();
+        boolean deleted;
+
+        org.hawkular.accounts.api.model.Resource get(String stableId) {
+            return resources.computeIfAbsent(stableId, storage::get);
+        }
+
+        org.hawkular.accounts.api.model.Resource create(String stableId,
+                org.hawkular.accounts.api.model.Resource parent, Persona owner) {
+            org.hawkular.accounts.api.model.Resource ret = storage.create(stableId, parent, owner);
+            resources.put(stableId, ret);
+            created.add(stableId);
+            return ret;
+        }
+    }
 }
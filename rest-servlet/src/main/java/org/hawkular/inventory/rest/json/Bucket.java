@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest.json;
+
+import com.wordnik.swagger.annotations.ApiModel;
+import com.wordnik.swagger.annotations.ApiModelProperty;
+
+/**
+ * A single bucket of a server-side aggregation, i.e. the key of the bucket and the number of entities in it.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+@ApiModel("The key of an aggregation bucket and the number of entities in it")
+public final class Bucket {
+
+    private final Object key;
+    private final long count;
+
+    public Bucket(Object key, long count) {
+        this.key = key;
+        this.count = count;
+    }
+
+    @ApiModelProperty("The key of the bucket, null for entities that don't have the grouped-by value")
+    public Object getKey() {
+        return key;
+    }
+
+    @ApiModelProperty("The number of entities in the bucket")
+    public long getCount() {
+        return count;
+    }
+}
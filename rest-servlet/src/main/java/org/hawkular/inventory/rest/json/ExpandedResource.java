@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest.json;
+
+import com.wordnik.swagger.annotations.ApiModel;
+import com.wordnik.swagger.annotations.ApiModelProperty;
+import org.hawkular.inventory.api.model.Metric;
+import org.hawkular.inventory.api.model.Resource;
+
+import java.util.List;
+
+/**
+ * A resource together with the related entities that the client asked to be expanded.
+ *
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+@ApiModel("A resource with its expanded relations")
+public final class ExpandedResource {
+
+    private final Resource resource;
+    private final List<Metric> metrics;
+
+    public ExpandedResource(Resource resource, List<Metric> metrics) {
+        this.resource = resource;
+        this.metrics = metrics;
+    }
+
+    @ApiModelProperty("The resource")
+    public Resource getResource() {
+        return resource;
+    }
+
+    @ApiModelProperty("The metrics owned by the resource, null if not expanded")
+    public List<Metric> getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class AsyncBatcherTest {
+
+    @Test
+    public void testFullBatchesHandedOverInOrder() throws Exception {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+
+        //the linger is long enough for all the items to be submitted before it expires
+        AsyncBatcher<Integer> batcher = new AsyncBatcher<>("test", 100, 3, 1000,
+                (b) -> batches.add(new ArrayList<>(b)));
+
+        for (int i = 0; i < 7; ++i) {
+            batcher.submit(i);
+        }
+
+        batcher.close();
+
+        Assert.assertEquals(Arrays.asList(Arrays.asList(0, 1, 2), Arrays.asList(3, 4, 5), Arrays.asList(6)),
+                batches);
+    }
+
+    @Test
+    public void testPartialBatchHandedOverAfterLinger() throws Exception {
+        CountDownLatch handled = new CountDownLatch(1);
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+        AsyncBatcher<String> batcher = new AsyncBatcher<>("test", 100, 100, 50, (b) -> {
+            batches.add(new ArrayList<>(b));
+            handled.countDown();
+        });
+
+        try {
+            batcher.submit("a");
+            batcher.submit("b");
+
+            Assert.assertTrue(handled.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(Arrays.asList("a", "b"), batches.stream().flatMap(List::stream)
+                    .collect(Collectors.toList()));
+        } finally {
+            batcher.close();
+        }
+    }
+
+    @Test
+    public void testFailingHandlerDoesNotStopTheWorker() throws Exception {
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+
+        AsyncBatcher<Integer> batcher = new AsyncBatcher<>("test", 100, 1, 0, (b) -> {
+            if (b.get(0) == 0) {
+                throw new IllegalStateException("expected");
+            }
+            handled.addAll(b);
+        });
+
+        batcher.submit(0);
+        batcher.submit(1);
+        batcher.submit(2);
+
+        batcher.close();
+
+        Assert.assertEquals(Arrays.asList(1, 2), handled);
+    }
+
+    @Test
+    public void testItemsSubmittedAfterCloseHandledByCaller() throws Exception {
+        List<String> threads = new CopyOnWriteArrayList<>();
+
+        AsyncBatcher<Integer> batcher = new AsyncBatcher<>("test", 100, 10, 0,
+                (b) -> threads.add(Thread.currentThread().getName()));
+
+        batcher.close();
+        batcher.submit(1);
+
+        Assert.assertEquals(Arrays.asList(Thread.currentThread().getName()), threads);
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class ChangeLogTest {
+
+    /**
+     * The size of a record with single-character tenant id, key and payload: the length and checksum, the sequence
+     * number, the timestamp and the three strings with their lengths.
+     */
+    private static final int RECORD_SIZE = 4 + 4 + 8 + 8 + 3 * (4 + 1);
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("changelog-test");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        for (Path f : segmentFiles()) {
+            Files.delete(f);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testAppendAndRead() throws Exception {
+        try (ChangeLog log = new ChangeLog(directory, 1024, 0, 0)) {
+            Assert.assertEquals(0, log.append(records("t:a:1", "u:b:2", "t:c:3")));
+            Assert.assertEquals(3, log.getNextSequence());
+            Assert.assertEquals(0, log.getFirstSequence());
+
+            List<ChangeLog.Record> all = log.read(0, 10, (r) -> true);
+            Assert.assertEquals(Arrays.asList("0:t:a:1", "1:u:b:2", "2:t:c:3"), describe(all));
+
+            Assert.assertEquals(Collections.singletonList("1:u:b:2"), describe(log.read(1, 1, (r) -> true)));
+            Assert.assertEquals(Arrays.asList("0:t:a:1", "2:t:c:3"),
+                    describe(log.read(0, 10, (r) -> "t".equals(r.tenantId))));
+        }
+    }
+
+    @Test
+    public void testRecordFormat() throws Exception {
+        try (ChangeLog log = new ChangeLog(directory, 1024, 0, 0)) {
+            log.append(records("t:a:1"));
+        }
+
+        List<Path> files = segmentFiles();
+        Assert.assertEquals(1, files.size());
+        Assert.assertEquals(String.format("%020d", 0) + ".log", files.get(0).getFileName().toString());
+
+        //the active segment is truncated to its records on close
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(files.get(0)));
+        Assert.assertEquals(RECORD_SIZE, b.limit());
+
+        int length = b.getInt();
+        int crc = b.getInt();
+        Assert.assertEquals(RECORD_SIZE - 8, length);
+
+        CRC32 expectedCrc = new CRC32();
+        expectedCrc.update(b.array(), 8, length);
+        Assert.assertEquals((int) expectedCrc.getValue(), crc);
+
+        Assert.assertEquals(0, b.getLong());
+        b.getLong();
+        Assert.assertEquals("t", readString(b));
+        Assert.assertEquals("a", readString(b));
+        Assert.assertEquals("1", readString(b));
+        Assert.assertFalse(b.hasRemaining());
+    }
+
+    @Test
+    public void testReopenedLogContinuesInTheLastSegment() throws Exception {
+        try (ChangeLog log = new ChangeLog(directory, 1024, 0, 0)) {
+            log.append(records("t:a:1", "t:b:2"));
+        }
+
+        try (ChangeLog log = new ChangeLog(directory, 1024, 0, 0)) {
+            Assert.assertEquals(2, log.append(records("t:c:3")));
+
+            //the reopened segment must be the one that is read
+            Assert.assertEquals(Arrays.asList("0:t:a:1", "1:t:b:2", "2:t:c:3"), describe(log.read(0, 10, (r) -> true)));
+        }
+
+        Assert.assertEquals(1, segmentFiles().size());
+    }
+
+    @Test
+    public void testRecoveryStopsAtCorruptedRecord() throws Exception {
+        try (ChangeLog log = new ChangeLog(directory, 1024, 0, 0)) {
+            log.append(records("t:a:1", "t:b:2", "t:c:3"));
+        }
+
+        Path file = segmentFiles().get(0);
+        byte[] data = Files.readAllBytes(file);
+        //the payload of the last record
+        data[data.length - 1] ^= 0xFF;
+        Files.write(file, data);
+
+        assertRecoveredTwoRecords();
+    }
+
+    @Test
+    public void testRecoveryStopsAtIncompleteRecord() throws Exception {
+        try (ChangeLog log = new ChangeLog(directory, 1024, 0, 0)) {
+            log.append(records("t:a:1", "t:b:2", "t:c:3"));
+        }
+
+        Path file = segmentFiles().get(0);
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length - 5));
+
+        assertRecoveredTwoRecords();
+    }
+
+    @Test
+    public void testRecoveryStopsAtOutOfOrderRecord() throws Exception {
+        try (ChangeLog log = new ChangeLog(directory, 1024, 0, 0)) {
+            log.append(records("t:a:1", "t:b:2"));
+        }
+
+        //a leftover of an earlier record is otherwise perfectly valid
+        Path file = segmentFiles().get(0);
+        byte[] data = Files.readAllBytes(file);
+        byte[] withLeftover = Arrays.copyOf(data, data.length + RECORD_SIZE);
+        System.arraycopy(data, 0, withLeftover, data.length, RECORD_SIZE);
+        Files.write(file, withLeftover);
+
+        try (ChangeLog log = new ChangeLog(directory, 1024, 0, 0)) {
+            Assert.assertEquals(2, log.getNextSequence());
+            Assert.assertEquals(Arrays.asList("0:t:a:1", "1:t:b:2"), describe(log.read(0, 10, (r) -> true)));
+        }
+    }
+
+    @Test
+    public void testSegmentsRolledAndRetained() throws Exception {
+        //two records per segment, the oldest segments are dropped once all of them are bigger than four records
+        try (ChangeLog log = new ChangeLog(directory, 2 * RECORD_SIZE, 2 * 2 * RECORD_SIZE, 0)) {
+            for (int i = 0; i < 10; ++i) {
+                log.append(records("t:" + i + ":" + i));
+            }
+
+            Assert.assertEquals(10, log.getNextSequence());
+            Assert.assertEquals(4, log.getFirstSequence());
+
+            //reading from a sequence that is no longer retained starts at the oldest retained record
+            Assert.assertEquals(Arrays.asList("4:t:4:4", "5:t:5:5", "6:t:6:6", "7:t:7:7", "8:t:8:8", "9:t:9:9"),
+                    describe(log.read(0, 10, (r) -> true)));
+        }
+
+        Assert.assertEquals(3, segmentFiles().size());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        //two records per segment: [a, b] [a, c] [b, a] [d]
+        try (ChangeLog log = new ChangeLog(directory, 2 * RECORD_SIZE, 0, 0)) {
+            log.append(records("t:a:1", "t:b:1", "t:a:2", "t:c:1", "t:b:2", "t:a:3", "t:d:1"));
+
+            log.compact();
+
+            Assert.assertEquals(Arrays.asList("3:t:c:1", "4:t:b:2", "5:t:a:3", "6:t:d:1"),
+                    describe(log.read(0, 10, (r) -> true)));
+            Assert.assertEquals(3, log.getFirstSequence());
+
+            //the active segment is never compacted
+            log.append(records("t:d:2"));
+            log.compact();
+            Assert.assertEquals(Arrays.asList("3:t:c:1", "4:t:b:2", "5:t:a:3", "6:t:d:1", "7:t:d:2"),
+                    describe(log.read(0, 10, (r) -> true)));
+        }
+
+        //the compacted segments survive a restart
+        try (ChangeLog log = new ChangeLog(directory, 2 * RECORD_SIZE, 0, 0)) {
+            Assert.assertEquals(8, log.getNextSequence());
+            Assert.assertEquals(Arrays.asList("3:t:c:1", "4:t:b:2", "5:t:a:3", "6:t:d:1", "7:t:d:2"),
+                    describe(log.read(0, 10, (r) -> true)));
+        }
+    }
+
+    @Test
+    public void testStaleCompactionFilesRemoved() throws Exception {
+        try (ChangeLog log = new ChangeLog(directory, 2 * RECORD_SIZE, 0, 0)) {
+            log.append(records("t:a:1", "t:b:1", "t:a:2"));
+        }
+
+        //left behind by a compaction interrupted by a crash
+        Path first = segmentFiles().get(0);
+        Path stale = first.resolveSibling(first.getFileName() + ".compacting");
+        Files.write(stale, new byte[]{1, 2, 3});
+
+        try (ChangeLog log = new ChangeLog(directory, 2 * RECORD_SIZE, 0, 0)) {
+            Assert.assertFalse(Files.exists(stale));
+
+            log.compact();
+
+            Assert.assertEquals(Arrays.asList("1:t:b:1", "2:t:a:2"), describe(log.read(0, 10, (r) -> true)));
+        }
+    }
+
+    private void assertRecoveredTwoRecords() throws IOException {
+        try (ChangeLog log = new ChangeLog(directory, 1024, 0, 0)) {
+            Assert.assertEquals(2, log.getNextSequence());
+            Assert.assertEquals(Arrays.asList("0:t:a:1", "1:t:b:2"), describe(log.read(0, 10, (r) -> true)));
+
+            //the log continues right after the last good record
+            Assert.assertEquals(2, log.append(records("t:d:4")));
+            Assert.assertEquals(Arrays.asList("0:t:a:1", "1:t:b:2", "2:t:d:4"), describe(log.read(0, 10, (r) -> true)));
+        }
+
+        try (ChangeLog log = new ChangeLog(directory, 1024, 0, 0)) {
+            Assert.assertEquals(3, log.getNextSequence());
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        List<Path> ret = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            files.forEach(ret::add);
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    /**
+     * @param specs the records as "tenant:key:payload"
+     */
+    private static List<ChangeLog.Record> records(String... specs) {
+        List<ChangeLog.Record> ret = new ArrayList<>();
+        for (String spec : specs) {
+            String[] parts = spec.split(":");
+            ret.add(new ChangeLog.Record(parts[0], parts[1], parts[2].getBytes(StandardCharsets.UTF_8)));
+        }
+        return ret;
+    }
+
+    private static List<String> describe(List<ChangeLog.Record> records) {
+        return records.stream().map((r) -> r.sequence + ":" + r.tenantId + ":" + r.key + ":"
+                + new String(r.payload, StandardCharsets.UTF_8)).collect(Collectors.toList());
+    }
+
+    private static String readString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class PendingProvisioningTest {
+
+    @Test
+    public void testNothingPending() throws Exception {
+        PendingProvisioning pending = new PendingProvisioning();
+
+        Assert.assertTrue(pending.await("t", 0));
+    }
+
+    @Test
+    public void testWaitTimesOut() throws Exception {
+        PendingProvisioning pending = new PendingProvisioning();
+        pending.submitted("t");
+
+        Assert.assertFalse(pending.await("t", 50));
+        Assert.assertTrue(pending.await("u", 50));
+    }
+
+    @Test
+    public void testWaitsForAllSubmissions() throws Exception {
+        PendingProvisioning pending = new PendingProvisioning();
+        pending.submitted("t");
+        pending.submitted("t");
+
+        CountDownLatch awaited = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                if (pending.await("t", 10000)) {
+                    awaited.countDown();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+
+        pending.finished("t");
+        Assert.assertFalse(awaited.await(100, TimeUnit.MILLISECONDS));
+
+        pending.finished("t");
+        Assert.assertTrue(awaited.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hawkular.accounts.api.PersonaService;
+import org.hawkular.accounts.api.model.Persona;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class RestChangesTest {
+
+    private Path directory;
+    private ChangeLog log;
+    private RestChanges rest;
+
+    @Before
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("rest-changes-test");
+        log = new ChangeLog(directory, 1024, 0, 0);
+
+        //the changes of the two tenants interleave, t1 has the even sequence numbers
+        for (int i = 0; i < 7; ++i) {
+            String tenant = i % 2 == 0 ? "t1" : "t2";
+            log.append(Arrays.asList(new ChangeLog.Record(tenant, "k" + i,
+                    ("{\"n\":" + i + "}").getBytes(StandardCharsets.UTF_8))));
+        }
+
+        Persona persona = mock(Persona.class);
+        when(persona.getId()).thenReturn("t1");
+
+        rest = new RestChanges();
+        rest.personas = mock(PersonaService.class);
+        when(rest.personas.getCurrent()).thenReturn(persona);
+
+        rest.changeLog = mock(ChangeLogIntegration.class);
+        when(rest.changeLog.getLog()).thenReturn(log);
+    }
+
+    @After
+    public void close() throws IOException {
+        log.close();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path f : files) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testPagingThroughTenantChanges() throws Exception {
+        JsonNode page = getChanges(0, 2);
+        Assert.assertEquals(0, page.get("first").asLong());
+        Assert.assertEquals(Arrays.asList(0L, 2L), sequences(page));
+        Assert.assertEquals(3, page.get("next").asLong());
+        Assert.assertEquals(2, page.get("changes").get(1).get("change").get("n").asInt());
+
+        page = getChanges(3, 2);
+        Assert.assertEquals(Arrays.asList(4L, 6L), sequences(page));
+        Assert.assertEquals(7, page.get("next").asLong());
+
+        page = getChanges(7, 2);
+        Assert.assertTrue(sequences(page).isEmpty());
+        Assert.assertEquals(7, page.get("next").asLong());
+
+        //a new change continues where the previous page ended
+        log.append(Arrays.asList(new ChangeLog.Record("t1", "k7", "{\"n\":7}".getBytes(StandardCharsets.UTF_8))));
+        page = getChanges(7, 2);
+        Assert.assertEquals(Arrays.asList(7L), sequences(page));
+        Assert.assertEquals(8, page.get("next").asLong());
+    }
+
+    @Test
+    public void testLastPageEndsAtTheEndOfTheLog() throws Exception {
+        //a page shorter than the limit means the next read continues at the end of the log
+        JsonNode page = getChanges(5, 10);
+        Assert.assertEquals(Arrays.asList(6L), sequences(page));
+        Assert.assertEquals(7, page.get("next").asLong());
+    }
+
+    @Test
+    public void testUnavailableWithoutChangeLog() throws Exception {
+        when(rest.changeLog.getLog()).thenReturn(null);
+
+        Assert.assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), rest.getChanges(0, 10).getStatus());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeOffsetRejected() throws Exception {
+        rest.getChanges(-1, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroLimitRejected() throws Exception {
+        rest.getChanges(0, 0);
+    }
+
+    private JsonNode getChanges(long from, int limit) throws IOException {
+        Response response = rest.getChanges(from, limit);
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(out);
+
+        return new ObjectMapper().readTree(out.toByteArray());
+    }
+
+    private static List<Long> sequences(JsonNode page) {
+        List<Long> ret = new ArrayList<>();
+        page.get("changes").forEach((c) -> ret.add(c.get("sequence").asLong()));
+        return ret;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.inventory.rest;
+
+import org.hawkular.accounts.api.OperationService;
+import org.hawkular.accounts.api.PermissionChecker;
+import org.hawkular.accounts.api.PersonaService;
+import org.hawkular.accounts.api.ResourceService;
+import org.hawkular.accounts.api.model.Operation;
+import org.hawkular.accounts.api.model.Persona;
+import org.hawkular.accounts.api.model.Resource;
+import org.hawkular.inventory.api.model.Environment;
+import org.hawkular.inventory.api.model.Tenant;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.transaction.UserTransaction;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hawkular.inventory.api.Action.created;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Lukas Krejci
+ * @since 0.1.0
+ */
+public class SecurityIntegrationTest {
+
+    private SecurityIntegration integration;
+
+    @Before
+    public void init() {
+        integration = new SecurityIntegration();
+        integration.storage = mock(ResourceService.class);
+        integration.security = mock(Security.class);
+        integration.transaction = mock(UserTransaction.class);
+
+        when(integration.storage.create(anyString(), any(Resource.class), any(Persona.class)))
+                .thenAnswer((i) -> mock(Resource.class));
+    }
+
+    @Test
+    public void testBatchProvisionedInSingleTransaction() throws Exception {
+        Environment e1 = new Environment("t", "e1");
+        Environment e2 = new Environment("t", "e2");
+
+        integration.provision(Arrays.asList(new SecurityIntegration.Change(e1, created(), null),
+                new SecurityIntegration.Change(e2, created(), null)));
+
+        verify(integration.transaction, times(1)).begin();
+        verify(integration.transaction, times(1)).commit();
+
+        //the tenant is shared by both environments, so it is only looked up and created once
+        verify(integration.storage, times(1)).create(eq(Security.getStableId(Tenant.class, "t")), any(Resource.class),
+                any(Persona.class));
+
+        verify(integration.security).invalidatePermissions(Security.getStableId(e1));
+        verify(integration.security).invalidatePermissions(Security.getStableId(e2));
+        verify(integration.security).provisioned(Security.getStableId(e1));
+        verify(integration.security).provisioned(Security.getStableId(e2));
+    }
+
+    @Test
+    public void testEntityCreatedByCommandOwnedBySender() throws Exception {
+        Persona sender = mock(Persona.class);
+        PersonaService personas = mock(PersonaService.class);
+        when(personas.get("sender")).thenReturn(sender);
+
+        //the resources created for the entities and their owners
+        Map<String, Persona> owners = new ConcurrentHashMap<>();
+        when(integration.storage.create(anyString(), any(Resource.class), any(Persona.class))).thenAnswer((i) -> {
+            owners.put((String) i.getArguments()[0], (Persona) i.getArguments()[2]);
+            return mock(Resource.class);
+        });
+
+        //only the owners are allowed to update the entities
+        PermissionChecker permissions = mock(PermissionChecker.class);
+        when(permissions.isAllowedTo(any(Operation.class), anyString())).thenAnswer((i) ->
+                owners.get((String) i.getArguments()[1]) == personas.getCurrent());
+
+        Security security = new Security();
+        inject(security, "personas", personas);
+        inject(security, "permissions", permissions);
+        inject(security, "operations", mock(OperationService.class, RETURNS_DEEP_STUBS));
+        inject(security, "transaction", mock(UserTransaction.class));
+        security.initOperationsMap();
+
+        integration.security = security;
+        integration.provisioner = new AsyncBatcher<>("test-provisioner", 10, 10, 0, integration::provision);
+
+        try {
+            //the bus command is applied in a thread without any current persona, reporting the created entity
+            //synchronously
+            Environment e = new Environment("t", "e");
+            security.applyOnBehalfOf("sender", () -> integration.react(e, created()));
+
+            //the sender then updates the environment using the REST API
+            when(personas.getCurrent()).thenReturn(sender);
+            Assert.assertTrue(security.canUpdate(Environment.class, "t", "e"));
+            Assert.assertSame(sender, owners.get(Security.getStableId(e)));
+
+            //but not anybody else
+            when(personas.getCurrent()).thenReturn(mock(Persona.class));
+            security.invalidateAllPermissions();
+            Assert.assertFalse(security.canUpdate(Environment.class, "t", "e"));
+        } finally {
+            integration.provisioner.close();
+        }
+    }
+
+    @Test
+    public void testFailedBatchRetriedOneByOne() throws Exception {
+        Environment good = new Environment("t", "good");
+        Environment bad = new Environment("t", "bad");
+
+        when(integration.storage.create(eq(Security.getStableId(bad)), any(Resource.class), any(Persona.class)))
+                .thenThrow(new IllegalStateException("expected"));
+
+        integration.provision(Arrays.asList(new SecurityIntegration.Change(bad, created(), null),
+                new SecurityIntegration.Change(good, created(), null)));
+
+        //the batch, then the good one and the bad one on their own
+        verify(integration.transaction, times(3)).begin();
+        verify(integration.transaction, times(1)).commit();
+        verify(integration.transaction, times(2)).rollback();
+
+        verify(integration.security).invalidatePermissions(Security.getStableId(good));
+        verify(integration.security, never()).invalidatePermissions(Security.getStableId(bad));
+
+        //the permission checks waiting for either of them must not wait any longer
+        verify(integration.security).provisioned(Security.getStableId(good));
+        verify(integration.security).provisioned(Security.getStableId(bad));
+    }
+
+    private static void inject(Object target, String field, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+}